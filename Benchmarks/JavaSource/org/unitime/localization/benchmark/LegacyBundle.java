@@ -0,0 +1,212 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.localization.benchmark;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.util.Formats;
+
+import com.google.gwt.i18n.client.Constants;
+import com.google.gwt.i18n.client.Messages;
+
+/**
+ * Message bundle implementation as it was before the messages were precompiled (see {@link Localization.Bundle}):
+ * the properties of all the locales are kept in a synchronized table, each call resolves the message through the locale
+ * fallbacks and fills in the arguments by string replacement. Only used as the baseline of the {@link LocalizationBenchmark}.
+ *
+ * @author Tomas Muller
+ */
+public class LegacyBundle implements InvocationHandler {
+	private static Log sLog = LogFactory.getLog(LegacyBundle.class);
+	private Map<String, Properties> iProperties = new Hashtable<String, Properties>();
+	private Class<?> iMessages = null;
+
+	public LegacyBundle(Class<?> messages) {
+		iMessages = messages;
+	}
+	
+	private synchronized String getProperty(String locale, String name) {
+		Properties properties = iProperties.get(locale);
+		if (properties == null) {
+			properties = new Properties();
+			String resource = iMessages.getName().replace('.', '/') + (locale.isEmpty() ? "" : "_" + locale) + ".properties"; 
+			try {
+				InputStream is = Localization.class.getClassLoader().getResourceAsStream(resource);
+				if (is != null)
+					properties.load(is);
+			} catch (Exception e) {
+				sLog.warn("Failed to load message bundle " + iMessages.getName().substring(iMessages.getName().lastIndexOf('.') + 1) + " for " + locale + ": "  + e.getMessage(), e);
+			}
+			iProperties.put(locale, properties);
+		}
+		return properties.getProperty(name);
+	}
+	
+	private String getProperty(String name) {
+		for (String locale: Localization.getLocale().split(",")) {
+			if (locale.indexOf(';') >= 0) locale = locale.substring(0, locale.indexOf(';'));
+			String value = getProperty(locale.trim(), name);
+			if (value != null) return value;
+			if (locale.indexOf('_') >= 0) {
+				locale = locale.substring(0, locale.indexOf('_'));
+				value = getProperty(locale.trim(), name);
+				if (value != null) return value;
+			}
+		}
+		return getProperty("", name); // try default message bundle
+	}
+	
+	private String fillArgumentsIn(String value, Object[] args, int firstIndex) {
+		if (value == null || args == null) return value;
+		for (int i = 0; i + firstIndex < args.length; i++) {
+			value = value.replace("{" + i + "}", (args[i + firstIndex] == null ? "" : args[i + firstIndex].toString()));
+			if (value.indexOf("{" + i + ",number,") >= 0) {
+				int idx = value.indexOf("{" + i + ",number,");
+				String pattern = value.substring(idx + ("{" + i + ",number,").length(), value.indexOf('}', idx));
+				String number = (args[i + firstIndex] == null ? "" : Formats.getNumberFormat(pattern).format((Number)args[i + firstIndex]));
+				value = value.replace("{" + i + ",number," + pattern + "}", number);
+			}
+		}
+		return value;
+	}
+	
+	private String[] string2array(String value) {
+		return value.split("(?<=^.*[^\\\\]),(?=.*$)");
+	}
+	
+	private Map<String, String> array2map(String[] value) {
+		Map<String, String> map = new HashMap<String, String>();
+		for (int i = 0; i < value.length - 1; i += 2)
+			map.put(value[i], value[i + 1]);
+		return map;
+	}
+	
+	private Object type(String value, Class returnType) {
+		if (value == null) return value;
+		if (String.class.equals(returnType))
+			return value;
+		
+		if (Boolean.class.equals(returnType) || boolean.class.equals(returnType))
+			return "true".equalsIgnoreCase(value);
+		if (Double.class.equals(returnType) || double.class.equals(returnType))
+			return Double.valueOf(value);
+		if (Float.class.equals(returnType) || float.class.equals(returnType))
+			return Float.valueOf(value);
+		if (Integer.class.equals(returnType) || int.class.equals(returnType))
+			return Integer.valueOf(value);
+
+		if (String[].class.equals(returnType))
+			return string2array(value);
+		
+		if (Map.class.equals(returnType)) {
+			Map<String, String> map = new HashMap<String, String>();
+			for (String key: string2array(value)) {
+				String val = getProperty(key.trim());
+				if (val != null) map.put(key.trim(), val);
+			}
+			if (map.isEmpty())
+				return array2map(string2array(value));
+			return map;
+		}
+
+		return value;
+	}
+	
+	private String[] fixStringArray(String[] value, String[] defaults) {
+		if (value != null && value.length < defaults.length) {
+			String[] fixed = Arrays.copyOf(value, defaults.length);
+			for (int i = value.length; i < defaults.length; i++)
+				fixed[i] = defaults[i];
+			return fixed;
+		}
+		return value;
+	}
+	
+	private Map<String, String> fixStringMap(Map<String, String> value, Map<String, String> defaults) {
+		if (value != null && !value.keySet().equals(defaults.keySet())) {
+			Map<String, String> fixed = new HashMap<String, String>(value);
+			for (Map.Entry<String, String> e: defaults.entrySet()) {
+				if (!value.containsKey(e.getKey()))
+					fixed.put(e.getKey(), e.getValue());
+			}
+			return fixed;
+		}
+		return value;
+	}
+	
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if ("translateMessage".equals(method.getName()) && method.getParameterTypes().length >= 2) {
+			String value = (args[0] == null ? null : getProperty((String) args[0]));
+			return (value == null ? (String) args[1] : fillArgumentsIn(value, args, 2));
+		}
+		String value = getProperty(method.getName());
+		if (value != null) {
+			Object ret = type(fillArgumentsIn(value, args, 0), method.getReturnType());
+			if (String[].class.equals(method.getReturnType())) {
+				Constants.DefaultStringArrayValue dsa = method.getAnnotation(Constants.DefaultStringArrayValue.class);
+				if (dsa != null)
+					return fixStringArray((String[])ret, dsa.value());
+			}
+			if (Map.class.equals(method.getReturnType())) {
+				Constants.DefaultStringMapValue dsm = method.getAnnotation(Constants.DefaultStringMapValue.class);
+				if (dsm != null)
+					return fixStringMap((Map<String, String>)ret, array2map(dsm.value()));
+			}
+			return ret;
+		}
+		Messages.DefaultMessage dm = method.getAnnotation(Messages.DefaultMessage.class);
+		if (dm != null)
+			return fillArgumentsIn(dm.value(), args, 0);
+		Constants.DefaultBooleanValue db = method.getAnnotation(Constants.DefaultBooleanValue.class);
+		if (db != null)
+			return db.value();
+		Constants.DefaultDoubleValue dd = method.getAnnotation(Constants.DefaultDoubleValue.class);
+		if (dd != null)
+			return dd.value();
+		Constants.DefaultFloatValue df = method.getAnnotation(Constants.DefaultFloatValue.class);
+		if (df != null)
+			return df.value();
+		Constants.DefaultIntValue di = method.getAnnotation(Constants.DefaultIntValue.class);
+		if (di != null)
+			return di.value();
+		Constants.DefaultStringValue ds = method.getAnnotation(Constants.DefaultStringValue.class);
+		if (ds != null)
+			return ds.value();
+		Constants.DefaultStringArrayValue dsa = method.getAnnotation(Constants.DefaultStringArrayValue.class);
+		if (dsa != null)
+			return dsa.value();
+		Constants.DefaultStringMapValue dsm = method.getAnnotation(Constants.DefaultStringMapValue.class);
+		if (dsm != null)
+			return array2map(dsm.value());
+		
+		return method.getName();
+	}
+}
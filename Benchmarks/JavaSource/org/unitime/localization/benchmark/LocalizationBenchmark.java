@@ -0,0 +1,111 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.localization.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.unitime.localization.impl.Localization;
+import org.unitime.localization.messages.CourseMessages;
+import org.unitime.timetable.gwt.resources.GwtMessages;
+
+/**
+ * JMH benchmark of the localized messages: precompiled message tables (default), messages resolved on each call from the
+ * message table (unitime.localization.precompiled=false), and the original implementation with a synchronized properties lookup
+ * and the arguments filled in on each call ({@link LegacyBundle}, the baseline).
+ * Run with -p locale=cs to test a locale with a fallback to the default bundle.
+ * Use e.g. java -Dthreads=1,8 -jar target/benchmarks.jar LocalizationBenchmark
+ *
+ * @author Tomas Muller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+public class LocalizationBenchmark {
+	@Param({"precompiled", "dynamic", "legacy"})
+	public String mode;
+
+	@Param({"en"})
+	public String locale;
+
+	private CourseMessages iCourseMessages;
+	private GwtMessages iGwtMessages;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		iCourseMessages = (CourseMessages)Proxy.newProxyInstance(Localization.class.getClassLoader(), new Class[] {CourseMessages.class}, createHandler(CourseMessages.class));
+		iGwtMessages = (GwtMessages)Proxy.newProxyInstance(Localization.class.getClassLoader(), new Class[] {GwtMessages.class}, createHandler(GwtMessages.class));
+	}
+
+	protected InvocationHandler createHandler(Class<?> messages) {
+		if ("legacy".equals(mode))
+			return new LegacyBundle(messages);
+		return new Localization.Bundle(messages, "precompiled".equals(mode));
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadLocale {
+		@Setup(Level.Trial)
+		public void setup(LocalizationBenchmark benchmark) {
+			Localization.setLocale(benchmark.locale);
+		}
+	}
+
+	/** Message without arguments (e.g., a table column header) */
+	@Benchmark
+	public String noArguments(ThreadLocale locale) {
+		return iCourseMessages.columnInstructor();
+	}
+
+	/** Message with string arguments */
+	@Benchmark
+	public String stringArguments(ThreadLocale locale) {
+		return iCourseMessages.errorRequiredField("Name");
+	}
+
+	/** Message with number formatting */
+	@Benchmark
+	public String numberArguments(ThreadLocale locale) {
+		return iGwtMessages.coordinates(ThreadLocalRandom.current().nextDouble(), ThreadLocalRandom.current().nextDouble());
+	}
+
+	/** Message looked up by its key (translateMessage) */
+	@Benchmark
+	public String translateMessage(ThreadLocale locale) {
+		return iCourseMessages.translateMessage("columnInstructor", "Instructor");
+	}
+}
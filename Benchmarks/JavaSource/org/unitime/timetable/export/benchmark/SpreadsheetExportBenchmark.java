@@ -0,0 +1,152 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.export.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.export.Exporter.SpreadsheetPrinter;
+import org.unitime.timetable.export.PDFPrinter.A;
+import org.unitime.timetable.export.XLSXPrinter;
+
+/**
+ * JMH benchmark of the spreadsheet exports: the XLS workbook (XLSPrinter) vs. the streaming XLSX writer (XLSXPrinter,
+ * unitime.export.xlsx.streaming=true). Each invocation prints a table of 50,000 rows (similar to the events
+ * or rooms export: text, numbers, bold and colored cells, multi-line cells) into an output that discards the data,
+ * the score is in rows per second. The peak heap usage of each iteration is printed at the end of the iteration.
+ * The row count must stay under 65,536 for the XLS format.
+ * Run with java -Dthreads=1 -jar target/benchmarks.jar SpreadsheetExportBenchmark
+ *
+ * @author Tomas Muller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@OperationsPerInvocation(SpreadsheetExportBenchmark.ROWS)
+public class SpreadsheetExportBenchmark {
+	public static final int ROWS = 50000;
+
+	@Param({"xlsx", "xls"})
+	public String format;
+
+	@Param({"12"})
+	public int columns;
+
+	private A[][] iLines;
+	private String[] iHeader;
+	private long iBytes = 0;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		ApplicationProperties.getDefaultProperties().setProperty(ApplicationProperty.ExportXLSXStreaming.key(), String.valueOf("xlsx".equals(format)));
+		Random rnd = new Random(1234l);
+		String[] colors = new String[] { null, "red", "#0000FF", "808080" };
+		iHeader = new String[columns];
+		for (int c = 0; c < columns; c++)
+			iHeader[c] = "Column " + (c + 1) + (c % 3 == 0 ? "\nSecond Line" : "");
+		iLines = new A[1000][];
+		for (int i = 0; i < iLines.length; i++) {
+			A[] line = new A[columns];
+			for (int c = 0; c < columns; c++) {
+				switch (c % 4) {
+				case 0:
+					line[c] = new A("Event " + rnd.nextInt(100000)).bold();
+					break;
+				case 1:
+					line[c] = new A(rnd.nextInt(500)).right();
+					break;
+				case 2:
+					line[c] = new A(new A("MWF 8:30a - 9:20a"), new A("EDUC " + rnd.nextInt(300)).italic());
+					break;
+				default:
+					line[c] = new A("Lorem ipsum dolor sit amet " + rnd.nextInt(1000)).color(colors[rnd.nextInt(colors.length)]);
+				}
+			}
+			iLines[i] = line;
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void resetPeakUsage() {
+		System.gc();
+		for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+		iBytes = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void printPeakUsage() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+		System.out.println();
+		System.out.println(format + ": peak heap " + (peak / 1024 / 1024) + " MB, " + (iBytes / 1024) + " kB written");
+	}
+
+	@Benchmark
+	public long export() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		SpreadsheetPrinter printer = XLSXPrinter.createPrinter(out, false, "benchmark.xls");
+		printer.printHeader(iHeader);
+		for (int i = 0; i < ROWS; i++) {
+			printer.printLine(iLines[i % iLines.length]);
+			printer.flush();
+		}
+		printer.close();
+		iBytes += out.getCount();
+		return out.getCount();
+	}
+
+	static class CountingOutputStream extends OutputStream {
+		private long iCount = 0;
+
+		@Override
+		public void write(int b) { iCount++; }
+
+		@Override
+		public void write(byte[] b, int off, int len) { iCount += len; }
+
+		public long getCount() { return iCount; }
+	}
+}
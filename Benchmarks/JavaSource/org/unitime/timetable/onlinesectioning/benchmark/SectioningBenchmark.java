@@ -0,0 +1,218 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.cpsolver.studentsct.model.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.shared.ClassAssignmentInterface;
+import org.unitime.timetable.gwt.shared.CourseRequestInterface;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningLog;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
+import org.unitime.timetable.onlinesectioning.basic.GetRequest;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XRequest;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.solver.CheckAssignmentAction;
+import org.unitime.timetable.onlinesectioning.solver.ComputeSuggestionsAction;
+import org.unitime.timetable.onlinesectioning.solver.FindAssignmentAction;
+
+/**
+ * JMH benchmarks of the online student scheduling hot paths, running against a {@link SyntheticSession}
+ * loaded into an in-memory server (no database is needed):
+ * <ul>
+ * <li>findAssignment: {@link FindAssignmentAction} for a random student (Student Scheduling Assistant: Build Schedule)
+ * <li>computeSuggestions: {@link ComputeSuggestionsAction} for a random student and a random class of the student's schedule
+ * <li>checkAssignment: {@link CheckAssignmentAction} of a student's schedule (validation that precedes an enrollment)
+ * <li>enroll: the in-memory part of {@link org.unitime.timetable.onlinesectioning.updates.EnrollStudent} (student lock, assignment of a course request, and its release);
+ * the database part of the enrollment is not included
+ * <li>findCourses: course lookup by a course name prefix (course finder suggestions)
+ * </ul>
+ * Use the parameters (-p) to change the size of the session or the server implementation, run with -Dthreads=1,2,4,8,16 to
+ * get the results for different numbers of concurrent threads.
+ *
+ * @author Tomas Muller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class SectioningBenchmark {
+	@Param({"InMemoryServer", "CompactInMemoryServer"})
+	public String server;
+
+	@Param({"1500"})
+	public int offerings;
+
+	@Param({"10000"})
+	public int students;
+
+	@Param({"5"})
+	public int courses;
+
+	@Param({"500"})
+	public int sample;
+
+	private OnlineSectioningServer iServer;
+	private SyntheticSession iSession;
+	private List<Long> iStudentIds = new ArrayList<Long>();
+	private List<List<ClassAssignmentInterface.ClassAssignment>> iAssignments = new ArrayList<List<ClassAssignmentInterface.ClassAssignment>>();
+	private List<String> iQueries = new ArrayList<String>();
+	private OnlineSectioningLog.Entity iUser;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		ApplicationProperties.getDefaultProperties().setProperty(ApplicationProperty.OnlineSchedulingLoggingEnabled.key(), "false");
+		iUser = OnlineSectioningLog.Entity.newBuilder()
+				.setExternalId("BENCHMARK").setName("Benchmark")
+				.setType(OnlineSectioningLog.Entity.EntityType.MANAGER).build();
+
+		iSession = new SyntheticSession(offerings, students, courses, 1234l);
+		iServer = iSession.createServer(server);
+
+		// a sample of students with their computed schedules
+		List<Student> students = new ArrayList<Student>(iSession.getStudents());
+		Collections.shuffle(students, new java.util.Random(1234l));
+		for (Student student: students) {
+			if (iStudentIds.size() >= sample) break;
+			CourseRequestInterface request = getRequest(student.getId());
+			if (request == null || request.getCourses().isEmpty()) continue;
+			List<ClassAssignmentInterface> schedules = iServer.execute(iServer.createAction(FindAssignmentAction.class).forRequest(request)
+					.withAssignment(new ArrayList<ClassAssignmentInterface.ClassAssignment>()), iUser);
+			if (schedules == null || schedules.isEmpty()) continue;
+			List<ClassAssignmentInterface.ClassAssignment> classes = new ArrayList<ClassAssignmentInterface.ClassAssignment>();
+			for (ClassAssignmentInterface.CourseAssignment course: schedules.get(0).getCourseAssignments())
+				for (ClassAssignmentInterface.ClassAssignment clazz: course.getClassAssignments())
+					if (clazz.getClassId() != null) classes.add(clazz);
+			if (classes.isEmpty()) continue;
+			iStudentIds.add(student.getId());
+			iAssignments.add(classes);
+		}
+		if (iStudentIds.isEmpty())
+			throw new IllegalStateException("No student has a schedule.");
+
+		// course name prefixes: subject areas, first digits of the course numbers, and complete course names
+		for (int i = 0; i < Math.min(100, iSession.getOfferings().size()); i++) {
+			String name = iSession.getOfferings().get(i).getName();
+			iQueries.add(name.substring(0, name.indexOf(' ')));
+			iQueries.add(name.substring(0, name.indexOf(' ') + 2));
+			iQueries.add(name);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (iServer != null) iServer.unload();
+	}
+
+	protected CourseRequestInterface getRequest(Long studentId) {
+		return iServer.execute(iServer.createAction(GetRequest.class).forStudent(studentId), iUser);
+	}
+
+	@Benchmark
+	public Object findAssignment() {
+		Long studentId = iStudentIds.get(ThreadLocalRandom.current().nextInt(iStudentIds.size()));
+		CourseRequestInterface request = getRequest(studentId);
+		return iServer.execute(iServer.createAction(FindAssignmentAction.class).forRequest(request)
+				.withAssignment(new ArrayList<ClassAssignmentInterface.ClassAssignment>()), iUser);
+	}
+
+	@Benchmark
+	public Object computeSuggestions() {
+		int index = ThreadLocalRandom.current().nextInt(iStudentIds.size());
+		CourseRequestInterface request = getRequest(iStudentIds.get(index));
+		List<ClassAssignmentInterface.ClassAssignment> classes = iAssignments.get(index);
+		return iServer.execute(iServer.createAction(ComputeSuggestionsAction.class).forRequest(request)
+				.withAssignment(classes).withSelection(classes.get(ThreadLocalRandom.current().nextInt(classes.size()))), iUser);
+	}
+
+	@Benchmark
+	public Object checkAssignment() {
+		int index = ThreadLocalRandom.current().nextInt(iStudentIds.size());
+		return iServer.execute(iServer.createAction(CheckAssignmentAction.class).forStudent(iStudentIds.get(index))
+				.withAssignment(iAssignments.get(index)), iUser);
+	}
+
+	@Benchmark
+	public Object enroll() {
+		Long studentId = iStudentIds.get(ThreadLocalRandom.current().nextInt(iStudentIds.size()));
+		XStudent student = iServer.getStudent(studentId);
+		List<XCourseRequest> requests = new ArrayList<XCourseRequest>();
+		for (XRequest r: student.getRequests())
+			if (r instanceof XCourseRequest) requests.add((XCourseRequest)r);
+		XCourseRequest request = requests.get(ThreadLocalRandom.current().nextInt(requests.size()));
+		XEnrollment enrollment = iSession.getEnrollment(request.getRequestId());
+		Lock lock = iServer.lockStudent(studentId, Collections.singleton(enrollment.getOfferingId()), "enroll");
+		try {
+			iServer.assign(request, enrollment);
+			return iServer.assign(request, null);
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Benchmark
+	public Object findCourses() {
+		String query = iQueries.get(ThreadLocalRandom.current().nextInt(iQueries.size()));
+		return iServer.findCourses(query, 20, null);
+	}
+
+	/**
+	 * Run the benchmarks for each of the thread counts given by the threads system property (defaults to 1,2,4,8,16),
+	 * the arguments are passed to JMH (e.g., a benchmark name regexp or -p students=20000).
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		for (String threads: System.getProperty("threads", "1,2,4,8,16").split(",")) {
+			OptionsBuilder options = new OptionsBuilder();
+			options.parent(cmd);
+			if (cmd.getIncludes().isEmpty())
+				options.include(SectioningBenchmark.class.getSimpleName());
+			options.threads(Integer.parseInt(threads.trim()));
+			new Runner(options.build()).run();
+		}
+	}
+}
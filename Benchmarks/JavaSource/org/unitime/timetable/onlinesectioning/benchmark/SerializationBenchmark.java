@@ -0,0 +1,147 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.cpsolver.studentsct.constraint.LinkedSections;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.Student;
+import org.infinispan.commons.marshall.Externalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XRequest;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+
+/**
+ * JMH benchmarks of the serialization of the online sectioning model, using the Infinispan externalizers
+ * of {@link XOffering} and {@link XStudent} (the objects that are replicated the most) on the objects of a {@link SyntheticSession}
+ * (students are enrolled in their first choice courses):
+ * <ul>
+ * <li>serialize: write a random offering or student
+ * <li>deserialize: read a random offering or student
+ * </ul>
+ * The format parameter switches between the compact encoding and the legacy one (unitime.sectioning.serialization.compact),
+ * the average and total size of the serialized objects are printed during the setup of each trial.
+ * Run with java -Dthreads=1 -jar target/benchmarks.jar SerializationBenchmark
+ *
+ * @author Tomas Muller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+public class SerializationBenchmark {
+	@Param({"compact", "legacy"})
+	public String format;
+
+	@Param({"offering", "student"})
+	public String object;
+
+	@Param({"500"})
+	public int offerings;
+
+	@Param({"2000"})
+	public int students;
+
+	@Param({"5"})
+	public int courses;
+
+	private List<Object> iObjects = new ArrayList<Object>();
+	private List<byte[]> iData = new ArrayList<byte[]>();
+	private Externalizer<Object> iExternalizer;
+
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setup() throws IOException, ClassNotFoundException {
+		ApplicationProperties.getDefaultProperties().setProperty(ApplicationProperty.OnlineSchedulingCompactSerialization.key(), String.valueOf("compact".equals(format)));
+		SyntheticSession session = new SyntheticSession(offerings, students, courses, 1234l);
+		if ("student".equals(object)) {
+			iExternalizer = (Externalizer<Object>)(Externalizer<?>)new XStudent.XStudentSerializer();
+			for (Student s: session.getStudents()) {
+				XStudent student = new XStudent(s, null);
+				for (XRequest request: student.getRequests())
+					if (request instanceof XCourseRequest)
+						((XCourseRequest)request).setEnrollment(session.getEnrollment(request.getRequestId()));
+				iObjects.add(student);
+			}
+		} else {
+			iExternalizer = (Externalizer<Object>)(Externalizer<?>)new XOffering.XOfferingSerializer();
+			for (Offering offering: session.getOfferings())
+				iObjects.add(new XOffering(offering, new ArrayList<LinkedSections>()));
+		}
+		long total = 0;
+		for (Object o: iObjects) {
+			byte[] data = serialize(o);
+			deserialize(data);
+			iData.add(data);
+			total += data.length;
+		}
+		System.out.println();
+		System.out.println(object + " [" + format + "]: " + iObjects.size() + " objects, " + (total / iObjects.size()) + " bytes per object on average, " + (total / 1024) + " kB in total");
+	}
+
+	protected byte[] serialize(Object o) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		iExternalizer.writeObject(out, o);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	protected Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+		return iExternalizer.readObject(in);
+	}
+
+	@Benchmark
+	public byte[] serialize() throws IOException {
+		return serialize(iObjects.get(ThreadLocalRandom.current().nextInt(iObjects.size())));
+	}
+
+	@Benchmark
+	public Object deserialize() throws IOException, ClassNotFoundException {
+		return deserialize(iData.get(ThreadLocalRandom.current().nextInt(iData.size())));
+	}
+}
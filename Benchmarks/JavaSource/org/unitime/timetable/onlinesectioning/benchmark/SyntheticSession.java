@@ -0,0 +1,228 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.benchmark;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.cpsolver.coursett.Constants;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.cpsolver.studentsct.constraint.LinkedSections;
+import org.cpsolver.studentsct.model.Config;
+import org.cpsolver.studentsct.model.Course;
+import org.cpsolver.studentsct.model.CourseRequest;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Student;
+import org.cpsolver.studentsct.model.Subpart;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.server.CompactInMemoryServer;
+import org.unitime.timetable.onlinesectioning.server.InMemoryServer;
+
+/**
+ * Synthetic academic session for benchmarking, no database is needed. The session is generated using the
+ * student sectioning model (the same way the student scheduling solver passes its model to an online server)
+ * and it is deterministic for the given parameters and seed.<br>
+ * Each offering has a single course and a single configuration with lectures, recitations (children of the lectures), and
+ * for every third offering also labs. Classes are placed on MWF (50 minutes) or TTh (75 minutes) in a pool of rooms
+ * spread across a campus (so that distance conflicts are considered). Each student requests the given number of courses
+ * (some with an alternative course) plus one alternative course request.
+ *
+ * @author Tomas Muller
+ */
+public class SyntheticSession {
+	private static final String[] sSubjects = new String[] {
+		"AAE", "ABE", "AGRY", "ANSC", "ANTH", "ARAB", "ASTR", "BIOL", "CHE", "CHEM", "CHNS", "CE", "CS", "ECE", "ECON", "ENGL",
+		"FR", "GER", "HIST", "IE", "JPNS", "LING", "MA", "ME", "MUS", "NUCL", "PHIL", "PHYS", "POL", "PSY", "SOC", "SPAN", "STAT"
+	};
+	private AcademicSessionInfo iSession;
+	private List<Offering> iOfferings = new ArrayList<Offering>();
+	private List<Student> iStudents = new ArrayList<Student>();
+	private List<RoomLocation> iRooms = new ArrayList<RoomLocation>();
+	private Map<Long, XEnrollment> iEnrollments = new HashMap<Long, XEnrollment>();
+	private long iLastId = 0;
+
+	/**
+	 * @param nrOfferings number of offerings
+	 * @param nrStudents number of students
+	 * @param nrCourses number of courses requested by each student
+	 * @param seed random seed
+	 */
+	public SyntheticSession(int nrOfferings, int nrStudents, int nrCourses, long seed) {
+		Random rnd = new Random(seed);
+
+		Calendar c = Calendar.getInstance(Locale.US);
+		c.set(2024, Calendar.AUGUST, 26, 0, 0, 0);
+		c.set(Calendar.MILLISECOND, 0);
+		Date begin = c.getTime();
+		c.add(Calendar.DAY_OF_YEAR, 16 * 7 - 1);
+		Date end = c.getTime();
+		iSession = new AcademicSessionInfo(-1l, "2024", "Fall", "Benchmark", begin, end);
+
+		for (int i = 0; i < Math.max(10, nrOfferings / 10); i++)
+			iRooms.add(new RoomLocation(nextId(), "ROOM " + (100 + i), (long)(i / 5), 0, 30 + 10 * rnd.nextInt(20), 1000.0 * rnd.nextDouble(), 1000.0 * rnd.nextDouble(), false, null));
+
+		// average demand of an offering, limits are set so that there is enough space for everybody
+		int demand = (int)Math.ceil(((double)nrStudents) * (nrCourses + 1) / nrOfferings);
+		for (int i = 0; i < nrOfferings; i++)
+			iOfferings.add(createOffering(i, (int)Math.ceil(1.25 * demand * (0.5 + rnd.nextDouble())) + 10, rnd));
+
+		for (int i = 0; i < nrStudents; i++)
+			iStudents.add(createStudent(i, nrCourses, rnd));
+	}
+
+	protected long nextId() {
+		return ++iLastId;
+	}
+
+	protected Offering createOffering(int index, int limit, Random rnd) {
+		String subject = sSubjects[index % sSubjects.length];
+		String courseNbr = String.valueOf(100 * (1 + index / sSubjects.length) + rnd.nextInt(100));
+		Offering offering = new Offering(nextId(), subject + " " + courseNbr);
+		new Course(nextId(), subject, courseNbr, offering, limit, 0);
+		Config config = new Config(nextId(), limit, "1", offering);
+
+		Subpart lec = new Subpart(nextId(), "10", "Lec", config, null);
+		int nrLectures = 1 + limit / 100;
+		int lectureLimit = (int)Math.ceil(((double)limit) / nrLectures);
+		List<Section> lectures = new ArrayList<Section>();
+		for (int i = 0; i < nrLectures; i++)
+			lectures.add(new Section(nextId(), lectureLimit, "Lec " + (1 + i), lec, createPlacement(rnd), null));
+
+		Subpart rec = new Subpart(nextId(), "30", "Rec", config, lec);
+		int recitationLimit = (int)Math.ceil(lectureLimit / 2.0);
+		for (Section lecture: lectures)
+			for (int i = 0; i < 2; i++)
+				new Section(nextId(), recitationLimit, "Rec " + (1 + rec.getSections().size()), rec, createPlacement(rnd), lecture);
+
+		if (index % 3 == 0) {
+			Subpart lab = new Subpart(nextId(), "20", "Lab", config, null);
+			int nrLabs = 1 + limit / 25;
+			int labLimit = (int)Math.ceil(((double)limit) / nrLabs);
+			for (int i = 0; i < nrLabs; i++)
+				new Section(nextId(), labLimit, "Lab " + (1 + i), lab, createPlacement(rnd), null);
+		}
+
+		return offering;
+	}
+
+	protected Placement createPlacement(Random rnd) {
+		BitSet weeks = iSession.getDefaultWeekPattern();
+		TimeLocation time = null;
+		if (rnd.nextInt(3) < 2) {
+			// MWF, 50 minutes, between 7:30 am and 4:30 pm
+			int dayCode = Constants.DAY_CODES[0] | Constants.DAY_CODES[2] | Constants.DAY_CODES[4];
+			time = new TimeLocation(dayCode, 90 + 12 * rnd.nextInt(10), 12, 0, 0.0, -1l, "Full Term", weeks, 10);
+		} else {
+			// TTh, 75 minutes, between 7:30 am and 4:30 pm
+			int dayCode = Constants.DAY_CODES[1] | Constants.DAY_CODES[3];
+			time = new TimeLocation(dayCode, 90 + 18 * rnd.nextInt(6), 18, 0, 0.0, -1l, "Full Term", weeks, 15);
+		}
+		return new Placement(null, time, iRooms.get(rnd.nextInt(iRooms.size())));
+	}
+
+	protected Student createStudent(int index, int nrCourses, Random rnd) {
+		Student student = new Student(nextId());
+		student.setExternalId("B" + (100000 + index));
+		student.setName("Student " + (1 + index));
+		Set<Offering> requested = new HashSet<Offering>();
+		for (int priority = 0; priority <= nrCourses && requested.size() < iOfferings.size(); priority++) {
+			List<Course> courses = new ArrayList<Course>();
+			Offering offering = pick(requested, rnd);
+			courses.add(offering.getCourses().get(0));
+			if (priority < nrCourses && rnd.nextInt(4) == 0 && requested.size() < iOfferings.size())
+				courses.add(pick(requested, rnd).getCourses().get(0));
+			CourseRequest request = new CourseRequest(nextId(), priority, priority == nrCourses, student, courses, false, null);
+			iEnrollments.put(request.getId(), new XEnrollment(createEnrollment(request, courses.get(0), rnd)));
+		}
+		return student;
+	}
+
+	/**
+	 * Pick a random offering that has not been requested yet, the first few offerings of each subject are more popular
+	 */
+	protected Offering pick(Set<Offering> requested, Random rnd) {
+		while (true) {
+			int index = (rnd.nextBoolean() ? rnd.nextInt(iOfferings.size()) : (int)(iOfferings.size() * Math.pow(rnd.nextDouble(), 2.0)));
+			Offering offering = iOfferings.get(index);
+			if (requested.add(offering)) return offering;
+		}
+	}
+
+	/**
+	 * A random enrollment of the given course (a valid combination of sections, ignoring the limits and time conflicts)
+	 */
+	protected Enrollment createEnrollment(CourseRequest request, Course course, Random rnd) {
+		Config config = course.getOffering().getConfigs().get(0);
+		Set<Section> sections = new HashSet<Section>();
+		for (Subpart subpart: config.getSubparts()) {
+			List<Section> candidates = new ArrayList<Section>();
+			for (Section section: subpart.getSections())
+				if (section.getParent() == null || sections.contains(section.getParent()))
+					candidates.add(section);
+			sections.add(candidates.get(rnd.nextInt(candidates.size())));
+		}
+		return new Enrollment(request, 0, course, config, sections, null);
+	}
+
+	public AcademicSessionInfo getAcademicSession() { return iSession; }
+
+	public List<Offering> getOfferings() { return iOfferings; }
+
+	public List<Student> getStudents() { return iStudents; }
+
+	/**
+	 * A valid enrollment of the first course of the given course request
+	 */
+	public XEnrollment getEnrollment(Long requestId) { return iEnrollments.get(requestId); }
+
+	/**
+	 * Create an online sectioning server and populate it with the session data, no student is enrolled
+	 * @param serverClass InMemoryServer or CompactInMemoryServer
+	 */
+	public OnlineSectioningServer createServer(String serverClass) {
+		OnlineSectioningServer server = null;
+		if ("CompactInMemoryServer".equals(serverClass) || CompactInMemoryServer.class.getName().equals(serverClass))
+			server = new CompactInMemoryServer(iSession, false);
+		else
+			server = new InMemoryServer(iSession, false);
+		for (Offering offering: iOfferings)
+			server.update(new XOffering(offering, new ArrayList<LinkedSections>()));
+		for (Student student: iStudents)
+			server.update(new XStudent(student, null), true);
+		return server;
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.commons.hibernate.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.exception.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+/**
+ * Connection provider wrapper that counts the executed JDBC statements and the time spent
+ * executing them for the current thread (see {@link QueryStatisticsConnectionProvider#getQueryCount()}
+ * and {@link QueryStatisticsConnectionProvider#getQueryTime()}). This is used to get the number of queries
+ * and the query time of a single request.
+ *
+ * @author Tomas Muller
+ */
+public class QueryStatisticsConnectionProvider implements ConnectionProvider, Stoppable, Configurable {
+	private static final long serialVersionUID = 1L;
+	private static ThreadLocal<long[]> sStats = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[] {0l, 0l};
+		}
+	};
+	private ConnectionProvider iConnectionProvider;
+
+	public QueryStatisticsConnectionProvider(ConnectionProvider provider) {
+		iConnectionProvider = provider;
+	}
+
+	/** Number of statements executed by the current thread */
+	public static long getQueryCount() {
+		return sStats.get()[0];
+	}
+
+	/** Time spent executing statements by the current thread, in nanoseconds */
+	public static long getQueryTime() {
+		return sStats.get()[1];
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		Connection connection = iConnectionProvider.getConnection();
+		return (Connection)Proxy.newProxyInstance(QueryStatisticsConnectionProvider.class.getClassLoader(), new Class[] {Connection.class}, new ConnectionHandler(connection));
+	}
+
+	@Override
+	public void closeConnection(Connection connection) throws SQLException {
+		if (Proxy.isProxyClass(connection.getClass()) && Proxy.getInvocationHandler(connection) instanceof ConnectionHandler)
+			connection = ((ConnectionHandler)Proxy.getInvocationHandler(connection)).iConnection;
+		iConnectionProvider.closeConnection(connection);
+	}
+
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return iConnectionProvider.supportsAggressiveRelease();
+	}
+
+	@Override
+	public boolean isUnwrappableAs(Class clazz) {
+		return iConnectionProvider.isUnwrappableAs(clazz);
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> clazz) {
+		return iConnectionProvider.unwrap(clazz);
+	}
+
+	@Override
+	public void stop() {
+		if (iConnectionProvider instanceof Stoppable)
+			((Stoppable)iConnectionProvider).stop();
+	}
+
+	@Override
+	public void configure(Properties properties) throws HibernateException {
+		if (iConnectionProvider instanceof Configurable)
+			((Configurable)iConnectionProvider).configure(properties);
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+
+	private static class ConnectionHandler implements InvocationHandler {
+		private Connection iConnection;
+
+		private ConnectionHandler(Connection connection) {
+			iConnection = connection;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object ret = QueryStatisticsConnectionProvider.invoke(iConnection, method, args);
+			if (ret instanceof Statement) {
+				Class<?> type = (ret instanceof CallableStatement ? CallableStatement.class : ret instanceof PreparedStatement ? PreparedStatement.class : Statement.class);
+				return Proxy.newProxyInstance(QueryStatisticsConnectionProvider.class.getClassLoader(), new Class[] {type}, new StatementHandler((Statement)ret));
+			}
+			return ret;
+		}
+	}
+
+	private static class StatementHandler implements InvocationHandler {
+		private Statement iStatement;
+
+		private StatementHandler(Statement statement) {
+			iStatement = statement;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (!method.getName().startsWith("execute"))
+				return QueryStatisticsConnectionProvider.invoke(iStatement, method, args);
+			long t0 = System.nanoTime();
+			try {
+				return QueryStatisticsConnectionProvider.invoke(iStatement, method, args);
+			} finally {
+				long[] stats = sStats.get();
+				stats[0] ++;
+				stats[1] += System.nanoTime() - t0;
+			}
+		}
+	}
+}
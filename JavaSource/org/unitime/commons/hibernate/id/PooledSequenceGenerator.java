@@ -0,0 +1,205 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.commons.hibernate.id;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.SequenceGenerator;
+import org.hibernate.type.Type;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Sequence generator that pre-allocates blocks of identifiers. Instead of one database round trip per
+ * generated identifier, a block of the next sequence values is retrieved in a single query
+ * (using a multi-row select of the sequence's next value) and the values are handed out from an in-memory buffer.
+ * Identifiers are still taken from the database sequence, so the generator is safe to use on multiple UniTime
+ * servers sharing the same database (identifiers remain unique, but they are no longer handed out in
+ * the order of their creation across the servers) and no change of the existing sequences is needed.<br>
+ * Buffers are shared by all generators using the same sequence. The block size is given by the
+ * tmtbl.uniqueid.blockSize property, databases other than Oracle and PostgreSQL fall back to
+ * retrieving one value at a time.
+ *
+ * @author Tomas Muller
+ */
+public class PooledSequenceGenerator extends SequenceGenerator {
+	private static Log sLog = LogFactory.getLog(PooledSequenceGenerator.class);
+	private static ConcurrentMap<String, Pool> sPools = new ConcurrentHashMap<String, Pool>();
+
+	private String iBlockSql = null;
+	private int iBlockSize = 1;
+	private Pool iPool = null;
+
+	@Override
+	public void configure(Type type, Properties params, Dialect dialect) throws MappingException {
+		super.configure(type, params, dialect);
+		iBlockSize = Math.max(1, ApplicationProperty.DatabaseUniqueIdBlockSize.intValue());
+		if (dialect instanceof Oracle8iDialect) {
+			iBlockSql = "select " + getSequenceName() + ".nextval from dual connect by level <= ?";
+		} else if (dialect instanceof PostgreSQL81Dialect) {
+			iBlockSql = "select nextval('" + getSequenceName() + "') from generate_series(1, ?)";
+		} else {
+			iBlockSql = null;
+		}
+		Pool pool = new Pool(getSequenceName());
+		iPool = sPools.putIfAbsent(getSequenceName(), pool);
+		if (iPool == null) iPool = pool;
+	}
+
+	@Override
+	public Serializable generate(SessionImplementor session, Object object) throws HibernateException {
+		if (iBlockSql == null || iBlockSize <= 1) {
+			long t0 = System.nanoTime();
+			Serializable id = super.generate(session, object);
+			iPool.fetched(1, System.nanoTime() - t0);
+			return id;
+		}
+		return iPool.next(session);
+	}
+
+	/**
+	 * Retrieve the next block of sequence values
+	 */
+	protected void fetch(SessionImplementor session, ArrayDeque<Number> buffer) throws HibernateException {
+		try {
+			PreparedStatement st = session.getTransactionCoordinator().getJdbcCoordinator().getStatementPreparer().prepareStatement(iBlockSql);
+			try {
+				st.setInt(1, iBlockSize);
+				ResultSet rs = session.getTransactionCoordinator().getJdbcCoordinator().getResultSetReturn().extract(st);
+				try {
+					while (rs.next()) {
+						IntegralDataTypeHolder value = buildHolder();
+						value.initialize(rs, 1);
+						buffer.add(value.makeValue());
+					}
+				} finally {
+					session.getTransactionCoordinator().getJdbcCoordinator().release(rs, st);
+				}
+			} finally {
+				session.getTransactionCoordinator().getJdbcCoordinator().release(st);
+			}
+		} catch (SQLException e) {
+			throw session.getFactory().getSQLExceptionHelper().convert(e, "could not get next sequence values", iBlockSql);
+		}
+		if (buffer.isEmpty())
+			throw new HibernateException("Sequence " + getSequenceName() + " returned no values.");
+	}
+
+	/**
+	 * Buffer of pre-allocated values of a sequence, including the allocation statistics
+	 */
+	private class Pool {
+		private String iSequence;
+		private ArrayDeque<Number> iBuffer = new ArrayDeque<Number>();
+		private long iGenerated = 0, iFetched = 0, iRoundTrips = 0, iFetchTime = 0;
+
+		private Pool(String sequence) {
+			iSequence = sequence;
+		}
+
+		private synchronized Serializable next(SessionImplementor session) throws HibernateException {
+			if (iBuffer.isEmpty()) {
+				long t0 = System.nanoTime();
+				fetch(session, iBuffer);
+				iRoundTrips ++;
+				iFetched += iBuffer.size();
+				iFetchTime += System.nanoTime() - t0;
+				if (sLog.isDebugEnabled())
+					sLog.debug("Sequence " + iSequence + ": fetched " + iBuffer.size() + " values " + iBuffer.peekFirst() + " .. " + iBuffer.peekLast());
+			}
+			iGenerated ++;
+			return (Serializable)iBuffer.poll();
+		}
+
+		private synchronized void fetched(int values, long time) {
+			iGenerated += values; iFetched += values; iRoundTrips ++; iFetchTime += time;
+		}
+
+		private synchronized Statistics getStatistics() {
+			return new Statistics(iSequence, iGenerated, iFetched, iRoundTrips, iFetchTime / 1000000l, iBuffer.size());
+		}
+	}
+
+	/**
+	 * Allocation statistics of all the sequences used since the start of the server (ordered by sequence name)
+	 */
+	public static List<Statistics> getStatistics() {
+		List<Statistics> ret = new ArrayList<Statistics>();
+		for (Pool pool: sPools.values())
+			ret.add(pool.getStatistics());
+		Collections.sort(ret, new Comparator<Statistics>() {
+			@Override
+			public int compare(Statistics s1, Statistics s2) {
+				return s1.getSequence().compareTo(s2.getSequence());
+			}
+		});
+		return ret;
+	}
+
+	/**
+	 * Allocation statistics of a sequence
+	 */
+	public static class Statistics {
+		private String iSequence;
+		private long iGenerated, iFetched, iRoundTrips, iFetchTime;
+		private int iBuffered;
+
+		public Statistics(String sequence, long generated, long fetched, long roundTrips, long fetchTime, int buffered) {
+			iSequence = sequence; iGenerated = generated; iFetched = fetched; iRoundTrips = roundTrips; iFetchTime = fetchTime; iBuffered = buffered;
+		}
+
+		/** Sequence name */
+		public String getSequence() { return iSequence; }
+		/** Number of identifiers handed out */
+		public long getGenerated() { return iGenerated; }
+		/** Number of sequence values retrieved from the database */
+		public long getFetched() { return iFetched; }
+		/** Number of database round trips */
+		public long getRoundTrips() { return iRoundTrips; }
+		/** Time spent retrieving the sequence values in milliseconds */
+		public long getFetchTime() { return iFetchTime; }
+		/** Number of pre-allocated identifiers that are still available */
+		public int getBuffered() { return iBuffered; }
+
+		@Override
+		public String toString() {
+			return iSequence + "{generated=" + iGenerated + ", roundTrips=" + iRoundTrips + ", fetchTime=" + iFetchTime + " ms, buffered=" + iBuffered + "}";
+		}
+	}
+}
@@ -30,7 +30,9 @@ import org.hibernate.dialect.Dialect;
 import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.id.Configurable;
 import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.SequenceGenerator;
 import org.hibernate.type.Type;
+import org.unitime.timetable.defaults.ApplicationProperty;
 
 /**
  * @author Tomas Muller
@@ -44,6 +46,8 @@ public class UniqueIdGenerator implements IdentifierGenerator, Configurable {
     public static void configure(Configuration config) {
         sGenClass = config.getProperty("tmtbl.uniqueid.generator");
         if (sGenClass==null) sGenClass = "org.hibernate.id.SequenceGenerator";
+        if (SequenceGenerator.class.getName().equals(sGenClass) && ApplicationProperty.DatabaseUniqueIdBlockSize.intValue() > 1)
+        	sGenClass = PooledSequenceGenerator.class.getName();
         sDefaultSchema = config.getProperty("default_schema");
         sNormalizer = config.createMappings().getObjectNameNormalizer();
     }
@@ -20,6 +20,7 @@
 package org.unitime.commons.hibernate.stats;
 
 import java.util.Date;
+import java.util.List;
 
 import org.hibernate.SessionFactory;
 import org.hibernate.stat.CollectionStatistics;
@@ -27,6 +28,7 @@ import org.hibernate.stat.EntityStatistics;
 import org.hibernate.stat.QueryStatistics;
 import org.hibernate.stat.SecondLevelCacheStatistics;
 import org.hibernate.stat.Statistics;
+import org.unitime.commons.hibernate.id.PooledSequenceGenerator;
 import org.unitime.commons.web.htmlgen.Table;
 import org.unitime.commons.web.htmlgen.TableCell;
 import org.unitime.commons.web.htmlgen.TableHeaderCell;
@@ -94,6 +96,8 @@ public class StatsProvider {
             if(!summaryOnly)
                 links.append(" - <A class=\"l7\" href=\"#QueryDetail\">Detail</A>");
             
+            links.append(" | <A class=\"l7\" href=\"#IdGenerator\">Identifier Generator</A>");
+            
         	TableRow row = new TableRow();
             row.addContent(cell(links.toString(), 1, 2, true, "center", "middle"));
         	table.addContent(row);
@@ -623,7 +627,60 @@ public class StatsProvider {
 	            table.addContent(row);
 
 	            hibStats.append(table.toHtml());
+	        	table = new Table();
+	            table.setStyleClass("unitime-Table");
+            }
+            
+            // ---------------------- Identifier Generator Stats ------------------------
+            row = new TableRow();
+            xc = headerCell("<A id=\"IdGenerator\"></A>Identifier Generator", 1, 2);
+            xc.setStyleClass("WelcomeRowHead");
+            xc.setStyle("min-width:400px;");
+            row.addContent(xc);
+            table.addContent(row);
+            
+            List<PooledSequenceGenerator.Statistics> idStats = PooledSequenceGenerator.getStatistics();
+            if (idStats.isEmpty()) {
+                row = new TableRow();
+                row.addContent(cell("No pooled sequences used", 1, 2, false));
+                table.addContent(row);
+            } else {
+                Table subTable = new Table();
+                subTable.setStyleClass("unitime-Table");
+
+                row = new TableRow();
+                row.addContent(headerCell(" &nbsp; ", 1, 1));
+                row.addContent(headerCell(" Generated ", 1, 1));
+                row.addContent(headerCell(" Round Trips ", 1, 1));
+                row.addContent(headerCell(" Fetch Time ", 1, 1));
+                row.addContent(headerCell(" Buffered ", 1, 1));
+                subTable.addContent(row);
+                
+                int i = 0;
+                for (PooledSequenceGenerator.Statistics s: idStats) {
+                    row = new TableRow();
+                    if (i++%2==0)
+                        row.setBgColor(evenRowColor);
+                    row.addContent(cell(s.getSequence() + " &nbsp;", 1, 1, true));
+                    row.addContent(cell(s.getGenerated()+"", 1, 1, false));
+                    row.addContent(cell(s.getRoundTrips()+"", 1, 1, false));
+                    row.addContent(cell(s.getFetchTime()+" ms", 1, 1, false));
+                    row.addContent(cell(s.getBuffered()+"", 1, 1, false));
+                    subTable.addContent(row);
+                }
+
+                row = new TableRow();
+                row.addContent(cell(subTable.toHtml(), 1, 2, true));
+                table.addContent(row);
             }
+            
+            table.addContent(linkToTop);
+
+            row = new TableRow();
+            row.addContent(cell("&nbsp;", 1, 2, false));
+            table.addContent(row);
+
+            hibStats.append(table.toHtml());
         }
         catch (Exception e) {
             hibStats.append("Exception occured: " + e.getMessage());
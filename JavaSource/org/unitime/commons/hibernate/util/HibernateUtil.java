@@ -61,11 +61,13 @@ import org.hibernate.type.StringType;
 import org.unitime.commons.LocalContext;
 import org.unitime.commons.hibernate.connection.LoggingConnectionProvider;
 import org.unitime.commons.hibernate.connection.LoggingDBCPConnectionProvider;
+import org.unitime.commons.hibernate.connection.QueryStatisticsConnectionProvider;
 import org.unitime.commons.hibernate.id.UniqueIdGenerator;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.base._BaseRootDAO;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.security.evaluation.PermissionCache;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
@@ -284,9 +286,16 @@ public class HibernateUtil {
             		scp.setService(new LoggingConnectionProvider(serviceRegistry.getService(ConnectionProvider.class)));
         	}
         }
+        if (ApplicationProperty.ConnectionQueryStatistics.isTrue()) {
+        	ServiceBinding<ConnectionProvider> scp = ((StandardServiceRegistryImpl)serviceRegistry).locateServiceBinding(ConnectionProvider.class);
+        	if (scp != null)
+        		scp.setService(new QueryStatisticsConnectionProvider(serviceRegistry.getService(ConnectionProvider.class)));
+        }
         sSessionFactory = cfg.buildSessionFactory(serviceRegistry);
         sLog.debug("  -- session factory created");
         
+        PermissionCache.EntityChangeListener.register(sSessionFactory);
+        
         (new _BaseRootDAO() {
     		void setSF(SessionFactory fact) {
     			_BaseRootDAO.sSessionFactory = fact;
@@ -416,6 +425,7 @@ public class HibernateUtil {
     }
 
     public static void clearCache(Class persistentClass, boolean evictQueries) {
+        PermissionCache.invalidate();
         _RootDAO dao = new _RootDAO();
         org.hibernate.Session hibSession = dao.getSession(); 
         SessionFactory hibSessionFactory = hibSession.getSessionFactory();
@@ -28,13 +28,17 @@ import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.logging.Log;
@@ -127,71 +131,112 @@ public class Localization {
 		}
 	}
 	
+	/**
+	 * Message bundle implementation. By default, the messages are precompiled: for each locale (as returned by {@link Localization#getLocale()})
+	 * an immutable {@link MessageTable} is created when the locale is used for the first time, with the messages resolved through the locale fallbacks,
+	 * the default values parsed from the annotations, and the message arguments pre-parsed. The tables are looked up without any locking.
+	 * The tables are shared by all the locales that resolve to the same list of existing bundles, so that a client-provided locale (which can be anything)
+	 * does not create a new table; only a limited number of locales is remembered, any other locale is resolved on each call.
+	 * With unitime.localization.precompiled set to false, the messages are resolved on each call instead.
+	 */
 	public static class Bundle implements InvocationHandler {
-		private Map<String, Properties> iProperties = new Hashtable<String, Properties>();
+		private static final int sMaxLocales = 100;
+		private Map<String, Properties> iProperties = new ConcurrentHashMap<String, Properties>();
+		private Map<String, Boolean> iMissing = new ConcurrentHashMap<String, Boolean>();
+		private Map<String, MessageTable> iTables = new ConcurrentHashMap<String, MessageTable>();
+		private Map<String, MessageTable> iLocaleTables = new ConcurrentHashMap<String, MessageTable>();
 		private Class<?> iMessages = null;
+		private boolean iPrecompiled = true;
 
 		public Bundle(Class<?> messages) {
+			this(messages, ApplicationProperty.LocalizationPrecompiled.isTrue());
+		}
+		
+		public Bundle(Class<?> messages, boolean precompiled) {
 			iMessages = messages;
+			iPrecompiled = precompiled;
 		}
 		
-		private synchronized String getProperty(String locale, String name) {
+		/**
+		 * Message bundle of the given locale, null if there is no such bundle
+		 */
+		private Properties getProperties(String locale) {
 			Properties properties = iProperties.get(locale);
 			if (properties == null) {
-				properties = new Properties();
+				if (iMissing.containsKey(locale)) return null;
 				String resource = iMessages.getName().replace('.', '/') + (locale.isEmpty() ? "" : "_" + locale) + ".properties"; 
 				try {
 					InputStream is = Localization.class.getClassLoader().getResourceAsStream(resource);
-					if (is != null)
-						properties.load(is);
+					if (is != null) {
+						properties = new Properties();
+						try {
+							properties.load(is);
+						} finally {
+							is.close();
+						}
+					}
 				} catch (Exception e) {
 					sLog.warn("Failed to load message bundle " + iMessages.getName().substring(iMessages.getName().lastIndexOf('.') + 1) + " for " + locale + ": "  + e.getMessage(), e);
 				}
-				iProperties.put(locale, properties);
+				if (properties == null) {
+					if (iMissing.size() < sMaxLocales) iMissing.put(locale, Boolean.TRUE);
+					return null;
+				}
+				Properties old = ((ConcurrentHashMap<String, Properties>)iProperties).putIfAbsent(locale, properties);
+				if (old != null) return old;
 			}
-			return properties.getProperty(name);
+			return properties;
 		}
 		
-		private String getProperty(String name) {
-			for (String locale: getLocale().split(",")) {
-				if (locale.indexOf(';') >= 0) locale = locale.substring(0, locale.indexOf(';'));
-				String value = getProperty(locale.trim(), name);
-				if (value != null) return value;
-				if (locale.indexOf('_') >= 0) {
-					locale = locale.substring(0, locale.indexOf('_'));
-					value = getProperty(locale.trim(), name);
-					if (value != null) return value;
+		/**
+		 * Locales of the given locale string (locales are comma separated, in the order of preference) that have a message bundle,
+		 * including the language fallbacks (e.g., cs_CZ and cs) and the default bundle
+		 */
+		protected List<String> resolve(String locale) {
+			List<String> locales = new ArrayList<String>();
+			for (String loc: locale.split(",")) {
+				if (loc.indexOf(';') >= 0) loc = loc.substring(0, loc.indexOf(';'));
+				loc = loc.trim();
+				if (!locales.contains(loc) && getProperties(loc) != null) locales.add(loc);
+				if (loc.indexOf('_') >= 0) {
+					String lang = loc.substring(0, loc.indexOf('_')).trim();
+					if (!locales.contains(lang) && getProperties(lang) != null) locales.add(lang);
 				}
 			}
-			return getProperty("", name); // try default message bundle
+			if (!locales.contains("") && getProperties("") != null) locales.add(""); // default message bundle
+			return locales;
 		}
 		
-		private String fillArgumentsIn(String value, Object[] args, int firstIndex) {
-			if (value == null || args == null) return value;
-			for (int i = 0; i + firstIndex < args.length; i++) {
-				value = value.replace("{" + i + "}", (args[i + firstIndex] == null ? "" : args[i + firstIndex].toString()));
-				if (value.indexOf("{" + i + ",number,") >= 0) {
-					int idx = value.indexOf("{" + i + ",number,");
-					String pattern = value.substring(idx + ("{" + i + ",number,").length(), value.indexOf('}', idx));
-					String number = (args[i + firstIndex] == null ? "" : Formats.getNumberFormat(pattern).format((Number)args[i + firstIndex]));
-					value = value.replace("{" + i + ",number," + pattern + "}", number);
-				}
+		/**
+		 * Message table of the given locale (locales are comma separated, in the order of preference)
+		 */
+		protected MessageTable getTable(String locale) {
+			MessageTable table = iLocaleTables.get(locale);
+			if (table != null) return table;
+			List<String> locales = resolve(locale);
+			String key = locales.toString();
+			table = iTables.get(key);
+			if (table == null) {
+				table = new MessageTable(locales);
+				MessageTable old = ((ConcurrentHashMap<String, MessageTable>)iTables).putIfAbsent(key, table);
+				if (old != null) table = old;
 			}
-			return value;
+			if (iLocaleTables.size() < sMaxLocales) iLocaleTables.put(locale, table);
+			return table;
 		}
 		
-		private String[] string2array(String value) {
+		private static String[] string2array(String value) {
 			return value.split("(?<=^.*[^\\\\]),(?=.*$)");
 		}
 		
-		private Map<String, String> array2map(String[] value) {
+		private static Map<String, String> array2map(String[] value) {
 			Map<String, String> map = new HashMap<String, String>();
 			for (int i = 0; i < value.length - 1; i += 2)
 				map.put(value[i], value[i + 1]);
 			return map;
 		}
 		
-		private Object type(String value, Class returnType) {
+		private static Object type(String value, Class returnType, MessageTable table) {
 			if (value == null) return value;
 			if (String.class.equals(returnType))
 				return value;
@@ -211,7 +256,7 @@ public class Localization {
 			if (Map.class.equals(returnType)) {
 				Map<String, String> map = new HashMap<String, String>();
 				for (String key: string2array(value)) {
-					String val = getProperty(key.trim());
+					String val = table.getProperty(key.trim());
 					if (val != null) map.put(key.trim(), val);
 				}
 				if (map.isEmpty())
@@ -222,7 +267,7 @@ public class Localization {
 			return value;
 		}
 		
-		private String[] fixStringArray(String[] value, String[] defaults) {
+		private static String[] fixStringArray(String[] value, String[] defaults) {
 			if (value != null && value.length < defaults.length) {
 				String[] fixed = Arrays.copyOf(value, defaults.length);
 				for (int i = value.length; i < defaults.length; i++)
@@ -232,7 +277,7 @@ public class Localization {
 			return value;
 		}
 		
-		private Map<String, String> fixStringMap(Map<String, String> value, Map<String, String> defaults) {
+		private static Map<String, String> fixStringMap(Map<String, String> value, Map<String, String> defaults) {
 			if (value != null && !value.keySet().equals(defaults.keySet())) {
 				Map<String, String> fixed = new HashMap<String, String>(value);
 				for (Map.Entry<String, String> e: defaults.entrySet()) {
@@ -246,13 +291,24 @@ public class Localization {
 		
 		@Override
 		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			MessageTable table = getTable(getLocale());
+			if (iPrecompiled)
+				return table.invoke(method, args);
+			else
+				return invokeDynamic(table, method, args);
+		}
+		
+		/**
+		 * Resolve the message on each call (no precompilation)
+		 */
+		protected Object invokeDynamic(MessageTable table, Method method, Object[] args) {
 			if ("translateMessage".equals(method.getName()) && method.getParameterTypes().length >= 2) {
-				String value = (args[0] == null ? null : getProperty((String) args[0]));
-				return (value == null ? (String) args[1] : fillArgumentsIn(value, args, 2));
+				String value = (args[0] == null ? null : table.getProperty((String) args[0]));
+				return (value == null ? (String) args[1] : new Template(value).format(args, 2));
 			}
-			String value = getProperty(method.getName());
+			String value = table.getProperty(method.getName());
 			if (value != null) {
-				Object ret = type(fillArgumentsIn(value, args, 0), method.getReturnType());
+				Object ret = type(new Template(value).format(args, 0), method.getReturnType(), table);
 				if (String[].class.equals(method.getReturnType())) {
 					Constants.DefaultStringArrayValue dsa = method.getAnnotation(Constants.DefaultStringArrayValue.class);
 					if (dsa != null)
@@ -267,7 +323,7 @@ public class Localization {
 			}
 			Messages.DefaultMessage dm = method.getAnnotation(Messages.DefaultMessage.class);
 			if (dm != null)
-				return fillArgumentsIn(dm.value(), args, 0);
+				return new Template(dm.value()).format(args, 0);
 			Constants.DefaultBooleanValue db = method.getAnnotation(Constants.DefaultBooleanValue.class);
 			if (db != null)
 				return db.value();
@@ -292,5 +348,181 @@ public class Localization {
 			
 			return method.getName();
 		}
+		
+		/**
+		 * Compile a message method into an entry of the given table
+		 */
+		protected Entry compile(MessageTable table, Method method) {
+			if ("translateMessage".equals(method.getName()) && method.getParameterTypes().length >= 2)
+				return new TranslateEntry(table);
+			boolean hasArgs = method.getParameterTypes().length > 0;
+			Class<?> returnType = method.getReturnType();
+			String value = table.getProperty(method.getName());
+			if (value != null) {
+				if (hasArgs) {
+					if (String.class.equals(returnType))
+						return new TemplateEntry(new Template(value));
+					return new DynamicEntry(this, table, method);
+				}
+				return new ConstantEntry(invokeDynamic(table, method, null));
+			}
+			Messages.DefaultMessage dm = method.getAnnotation(Messages.DefaultMessage.class);
+			if (dm != null && hasArgs)
+				return new TemplateEntry(new Template(dm.value()));
+			return new ConstantEntry(invokeDynamic(table, method, null));
+		}
+		
+		/**
+		 * Immutable table of messages of a locale: the properties resolved through the locale fallbacks (e.g., cs_CZ, cs, and the default bundle),
+		 * and the compiled message methods.
+		 */
+		protected class MessageTable {
+			private Map<String, String> iValues = new HashMap<String, String>();
+			private Map<Method, Entry> iEntries = new HashMap<Method, Entry>();
+			
+			MessageTable(List<String> locales) {
+				for (int i = locales.size() - 1; i >= 0; i--) {
+					Properties properties = getProperties(locales.get(i));
+					for (String name: properties.stringPropertyNames())
+						iValues.put(name, properties.getProperty(name));
+				}
+				for (Method method: iMessages.getMethods())
+					iEntries.put(method, compile(this, method));
+			}
+			
+			public String getProperty(String name) {
+				return iValues.get(name);
+			}
+			
+			public Object invoke(Method method, Object[] args) {
+				Entry entry = iEntries.get(method);
+				if (entry == null) return invokeDynamic(this, method, args);
+				return entry.get(args);
+			}
+		}
+	}
+	
+	/**
+	 * Compiled message method
+	 */
+	protected static interface Entry {
+		public Object get(Object[] args);
+	}
+	
+	/**
+	 * Message without arguments: the returned value is computed only once (arrays and maps are copied, so that the caller can change them)
+	 */
+	private static class ConstantEntry implements Entry {
+		private Object iValue;
+		
+		ConstantEntry(Object value) { iValue = value; }
+		
+		@Override
+		public Object get(Object[] args) {
+			if (iValue instanceof String[])
+				return ((String[])iValue).clone();
+			if (iValue instanceof Map)
+				return new HashMap<String, String>((Map<String, String>)iValue);
+			return iValue;
+		}
+	}
+	
+	/**
+	 * Message with arguments
+	 */
+	private static class TemplateEntry implements Entry {
+		private Template iTemplate;
+		
+		TemplateEntry(Template template) { iTemplate = template; }
+		
+		@Override
+		public Object get(Object[] args) {
+			return iTemplate.format(args, 0);
+		}
+	}
+	
+	/**
+	 * Translation of a message given by its key (the second argument is the default, the remaining arguments are the message arguments)
+	 */
+	private static class TranslateEntry implements Entry {
+		private Bundle.MessageTable iTable;
+		
+		TranslateEntry(Bundle.MessageTable table) { iTable = table; }
+		
+		@Override
+		public Object get(Object[] args) {
+			String value = (args[0] == null ? null : iTable.getProperty((String) args[0]));
+			return (value == null ? (String) args[1] : new Template(value).format(args, 2));
+		}
+	}
+	
+	/**
+	 * Non-string message with arguments (rare), resolved on each call
+	 */
+	private static class DynamicEntry implements Entry {
+		private Bundle iBundle;
+		private Bundle.MessageTable iTable;
+		private Method iMethod;
+		
+		DynamicEntry(Bundle bundle, Bundle.MessageTable table, Method method) { iBundle = bundle; iTable = table; iMethod = method; }
+		
+		@Override
+		public Object get(Object[] args) {
+			return iBundle.invokeDynamic(iTable, iMethod, args);
+		}
+	}
+	
+	/**
+	 * Pre-parsed message with {0} and {0,number,pattern} arguments. Arguments that are not provided are left in the message as they are.
+	 */
+	protected static class Template {
+		private static final Pattern sArgumentRe = Pattern.compile("\\{([0-9]+)(,number,([^}]*))?\\}");
+		private String iValue;
+		private String[] iText;
+		private String[] iArgument;
+		private int[] iIndex;
+		private Formats.Format<Number>[] iFormat;
+		
+		public Template(String value) {
+			iValue = value;
+			List<String> text = new ArrayList<String>();
+			List<String> argument = new ArrayList<String>();
+			List<Integer> index = new ArrayList<Integer>();
+			List<Formats.Format<Number>> format = new ArrayList<Formats.Format<Number>>();
+			Matcher m = sArgumentRe.matcher(value);
+			int last = 0;
+			while (m.find()) {
+				text.add(value.substring(last, m.start()));
+				argument.add(m.group());
+				index.add(Integer.valueOf(m.group(1)));
+				format.add(m.group(2) == null ? null : Formats.getNumberFormat(m.group(3)));
+				last = m.end();
+			}
+			text.add(value.substring(last));
+			iText = text.toArray(new String[text.size()]);
+			iArgument = argument.toArray(new String[argument.size()]);
+			iIndex = new int[index.size()];
+			for (int i = 0; i < iIndex.length; i++) iIndex[i] = index.get(i);
+			iFormat = format.toArray(new Formats.Format[format.size()]);
+		}
+		
+		public String format(Object[] args, int firstIndex) {
+			if (args == null || iIndex.length == 0) return iValue;
+			StringBuilder sb = new StringBuilder(iValue.length() + 16 * iIndex.length);
+			for (int i = 0; i < iIndex.length; i++) {
+				sb.append(iText[i]);
+				int idx = iIndex[i] + firstIndex;
+				if (idx >= args.length) {
+					sb.append(iArgument[i]);
+				} else if (args[idx] == null) {
+				} else if (iFormat[i] != null && args[idx] instanceof Number) {
+					sb.append(iFormat[i].format((Number)args[idx]));
+				} else {
+					sb.append(args[idx].toString());
+				}
+			}
+			sb.append(iText[iIndex.length]);
+			return sb.toString();
+		}
 	}
 }
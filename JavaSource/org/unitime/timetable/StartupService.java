@@ -32,6 +32,7 @@ import org.unitime.timetable.model.SolverInfo;
 import org.unitime.timetable.model.StudentSectioningPref;
 import org.unitime.timetable.model.base._BaseRootDAO;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.onlinesectioning.solver.ParallelSuggestionsBranchAndBound;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.LogCleaner;
 import org.unitime.timetable.util.MessageLogAppender;
@@ -106,7 +107,7 @@ public class StartupService implements InitializingBean, DisposableBean {
 			Debug.info(" - Stopping Event Expiration Service ...");
 			EventExpirationService.getInstance().interrupt();
 			
-			SolverInfo.stopInfoCacheCleanup();
+			SolverInfo.clearInfoCache();
 		
 			ApplicationProperties.stopListener();
 			
@@ -117,6 +118,8 @@ public class StartupService implements InitializingBean, DisposableBean {
 	         
 	         LocalQueueProcessor.stopProcessor();
 	         
+	         ParallelSuggestionsBranchAndBound.shutdownPool();
+	         
 	         Debug.info(" - Removing Message Log Appender ... ");
 	         LoggerContext ctx = LoggerContext.getContext(false);
 	         Configuration config = ctx.getConfiguration();
@@ -39,10 +39,6 @@ import org.apache.struts2.convention.annotation.Result;
 import org.apache.struts2.tiles.annotation.TilesDefinition;
 import org.apache.struts2.tiles.annotation.TilesPutAttribute;
 import org.cpsolver.ifs.util.Progress;
-import org.dom4j.Document;
-import org.dom4j.io.OutputFormat;
-import org.dom4j.io.SAXReader;
-import org.dom4j.io.XMLWriter;
 import org.unitime.commons.Debug;
 import org.unitime.commons.Email;
 import org.unitime.commons.web.WebTable;
@@ -310,7 +306,7 @@ public class DataImportAction extends UniTimeAction<DataImportForm> {
 				gzipInput.close();
 			} else if (iForm.getFileFileName().toLowerCase().endsWith(".xml.gz") || iForm.getFileFileName().toLowerCase().endsWith(".zxml")) {
 				GZIPInputStream gzipInput = new GZIPInputStream(fis);
-				DataExchangeHelper.importDocument((new SAXReader()).read(gzipInput), getOwnerId(), this);
+				DataExchangeHelper.importXml(gzipInput, getOwnerId(), this);
 				gzipInput.close();
 			} else if (iForm.getFileFileName().toLowerCase().endsWith(".zip")) {
 				ZipInputStream zipInput = new ZipInputStream(fis);
@@ -322,12 +318,12 @@ public class DataImportAction extends UniTimeAction<DataImportForm> {
 						SessionRestoreInterface restore = (SessionRestoreInterface)Class.forName(ApplicationProperty.SessionRestoreInterface.value()).getConstructor().newInstance();
 						restore.restore(zipInput, this);
 					} else {
-						DataExchangeHelper.importDocument((new SAXReader()).read(new NotClosingInputStream(zipInput)), getOwnerId(), this);
+						DataExchangeHelper.importXml(new NotClosingInputStream(zipInput), getOwnerId(), this);
 					}
 				}
 				zipInput.close();
 			} else {
-				DataExchangeHelper.importDocument((new SAXReader()).read(fis), getOwnerId(), this);
+				DataExchangeHelper.importXml(iForm.getFile(), getOwnerId(), this);
 			}
 			} finally {
 				fis.close();
@@ -357,17 +353,12 @@ public class DataImportAction extends UniTimeAction<DataImportForm> {
         	} else {
                 Properties params = new Properties();
                 type.setOptions(params);
-                Document document = DataExchangeHelper.exportDocument(type.getType(), getSession(), params, this);
-                if (document==null) {
-                    error("XML document not created: unknown reason.");
-                } else {
-                    FileOutputStream fos = new FileOutputStream(createOutput(type.getType(), "xml"));
-                    try {
-                        (new XMLWriter(fos,OutputFormat.createPrettyPrint())).write(document);
-                        fos.flush();
-                    } finally {
-                    	fos.close();
-                    }
+                FileOutputStream fos = new FileOutputStream(createOutput(type.getType(), "xml"));
+                try {
+                    DataExchangeHelper.exportXml(type.getType(), getSession(), params, this, fos);
+                    fos.flush();
+                } finally {
+                	fos.close();
                 }
         	}
 		}
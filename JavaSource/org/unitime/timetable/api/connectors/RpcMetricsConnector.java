@@ -0,0 +1,99 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.api.connectors;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+import org.unitime.timetable.api.ApiConnector;
+import org.unitime.timetable.api.ApiHelper;
+import org.unitime.timetable.gwt.command.server.GwtRpcMetrics;
+import org.unitime.timetable.gwt.command.server.GwtRpcMetrics.CommandMetrics;
+import org.unitime.timetable.security.rights.Right;
+
+/**
+ * Per-command RPC metrics (see {@link GwtRpcMetrics}), the commands with the highest total time first.
+ * Use the command parameter to filter the commands by a prefix, DELETE resets the metrics.
+ *
+ * @author Tomas Muller
+ */
+@Service("/api/rpc-metrics")
+public class RpcMetricsConnector extends ApiConnector {
+
+	@Override
+	public void doGet(ApiHelper helper) throws IOException {
+		helper.getSessionContext().checkPermissionAnyAuthority(Right.PageStatistics);
+
+		String prefix = helper.getParameter("command");
+		List<CommandInfo> response = new ArrayList<CommandInfo>();
+		for (CommandMetrics metrics: GwtRpcMetrics.getMetrics()) {
+			if (prefix != null && !prefix.isEmpty() && !metrics.getCommand().startsWith(prefix)) continue;
+			response.add(new CommandInfo(metrics));
+		}
+
+		helper.setResponse(response);
+	}
+
+	@Override
+	public void doDelete(ApiHelper helper) throws IOException {
+		helper.getSessionContext().checkPermissionAnyAuthority(Right.PageStatistics);
+
+		GwtRpcMetrics.reset();
+
+		helper.setResponse(Boolean.TRUE);
+	}
+
+	class CommandInfo {
+		String iCommand;
+		Long iCount;
+		Long iErrors;
+		Double iErrorRate;
+		Integer iInFlight;
+		Double iAvgTime;
+		Double iMaxTime;
+		Double iP50;
+		Double iP95;
+		Double iP99;
+		Double iAvgQueries;
+		Double iAvgQueryTime;
+
+		CommandInfo(CommandMetrics metrics) {
+			iCommand = metrics.getCommand();
+			iCount = metrics.getCount();
+			iErrors = metrics.getErrorCount();
+			iErrorRate = metrics.getErrorRate();
+			iInFlight = metrics.getInFlight();
+			iAvgTime = metrics.getAverageTime();
+			iMaxTime = metrics.getMaxTime();
+			iP50 = metrics.getP50();
+			iP95 = metrics.getP95();
+			iP99 = metrics.getP99();
+			iAvgQueries = metrics.getAverageQueryCount();
+			iAvgQueryTime = metrics.getAverageQueryTime();
+		}
+	}
+
+	@Override
+	protected String getName() {
+		return "rpc-metrics";
+	}
+}
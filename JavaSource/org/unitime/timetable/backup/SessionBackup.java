@@ -37,6 +37,12 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 import org.apache.commons.logging.Log;
@@ -48,6 +54,8 @@ import org.dom4j.Document;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.XMLWriter;
 import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.engine.spi.SessionImplementor;
@@ -104,12 +112,16 @@ public class SessionBackup implements SessionBackupInterface {
 	private PrintWriter iDebug = null;
 	private Long iSessionId = null;
 	private BackupProgress iProgress = null;
+	private int iChunkSize = 10000;
+	private ThreadLocal<org.hibernate.Session> iWorkerSession = new ThreadLocal<org.hibernate.Session>();
+	private ConcurrentHashMap<String, Set<Serializable>> iExportedIds = new ConcurrentHashMap<String, Set<Serializable>>();
+	private static final int sFetchSize = 1000;
 	
 	public BackupProgress getProgress() {
 		return iProgress;
 	}
 	
-	private void add(TableData.Table table) throws IOException {
+	private synchronized void add(TableData.Table table) throws IOException {
 		iProgress.info("Writing " + table.getName().substring(table.getName().lastIndexOf('.') + 1) + " [" + table.getRecordCount() + " records, " + table.getSerializedSize() + " bytes]");
 		iOut.writeInt32NoTag(table.getSerializedSize());
 		table.writeTo(iOut);
@@ -128,7 +140,7 @@ public class SessionBackup implements SessionBackupInterface {
 	@Override
 	public void backup(OutputStream out, BackupProgress progress, Long sessionId) throws IOException {
         iOut = CodedOutputStream.newInstance(out);
-        iProgress = progress;
+        iProgress = new SynchronizedProgress(progress);
 		iSessionId = sessionId;
         iHibSession = new _RootDAO().createNewSession(); 
         iHibSession.setCacheMode(CacheMode.IGNORE);
@@ -184,7 +196,7 @@ public class SessionBackup implements SessionBackupInterface {
     			for (String dis: pDisallowed.split("[\n,;]"))
     				if (!dis.isEmpty()) disallowedNotNullRelations.add(dis.trim());
     		
-    		Map<String, List<QueueItem>> data = new HashMap<String, List<QueueItem>>();
+    		final Map<String, List<QueueItem>> data = new HashMap<String, List<QueueItem>>();
     		List<QueueItem> sessions = new ArrayList<QueueItem>();
     		sessions.add(queue.peek());
     		data.put(queue.peek().name(), sessions);
@@ -273,159 +285,44 @@ public class SessionBackup implements SessionBackupInterface {
             }
             iProgress.incProgress();
             
-            Map<String, Set<Serializable>> allExportedIds = new HashMap<String, Set<Serializable>>();
-            for (String name: new TreeSet<String>(data.keySet())) {
-            	List<QueueItem> list = data.get(name);
-            	Map<String, TableData.Table.Builder> tables = new HashMap<String, TableData.Table.Builder>();
-            	for (QueueItem current: list) {
-            		if (current.size() == 0) continue;
-            		iProgress.info("Loading " + current);
-            		List<Object> objects = current.list();
-            		if (objects == null || objects.isEmpty()) continue;
-            		iProgress.setPhase(current.abbv() + " [" + objects.size() + "]", objects.size());
-            		objects: for (Object object: objects) {
-            			iProgress.incProgress();
-            			
-            			// Get meta data (check for sub-classes)
-            			ClassMetadata meta = iHibSessionFactory.getClassMetadata(object.getClass());
-            			if (meta == null) meta = current.meta();
-            			if (meta.hasSubclasses()) {
-            	            for (Iterator i=iHibSessionFactory.getAllClassMetadata().entrySet().iterator();i.hasNext();) {
-            	                Map.Entry entry = (Map.Entry)i.next();
-            	                ClassMetadata classMetadata = (ClassMetadata)entry.getValue();
-            	                if (classMetadata.getMappedClass().isInstance(object) && !classMetadata.hasSubclasses()) {
-            	                	meta = classMetadata; break;
-            	                }
-            	            }
-            			}
-            			
-            			// Get unique identifier
-            			Serializable id = meta.getIdentifier(object, (SessionImplementor)iHibSession);
-            			if (meta.getIdentifierType().isComponentType()) {
-            				ComponentType cid = (ComponentType)meta.getIdentifierType();
-            				Object[] ids = new Object[cid.getPropertyNames().length];
-            				for (int i = 0; i < cid.getPropertyNames().length; i++) {
-            					Type type = meta.getPropertyType(cid.getPropertyNames()[i]);
-                				Object value = cid.getPropertyValue(object, i);
-                				if (value == null) continue;
-                				if (type.isEntityType()) {
-                					ids[i] = iHibSessionFactory.getClassMetadata(type.getReturnedClass()).getIdentifier(value, (SessionImplementor)iHibSession); 
-                				} else {
-                					ids[i] = value;
-                				}
-            				}
-            				id = new CompositeId(ids);
-            			}
-            			
-            			// Check if already exported
-            			Set<Serializable> exportedIds = allExportedIds.get(meta.getEntityName());
-            			if (exportedIds == null) {
-            				exportedIds = new HashSet<Serializable>();
-            				allExportedIds.put(meta.getEntityName(), exportedIds);
-            			}
-            			if (!exportedIds.add(id)) continue;
-            			
-            			// Check relation to an academic session (if exists)
-            			for (String property: meta.getPropertyNames()) {
-            				Type type = meta.getPropertyType(property);
-                        	if (type instanceof EntityType && type.getReturnedClass().equals(Session.class)) {
-                        		Session s = (Session)meta.getPropertyValue(object, property);
-                        		if (s != null && !s.getUniqueId().equals(iSessionId)) {
-                        			iProgress.warn(meta.getEntityName().substring(meta.getEntityName().lastIndexOf('.') + 1) + "@" + id + " belongs to a different academic session (" + s + ")");
-                        			continue objects; // wrong session
-                        		}
-                        	}
-            			}
-
-            			// Get appropriate table
-            			TableData.Table.Builder table = tables.get(meta.getEntityName());
-            			if (table == null) {
-            				table = TableData.Table.newBuilder();
-            				tables.put(meta.getEntityName(), table);
-            				table.setName(meta.getEntityName());
-            			}
-
-            			// Export object
-            			TableData.Record.Builder record = TableData.Record.newBuilder();
-            			record.setId(id.toString());
-            			for (String property: meta.getPropertyNames()) {
-            				Type type = meta.getPropertyType(property);
-            				Object value = meta.getPropertyValue(object, property);
-            				if (value == null) continue;
-            				TableData.Element.Builder element = TableData.Element.newBuilder();
-            				element.setName(property);
-            				if (type instanceof PrimitiveType) {
-            					element.addValue(((PrimitiveType)type).toString(value));
-            				} else if (type instanceof StringType) {	
-            					element.addValue(((StringType)type).toString((String)value));
-            				} else if (type instanceof BinaryType) {	
-            					element.addValueBytes(ByteString.copyFrom((byte[])value));
-            				} else if (type instanceof TimestampType) {
-            					element.addValue(((TimestampType)type).toString((Date)value));
-            				} else if (type instanceof DateType) {
-            					element.addValue(((DateType)type).toString((Date)value));
-            				} else if (type instanceof EntityType) {
-    							List<Object> ids = current.relation(property, id, false);
-    							if (ids != null)
-    								for (Object i: ids)
-    									element.addValue(i.toString());
-    							iHibSession.evict(value);
-            				} else if (type instanceof CustomType && value instanceof Document) {
-            					if (object instanceof CurriculumClassification && property.equals("students")) continue;
-            					StringWriter w = new StringWriter();
-            					XMLWriter x = new XMLWriter(w, OutputFormat.createCompactFormat());
-            					x.write((Document)value);
-            					x.flush(); x.close();
-            					element.addValue(w.toString());
-            				} else if (type instanceof CollectionType) {
-    							List<Object> ids = current.relation(property, id, false);
-    							if (ids != null)
-    								for (Object i: ids)
-    									element.addValue(i.toString());
-            				} else if (type instanceof EmbeddedComponentType && property.equalsIgnoreCase("uniqueCourseNbr")) {
-            					continue;
-            				} else {
-            					iProgress.warn("Unknown data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
-            					continue;
-            				}
-            				record.addElement(element.build());
-            			}
-            			if (meta.getIdentifierType().isComponentType()) {
-            				ComponentType cid = (ComponentType)meta.getIdentifierType();
-            				for (int i = 0; i < cid.getPropertyNames().length; i++) {
-            					String property = cid.getPropertyNames()[i];
-            					Type type = cid.getSubtypes()[i];
-                				Object value = ((CompositeId)id).iId[i];
-                				if (value == null) continue;
-                				TableData.Element.Builder element = TableData.Element.newBuilder();
-                				element.setName(property);
-                				if (type instanceof PrimitiveType) {
-                					element.addValue(((PrimitiveType)type).toString(value));
-                				} else if (type instanceof StringType) {	
-                					element.addValue(((StringType)type).toString((String)value));
-                				} else if (type instanceof BinaryType) {	
-                					element.addValueBytes(ByteString.copyFrom((byte[])value));
-                				} else if (type instanceof TimestampType) {
-                					element.addValue(((TimestampType)type).toString((Date)value));
-                				} else if (type instanceof DateType) {
-                					element.addValue(((DateType)type).toString((Date)value));
-                				} else if (type instanceof EntityType) {
-                    				element.addValue(value.toString());
-                				} else {
-                					iProgress.warn("Not-supported composite key data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
-                					continue;
-                				}
-                				record.addElement(element.build());
+            iExportedIds.clear();
+            iChunkSize = Math.max(1, ApplicationProperty.SessionBackupChunkSize.intValue());
+            int nrThreads = Math.max(1, ApplicationProperty.SessionBackupThreads.intValue());
+            List<String> names = new ArrayList<String>(new TreeSet<String>(data.keySet()));
+            if (nrThreads <= 1) {
+            	for (String name: names)
+            		export(data.get(name), false);
+            } else {
+            	// make sure all the sizes are computed (using the main hibernate session) before the tables are handed over to the workers
+            	for (List<QueueItem> list: data.values())
+            		for (QueueItem qi: list) qi.size();
+            	iProgress.setPhase("Exporting tables", names.size());
+            	ExecutorService executor = Executors.newFixedThreadPool(Math.min(nrThreads, names.size()));
+            	try {
+            		List<Future<Object>> tasks = new ArrayList<Future<Object>>();
+            		for (final String name: names) {
+            			tasks.add(executor.submit(new Callable<Object>() {
+            				@Override
+            				public Object call() throws Exception {
+            					exportInNewSession(data.get(name));
+            					iProgress.incProgress();
+            					return null;
             				}
-            			}
-            			table.addRecord(record.build());
-            			iHibSession.evict(object);
+            			}));
             		}
-            		current.clearCache();
-            	}
-            	
-            	for (TableData.Table.Builder table: tables.values()) {
-            		add(table.build());
+            		for (Future<Object> task: tasks)
+            			task.get();
+            	} catch (InterruptedException e) {
+            		Thread.currentThread().interrupt();
+            		throw new IOException("Backup interrupted.", e);
+            	} catch (ExecutionException e) {
+            		Throwable cause = e.getCause();
+            		if (cause instanceof IOException) throw (IOException)cause;
+            		if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            		if (cause instanceof Error) throw (Error)cause;
+            		throw new IOException(cause.getMessage(), cause);
+            	} finally {
+            		executor.shutdownNow();
             	}
             }
             
@@ -458,6 +355,203 @@ public class SessionBackup implements SessionBackupInterface {
         }
 	}
 	
+	/**
+	 * Export all the records of the given queue items. The records are written in chunks of at most
+	 * {@link ApplicationProperty#SessionBackupChunkSize} records, so that no table needs to be held in memory as a whole.
+	 * @param list queue items of the same entity name
+	 * @param parallel true if the tables are being exported in parallel (no per-table progress phases)
+	 */
+	protected void export(List<QueueItem> list, boolean parallel) throws IOException {
+		Map<String, TableData.Table.Builder> tables = new HashMap<String, TableData.Table.Builder>();
+		for (QueueItem current: list) {
+			if (current.size() == 0) continue;
+			iProgress.info("Loading " + current);
+			ScrollableResults results = current.scroll();
+			if (results == null) continue;
+			if (!parallel)
+				iProgress.setPhase(current.abbv() + " [" + current.size() + "]", current.size());
+			try {
+				objects: while (results.next()) {
+					Object object = results.get(0);
+					if (!parallel) iProgress.incProgress();
+					
+					// Get meta data (check for sub-classes)
+					ClassMetadata meta = iHibSessionFactory.getClassMetadata(object.getClass());
+					if (meta == null) meta = current.meta();
+					if (meta.hasSubclasses()) {
+						for (Iterator i=iHibSessionFactory.getAllClassMetadata().entrySet().iterator();i.hasNext();) {
+							Map.Entry entry = (Map.Entry)i.next();
+							ClassMetadata classMetadata = (ClassMetadata)entry.getValue();
+							if (classMetadata.getMappedClass().isInstance(object) && !classMetadata.hasSubclasses()) {
+								meta = classMetadata; break;
+							}
+						}
+					}
+					
+					// Get unique identifier
+					Serializable id = meta.getIdentifier(object, (SessionImplementor)getHibSession());
+					if (meta.getIdentifierType().isComponentType()) {
+						ComponentType cid = (ComponentType)meta.getIdentifierType();
+						Object[] ids = new Object[cid.getPropertyNames().length];
+						for (int i = 0; i < cid.getPropertyNames().length; i++) {
+							Type type = meta.getPropertyType(cid.getPropertyNames()[i]);
+							Object value = cid.getPropertyValue(object, i);
+							if (value == null) continue;
+							if (type.isEntityType()) {
+								ids[i] = iHibSessionFactory.getClassMetadata(type.getReturnedClass()).getIdentifier(value, (SessionImplementor)getHibSession()); 
+							} else {
+								ids[i] = value;
+							}
+						}
+						id = new CompositeId(ids);
+					}
+					
+					// Check if already exported
+					Set<Serializable> exportedIds = iExportedIds.get(meta.getEntityName());
+					if (exportedIds == null) {
+						exportedIds = ConcurrentHashMap.newKeySet();
+						Set<Serializable> other = iExportedIds.putIfAbsent(meta.getEntityName(), exportedIds);
+						if (other != null) exportedIds = other;
+					}
+					if (!exportedIds.add(id)) continue;
+					
+					// Check relation to an academic session (if exists)
+					for (String property: meta.getPropertyNames()) {
+						Type type = meta.getPropertyType(property);
+						if (type instanceof EntityType && type.getReturnedClass().equals(Session.class)) {
+							Session s = (Session)meta.getPropertyValue(object, property);
+							if (s != null && !s.getUniqueId().equals(iSessionId)) {
+								iProgress.warn(meta.getEntityName().substring(meta.getEntityName().lastIndexOf('.') + 1) + "@" + id + " belongs to a different academic session (" + s + ")");
+								continue objects; // wrong session
+							}
+						}
+					}
+
+					// Get appropriate table
+					TableData.Table.Builder table = tables.get(meta.getEntityName());
+					if (table == null) {
+						table = TableData.Table.newBuilder();
+						tables.put(meta.getEntityName(), table);
+						table.setName(meta.getEntityName());
+					}
+
+					// Export object
+					TableData.Record.Builder record = TableData.Record.newBuilder();
+					record.setId(id.toString());
+					for (String property: meta.getPropertyNames()) {
+						Type type = meta.getPropertyType(property);
+						Object value = meta.getPropertyValue(object, property);
+						if (value == null) continue;
+						TableData.Element.Builder element = TableData.Element.newBuilder();
+						element.setName(property);
+						if (type instanceof PrimitiveType) {
+							element.addValue(((PrimitiveType)type).toString(value));
+						} else if (type instanceof StringType) {	
+							element.addValue(((StringType)type).toString((String)value));
+						} else if (type instanceof BinaryType) {	
+							element.addValueBytes(ByteString.copyFrom((byte[])value));
+						} else if (type instanceof TimestampType) {
+							element.addValue(((TimestampType)type).toString((Date)value));
+						} else if (type instanceof DateType) {
+							element.addValue(((DateType)type).toString((Date)value));
+						} else if (type instanceof EntityType) {
+							List<Object> ids = current.relation(property, id, false);
+							if (ids != null)
+								for (Object i: ids)
+									element.addValue(i.toString());
+							getHibSession().evict(value);
+						} else if (type instanceof CustomType && value instanceof Document) {
+							if (object instanceof CurriculumClassification && property.equals("students")) continue;
+							StringWriter w = new StringWriter();
+							XMLWriter x = new XMLWriter(w, OutputFormat.createCompactFormat());
+							x.write((Document)value);
+							x.flush(); x.close();
+							element.addValue(w.toString());
+						} else if (type instanceof CollectionType) {
+							List<Object> ids = current.relation(property, id, false);
+							if (ids != null)
+								for (Object i: ids)
+									element.addValue(i.toString());
+						} else if (type instanceof EmbeddedComponentType && property.equalsIgnoreCase("uniqueCourseNbr")) {
+							continue;
+						} else {
+							iProgress.warn("Unknown data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
+							continue;
+						}
+						record.addElement(element.build());
+					}
+					if (meta.getIdentifierType().isComponentType()) {
+						ComponentType cid = (ComponentType)meta.getIdentifierType();
+						for (int i = 0; i < cid.getPropertyNames().length; i++) {
+							String property = cid.getPropertyNames()[i];
+							Type type = cid.getSubtypes()[i];
+							Object value = ((CompositeId)id).iId[i];
+							if (value == null) continue;
+							TableData.Element.Builder element = TableData.Element.newBuilder();
+							element.setName(property);
+							if (type instanceof PrimitiveType) {
+								element.addValue(((PrimitiveType)type).toString(value));
+							} else if (type instanceof StringType) {	
+								element.addValue(((StringType)type).toString((String)value));
+							} else if (type instanceof BinaryType) {	
+								element.addValueBytes(ByteString.copyFrom((byte[])value));
+							} else if (type instanceof TimestampType) {
+								element.addValue(((TimestampType)type).toString((Date)value));
+							} else if (type instanceof DateType) {
+								element.addValue(((DateType)type).toString((Date)value));
+							} else if (type instanceof EntityType) {
+								element.addValue(value.toString());
+							} else {
+								iProgress.warn("Not-supported composite key data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
+								continue;
+							}
+							record.addElement(element.build());
+						}
+					}
+					table.addRecord(record.build());
+					getHibSession().evict(object);
+					
+					// Write the chunk when full
+					if (table.getRecordCount() >= iChunkSize) {
+						add(table.build());
+						table.clearRecord();
+					}
+				}
+			} finally {
+				results.close();
+			}
+			current.clearCache();
+		}
+		
+		for (TableData.Table.Builder table: tables.values()) {
+			if (table.getRecordCount() > 0)
+				add(table.build());
+		}
+	}
+	
+	/**
+	 * Export the given queue items using a new hibernate session (used by the worker threads)
+	 */
+	protected void exportInNewSession(List<QueueItem> list) throws IOException {
+		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
+		hibSession.setCacheMode(CacheMode.IGNORE);
+		iWorkerSession.set(hibSession);
+		try {
+			export(list, true);
+		} finally {
+			iWorkerSession.remove();
+			hibSession.close();
+		}
+	}
+	
+	/**
+	 * Hibernate session of the current worker thread, or the main hibernate session when called outside of a worker
+	 */
+	protected org.hibernate.Session getHibSession() {
+		org.hibernate.Session hibSession = iWorkerSession.get();
+		return (hibSession == null ? iHibSession : hibSession);
+	}
+	
 	enum Relation {
 		None, Parent, One, Many, Empty
 	}
@@ -571,13 +665,13 @@ public class SessionBackup implements SessionBackupInterface {
 						else
 							select += (i > 0 ? ", " : "") + hqlName() + "." + type.getPropertyNames()[i] + "." + meta.getIdentifierPropertyName();
 					}
-					for (Object[] id: (List<Object[]>)iHibSession.createQuery(
+					for (Object[] id: (List<Object[]>)getHibSession().createQuery(
 							"select distinct " + select +  " from " + hqlFrom() + " where " + hqlWhere()
 							).setLong("sessionId", iSessionId).list()) {
 						if (ids.add(new CompositeId(id))) size++;
 					}
 				} else {
-					for (Serializable id: (List<Serializable>)iHibSession.createQuery(
+					for (Serializable id: (List<Serializable>)getHibSession().createQuery(
 							"select distinct " + hqlName() + "." + meta().getIdentifierPropertyName() + " from " + hqlFrom() + " where " + hqlWhere()
 							).setLong("sessionId", iSessionId).list()) {
 						if (ids.add(id)) size++;
@@ -607,14 +701,14 @@ public class SessionBackup implements SessionBackupInterface {
 			}
 		}
 		
-		List<Object> list() {
+		ScrollableResults scroll() {
 			if (relation() == Relation.Empty) return null;
 			if (AssignmentInfo.class.getName().equals(name())) return null;
 			if (ConstraintInfo.class.getName().equals(name())) return null;
 			if (ChangeLog.class.getName().equals(name())) return null;
-			return iHibSession.createQuery(
+			return getHibSession().createQuery(
 					"select " + (distinct() ? "" : "distinct ") + hqlName() + " from " + hqlFrom() + " where " + hqlWhere()
-					).setLong("sessionId", iSessionId).list();
+					).setLong("sessionId", iSessionId).setFetchSize(sFetchSize).scroll(ScrollMode.FORWARD_ONLY);
 		}
 		
 		Map<String, Map<Serializable, List<Object>>> iRelationCache = new HashMap<String, Map<Serializable,List<Object>>>();
@@ -661,7 +755,7 @@ public class SessionBackup implements SessionBackupInterface {
 						else
 							select += (i > 0 ? ", " : "") + hqlName() + "." + idtype.getPropertyNames()[i] + "." + meta.getIdentifierPropertyName();
 					}
-					for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+					for (Object[] o: (List<Object[]>)getHibSession().createQuery(
 							"select distinct " + select + (data ? ", p" : ", p." + idProperty) + " from " + hqlFrom() + " inner join " + hqlName() + "." + property + " p where " + hqlWhere()
 							).setLong("sessionId", iSessionId).list()) {
 						Object[] cid = new Object[idtype.getPropertyNames().length];
@@ -682,7 +776,7 @@ public class SessionBackup implements SessionBackupInterface {
 						}
 					}
 				} else {
-					for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+					for (Object[] o: (List<Object[]>)getHibSession().createQuery(
 							"select distinct " + hqlName() + "." + meta().getIdentifierPropertyName() + (data ? ", p" : ", p." + idProperty) + 
 							" from " + hqlFrom() + " inner join " + hqlName() + "." + property + " p where " + hqlWhere()
 							).setLong("sessionId", iSessionId).list()) {
@@ -783,6 +877,35 @@ public class SessionBackup implements SessionBackupInterface {
 		}
 	}
 	
+	/**
+	 * Progress wrapper that can be used by multiple worker threads at the same time
+	 */
+	private static class SynchronizedProgress implements BackupProgress {
+		private BackupProgress iProgress;
+		
+		private SynchronizedProgress(BackupProgress progress) {
+			iProgress = progress;
+		}
+
+		@Override
+		public synchronized void setStatus(String status) { iProgress.setStatus(status); }
+
+		@Override
+		public synchronized void setPhase(String phase, double max) { iProgress.setPhase(phase, max); }
+
+		@Override
+		public synchronized void incProgress() { iProgress.incProgress(); }
+
+		@Override
+		public synchronized void info(String message) { iProgress.info(message); }
+
+		@Override
+		public synchronized void warn(String message) { iProgress.warn(message); }
+
+		@Override
+		public synchronized void error(String message) { iProgress.error(message); }
+	}
+	
 	public static class CompositeId implements Serializable {
 		private static final long serialVersionUID = 1L;
 		private Serializable[] iId;
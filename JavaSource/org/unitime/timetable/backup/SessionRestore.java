@@ -144,7 +144,8 @@ public class SessionRestore implements SessionRestoreInterface {
 	private List<Entity> iAllEntitites = new ArrayList<Entity>();
 	private Map<String, Student> iStudents = new Hashtable<String, Student>();
 	private PrintWriter iDebug = null;
-	private Map<String, TableData.Table> iSkippedTables = new Hashtable<String, TableData.Table>();
+	private Map<String, List<TableData.Table>> iSkippedTables = new Hashtable<String, List<TableData.Table>>();
+	private Map<String, Map<String, Integer>> iLengths = new Hashtable<String, Map<String, Integer>>();
 
 	private InputStream iIn;
 
@@ -254,21 +255,17 @@ public class SessionRestore implements SessionRestoreInterface {
 	}
 	
 	protected Entity lookupSkippedRecord(String tableName, String id) {
-		TableData.Table table = iSkippedTables.get(tableName);
-		if (table == null) return null;
-		for (TableData.Record record: table.getRecordList()) {
-			if (id.equals(record.getId()) && record.getElementCount() > 0) return new Entity(null, record, null, id);
-		}
+		List<TableData.Table> tables = iSkippedTables.get(tableName);
+		if (tables == null) return null;
+		for (TableData.Table table: tables)
+			for (TableData.Record record: table.getRecordList()) {
+				if (id.equals(record.getId()) && record.getElementCount() > 0) return new Entity(null, record, null, id);
+			}
 		return null;
 	}
 	
-	public void create(TableData.Table table) throws InstantiationException, IllegalAccessException, DocumentException, InvocationTargetException, NoSuchMethodException {
-		ClassMetadata metadata = iHibSessionFactory.getClassMetadata(table.getName());
-		if (metadata == null) {
-			iSkippedTables.put(table.getName(), table);
-			return;
-		}
-		PersistentClass mapping = _RootDAO.getConfiguration().getClassMapping(table.getName());
+	private Map<String, Integer> getLengths(String tableName, ClassMetadata metadata) {
+		PersistentClass mapping = _RootDAO.getConfiguration().getClassMapping(tableName);
 		Map<String, Integer> lengths = new HashMap<String, Integer>();
 		for (String property: metadata.getPropertyNames()) {
 			if ("org.unitime.timetable.model.CurriculumClassification.students".equals(metadata.getEntityName() + "." + property)) continue;
@@ -285,6 +282,26 @@ public class SessionRestore implements SessionRestoreInterface {
 					break;
 				}
 		}
+		return lengths;
+	}
+	
+	public void create(TableData.Table table) throws InstantiationException, IllegalAccessException, DocumentException, InvocationTargetException, NoSuchMethodException {
+		ClassMetadata metadata = iHibSessionFactory.getClassMetadata(table.getName());
+		if (metadata == null) {
+			// a table may be written in multiple chunks
+			List<TableData.Table> tables = iSkippedTables.get(table.getName());
+			if (tables == null) {
+				tables = new ArrayList<TableData.Table>();
+				iSkippedTables.put(table.getName(), tables);
+			}
+			tables.add(table);
+			return;
+		}
+		Map<String, Integer> lengths = iLengths.get(table.getName());
+		if (lengths == null) {
+			lengths = getLengths(table.getName(), metadata);
+			iLengths.put(table.getName(), lengths);
+		}
 		iProgress.setPhase(metadata.getEntityName().substring(metadata.getEntityName().lastIndexOf('.') + 1) + " [" + table.getRecordCount() + "]", table.getRecordCount());
 		for (TableData.Record record: table.getRecordList()) {
 			iProgress.incProgress();
@@ -980,6 +997,10 @@ public class SessionRestore implements SessionRestoreInterface {
 		}
 	}
 	
+	/**
+	 * Read the next table from the stream. Large tables are written in multiple chunks (table messages of the same name,
+	 * see {@link ApplicationProperty#SessionBackupChunkSize}), each chunk is read and processed separately.
+	 */
 	public static TableData.Table readTable(CodedInputStream cin) throws IOException {
 		if (cin.isAtEnd()) return null;
 		int size = cin.readInt32();
@@ -94,7 +94,7 @@ import org.unitime.timetable.util.duration.DurationModel;
 /**
  * @author Stephanie Schluttenhofer, Tomas Muller
  */
-public abstract class BaseCourseOfferingImport extends EventRelatedImports {
+public abstract class BaseCourseOfferingImport extends EventRelatedImports implements StreamingImport {
 
 	HashSet<Long> existingInstructionalOfferings = new HashSet<Long>();
 	HashSet<Long> existingCourseOfferings = new HashSet<Long>();
@@ -125,6 +125,11 @@ public abstract class BaseCourseOfferingImport extends EventRelatedImports {
 	}
 
 	public void loadXml(Element rootElement) throws Exception {
+		loadXml(rootElement, rootElement.elements());
+	}
+
+	@Override
+	public void loadXml(Element rootElement, Iterable<Element> records) throws Exception {
 		initializeTrimLeadingZeros();
 		
 		try {
@@ -147,7 +152,7 @@ public abstract class BaseCourseOfferingImport extends EventRelatedImports {
 
 	        initializeLoad(rootElement, rootElementName);
 			preLoadAction();
-	        loadOfferings(rootElement);
+	        loadOfferings(records);
 	        
 	        if (!incremental) {
 		        deleteUnmatchedInstructionalOfferings();
@@ -201,9 +206,12 @@ public abstract class BaseCourseOfferingImport extends EventRelatedImports {
 	// If a post load action needs to take place before the data is loaded override this method
 	protected abstract void postLoadAction();
 
-	protected void loadOfferings(Element rootElement) throws Exception{    
-			for ( Iterator<?> it = rootElement.elementIterator(); it.hasNext(); ) {
-	    		Element element = (Element) it.next();
+	protected void loadOfferings(Element rootElement) throws Exception{
+		loadOfferings(rootElement.elements());
+	}
+
+	protected void loadOfferings(Iterable<Element> records) throws Exception{    
+			for (Element element: records(records, "offerings")) {
 	    		try {
 	            elementOffering(element);	             
 	            flush(true);
@@ -21,15 +21,38 @@ package org.unitime.timetable.dataexchange;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.XMLWriter;
+import org.hibernate.CacheMode;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Transaction;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.dao.SessionDAO;
+import org.unitime.timetable.model.dao._RootDAO;
 
 /**
  * 
@@ -39,6 +62,7 @@ import org.unitime.timetable.model.Session;
 
 public abstract class BaseExport extends DataExchangeHelper {
     protected static Log sLog = LogFactory.getLog(BaseExport.class);
+    private XmlRecordWriter iWriter = null;
     
     protected BaseExport() {
         super();
@@ -46,11 +70,10 @@ public abstract class BaseExport extends DataExchangeHelper {
     
     public void saveXml(String fileName, Session session, Properties parameters) throws Exception {
         debug("Saving "+fileName);
-        Document doc = saveXml(session, parameters);
         FileOutputStream fos = null;
         try {
             fos = new FileOutputStream(fileName);
-            (new XMLWriter(fos,OutputFormat.createPrettyPrint())).write(doc);
+            saveXml(fos, session, parameters);
             fos.flush();fos.close();fos=null;
         } finally {
             try {
@@ -62,6 +85,29 @@ public abstract class BaseExport extends DataExchangeHelper {
         }
     }
     
+    /**
+     * Export into the given output stream. When unitime.data.exchange.streaming.export is enabled, the records
+     * are written out as they are exported (see {@link BaseExport#flushRecords(Element)}), otherwise the whole
+     * document is created first.
+     */
+    public void saveXml(OutputStream out, Session session, Properties parameters) throws Exception {
+    	if (ApplicationProperty.DataExchangeStreamingExport.isTrue()) {
+    		iWriter = new XmlRecordWriter(out);
+    		try {
+    			Document document = DocumentHelper.createDocument();
+    			saveXml(document, session, parameters);
+    			iWriter.close(document);
+    		} finally {
+    			iWriter = null;
+    		}
+    	} else {
+    		Document document = saveXml(session, parameters);
+    		XMLWriter writer = new XMLWriter(out, OutputFormat.createPrettyPrint());
+    		writer.write(document);
+    		writer.flush();
+    	}
+    }
+
     public Document saveXml(Session session, Properties parameters) throws Exception {
         Document document = DocumentHelper.createDocument();
         saveXml(document, session, parameters);
@@ -69,4 +115,208 @@ public abstract class BaseExport extends DataExchangeHelper {
     }    
     
     public abstract void saveXml(Document document, Session session, Properties parameters) throws Exception;
+
+    /**
+     * Is the export being streamed, i.e., the records are written out as they are exported
+     */
+    protected boolean isStreaming() {
+    	return iWriter != null;
+    }
+
+    /**
+     * When streaming, write out the child elements of the root element that have been exported so far and remove them from the document.
+     * The root element must have all its attributes set (and the document type must be set) before this method is called for the first time.
+     * @return true if the records have been written out
+     */
+    protected boolean flushRecords(Element root) throws IOException {
+    	if (iWriter == null) return false;
+    	iWriter.write(root);
+    	return true;
+    }
+
+    /**
+     * Iterate over the results of the given query. When streaming, the results are scrolled and every
+     * unitime.data.exchange.streaming.batchSize results the exported records are written out and the Hibernate session is cleared
+     * (so the exported entities must not be used once their records are completed). Otherwise, the query is listed.
+     * @param query query returning the entities to export (one entity per row)
+     * @param root root element of the export, see {@link BaseExport#flushRecords(Element)}
+     */
+    protected <T> Iterable<T> scroll(final Query query, final Element root) {
+    	if (!isStreaming()) return (List<T>)query.list();
+    	final int batchSize = Math.max(1, ApplicationProperty.DataExchangeStreamingBatchSize.intValue());
+    	return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				final ScrollableResults results = query.setFetchSize(batchSize).scroll(ScrollMode.FORWARD_ONLY);
+				return new Iterator<T>() {
+					private Boolean iHasNext = null;
+					private int iCount = 0;
+
+					@Override
+					public boolean hasNext() {
+						if (iHasNext == null) {
+							if (iCount > 0 && (iCount % batchSize) == 0) {
+								// the previous records are completed: write them out and clear the session before the next row is read
+								try {
+									flushRecords(root);
+								} catch (IOException e) {
+									throw new RuntimeException("Failed to write the exported records: " + e.getMessage(), e);
+								}
+								getHibSession().clear();
+							}
+							iHasNext = results.next();
+							if (!iHasNext) results.close();
+						}
+						return iHasNext;
+					}
+
+					@Override
+					public T next() {
+						if (!hasNext()) throw new NoSuchElementException();
+						iCount ++;
+						iHasNext = null;
+						return (T)results.get(0);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+    }
+
+    /**
+     * Export the given chunks (e.g., subject areas) in parallel using unitime.data.exchange.export.threads threads. Each chunk is
+     * exported by its own instance of the export (see {@link ChunkedExport#createChunkExport(org.hibernate.Session, Log)}) in its own Hibernate session.
+     * The exported elements are added to the given parent element in the order of the chunks, and written out when streaming.
+     * At most two chunks per thread are exported ahead of the one that is being written out.
+     */
+    protected <T> void exportChunks(final ChunkedExport<T> export, final Element parent, final Session session, final Properties parameters, List<T> chunks) throws Exception {
+    	int nrThreads = Math.max(1, ApplicationProperty.DataExchangeExportThreads.intValue());
+		ExecutorService executor = Executors.newFixedThreadPool(nrThreads, new ThreadFactory() {
+			private AtomicInteger iCount = new AtomicInteger(0);
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "DataExchangeExport-" + iCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		Log parentLog = getLog();
+		final Log log = (parentLog == null ? null : new SynchronizedLog(parentLog));
+		setLog(log);
+		try {
+			LinkedList<Future<Element>> pending = new LinkedList<Future<Element>>();
+			int next = 0;
+			while (next < chunks.size() || !pending.isEmpty()) {
+				while (next < chunks.size() && pending.size() < 2 * nrThreads) {
+					final T chunk = chunks.get(next++);
+					pending.add(executor.submit(new Callable<Element>() {
+						@Override
+						public Element call() throws Exception {
+							return exportChunk(export, parent, session, parameters, chunk, log);
+						}
+					}));
+				}
+				Element container;
+				try {
+					container = pending.removeFirst().get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) throw (Exception)e.getCause();
+					throw e;
+				}
+				for (Element element: new ArrayList<Element>(container.elements())) {
+					container.remove(element);
+					parent.add(element);
+				}
+				flushRecords(parent);
+			}
+		} finally {
+			executor.shutdownNow();
+			setLog(parentLog);
+		}
+    }
+
+    private <T> Element exportChunk(ChunkedExport<T> export, Element parent, Session session, Properties parameters, T chunk, Log log) throws Exception {
+    	ApplicationProperties.setSessionId(session.getUniqueId());
+    	org.hibernate.Session hibSession = new _RootDAO().createNewSession();
+    	Transaction tx = null;
+    	try {
+    		hibSession.setCacheMode(CacheMode.IGNORE);
+    		tx = hibSession.beginTransaction();
+    		Element container = DocumentHelper.createElement(parent.getQName());
+    		export.createChunkExport(hibSession, log).exportChunk(container, SessionDAO.getInstance().get(session.getUniqueId(), hibSession), parameters, chunk);
+    		tx.commit();
+    		return container;
+    	} catch (Exception e) {
+    		if (tx != null && tx.isActive()) tx.rollback();
+    		throw e;
+    	} finally {
+    		hibSession.close();
+    		ApplicationProperties.setSessionId(null);
+    		_RootDAO.closeCurrentThreadSessions();
+    	}
+    }
+
+    private static class SynchronizedLog implements Log {
+    	private Log iLog;
+
+    	SynchronizedLog(Log log) { iLog = log; }
+
+		@Override
+		public synchronized void debug(Object message) { iLog.debug(message); }
+
+		@Override
+		public synchronized void debug(Object message, Throwable t) { iLog.debug(message, t); }
+
+		@Override
+		public synchronized void error(Object message) { iLog.error(message); }
+
+		@Override
+		public synchronized void error(Object message, Throwable t) { iLog.error(message, t); }
+
+		@Override
+		public synchronized void fatal(Object message) { iLog.fatal(message); }
+
+		@Override
+		public synchronized void fatal(Object message, Throwable t) { iLog.fatal(message, t); }
+
+		@Override
+		public synchronized void info(Object message) { iLog.info(message); }
+
+		@Override
+		public synchronized void info(Object message, Throwable t) { iLog.info(message, t); }
+
+		@Override
+		public synchronized void trace(Object message) { iLog.trace(message); }
+
+		@Override
+		public synchronized void trace(Object message, Throwable t) { iLog.trace(message, t); }
+
+		@Override
+		public synchronized void warn(Object message) { iLog.warn(message); }
+
+		@Override
+		public synchronized void warn(Object message, Throwable t) { iLog.warn(message, t); }
+
+		@Override
+		public boolean isDebugEnabled() { return iLog.isDebugEnabled(); }
+
+		@Override
+		public boolean isErrorEnabled() { return iLog.isErrorEnabled(); }
+
+		@Override
+		public boolean isFatalEnabled() { return iLog.isFatalEnabled(); }
+
+		@Override
+		public boolean isInfoEnabled() { return iLog.isInfoEnabled(); }
+
+		@Override
+		public boolean isTraceEnabled() { return iLog.isTraceEnabled(); }
+
+		@Override
+		public boolean isWarnEnabled() { return iLog.isWarnEnabled(); }
+    }
 }
@@ -19,9 +19,14 @@
 */
 package org.unitime.timetable.dataexchange;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,6 +34,7 @@ import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.TimetableManager;
 
 /**
@@ -40,6 +46,8 @@ import org.unitime.timetable.model.TimetableManager;
 public abstract class BaseImport extends DataExchangeHelper {
     protected static Log sLog = LogFactory.getLog(BaseImport.class);
 	private TimetableManager iManager = null;
+	private boolean iStreaming = false;
+	private List<Object> iEvictOnFlush = new ArrayList<Object>();
 
     public BaseImport() {
         super();
@@ -47,6 +55,15 @@ public abstract class BaseImport extends DataExchangeHelper {
     
     public void loadXml(String fileName) throws Exception {
         debug("Loading "+fileName);
+        if (isStreamingEnabled()) {
+        	XmlRecordReader reader = new XmlRecordReader(new File(fileName));
+        	try {
+        		loadXml(reader);
+        	} finally {
+        		reader.close();
+        	}
+        	return;
+        }
         FileInputStream fis = null;
         try {
             fis = new FileInputStream(fileName);
@@ -63,6 +80,15 @@ public abstract class BaseImport extends DataExchangeHelper {
     
     public void loadXml(InputStream inputStream) throws Exception {
         try {
+        	if (isStreamingEnabled()) {
+        		XmlRecordReader reader = new XmlRecordReader(inputStream);
+        		try {
+        			loadXml(reader);
+        		} finally {
+        			reader.close();
+        		}
+        		return;
+        	}
             Document document = (new SAXReader()).read(inputStream);
             loadXml(document.getRootElement());
         } catch (DocumentException e) {
@@ -72,6 +98,116 @@ public abstract class BaseImport extends DataExchangeHelper {
     
     public abstract void loadXml(Element rootElement) throws Exception;
     
+    /**
+     * Import the file using the streaming reader when the import supports it ({@link StreamingImport}),
+     * otherwise the whole file is parsed into a document first.
+     */
+    public void loadXml(XmlRecordReader reader) throws Exception {
+    	if (this instanceof StreamingImport) {
+    		iStreaming = true;
+    		try {
+    			((StreamingImport)this).loadXml(reader.getRootElement(), reader);
+    		} finally {
+    			iStreaming = false;
+    			iEvictOnFlush.clear();
+    		}
+    	} else {
+    		loadXml(reader.getDocument().getRootElement());
+    	}
+    }
+    
+    /**
+     * Is this import streaming enabled (unitime.data.exchange.streaming is true and the import implements {@link StreamingImport})
+     */
+    public boolean isStreamingEnabled() {
+    	return this instanceof StreamingImport && ApplicationProperty.DataExchangeStreaming.isTrue();
+    }
+    
+    /**
+     * Is the import being streamed, i.e., the records are read as they are imported
+     */
+    protected boolean isStreaming() {
+    	return iStreaming;
+    }
+    
+    /**
+     * Iterate over the imported records. When streaming, the Hibernate session is flushed every
+     * unitime.data.exchange.streaming.batchSize records and the entities passed to {@link BaseImport#evictOnFlush(Object)}
+     * are evicted from it (the data loaded before the records are iterated stay in the session).
+     * The throughput of the import is logged at the end of the iteration.
+     * @param records records to iterate over
+     * @param name name of the records (e.g., students), used in the log
+     */
+    protected Iterable<Element> records(final Iterable<Element> records, final String name) {
+    	return new Iterable<Element>() {
+			@Override
+			public Iterator<Element> iterator() {
+				return new BatchIterator(records.iterator(), name);
+			}
+		};
+    }
+    
+    /**
+     * When streaming, evict the given entity (e.g., an imported student) from the Hibernate session on the next batch flush
+     */
+    protected void evictOnFlush(Object entity) {
+    	if (iStreaming && entity != null)
+    		iEvictOnFlush.add(entity);
+    }
+    
+    protected void flushBatch() {
+    	getHibSession().flush();
+    	for (Object entity: iEvictOnFlush)
+    		getHibSession().evict(entity);
+    	iEvictOnFlush.clear();
+    }
+    
+    private class BatchIterator implements Iterator<Element> {
+    	private Iterator<Element> iIterator;
+    	private String iName;
+    	private int iBatchSize;
+    	private int iCount = 0;
+    	private long iStartTime;
+    	private boolean iDone = false;
+    	
+    	BatchIterator(Iterator<Element> iterator, String name) {
+    		iIterator = iterator;
+    		iName = name;
+    		iBatchSize = (iStreaming ? ApplicationProperty.DataExchangeStreamingBatchSize.intValue() : 0);
+    		iStartTime = System.currentTimeMillis();
+    	}
+    	
+		@Override
+		public boolean hasNext() {
+			boolean hasNext = iIterator.hasNext();
+			if (!hasNext && !iDone) {
+				iDone = true;
+				if (iBatchSize > 0) flushBatch();
+				double time = (System.currentTimeMillis() - iStartTime) / 1000.0;
+				DecimalFormat df = new DecimalFormat("0.0");
+				info(iCount + " " + iName + " imported in " + df.format(time) + " s" + (time > 0.0 ? " (" + df.format(iCount / time) + " " + iName + "/s)" : "") +
+						(iStreaming ? ", streaming" : ""));
+			}
+			return hasNext;
+		}
+
+		@Override
+		public Element next() {
+			if (iBatchSize > 0 && iCount > 0 && (iCount % iBatchSize) == 0) {
+				flushBatch();
+				debug(iCount + " " + iName + " imported in " + new DecimalFormat("0.0").format((System.currentTimeMillis() - iStartTime) / 1000.0) + " s");
+			}
+			Element record = iIterator.next();
+			iCount ++;
+			return record;
+		}
+
+		@Override
+		public void remove() {
+			iIterator.remove();
+		}
+    }
+    
     protected String getRequiredStringAttribute(Element element, String attributeName, String elementName) throws Exception{		
 		String attributeValue = element.attributeValue(attributeName);
 		if (attributeValue == null || attributeValue.trim().length() == 0){
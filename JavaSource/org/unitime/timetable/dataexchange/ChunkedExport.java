@@ -0,0 +1,50 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.dataexchange;
+
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.dom4j.Element;
+import org.unitime.timetable.model.Session;
+
+/**
+ * Export that can be split into independent chunks (e.g., subject areas) that are exported in parallel,
+ * see {@link BaseExport#exportChunks(ChunkedExport, Element, Session, Properties, java.util.List)}.
+ *
+ * @author Tomas Muller
+ */
+public interface ChunkedExport<T> {
+	/**
+	 * Create an instance of the export that is used to export one chunk
+	 * @param hibSession Hibernate session of the chunk (each chunk is exported in its own session)
+	 * @param log log shared by all the chunks
+	 */
+	public ChunkedExport<T> createChunkExport(org.hibernate.Session hibSession, Log log) throws Exception;
+	
+	/**
+	 * Export one chunk into the given element, called on the instance returned by {@link ChunkedExport#createChunkExport(org.hibernate.Session, Log)}
+	 * @param parent element into which the exported records are to be added
+	 * @param session academic session (loaded in the Hibernate session of the chunk)
+	 * @param parameters export parameters
+	 * @param chunk chunk to export
+	 */
+	public void exportChunk(Element parent, Session session, Properties parameters, T chunk) throws Exception;
+}
@@ -35,6 +35,7 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.cpsolver.coursett.model.TimeLocation;
+import org.apache.commons.logging.Log;
 import org.cpsolver.ifs.util.ToolBox;
 import org.dom4j.Document;
 import org.dom4j.Element;
@@ -83,7 +84,7 @@ import org.unitime.timetable.util.Formats;
 /**
  * @author Tomas Muller, Stephanie Schluttenhofer
  */
-public class CourseOfferingExport extends BaseExport {
+public class CourseOfferingExport extends BaseExport implements ChunkedExport<Long> {
     protected static Formats.Format<Number> sTwoNumbersDF = Formats.getNumberFormat("00");
     protected static Formats.Format<Date> sDateFormat = Formats.getDateFormat("yyyy/M/d");
     protected static Formats.Format<Date> sTimeFormat = Formats.getDateFormat("HHmm");
@@ -118,96 +119,57 @@ public class CourseOfferingExport extends BaseExport {
             if (maxRoomsParam != null && maxRoomsParam.getDefault() != null) 
             	iDefaultMaxNbrRooms = Integer.valueOf(maxRoomsParam.getDefault());
             
-            if (iExportAssignments && ApplicationProperty.DataExchangeIncludeMeetings.isTrue()) {
-            	iClassEvents = new HashMap<Long, ClassEvent>();
-            	for (ClassEvent e: (List<ClassEvent>)getHibSession().createQuery("from ClassEvent e where e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId = :sessionId")
-            			.setLong("sessionId", session.getUniqueId()).list()) {
-            		iClassEvents.put(e.getClazz().getUniqueId(), e);
-            	}
-            	iMeetingLocations = new HashMap<Long, Location>();
-                for (Location l: (List<Location>)getHibSession().createQuery("from Location l where l.session.uniqueId = :sessionId")
-                		.setLong("sessionId", session.getUniqueId()).list()) {
-                	iMeetingLocations.put(l.getPermanentId(), l);
-            	}
-            }
+            // when streaming, offerings of different subject areas can be exported in parallel (see exportChunk)
+            boolean parallel = !examsOnly && isStreaming() && ApplicationProperty.DataExchangeExportThreads.intValue() > 1;
+            
+            if (!parallel && iExportAssignments && ApplicationProperty.DataExchangeIncludeMeetings.isTrue())
+            	loadClassEvents(session, null);
             
             if (examsOnly) {
                 if ("all".equals(parameters.getProperty("tmtbl.export.exam.type", "all")) || "final".equals(parameters.getProperty("tmtbl.export.exam.type", "all"))) {
                     for (Exam exam : new TreeSet<Exam>(Exam.findAllFinal(session.getUniqueId()))) {
                         exportExam(root, null, exam, session);
+                        flushRecords(root);
                     }
                 }
                 if ("all".equals(parameters.getProperty("tmtbl.export.exam.type", "all")) || "midterm".equals(parameters.getProperty("tmtbl.export.exam.type", "all"))) {
                     for (Exam exam : new TreeSet<Exam>(Exam.findAllMidterm(session.getUniqueId()))) {
                          exportExam(root, null, exam, session);
+                         flushRecords(root);
                     }
                 }
             } else {
-                info("Loading offerings...");
                 String subjects = parameters.getProperty("tmtbl.export.subjects");
-                
-                List<InstructionalOffering> offerings = null;
-                if (subjects == null || subjects.isEmpty()) {
-                	offerings = getHibSession().createQuery(
-                            "select distinct io from InstructionalOffering io " +
-                            "inner join fetch io.courseOfferings as co inner join fetch co.subjectArea sa "+
-                            "left join fetch io.instrOfferingConfigs as ioc "+
-                            "left join fetch ioc.schedulingSubparts as ss "+
-                            "left join fetch ss.classes as c "+
-                            "where " +
-                            "io.session.uniqueId=:sessionId "+
-                            "order by sa.subjectAreaAbbreviation, co.courseNbr").
-                            setLong("sessionId",session.getUniqueId().longValue()).
-                            setFetchSize(1000).list();
-                } else {
-                	List<Long> subjectIds = new ArrayList<Long>();
+                List<Long> subjectIds = null;
+                if (subjects != null && !subjects.isEmpty()) {
+                	subjectIds = new ArrayList<Long>();
                 	for (String id: subjects.split(","))
                 		subjectIds.add(Long.valueOf(id));
-                	offerings = getHibSession().createQuery(
-                            "select distinct io from InstructionalOffering io " +
-                            "inner join fetch io.courseOfferings as co inner join fetch co.subjectArea sa "+
-                            "left join fetch io.instrOfferingConfigs as ioc "+
-                            "left join fetch ioc.schedulingSubparts as ss "+
-                            "left join fetch ss.classes as c "+
-                            "where " +
-                            "io.session.uniqueId=:sessionId "+
-                            "and io.uniqueId in (select x.instructionalOffering.uniqueId from CourseOffering x where x.isControl = true and x.subjectArea.uniqueId in (:subjects)) " +
-                            "order by sa.subjectAreaAbbreviation, co.courseNbr").
-                            setLong("sessionId",session.getUniqueId().longValue()).
-                            setParameterList("subjects", subjectIds, LongType.INSTANCE).
-                            setFetchSize(1000).list();
                 }
                 
-                if (!"none".equals(parameters.getProperty("tmtbl.export.exam.type", "all"))) {
-                    info("Loading exams...");
-                    List<Exam> allExams = getHibSession().createQuery(
-                            "select x from Exam x left join fetch x.owners o " +
-                            "where x.session.uniqueId=:sessionId"+
-                            ("midterm".equals(parameters.getProperty("tmtbl.export.exam.type", "all"))?" and x.examType.type="+ExamType.sExamTypeMidterm:"")+
-                            ("final".equals(parameters.getProperty("tmtbl.export.exam.type", "all"))?" and x.examType.type="+ExamType.sExamTypeFinal:"")
-                            ).
-                            setLong("sessionId",session.getUniqueId().longValue()).
-                            setFetchSize(1000).list();
+                if (parallel) {
+                	List<Long> chunks = new ArrayList<Long>();
+                	for (Long subjectId: (List<Long>)getHibSession().createQuery(
+                			"select sa.uniqueId from SubjectArea sa where sa.session.uniqueId = :sessionId order by sa.subjectAreaAbbreviation")
+                			.setLong("sessionId", session.getUniqueId()).list()) {
+                		if (subjectIds == null || subjectIds.contains(subjectId)) chunks.add(subjectId);
+                	}
+                	info("Exporting offerings of "+chunks.size()+" subject areas ...");
+                	exportChunks(this, root, session, parameters, chunks);
+                } else {
+                    info("Loading offerings...");
+                    List<InstructionalOffering> offerings = loadOfferings(session, subjectIds);
                     
-                    iExams = new Hashtable<Long, TreeSet<Exam>>();
-                    info("Checking exams...");
-                    for (Exam exam : allExams) {
-                        for (ExamOwner owner : exam.getOwners()) {
-                            Long offeringId = owner.getCourse().getInstructionalOffering().getUniqueId();
-                            TreeSet<Exam> exams = iExams.get(offeringId);
-                            if (exams==null) {
-                                exams = new TreeSet<Exam>();
-                                iExams.put(offeringId,exams); 
-                            }
-                            exams.add(exam);
-                        }
+                    if (!"none".equals(parameters.getProperty("tmtbl.export.exam.type", "all"))) {
+                        info("Loading exams...");
+                        loadExams(session, parameters, null);
+                    }
+                    
+                    info("Exporting "+offerings.size()+" offerings ...");
+                    for (InstructionalOffering io : offerings) {
+                        exportInstructionalOffering(root, io, session);
+                        flushRecords(root);
                     }
-                }
-            
-                
-                info("Exporting "+offerings.size()+" offerings ...");
-                for (InstructionalOffering io : offerings) {
-                    exportInstructionalOffering(root, io, session);
                 }
             }
             
@@ -218,6 +180,136 @@ public class CourseOfferingExport extends BaseExport {
         }
     }
     
+    /**
+     * A new instance of the same class is used for each subject area
+     */
+    @Override
+    public ChunkedExport<Long> createChunkExport(org.hibernate.Session hibSession, Log log) throws Exception {
+    	CourseOfferingExport export = getClass().getConstructor().newInstance();
+    	export.setLog(log);
+    	export.iHibSession = hibSession;
+    	return export;
+    }
+    
+    /**
+     * Export offerings of one subject area (offerings are exported with the subject area of their controlling course),
+     * see {@link BaseExport#exportChunks(ChunkedExport, Element, Session, Properties, List)}.
+     */
+    @Override
+    public void exportChunk(Element parent, Session session, Properties parameters, Long subjectAreaId) throws Exception {
+    	iExportGroupInfos = ApplicationProperty.DataExchangeIncludeStudentGroups.isTrue();
+    	iExportAssignments= "true".equals(parameters.getProperty("tmtbl.export.timetable","true"));
+    	SolverParameterDef maxRoomsParam = SolverParameterDef.findByNameType(getHibSession(), "Exams.MaxRooms", SolverParameterGroup.SolverType.EXAM);
+    	if (maxRoomsParam != null && maxRoomsParam.getDefault() != null) 
+    		iDefaultMaxNbrRooms = Integer.valueOf(maxRoomsParam.getDefault());
+    	
+    	if (iExportAssignments && ApplicationProperty.DataExchangeIncludeMeetings.isTrue())
+    		loadClassEvents(session, subjectAreaId);
+    	
+    	List<InstructionalOffering> offerings = loadOfferings(session, Collections.singletonList(subjectAreaId));
+    	
+    	if (!"none".equals(parameters.getProperty("tmtbl.export.exam.type", "all")))
+    		loadExams(session, parameters, subjectAreaId);
+    	
+    	for (InstructionalOffering io : offerings)
+    		exportInstructionalOffering(parent, io, session);
+    }
+    
+    /**
+     * Load class events and meeting locations
+     * @param subjectAreaId when set, only events of the offerings controlled by the given subject area are loaded
+     */
+    @SuppressWarnings("unchecked")
+    protected void loadClassEvents(Session session, Long subjectAreaId) {
+    	String offeringFilter = (subjectAreaId == null ? "" :
+    		" and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId in (select co.instructionalOffering.uniqueId from CourseOffering co where co.isControl = true and co.subjectArea.uniqueId = :subjectAreaId)");
+    	iClassEvents = new HashMap<Long, ClassEvent>();
+    	org.hibernate.Query q = getHibSession().createQuery("from ClassEvent e where e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId = :sessionId" + offeringFilter)
+    			.setLong("sessionId", session.getUniqueId());
+    	if (subjectAreaId != null) q.setLong("subjectAreaId", subjectAreaId);
+    	for (ClassEvent e: (List<ClassEvent>)q.list()) {
+    		iClassEvents.put(e.getClazz().getUniqueId(), e);
+    	}
+    	iMeetingLocations = new HashMap<Long, Location>();
+    	q = getHibSession().createQuery("from Location l where l.session.uniqueId = :sessionId" + (subjectAreaId == null ? "" :
+    			" and l.permanentId in (select m.locationPermanentId from ClassEvent e inner join e.meetings m where " +
+    			"e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId = :sessionId" + offeringFilter + ")"))
+    			.setLong("sessionId", session.getUniqueId());
+    	if (subjectAreaId != null) q.setLong("subjectAreaId", subjectAreaId);
+    	for (Location l: (List<Location>)q.list()) {
+    		iMeetingLocations.put(l.getPermanentId(), l);
+    	}
+    }
+    
+    /**
+     * Load instructional offerings, ordered by subject area and course number
+     * @param subjectIds when set, only offerings with the controlling course of one of the given subject areas are loaded
+     */
+    @SuppressWarnings("unchecked")
+    protected List<InstructionalOffering> loadOfferings(Session session, List<Long> subjectIds) {
+    	if (subjectIds == null) {
+    		return getHibSession().createQuery(
+    				"select distinct io from InstructionalOffering io " +
+    				"inner join fetch io.courseOfferings as co inner join fetch co.subjectArea sa "+
+    				"left join fetch io.instrOfferingConfigs as ioc "+
+    				"left join fetch ioc.schedulingSubparts as ss "+
+    				"left join fetch ss.classes as c "+
+    				"where " +
+    				"io.session.uniqueId=:sessionId "+
+    				"order by sa.subjectAreaAbbreviation, co.courseNbr").
+    				setLong("sessionId",session.getUniqueId().longValue()).
+    				setFetchSize(1000).list();
+    	} else {
+    		return getHibSession().createQuery(
+    				"select distinct io from InstructionalOffering io " +
+    				"inner join fetch io.courseOfferings as co inner join fetch co.subjectArea sa "+
+    				"left join fetch io.instrOfferingConfigs as ioc "+
+    				"left join fetch ioc.schedulingSubparts as ss "+
+    				"left join fetch ss.classes as c "+
+    				"where " +
+    				"io.session.uniqueId=:sessionId "+
+    				"and io.uniqueId in (select x.instructionalOffering.uniqueId from CourseOffering x where x.isControl = true and x.subjectArea.uniqueId in (:subjects)) " +
+    				"order by sa.subjectAreaAbbreviation, co.courseNbr").
+    				setLong("sessionId",session.getUniqueId().longValue()).
+    				setParameterList("subjects", subjectIds, LongType.INSTANCE).
+    				setFetchSize(1000).list();
+    	}
+    }
+    
+    /**
+     * Load examinations and group them by instructional offerings
+     * @param subjectAreaId when set, only exams of the offerings controlled by the given subject area are loaded
+     */
+    @SuppressWarnings("unchecked")
+    protected void loadExams(Session session, Properties parameters, Long subjectAreaId) {
+        org.hibernate.Query q = getHibSession().createQuery(
+                "select x from Exam x left join fetch x.owners o " +
+                "where x.session.uniqueId=:sessionId"+
+                ("midterm".equals(parameters.getProperty("tmtbl.export.exam.type", "all"))?" and x.examType.type="+ExamType.sExamTypeMidterm:"")+
+                ("final".equals(parameters.getProperty("tmtbl.export.exam.type", "all"))?" and x.examType.type="+ExamType.sExamTypeFinal:"")+
+                (subjectAreaId == null ? "" : " and x.uniqueId in (select y.exam.uniqueId from ExamOwner y where y.course.instructionalOffering.uniqueId in " +
+                		"(select co.instructionalOffering.uniqueId from CourseOffering co where co.isControl = true and co.subjectArea.uniqueId = :subjectAreaId))")
+                ).
+                setLong("sessionId",session.getUniqueId().longValue()).
+                setFetchSize(1000);
+        if (subjectAreaId != null) q.setLong("subjectAreaId", subjectAreaId);
+        List<Exam> allExams = q.list();
+        
+        iExams = new Hashtable<Long, TreeSet<Exam>>();
+        info("Checking exams...");
+        for (Exam exam : allExams) {
+            for (ExamOwner owner : exam.getOwners()) {
+                Long offeringId = owner.getCourse().getInstructionalOffering().getUniqueId();
+                TreeSet<Exam> exams = iExams.get(offeringId);
+                if (exams==null) {
+                    exams = new TreeSet<Exam>();
+                    iExams.put(offeringId,exams); 
+                }
+                exams.add(exam);
+            }
+        }
+    }
+    
     protected void exportInstructionalOffering(Element offeringsElement, InstructionalOffering offering, Session session) {
         Element offeringElement = offeringsElement.addElement("offering");
         offeringElement.addAttribute("id", (offering.getExternalUniqueId()!=null?offering.getExternalUniqueId():offering.getUniqueId().toString()));
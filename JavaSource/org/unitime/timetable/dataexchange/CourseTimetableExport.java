@@ -92,6 +92,7 @@ public class CourseTimetableExport extends CourseOfferingExport {
             			}
             		}
             	}
+            	flushRecords(root);
             }
             
             commitTransaction();
@@ -150,6 +150,8 @@ public class CurriculaExport extends BaseExport{
     					}
     				}
     			}
+    			
+    			flushRecords(root);
     		}
     		
             commitTransaction();
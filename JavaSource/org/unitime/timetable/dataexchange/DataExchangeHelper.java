@@ -19,12 +19,17 @@
 */
 package org.unitime.timetable.dataexchange;
 
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Hashtable;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dom4j.Document;
+import org.dom4j.io.SAXReader;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.Class_;
 import org.unitime.timetable.model.Session;
 import org.unitime.timetable.model.TimetableManager;
@@ -270,12 +275,63 @@ public class DataExchangeHelper {
         imp.loadXml(document.getRootElement());
     }
     
+    public static void importXml(XmlRecordReader reader, String userId, Log log) throws Exception {
+        BaseImport imp = createImportBase(reader.getRootElement().getName());
+        imp.setLog(log);
+        if (userId != null)
+        	imp.setManager(TimetableManager.findByExternalId(userId));
+        imp.loadXml(reader);
+    }
+    
+    /**
+     * Import the given XML file, using the streaming reader when unitime.data.exchange.streaming is enabled
+     */
+    public static void importXml(File file, String userId, Log log) throws Exception {
+    	if (ApplicationProperty.DataExchangeStreaming.isTrue()) {
+    		XmlRecordReader reader = new XmlRecordReader(file);
+    		try {
+    			importXml(reader, userId, log);
+    		} finally {
+    			reader.close();
+    		}
+    	} else {
+    		importDocument((new SAXReader()).read(file), userId, log);
+    	}
+    }
+    
+    /**
+     * Import the given XML input, using the streaming reader when unitime.data.exchange.streaming is enabled
+     * (the input is copied into a temporary file first)
+     */
+    public static void importXml(InputStream input, String userId, Log log) throws Exception {
+    	if (ApplicationProperty.DataExchangeStreaming.isTrue()) {
+    		XmlRecordReader reader = new XmlRecordReader(input);
+    		try {
+    			importXml(reader, userId, log);
+    		} finally {
+    			reader.close();
+    		}
+    	} else {
+    		importDocument((new SAXReader()).read(input), userId, log);
+    	}
+    }
+    
     public static Document exportDocument(String rootName, Session session, Properties parameters, Log log) throws Exception {
         BaseExport exp = createExportBase(rootName);
         exp.setLog(log);
         return exp.saveXml(session, parameters);
     }
     
+    /**
+     * Export into the given output stream, the records are written out as they are exported when
+     * unitime.data.exchange.streaming.export is enabled
+     */
+    public static void exportXml(String rootName, Session session, Properties parameters, Log log, OutputStream out) throws Exception {
+        BaseExport exp = createExportBase(rootName);
+        exp.setLog(log);
+        exp.saveXml(out, session, parameters);
+    }
+    
     public interface LogWriter {
     	public void println(String message);
     }
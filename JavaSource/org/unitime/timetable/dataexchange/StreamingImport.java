@@ -0,0 +1,37 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.dataexchange;
+
+import org.dom4j.Element;
+
+/**
+ * Import that can process the records of the XML file one at a time, as they are read by the {@link XmlRecordReader}.
+ * Used instead of {@link BaseImport#loadXml(Element)} when unitime.data.exchange.streaming is enabled.
+ *
+ * @author Tomas Muller
+ */
+public interface StreamingImport {
+	/**
+	 * Import the given records
+	 * @param rootElement root element (only its attributes are available when streaming)
+	 * @param records child elements of the root element (students, offerings, etc.), read as they are iterated
+	 */
+	public void loadXml(Element rootElement, Iterable<Element> records) throws Exception;
+}
@@ -19,7 +19,6 @@
 */
 package org.unitime.timetable.dataexchange;
 
-import java.util.List;
 import java.util.Properties;
 
 import org.dom4j.Document;
@@ -46,9 +45,9 @@ public class StudentEnrollmentExport extends BaseExport {
 	        root.addAttribute("term", session.getAcademicTerm());
 	        document.addDocType("studentEnrollments", "-//UniTime//UniTime Student Enrollments DTD/EN", "http://www.unitime.org/interface/StudentEnrollment.dtd");
 	        
-	        for (Student student: (List<Student>)getHibSession().createQuery(
+	        for (Student student: this.<Student>scroll(getHibSession().createQuery(
 	        		"select s from Student s where s.session.uniqueId = :sessionId")
-	        		.setLong("sessionId", session.getUniqueId()).list()) {
+	        		.setLong("sessionId", session.getUniqueId()), root)) {
 	        	if (student.getClassEnrollments().isEmpty()) continue;
 	        	Element studentEl = root.addElement("student");
 	        	studentEl.addAttribute("externalId",
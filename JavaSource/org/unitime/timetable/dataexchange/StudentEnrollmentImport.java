@@ -49,7 +49,7 @@ import org.unitime.timetable.test.UpdateExamConflicts;
 /**
  * @author Tomas Muller, Stephanie Schluttenhofer
  */
-public class StudentEnrollmentImport extends BaseImport {
+public class StudentEnrollmentImport extends BaseImport implements StreamingImport {
 
 	public StudentEnrollmentImport() {
 		super();
@@ -57,6 +57,11 @@ public class StudentEnrollmentImport extends BaseImport {
 
 	@Override
 	public void loadXml(Element rootElement) throws Exception {
+		loadXml(rootElement, rootElement.elements());
+	}
+
+	@Override
+	public void loadXml(Element rootElement, Iterable<Element> records) throws Exception {
 		boolean trimLeadingZerosFromExternalId = ApplicationProperty.DataExchangeTrimLeadingZerosFromExternalIds.isTrue();
 
         if (!rootElement.getName().equalsIgnoreCase("studentEnrollments"))
@@ -145,8 +150,8 @@ public class StudentEnrollmentImport extends BaseImport {
 	        
 	        info("Importing enrollments...");
 	        Date ts = new Date();
-	        for (Iterator i = rootElement.elementIterator("student"); i.hasNext(); ) {
-	            Element studentElement = (Element) i.next();
+	        for (Element studentElement: records(records, "students")) {
+	            if (!"student".equals(studentElement.getName())) continue;
 	            
 	            String externalId = studentElement.attributeValue("externalId");
 	            if (externalId == null) continue;
@@ -376,6 +381,7 @@ public class StudentEnrollmentImport extends BaseImport {
             	} else {
             		getHibSession().update(student);
             	}
+            	evictOnFlush(student);
             	
             	if (fixCourseDemands) {
             		// removed unused course demands (only when not in the registration mode)
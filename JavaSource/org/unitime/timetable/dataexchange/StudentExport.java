@@ -22,7 +22,6 @@ package org.unitime.timetable.dataexchange;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
 import java.util.Set;
@@ -54,9 +53,9 @@ public class StudentExport extends BaseExport {
 	        
 	        document.addDocType("students", "-//UniTime//UniTime Students DTD/EN", "http://www.unitime.org/interface/Student.dtd");
 	        
-	        for (Student student: (List<Student>)getHibSession().createQuery(
+	        for (Student student: this.<Student>scroll(getHibSession().createQuery(
 	        		"select s from Student s where s.session.uniqueId = :sessionId")
-	        		.setLong("sessionId", session.getUniqueId()).list()) {
+	        		.setLong("sessionId", session.getUniqueId()), root)) {
 	        	
 	        	Element studentEl = root.addElement("student");
 	        	exportStudent(studentEl, student);
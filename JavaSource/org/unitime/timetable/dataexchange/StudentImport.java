@@ -52,7 +52,7 @@ import org.unitime.timetable.model.StudentSectioningQueue;
 /**
  * @author Tomas Muller, Timothy Almon
  */
-public class StudentImport extends BaseImport {
+public class StudentImport extends BaseImport implements StreamingImport {
 
 	public StudentImport() {
 		super();
@@ -60,6 +60,11 @@ public class StudentImport extends BaseImport {
 
 	@Override
 	public void loadXml(Element rootElement) throws Exception {
+		loadXml(rootElement, rootElement.elements());
+	}
+
+	@Override
+	public void loadXml(Element rootElement, Iterable<Element> records) throws Exception {
 		try {
 			boolean trimLeadingZerosFromExternalId = ApplicationProperty.DataExchangeTrimLeadingZerosFromExternalIds.isTrue();
 			
@@ -152,15 +157,14 @@ public class StudentImport extends BaseImport {
 	        
 	        Set<Long> updatedStudents = new HashSet<Long>(); 
 	        
-	        for (Iterator i1 = rootElement.elementIterator(); i1.hasNext(); ) {
-	            Element element = (Element) i1.next();
-
+	        for (Element element: records(records, "students")) {
 	            String externalId = element.attributeValue("externalId");
 	            if (externalId == null) continue;
 	            while (trimLeadingZerosFromExternalId && externalId.startsWith("0")) externalId = externalId.substring(1);
 
-	            importStudent(element, externalId, students, session, updatedStudents,
+	            Student student = importStudent(element, externalId, students, session, updatedStudents,
 	            		abbv2area, code2clasf, code2major, code2minor, code2group, code2accomodation, code2concentration, code2degree, code2program, code2campus);
+	            evictOnFlush(student);
 	        }
 
 	        if (!incremental)
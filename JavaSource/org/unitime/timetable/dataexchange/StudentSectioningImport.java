@@ -81,7 +81,7 @@ import org.unitime.timetable.util.Formats;
  * @author Tomas Muller
  *
  */
-public class StudentSectioningImport extends BaseImport {
+public class StudentSectioningImport extends BaseImport implements StreamingImport {
 	protected static Formats.Format<Date> sDateFormat = Formats.getDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
 	
     public StudentSectioningImport() {}
@@ -99,7 +99,13 @@ public class StudentSectioningImport extends BaseImport {
     	public String toString() { return iText; }
     }
     
+    @Override
     public void loadXml(Element rootElement) {
+    	loadXml(rootElement, rootElement.elements());
+    }
+    
+    @Override
+    public void loadXml(Element rootElement, Iterable<Element> records) {
         try {
             beginTransaction();
             
@@ -116,8 +122,8 @@ public class StudentSectioningImport extends BaseImport {
 	        	mode = EnrollmentMode.UPDATE;
 	        	if ("true".equals(rootElement.attributeValue("keepEnrollments", "false")))
 	        		mode = EnrollmentMode.NOCHANGE;
-	        	mode: for (Iterator i = rootElement.elementIterator("student"); i.hasNext(); ) {
-	        		Element studentElement = (Element)i.next();
+	        	mode: for (Element studentElement: records) {
+	        		if (!"student".equals(studentElement.getName())) continue;
 	        		Element reqCoursesElement = studentElement.element("updateCourseRequests");
 	            	if (reqCoursesElement != null && "true".equals(reqCoursesElement.attributeValue("commit", "true")))
 	            		for (Iterator j = reqCoursesElement.elementIterator("courseOffering"); j.hasNext(); ) {
@@ -273,8 +279,8 @@ public class StudentSectioningImport extends BaseImport {
             
             Set<Long> updatedStudents = new HashSet<Long>();
             
-            for (Iterator i1 = rootElement.elementIterator("student"); i1.hasNext(); ) {
-                Element studentElement = (Element) i1.next();
+            for (Element studentElement: records(records, "students")) {
+            	if (!"student".equals(studentElement.getName())) continue;
                 
 	            String externalId = studentElement.attributeValue("key");
 	            if (externalId == null) continue;
@@ -284,6 +290,7 @@ public class StudentSectioningImport extends BaseImport {
 	            if (cancelElement != null) {
 	            	Student student = students.remove(externalId);
 	            	if (student == null) continue;
+	            	evictOnFlush(student);
 	            	
             		for (Iterator<CourseDemand> i = student.getCourseDemands().iterator(); i.hasNext(); ) {
             			CourseDemand cd = i.next();
@@ -1295,6 +1302,7 @@ public class StudentSectioningImport extends BaseImport {
             	
             	
             	getHibSession().update(student);
+            	evictOnFlush(student);
 	        }
 	            
             info(updatedStudents.size() + " students changed");
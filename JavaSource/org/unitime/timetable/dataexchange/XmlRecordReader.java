@@ -0,0 +1,288 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.dataexchange;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.DocumentFactory;
+import org.dom4j.Element;
+import org.dom4j.QName;
+import org.dom4j.io.SAXReader;
+import org.unitime.timetable.ApplicationProperties;
+
+/**
+ * Streaming (StAX) reader of an XML import file. The root element is read with its attributes only, the records
+ * (the child elements of the root, e.g., students or offerings) are then read one at a time as the reader is iterated,
+ * each record being a complete dom4j element (with all its sub-elements) that is attached to the root element while
+ * it is being processed. The reader can be iterated more than once (each iteration reads the file again), an input
+ * stream is copied into a temporary file first.
+ *
+ * @author Tomas Muller
+ */
+public class XmlRecordReader implements Iterable<Element>, Closeable {
+	private DocumentFactory iFactory = DocumentFactory.getInstance();
+	private File iFile;
+	private boolean iTemporary = false;
+	private Element iRoot = null;
+	private List<RecordIterator> iIterators = new ArrayList<RecordIterator>();
+
+	public XmlRecordReader(File file) {
+		iFile = file;
+	}
+
+	public XmlRecordReader(InputStream input) throws IOException {
+		iFile = ApplicationProperties.getTempFile("import", "xml");
+		iTemporary = true;
+		OutputStream out = new FileOutputStream(iFile);
+		try {
+			byte[] buffer = new byte[65536];
+			int read;
+			while ((read = input.read(buffer)) >= 0)
+				out.write(buffer, 0, read);
+		} finally {
+			out.close();
+		}
+	}
+
+	public File getFile() { return iFile; }
+
+	protected XMLStreamReader createReader(InputStream input) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		// keep CDATA sections as they are (same as the SAXReader), only supported by the JDK implementation
+		if (factory.isPropertySupported("http://java.sun.com/xml/stream/properties/report-cdata-event"))
+			factory.setProperty("http://java.sun.com/xml/stream/properties/report-cdata-event", true);
+		return factory.createXMLStreamReader(input);
+	}
+
+	/**
+	 * Root element of the file, with its attributes but without any content
+	 */
+	public Element getRootElement() throws IOException, DocumentException {
+		if (iRoot == null) {
+			InputStream input = new BufferedInputStream(new FileInputStream(iFile));
+			try {
+				XMLStreamReader reader = createReader(input);
+				try {
+					while (reader.hasNext()) {
+						if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+							Document document = iFactory.createDocument();
+							iRoot = createElement(reader);
+							document.setRootElement(iRoot);
+							break;
+						}
+					}
+				} finally {
+					reader.close();
+				}
+			} catch (XMLStreamException e) {
+				throw new DocumentException(e.getMessage(), e);
+			} finally {
+				input.close();
+			}
+			if (iRoot == null)
+				throw new DocumentException("No root element found.");
+		}
+		return iRoot;
+	}
+
+	/**
+	 * The whole file parsed into a document, used by the imports that do not support streaming
+	 */
+	public Document getDocument() throws DocumentException {
+		return (new SAXReader()).read(iFile);
+	}
+
+	protected QName createQName(String localName, String prefix, String namespaceURI) {
+		if (namespaceURI == null || namespaceURI.isEmpty())
+			return iFactory.createQName(localName);
+		return iFactory.createQName(localName, prefix == null ? "" : prefix, namespaceURI);
+	}
+
+	protected Element createElement(XMLStreamReader reader) {
+		Element element = iFactory.createElement(createQName(reader.getLocalName(), reader.getPrefix(), reader.getNamespaceURI()));
+		for (int i = 0; i < reader.getNamespaceCount(); i++)
+			element.addNamespace(reader.getNamespacePrefix(i) == null ? "" : reader.getNamespacePrefix(i), reader.getNamespaceURI(i));
+		for (int i = 0; i < reader.getAttributeCount(); i++)
+			element.addAttribute(createQName(reader.getAttributeLocalName(i), reader.getAttributePrefix(i), reader.getAttributeNamespace(i)), reader.getAttributeValue(i));
+		return element;
+	}
+
+	/**
+	 * Read the element at the current position of the reader, including all its content.
+	 * The reader is left at the end of the element.
+	 */
+	protected Element readElement(XMLStreamReader reader) throws XMLStreamException {
+		Element element = createElement(reader);
+		Element current = element;
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				Element child = createElement(reader);
+				current.add(child);
+				current = child;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				if (current == element) return element;
+				current = current.getParent();
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				current.addText(reader.getText());
+				break;
+			case XMLStreamConstants.CDATA:
+				current.addCDATA(reader.getText());
+				break;
+			case XMLStreamConstants.COMMENT:
+				current.addComment(reader.getText());
+				break;
+			}
+		}
+		throw new XMLStreamException("Unexpected end of document while reading element " + element.getName() + ".");
+	}
+
+	/**
+	 * Iterate over the records (child elements of the root element), the file is read as the iterator is used.
+	 * The returned element stays attached to the root element until the next record is read.
+	 */
+	@Override
+	public Iterator<Element> iterator() {
+		try {
+			RecordIterator iterator = new RecordIterator(getRootElement());
+			iIterators.add(iterator);
+			return iterator;
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to read " + iFile + ": " + e.getMessage(), e);
+		} catch (DocumentException e) {
+			throw new RuntimeException("Failed to read " + iFile + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Close all iterators, delete the temporary file (if the reader was created from an input stream)
+	 */
+	@Override
+	public void close() {
+		for (RecordIterator iterator: iIterators)
+			iterator.close();
+		iIterators.clear();
+		if (iTemporary && iFile.exists())
+			iFile.delete();
+	}
+
+	private class RecordIterator implements Iterator<Element> {
+		private Element iParent;
+		private InputStream iInput;
+		private XMLStreamReader iReader;
+		private Element iNext = null, iLast = null;
+
+		RecordIterator(Element root) throws IOException, DocumentException {
+			iParent = root;
+			iInput = new BufferedInputStream(new FileInputStream(iFile), 65536);
+			try {
+				iReader = createReader(iInput);
+				while (iReader.hasNext())
+					if (iReader.next() == XMLStreamConstants.START_ELEMENT) break;
+			} catch (XMLStreamException e) {
+				close();
+				throw new DocumentException(e.getMessage(), e);
+			}
+		}
+
+		protected Element readNext() throws XMLStreamException {
+			while (iReader != null && iReader.hasNext()) {
+				switch (iReader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					return readElement(iReader);
+				case XMLStreamConstants.END_ELEMENT:
+				case XMLStreamConstants.END_DOCUMENT:
+					close();
+					return null;
+				}
+			}
+			close();
+			return null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (iNext == null && iReader != null) {
+				try {
+					iNext = readNext();
+				} catch (XMLStreamException e) {
+					close();
+					throw new RuntimeException("Failed to read " + iFile + ": " + e.getMessage(), e);
+				}
+			}
+			return iNext != null;
+		}
+
+		@Override
+		public Element next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			if (iLast != null && iLast.getParent() == iParent) iParent.remove(iLast);
+			iParent.add(iNext);
+			iLast = iNext; iNext = null;
+			return iLast;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		void close() {
+			if (iLast != null && iLast.getParent() == iParent) {
+				iParent.remove(iLast);
+				iLast = null;
+			}
+			if (iReader != null) {
+				try { iReader.close(); } catch (XMLStreamException e) {}
+				iReader = null;
+			}
+			if (iInput != null) {
+				try { iInput.close(); } catch (IOException e) {}
+				iInput = null;
+			}
+		}
+	}
+}
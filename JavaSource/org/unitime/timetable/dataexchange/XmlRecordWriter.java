@@ -0,0 +1,120 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.dataexchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+import org.dom4j.Document;
+import org.dom4j.Element;
+import org.dom4j.io.OutputFormat;
+import org.dom4j.io.XMLWriter;
+
+/**
+ * Streaming counterpart of writing an exported document with the {@link XMLWriter}: the root element is written
+ * as soon as the first records (child elements of the root, e.g., students or offerings) are completed, the records
+ * are then written out and removed from the document as they are completed. The output is the same as when the whole
+ * document is written at once (using the pretty print format).
+ *
+ * @author Tomas Muller
+ */
+public class XmlRecordWriter {
+	private Writer iWriter;
+	private Element iRoot = null;
+	private int iCount = 0;
+
+	public XmlRecordWriter(OutputStream out) throws IOException {
+		iWriter = new Writer(out, OutputFormat.createPrettyPrint());
+	}
+
+	/**
+	 * Is the root element written already
+	 */
+	public boolean isOpen() { return iRoot != null; }
+
+	/**
+	 * Number of records written so far
+	 */
+	public int getCount() { return iCount; }
+
+	/**
+	 * Write out the XML declaration, the document type, and the start of the root element (with all its attributes)
+	 */
+	protected void open(Element root) throws IOException {
+		iWriter.writeHeader(root.getDocument());
+		iWriter.writeOpen(root);
+		iWriter.setIndentLevel(1);
+		iRoot = root;
+	}
+
+	/**
+	 * Write out all the child elements of the given root element and remove them from the document
+	 */
+	public void write(Element root) throws IOException {
+		if (iRoot == null)
+			open(root);
+		for (Element record: new ArrayList<Element>(root.elements())) {
+			iWriter.writeRecord(record);
+			root.remove(record);
+			iCount ++;
+		}
+		iWriter.flush();
+	}
+
+	/**
+	 * Write out the rest of the document: the whole document if no record has been written yet,
+	 * the remaining records and the end of the root element otherwise
+	 */
+	public void close(Document document) throws IOException {
+		if (iRoot == null) {
+			iWriter.write(document);
+		} else {
+			write(iRoot);
+			iWriter.setIndentLevel(0);
+			iWriter.writeRecordClose(iRoot);
+		}
+		iWriter.flush();
+	}
+
+	private static class Writer extends XMLWriter {
+		Writer(OutputStream out, OutputFormat format) throws IOException {
+			super(out, format);
+		}
+
+		void writeHeader(Document document) throws IOException {
+			writeDeclaration();
+			if (document != null && document.getDocType() != null)
+				writeDocType(document.getDocType());
+			writePrintln();
+		}
+
+		void writeRecord(Element element) throws IOException {
+			writeElement(element);
+		}
+
+		void writeRecordClose(Element element) throws IOException {
+			writePrintln();
+			indent();
+			writeClose(element);
+			writePrintln();
+		}
+	}
+}
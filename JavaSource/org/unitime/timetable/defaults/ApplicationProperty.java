@@ -115,6 +115,12 @@ public enum ApplicationProperty {
 	@Description("Database: connection logging")
 	ConnectionLogging("connection.logging"),
 
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Database: count executed statements and their execution time for each request (used by the RPC metrics)")
+	@Since(4.8)
+	ConnectionQueryStatistics("connection.queryStatistics"),
+
 	@DefaultValue("timetable")
 	@Description("Database: schema (e.g., timetable)")
 	@ReadOnly
@@ -126,6 +132,12 @@ public enum ApplicationProperty {
 	@ReadOnly
 	DatabaseUniqueIdGenerator("tmtbl.uniqueid.generator"),
 
+	@Type(Integer.class)
+	@DefaultValue("20")
+	@Description("Database: number of unique ids that are pre-allocated from a sequence in a single database round trip (when using a sequence based unique id generator on Oracle or PostgreSQL, 1 to disable)")
+	@Since(4.8)
+	DatabaseUniqueIdBlockSize("tmtbl.uniqueid.blockSize"),
+
 	@Type(Integer.class)
 	@Description("Database: schema version (DO NOT EDIT!)")
 	@ReadOnly
@@ -140,6 +152,13 @@ public enum ApplicationProperty {
 	@Description("All Pages: default locale (e.g., en for English)")
 	Locale("unitime.locale"),
 
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("All Pages: precompile localized messages (an immutable table of messages is created for each locale when first used), set to false to resolve the messages on each call")
+	@Since(4.8)
+	@ReadOnly
+	LocalizationPrecompiled("unitime.localization.precompiled"),
+
 	@Description("Configuration: data folder (defaults to Tomcat/data/unitime)")
 	DataDir("unitime.data.dir"),
 
@@ -569,6 +588,30 @@ public enum ApplicationProperty {
 	@Description("Student Enrollment Import: update examination student conflicts for midterm exams")
 	DataExchangeUpdateStudentConflictsMidterm("tmtbl.data.import.studentEnrl.midtermExam.updateConflicts"),
 
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Data Exchange: read the imported XML files using a streaming (StAX) reader, one record (e.g., a student or an offering) at a time, instead of parsing the whole document first (used by the imports that support it: students, studentEnrollments, request, and offerings)")
+	@Since(4.8)
+	DataExchangeStreaming("unitime.data.exchange.streaming"),
+
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("Data Exchange: when streaming, number of imported records after which the Hibernate session is flushed and the imported records are evicted from it")
+	@Since(4.8)
+	DataExchangeStreamingBatchSize("unitime.data.exchange.streaming.batchSize"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Data Exchange: write the exported XML files as the records (e.g., students or offerings) are exported instead of creating the whole document first (used by the exports that support it: offerings, exams, timetable, curricula, studentEnrollments, and students)")
+	@Since(4.8)
+	DataExchangeStreamingExport("unitime.data.exchange.streaming.export"),
+
+	@Type(Integer.class)
+	@DefaultValue("4")
+	@Description("Data Exchange: number of threads used to export the course offerings (one subject area at a time) when unitime.data.exchange.streaming.export is enabled (1 means no parallel export)")
+	@Since(4.8)
+	DataExchangeExportThreads("unitime.data.exchange.export.threads"),
+
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("Time Patterns: set to true if used time patterns are to be editable during the initial data load (a session status that allows for roll forward)")
@@ -627,6 +670,18 @@ public enum ApplicationProperty {
 	@Description("Student Scheduling Dashboard: filter credits using database query")
 	OnlineSchedulingDashboardCreditFilterUseDatabase("unitime.enrollment.suggestions.creditFilterUseDatabase"),
 
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Student Scheduling Dashboard: compute the student filter facets (areas, classifications, groups, accommodations, statuses, etc.) and the matching students using an in-memory index of student attributes instead of database queries (when the filter allows it)")
+	@Since(4.8)
+	OnlineSchedulingDashboardFacetIndex("unitime.enrollment.filter.facetIndex"),
+	
+	@Type(Integer.class)
+	@DefaultValue("900")
+	@Description("Student Scheduling Dashboard: time in seconds after which the in-memory index of student attributes is reloaded (to include changes made outside of the online student scheduling, e.g., by a data import)")
+	@Since(4.8)
+	OnlineSchedulingDashboardFacetIndexTimeToLive("unitime.enrollment.filter.facetIndex.ttl"),
+
 	@Type(Boolean.class)
 	@DefaultValue("true")
 	@Description("Online Student Scheduling: enable student email confirmations")
@@ -669,6 +724,24 @@ public enum ApplicationProperty {
 
 	@Description("Online Student Scheduling Log: besides of the database, also log the actions in the given file (if set)")
 	OnlineSchedulingLogFile("unitime.sectioning.log.file"),
+
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("Online Student Scheduling Log: how often (in seconds) are the log records persisted")
+	@Since(4.8)
+	OnlineSchedulingLogFlushInterval("unitime.sectioning.log.flushInterval"),
+
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Online Student Scheduling Log: persist the log records as soon as there is the given number of them in memory, also the number of records saved in one batch")
+	@Since(4.8)
+	OnlineSchedulingLogFlushSize("unitime.sectioning.log.flushSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("Online Student Scheduling Log: when the limit on the number of records held in memory is reached, wait up to the given number of milliseconds for the record to be accepted (0 = drop the record, -1 = wait as long as needed)")
+	@Since(4.8)
+	OnlineSchedulingLogBlockTimeout("unitime.sectioning.log.blockTimeout"),
 	
 	@Type(Boolean.class)
 	@DefaultValue("true")
@@ -1623,12 +1696,59 @@ public enum ApplicationProperty {
 	@DefaultValue("5000")
 	@Description("Query Log: limit on the number of queries held in memory (before persisted)")
 	QueryLogLimit("unitime.query.log.limit"),
+
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("Query Log: maximal number of queries persisted at once (a write is triggered when this many queries are waiting)")
+	@Since(4.8)
+	QueryLogBatchSize("unitime.query.log.batchSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("Query Log: maximal time in seconds a query waits before it is persisted")
+	@Since(4.8)
+	QueryLogLinger("unitime.query.log.linger"),
+
+	@Type(String.class)
+	@Description("Query Log: sampling of high-volume URIs, comma separated list of uri=rate (e.g., sectioning.gwt: ListEnrollments=0.1), an URI ending with * matches all URIs with the given prefix; queries that failed with an exception are always logged")
+	@Since(4.8)
+	QueryLogSampling("unitime.query.log.sampling"),
 	
 	@Type(Boolean.class)
 	@DefaultValue("true")
 	@Description("Query Log: record request object/parameters as JSON message")
 	QueryLogJSON("unitime.query.log.json"),
 
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("RPC Metrics: collect per-command metrics of the RPC calls (latency percentiles, calls in flight, error rates, database queries), available through the /api/rpc-metrics connector")
+	@Since(4.8)
+	RpcMetricsEnabled("unitime.rpc.metrics.enabled"),
+
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("RPC Metrics: register per-command metrics of the RPC calls as MBeans (org.unitime:type=RPC)")
+	@Since(4.8)
+	RpcMetricsJMX("unitime.rpc.metrics.jmx"),
+
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Permissions: cache permission decisions (per request and per user), the decisions are dropped when a role, a status, a department, or an academic session is changed; hit rates are available through an MBean (org.unitime:type=Permissions)")
+	@Since(4.8)
+	PermissionCacheEnabled("unitime.permissions.cache.enabled"),
+
+	@Type(Integer.class)
+	@DefaultValue("10")
+	@Description("Permissions: time to live of the per-user permission decision cache in seconds (0 to only cache the decisions within a request)")
+	@Since(4.8)
+	PermissionCacheTimeToLive("unitime.permissions.cache.ttl"),
+
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Permissions: maximal number of permission decisions cached for a user")
+	@Since(4.8)
+	PermissionCacheMaxEntries("unitime.permissions.cache.maxEntries"),
+
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("Classes: if there are two or more scheduling subparts in a parent-child relation with the same instructional type (e.g., Lec - Lec a - Lec b stacked underneath), inherit preferences and the date pattern from the parent subpart whenever possible")
@@ -1891,6 +2011,60 @@ public enum ApplicationProperty {
 	@Description("Solver: passivate solution after given number of minutes of inactivity (disable passivation by setting to zero)")
 	SolverPasivationTime("unitime.solver.passivation.time"),
 
+	@Type(Integer.class)
+	@DefaultValue("2")
+	@Description("Solver: number of solvers that can be passivated at the same time (1 means the solvers are passivated one by one)")
+	@Since(4.8)
+	SolverPassivationThreads("unitime.solver.passivation.threads"),
+
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Solver: use compact binary format for solver backups and passivation (instead of XML), existing XML backups can still be restored")
+	@Since(4.8)
+	SolverBackupBinary("unitime.solver.backup.binary"),
+
+	@Type(Integer.class)
+	@DefaultValue("2")
+	@Description("Queue processor: number of queue items (e.g., PDF reports, scripts, data exchange) that can be executed at the same time")
+	@Since(4.8)
+	QueueProcessorThreads("unitime.queue.threads"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Queue processor: persist waiting queue items in the data folder so that they are executed after a restart")
+	@Since(4.8)
+	QueueProcessorPersistent("unitime.queue.persistent"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Queue processor: send new queue items to the least loaded server in the cluster (only items that do not depend on a local solver)")
+	@Since(4.8)
+	QueueProcessorDistribute("unitime.queue.distribute"),
+
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Solver: store solution infos (and the related blob files) in a compact binary format instead of gzipped XML; existing XML blob files are converted when read")
+	@Since(4.8)
+	SolverInfoBinary("unitime.solverInfo.binary"),
+
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Solver: maximal number of decoded solution infos that are kept in memory (least recently used infos are removed first)")
+	@Since(4.8)
+	SolverInfoCacheSize("unitime.solverInfo.cache.size"),
+
+	@Type(Integer.class)
+	@DefaultValue("10")
+	@Description("Solver: time in minutes after which a decoded solution info that has not been used is removed from the cache")
+	@Since(4.8)
+	SolverInfoCacheTimeToLive("unitime.solverInfo.cache.ttl"),
+
+	@Type(Integer.class)
+	@DefaultValue("4")
+	@Description("Course Timetabling Solver: number of threads retrieving room and instructor availabilities (from the room availability service) in the background while the problem is being loaded, 0 to retrieve them sequentially")
+	@Since(4.8)
+	SolverLoadAvailabilityThreads("unitime.solver.load.availabilityThreads"),
+
 	@Type(Integer.class)
 	@DefaultValue("300")
 	@Description("Online Student Scheduling: sectioning queue load interval in seconds")
@@ -1970,6 +2144,18 @@ public enum ApplicationProperty {
 	@Description("Message Log: limit on the number of records held in memory (before persisted)")
 	MessageLogLimit("unitime.message.log.limit"),
 
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("Message Log: maximal number of records persisted at once (a write is triggered when this many records are waiting)")
+	@Since(4.8)
+	MessageLogBatchSize("unitime.message.log.batchSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("Message Log: maximal time in seconds a record waits before it is persisted")
+	@Since(4.8)
+	MessageLogLinger("unitime.message.log.linger"),
+
 	@Type(Integer.class)
 	@DefaultValue("180")
 	@Description("Message Log: message log cleanup interval in minutes")
@@ -2025,6 +2211,42 @@ public enum ApplicationProperty {
 	@Description("PDF Font: cache fonts in memory")
 	PdfFontCache("unitime.pdf.fontcache"),
 
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Export: use the streaming XLSX writer instead of the XLS workbook for all the spreadsheet exports (the rows are written out as they are printed, only a window of the last rows is kept in memory)")
+	@Since(4.8)
+	ExportXLSXStreaming("unitime.export.xlsx.streaming"),
+
+	@Type(Boolean.class)
+	@Description("Export: use the streaming XLSX writer for the exporter % (e.g., events.xls, meetings.xls, rooms.xls, hql-report.xls, or reports for the XLS reports), defaults to unitime.export.xlsx.streaming")
+	@Parameter("exporter reference")
+	@Since(4.8)
+	ExportXLSXStreamingExporter("unitime.export.xlsx.streaming.%"),
+
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("Export: number of the last rows that the streaming XLSX writer keeps in memory (column widths are estimated from the rows in the first window)")
+	@Since(4.8)
+	ExportXLSXWindow("unitime.export.xlsx.window"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Export: stream the PDF table exports (the table is written out page by page as it is printed instead of at the end of the export)")
+	@Since(4.8)
+	ExportPDFStreaming("unitime.export.pdf.streaming"),
+
+	@Type(Boolean.class)
+	@Description("Export: stream the PDF table export % (e.g., events.pdf, meetings.pdf, rooms.pdf), defaults to unitime.export.pdf.streaming")
+	@Parameter("exporter reference")
+	@Since(4.8)
+	ExportPDFStreamingExporter("unitime.export.pdf.streaming.%"),
+
+	@Type(Integer.class)
+	@DefaultValue("200")
+	@Description("Export: number of rows of a streamed PDF table that are kept in memory before they are written out (the page size and the column widths are computed from the first chunk)")
+	@Since(4.8)
+	ExportPDFWindow("unitime.export.pdf.window"),
+
 	@Type(Boolean.class)
 	@DefaultValue("true")
 	@Description("Instructional Offerings: enable PDF Worksheet export")
@@ -2219,6 +2441,18 @@ public enum ApplicationProperty {
 	@Description("Academic session backup: semicolon separated list of disallowed not-null relations")
 	SessionBackupDisallowed("unitime.session_backup.disallowed"),
 
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Academic session backup: maximal number of records that are written in one table chunk (a table with more records is written in multiple chunks)")
+	@Since(4.8)
+	SessionBackupChunkSize("unitime.session_backup.chunkSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("4")
+	@Description("Academic session backup: number of worker threads exporting the tables in parallel (each with its own hibernate session), 1 means the tables are exported one by one")
+	@Since(4.8)
+	SessionBackupThreads("unitime.session_backup.threads"),
+
 	@Type(Class.class)
 	@Implements(org.unitime.timetable.backup.SessionRestoreInterface.class)
 	@DefaultValue("org.unitime.timetable.backup.SessionRestore")
@@ -3041,7 +3275,37 @@ public enum ApplicationProperty {
 	@DefaultValue("true")
 	@Description("Online Student Scheduling: automatically reload the online student scheduling server(s) when two clusters are merged together.")
 	OnlineSchedulingReloadAfterMerge("unitime.sectioning.reloadAfterMerge"),
-	
+
+	@Type(Integer.class)
+	@DefaultValue("4")
+	@Description("Online Student Scheduling: number of worker threads used to load the offerings and students when the online student scheduling server is (re)loaded.")
+	@Since(4.8)
+	OnlineSchedulingReloadThreads("unitime.sectioning.reload.threads"),
+
+	@Type(Integer.class)
+	@DefaultValue("500")
+	@Description("Online Student Scheduling: number of offerings or students loaded by a worker thread in one Hibernate session when the online student scheduling server is (re)loaded.")
+	@Since(4.8)
+	OnlineSchedulingReloadChunkSize("unitime.sectioning.reload.chunkSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Online Student Scheduling: maximal number of courses, offerings, students, etc. that are kept in a local near-cache of each distributed cache of the replicated online student scheduling server (0 to disable the near-cache).")
+	@Since(4.8)
+	OnlineSchedulingNearCacheSize("unitime.sectioning.nearCache.size"),
+
+	@Type(Integer.class)
+	@DefaultValue("300")
+	@Description("Online Student Scheduling: time to live of an entry of the near-cache of the replicated online student scheduling server in seconds.")
+	@Since(4.8)
+	OnlineSchedulingNearCacheTimeToLive("unitime.sectioning.nearCache.ttl"),
+
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Online Student Scheduling: use a compact encoding (variable-length numbers, dictionary-encoded strings and week patterns) when the online sectioning model is stored in a replicated or distributed cache. All the nodes of the cluster must use the same version and the same setting; when disabled, the objects are serialized exactly as before.")
+	@Since(4.8)
+	OnlineSchedulingCompactSerialization("unitime.sectioning.serialization.compact"),
+
 	@Type(Boolean.class)
 	@DefaultValue("true")
 	@Description("Wait-Listing: log wait-list changes into the WaitList table.")
@@ -22,6 +22,8 @@ package org.unitime.timetable.export;
 import java.io.IOException;
 import java.util.Enumeration;
 
+import org.unitime.timetable.export.PDFPrinter.A;
+
 /**
  * @author Tomas Muller
  */
@@ -45,4 +47,9 @@ public interface Exporter {
 		public void flush() throws IOException;
 		public void close() throws IOException;
 	}
+	
+	public static interface SpreadsheetPrinter extends Printer {
+		public void printLine(A... fields) throws IOException;
+		public String getFileName(String reference);
+	}
 }
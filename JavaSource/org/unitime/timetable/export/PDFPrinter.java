@@ -32,6 +32,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.regex.Pattern;
 
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.export.Exporter.Printer;
 import org.unitime.timetable.util.Formats.Format;
 import org.unitime.timetable.util.PdfEventHandler;
@@ -53,6 +54,12 @@ import com.lowagie.text.pdf.PdfPTable;
 import com.lowagie.text.pdf.PdfWriter;
 
 /**
+ * Prints a table into a PDF document. By default, the whole table is kept in memory and the document is written out
+ * when the printer is closed, so that the page size and the column widths fit all the rows.
+ * In the streaming mode (see {@link PDFPrinter#isStreaming(String)}), the document is opened once the first chunk of rows
+ * (unitime.export.pdf.window) is printed and the page size and the column widths are computed from these rows; the table is then
+ * written out chunk by chunk (with the header repeated on each page) and the written rows are released.
+ *
  * @author Tomas Muller
  */
 public class PDFPrinter implements Printer {
@@ -63,6 +70,9 @@ public class PDFPrinter implements Printer {
 	private PdfPTable iTable = null;
 	private float[] iMaxWidth = null;
 	private Set<Integer> iHiddenColumns = new HashSet<Integer>();
+	private boolean iStreaming = false;
+	private int iWindow = 0, iNrRows = 0;
+	private Document iDocument = null;
 
 	List<Element> iElements = new ArrayList<Element>();
 	
@@ -71,6 +81,19 @@ public class PDFPrinter implements Printer {
 		iCheckLast = checkLast;
 	}
 	
+	public PDFPrinter(OutputStream output, boolean checkLast, String reference) {
+		this(output, checkLast);
+		iStreaming = isStreaming(reference);
+		iWindow = Math.max(1, ApplicationProperty.ExportPDFWindow.intValue());
+	}
+	
+	/**
+	 * Is the streaming mode enabled for the given exporter (unitime.export.pdf.streaming.[reference], defaults to unitime.export.pdf.streaming)
+	 */
+	public static boolean isStreaming(String reference) {
+		return ApplicationProperty.ExportPDFStreamingExporter.isTrue(reference, ApplicationProperty.ExportPDFStreaming.isTrue());
+	}
+	
 	@Override
 	public String getContentType() {
 		return "application/pdf";
@@ -87,6 +110,7 @@ public class PDFPrinter implements Printer {
 		iMaxWidth = new float[fields.length];
 		iTable.setHeaderRows(1);
 		iTable.setWidthPercentage(100);
+		if (iStreaming) iTable.setComplete(false);
 
 		for (int idx = 0; idx < fields.length; idx++) {
 			if (iHiddenColumns.contains(idx)) continue;
@@ -114,7 +138,7 @@ public class PDFPrinter implements Printer {
 	}
 
 	@Override
-	public void printLine(String... fields) {
+	public void printLine(String... fields) throws IOException {
 		PdfPCellEvent setLineDashEvent = new PdfPCellEvent() {
 			@Override
 			public void cellLayout(PdfPCell cell, Rectangle rect, PdfContentByte[] canvas) {
@@ -151,9 +175,10 @@ public class PDFPrinter implements Printer {
 			iMaxWidth[idx] = Math.max(iMaxWidth[idx], width + (number ? 10 : 0));
 		}
 		iLastLine = fields;
+		linePrinted();
 	}
 	
-	public void printLine(A... fields) {
+	public void printLine(A... fields) throws IOException {
 		PdfPCellEvent setLineDashEvent = new PdfPCellEvent() {
 			@Override
 			public void cellLayout(PdfPCell cell, Rectangle rect, PdfContentByte[] canvas) {
@@ -282,6 +307,30 @@ public class PDFPrinter implements Printer {
 			iTable.addCell(cell);
 		}
 		iLastLine = fields;
+		linePrinted();
+	}
+	
+	protected void linePrinted() throws IOException {
+		if (!iStreaming || ++iNrRows < iWindow) return;
+		try {
+			if (iDocument == null) openDocument();
+			iDocument.add(iTable);
+			iNrRows = 0;
+		} catch (DocumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+	
+	protected void openDocument() throws DocumentException {
+		float width = 0;
+		float[] w = new float[iMaxWidth.length - iHiddenColumns.size()]; int wi = 0;
+		for (int i = 0; i < iMaxWidth.length; i++)
+			if (!iHiddenColumns.contains(i)) { width += 15f + iMaxWidth[i]; w[wi++] = iMaxWidth[i]; }
+		iDocument = new Document(new Rectangle(60f + width, 60f + width * 0.75f), 30f, 30f, 30f, 30f);
+		PdfWriter writer = PdfWriter.getInstance(iDocument, iOutput);
+		writer.setPageEvent(new PdfEventHandler());
+		iDocument.open();
+		iTable.setWidths(w);
 	}
 	
 	@Override
@@ -292,17 +341,10 @@ public class PDFPrinter implements Printer {
 	@Override
 	public void close() throws IOException {
 		try {
-			float width = 0;
-			float[] w = new float[iMaxWidth.length - iHiddenColumns.size()]; int wi = 0;
-			for (int i = 0; i < iMaxWidth.length; i++)
-				if (!iHiddenColumns.contains(i)) { width += 15f + iMaxWidth[i]; w[wi++] = iMaxWidth[i]; }
-			Document document = new Document(new Rectangle(60f + width, 60f + width * 0.75f), 30f, 30f, 30f, 30f);
-			PdfWriter writer = PdfWriter.getInstance(document, iOutput);
-			writer.setPageEvent(new PdfEventHandler());
-			document.open();
-			iTable.setWidths(w);
-			document.add(iTable);
-			document.close();
+			if (iDocument == null) openDocument();
+			iTable.setComplete(true);
+			iDocument.add(iTable);
+			iDocument.close();
 		} catch (DocumentException e) {
 			throw new IOException(e.getMessage(), e);
 		}
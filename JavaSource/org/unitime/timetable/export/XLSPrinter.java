@@ -55,14 +55,14 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.VerticalAlignment;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.unitime.timetable.export.Exporter.Printer;
+import org.unitime.timetable.export.Exporter.SpreadsheetPrinter;
 import org.unitime.timetable.export.PDFPrinter.A;
 import org.unitime.timetable.export.PDFPrinter.F;
 
 /**
  * @author Tomas Muller
  */
-public class XLSPrinter implements Printer {
+public class XLSPrinter implements SpreadsheetPrinter {
 	private static Pattern sNumber = Pattern.compile("[+-]?[0-9]*\\.?[0-9]*[a-z]?");
 	private OutputStream iOutput;
 	private Workbook iWorkbook;
@@ -148,6 +148,11 @@ public class XLSPrinter implements Printer {
 		return "application/vnd.ms-excel";
 	}
 	
+	@Override
+	public String getFileName(String reference) {
+		return reference;
+	}
+	
 	@Override
 	public void hideColumn(int col) {
 		iHiddenColumns.add(col);
@@ -204,6 +209,7 @@ public class XLSPrinter implements Printer {
 		iLastLine = fields;
 	}
 	
+	@Override
 	public void printLine(A... fields) {
 		int cellIdx = 0;
 		Row row = iSheet.createRow(iRowNum++);
@@ -0,0 +1,288 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.export;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.export.Exporter.SpreadsheetPrinter;
+import org.unitime.timetable.export.PDFPrinter.A;
+import org.unitime.timetable.export.PDFPrinter.F;
+import org.unitime.timetable.export.XLSXWriter.Cell;
+import org.unitime.timetable.export.XLSXWriter.Font;
+import org.unitime.timetable.export.XLSXWriter.RichText;
+import org.unitime.timetable.export.XLSXWriter.Row;
+import org.unitime.timetable.export.XLSXWriter.Style;
+
+/**
+ * Streaming counterpart of the {@link XLSPrinter}, producing the same table using the {@link XLSXWriter}: the lines are written
+ * into the output as they are printed, so the memory use does not grow with the number of lines and the output is not
+ * limited to 65,536 rows per sheet (a sheet that reaches the XLSX limit is continued on a new sheet with the same header).
+ * Use {@link XLSXPrinter#createPrinter(OutputStream, boolean, String)} to get the printer that is configured for an exporter.
+ *
+ * @author Tomas Muller
+ */
+public class XLSXPrinter implements SpreadsheetPrinter {
+	private static Pattern sNumber = Pattern.compile("[+-]?[0-9]*\\.?[0-9]*[a-z]?");
+	private static final Color sHeaderBackground = new Color(0x99, 0xCC, 0xFF);
+	private static final Style sHeaderStyle = new Style(new Font(true, false, false, Color.BLACK), HorizontalAlignment.LEFT, true)
+			.withBorderBottom(BorderStyle.THIN).withBackground(sHeaderBackground);
+	private static final Style sPlainStyle = new Style(Font.DEFAULT, HorizontalAlignment.LEFT, true);
+	private static final Style sNumberStyle = new Style(Font.DEFAULT, HorizontalAlignment.RIGHT, false);
+	private XLSXWriter iWriter;
+	private Object[] iLastLine = null;
+	private String[] iHeader = null;
+	private boolean iCheckLast = false;
+	private Set<Integer> iHiddenColumns = new HashSet<Integer>();
+	private int iSheetIndex = -1;
+	private Map<String, Style> iStyles = new HashMap<String, Style>();
+	private Map<String, Font> iFonts = new HashMap<String, Font>();
+
+	public XLSXPrinter(OutputStream output, boolean checkLast) throws IOException {
+		iCheckLast = checkLast;
+		iWriter = new XLSXWriter(output);
+		newSheet();
+	}
+
+	/**
+	 * Is the streaming XLSX printer enabled for the given exporter (unitime.export.xlsx.streaming.[reference], defaults to unitime.export.xlsx.streaming)
+	 */
+	public static boolean isEnabled(String reference) {
+		return ApplicationProperty.ExportXLSXStreamingExporter.isTrue(reference, ApplicationProperty.ExportXLSXStreaming.isTrue());
+	}
+
+	/**
+	 * Create spreadsheet printer for the given exporter: {@link XLSXPrinter} when enabled, {@link XLSPrinter} otherwise
+	 */
+	public static SpreadsheetPrinter createPrinter(OutputStream output, boolean checkLast, String reference) throws IOException {
+		if (isEnabled(reference))
+			return new XLSXPrinter(output, checkLast);
+		else
+			return new XLSPrinter(output, checkLast);
+	}
+
+	public XLSXWriter getWriter() { return iWriter; }
+
+	public int getSheetIndex() { return iSheetIndex; }
+
+	public int getRow() { return iWriter.getRowNum(); }
+
+	public void newSheet() throws IOException {
+		iWriter.createSheet(null);
+		iWriter.setDisplayGridlines(false);
+		iSheetIndex = iWriter.getSheetIndex();
+	}
+
+	@Override
+	public String getContentType() {
+		return XLSXWriter.CONTENT_TYPE;
+	}
+
+	@Override
+	public String getFileName(String reference) {
+		if (reference != null && reference.endsWith(".xls"))
+			return reference + "x";
+		return reference;
+	}
+
+	@Override
+	public void hideColumn(int col) {
+		iHiddenColumns.add(col);
+	}
+
+	protected Row createRow() throws IOException {
+		if (iWriter.getRowNum() >= XLSXWriter.MAX_ROWS) {
+			newSheet();
+			if (iHeader != null) printHeader(iHeader);
+		}
+		return iWriter.createRow();
+	}
+
+	@Override
+	public void printHeader(String... fields) throws IOException {
+		iHeader = fields;
+		Row headerRow = createRow();
+
+		int cellIdx = 0;
+		int nrLines = 1;
+		for (int idx = 0; idx < fields.length; idx++) {
+			if (iHiddenColumns.contains(idx)) continue;
+			Cell cell = headerRow.createCell(cellIdx++);
+			cell.setCellStyle(sHeaderStyle);
+			cell.setCellValue(fields[idx]);
+			if (fields[idx] != null)
+				nrLines = Math.max(nrLines, fields[idx].split("\n").length);
+		}
+		if (nrLines > 1)
+			headerRow.setHeightInPoints(nrLines * XLSXWriter.DEFAULT_ROW_HEIGHT + 1f);
+	}
+
+	@Override
+	public void printLine(String... fields) throws IOException {
+		int cellIdx = 0;
+		Row row = createRow();
+		int nrLines = 1;
+		for (int idx = 0; idx < fields.length; idx++) {
+			if (iHiddenColumns.contains(idx)) continue;
+			Cell cell = row.createCell(cellIdx ++);
+
+			String f = fields[idx];
+			if (f == null || f.isEmpty() || (iCheckLast && f.equals(iLastLine == null || idx >= iLastLine.length ? null : iLastLine[idx]))) f = "";
+
+			boolean number = sNumber.matcher(f).matches();
+
+			cell.setCellStyle(number ? sNumberStyle : sPlainStyle);
+			if (f.isEmpty()) {
+			} else if (number) {
+				try {
+					cell.setCellValue(Double.valueOf(f));
+				} catch (NumberFormatException e) {
+					cell.setCellValue(f);
+				}
+			} else {
+				nrLines = Math.max(nrLines, f.split("\n").length);
+				cell.setCellValue(f);
+			}
+		}
+		if (nrLines > 1)
+			row.setHeightInPoints(nrLines * XLSXWriter.DEFAULT_ROW_HEIGHT + 1f);
+		iLastLine = fields;
+	}
+
+	@Override
+	public void printLine(A... fields) throws IOException {
+		int cellIdx = 0;
+		Row row = createRow();
+		int nrLines = 1;
+		for (int idx = 0; idx < fields.length; idx++) {
+			if (iHiddenColumns.contains(idx)) continue;
+			Cell cell = row.createCell(cellIdx ++);
+
+			A f = fields[idx];
+			if (f == null || f.isEmpty() || (iCheckLast && f.equals(iLastLine == null || idx >= iLastLine.length ? null : iLastLine[idx]))) {
+				f = new A();
+				if (fields[idx] != null && fields[idx].has(F.NOSEPARATOR))
+					f.set(F.NOSEPARATOR);
+			}
+
+			cell.setCellStyle(getStyle(f, iLastLine == null && !f.has(F.NOSEPARATOR), f.getPattern()));
+
+			if (f.hasBufferedImage())
+				iWriter.addPicture(row.getRowNum(), cellIdx - 1, f.getBufferedImage());
+
+			if (f.isNumber()) {
+				cell.setCellValue(f.getNumber().doubleValue());
+			} else if (f.isDate()) {
+				cell.setCellValue(f.getDate());
+			} else if (f.hasText()) {
+				boolean number = sNumber.matcher(f.getText()).matches();
+				if (number && f.has(F.RIGHT)) {
+					try {
+						cell.setCellValue(Double.valueOf(f.getText()));
+					} catch (NumberFormatException e) {
+						cell.setCellValue(f.getText());
+					}
+				} else {
+					cell.setCellValue(f.getText());
+					nrLines = Math.max(nrLines, f.getText().split("\n").length);
+				}
+			} else if (f.hasChunks()) {
+				RichText text = new RichText();
+				boolean empty = true;
+				for (A g: f.getChunks()) {
+					if (g.hasText()) {
+						Font font = getFont(g.has(F.BOLD), g.has(F.ITALIC), g.has(F.UNDERLINE), g.getColor());
+						if (!empty) text.add(f.has(F.INLINE) ? " " : "\n", font);
+						text.add(g.getText(), font);
+						empty = false;
+					}
+					if (g.hasChunks()) {
+						for (A h: g.getChunks()) {
+							if (h.hasText()) {
+								Font font = getFont(h.has(F.BOLD), h.has(F.ITALIC), h.has(F.UNDERLINE), h.getColor());
+								if (!empty) text.add(" ", font);
+								text.add(h.getText(), font);
+								empty = false;
+							}
+						}
+					}
+				}
+				nrLines = Math.max(nrLines, text.toString().split("\n").length);
+				cell.setCellValue(text);
+			}
+		}
+		if (nrLines > 1)
+			row.setHeightInPoints(Math.max(nrLines * XLSXWriter.DEFAULT_ROW_HEIGHT + 1f, row.getHeightInPoints()));
+		iLastLine = fields;
+	}
+
+	protected Font getFont(boolean bold, boolean italic, boolean underline, Color c) {
+		String fontId = (bold ? "b" : "") + (italic ? "i" : "") + (underline ? "u" : "") + (c == null ? "" : Integer.toHexString(c.getRGB()));
+		Font font = iFonts.get(fontId);
+		if (font == null) {
+			font = new Font(bold, italic, underline, c);
+			iFonts.put(fontId, font);
+		}
+		return font;
+	}
+
+	protected Style getStyle(A f, boolean dashed, String format) {
+		String styleId = (dashed ? "D" : "")
+				+ (f.has(F.BOLD) ? "b" : "") + (f.has(F.ITALIC) ? "i" : "") + (f.has(F.UNDERLINE) ? "u" : "")
+				+ (f.has(F.RIGHT) ? "R" : f.has(F.CENTER) ? "C" : "L")
+				+ (f.hasColor() ? "#" + Integer.toHexString(f.getColor().getRGB()) : "")
+				+ (f.hasBackground() ? "@" + Integer.toHexString(f.getBackground().getRGB()) : "")
+				+ (format == null ? f.isDate() ? "|date" : "" : "|" + format);
+		Style style = iStyles.get(styleId);
+		if (style == null) {
+			style = new Style(getFont(f.has(F.BOLD), f.has(F.ITALIC), f.has(F.UNDERLINE), f.getColor()),
+					f.has(F.RIGHT) ? HorizontalAlignment.RIGHT : f.has(F.CENTER) ? HorizontalAlignment.CENTER : HorizontalAlignment.LEFT, true);
+			if (dashed)
+				style = style.withBorderTop(BorderStyle.DASHED);
+			if (f.hasBackground())
+				style = style.withBackground(f.getBackground());
+			if (format != null)
+				style = style.withFormat(format);
+			else if (f.isDate())
+				style = style.withFormat("m/d/yy");
+			iStyles.put(styleId, style);
+		}
+		return style;
+	}
+
+	@Override
+	public void flush() {
+		iLastLine = null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		iWriter.close();
+	}
+}
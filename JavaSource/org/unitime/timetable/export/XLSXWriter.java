@@ -0,0 +1,892 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.export;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Streaming writer of Office Open XML spreadsheets (XLSX). Unlike the HSSF workbook used by {@link XLSPrinter}, the rows are
+ * written into the output as they are created: only the last few rows of the current sheet (see unitime.export.xlsx.window)
+ * are kept in memory so that they can still be modified (e.g., to add a border or to set the row height). The sheets are written
+ * one after the other, creating a new sheet finishes the previous one.<br>
+ * Cell styles are immutable values ({@link Style}, {@link Font}), they are deduplicated by the writer and written into the
+ * style table only once when the workbook is closed. Column widths that are not set explicitly are estimated from the rows that
+ * are in the window when the sheet data are started (all the rows for sheets that are smaller than the window).<br>
+ * The format is written using the java.util.zip package only, so that no other library is needed.
+ *
+ * @author Tomas Muller
+ */
+public class XLSXWriter {
+	public static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+	public static final int MAX_ROWS = 1048576;
+	public static final float DEFAULT_ROW_HEIGHT = 12.75f;
+	private static final double sMaxColumnWidth = 100.0;
+
+	private ZipOutputStream iZip;
+	private Writer iXml;
+	private int iWindow;
+	private List<String> iSheetNames = new ArrayList<String>();
+
+	private ArrayDeque<Row> iRows = new ArrayDeque<Row>();
+	private int iRowNum = 0;
+	private boolean iSheetOpen = false, iSheetDataStarted = false;
+	private boolean iDisplayGridlines = true;
+	private Map<Integer, Double> iColumnWidths = new TreeMap<Integer, Double>();
+	private Map<Integer, Double> iMinColumnWidths = new TreeMap<Integer, Double>();
+	private List<int[]> iMergedRegions = new ArrayList<int[]>();
+	private List<Picture> iPictures = new ArrayList<Picture>();
+
+	private Map<Style, Integer> iCellXfs = new LinkedHashMap<Style, Integer>();
+	private Map<Font, Integer> iFonts = new LinkedHashMap<Font, Integer>();
+	private Map<Color, Integer> iFills = new LinkedHashMap<Color, Integer>();
+	private Map<String, Integer> iBorders = new LinkedHashMap<String, Integer>();
+	private Map<String, Integer> iNumFmts = new LinkedHashMap<String, Integer>();
+	private Map<String, Integer> iMedia = new HashMap<String, Integer>();
+	private Map<Integer, byte[]> iPendingMedia = new LinkedHashMap<Integer, byte[]>();
+	private int iNrDrawings = 0;
+
+	public XLSXWriter(OutputStream output) {
+		this(output, ApplicationProperty.ExportXLSXWindow.intValue());
+	}
+
+	public XLSXWriter(OutputStream output, int window) {
+		iZip = new ZipOutputStream(output);
+		iXml = new BufferedWriter(new OutputStreamWriter(iZip, StandardCharsets.UTF_8), 65536);
+		iWindow = Math.max(2, window);
+		iFonts.put(Font.DEFAULT, 0);
+		iFills.put(null, 0);
+		iBorders.put(border((Style)null), 0);
+		iCellXfs.put(Style.DEFAULT, 0);
+	}
+
+	/**
+	 * Finish the current sheet (if any) and start a new one
+	 */
+	public void createSheet(String name) throws IOException {
+		if (iSheetOpen) finishSheet();
+		iSheetNames.add("Sheet" + (iSheetNames.size() + 1));
+		setSheetName(iSheetNames.size() - 1, name);
+		iSheetOpen = true;
+		iSheetDataStarted = false;
+		iRowNum = 0;
+		iDisplayGridlines = true;
+		iColumnWidths.clear();
+		iMinColumnWidths.clear();
+		iMergedRegions.clear();
+		iPictures.clear();
+	}
+
+	public int getSheetIndex() { return iSheetNames.size() - 1; }
+
+	public int getNumberOfSheets() { return iSheetNames.size(); }
+
+	public void setSheetName(int index, String name) {
+		if (name == null || name.isEmpty()) return;
+		String n = name.replace('/', '-').replace('\\','-').replace('?', ' ').replace('*', ' ').replace(':', '-').replace('[', '(').replace(']', ')');
+		if (n.length() > 31) n = n.substring(0, 31);
+		for (int i = 0; i < iSheetNames.size(); i++)
+			if (i != index && iSheetNames.get(i).equalsIgnoreCase(n)) return;
+		iSheetNames.set(index, n);
+	}
+
+	public void setDisplayGridlines(boolean displayGridlines) { iDisplayGridlines = displayGridlines; }
+
+	/**
+	 * Set column width (in characters), only possible until the sheet data are started (see {@link XLSXWriter#isSheetDataStarted()})
+	 */
+	public boolean setColumnWidth(int col, double width) {
+		if (iSheetDataStarted) return false;
+		iColumnWidths.put(col, Math.min(255.0, width));
+		return true;
+	}
+
+	public boolean isSheetDataStarted() { return iSheetDataStarted; }
+
+	/**
+	 * Create a new row, the oldest row is written out when the window is full
+	 */
+	public Row createRow() throws IOException {
+		if (!iSheetOpen) createSheet(null);
+		if (iRowNum >= MAX_ROWS)
+			throw new IOException("Too many rows, a sheet can only have " + MAX_ROWS + " rows.");
+		while (iRows.size() >= iWindow) {
+			if (!iSheetDataStarted) startSheetData();
+			writeRow(iRows.removeFirst());
+		}
+		Row row = new Row(iRowNum++);
+		iRows.addLast(row);
+		return row;
+	}
+
+	/**
+	 * Return a row of the current sheet, null if the row has been already written out (or it does not exist)
+	 */
+	public Row getRow(int rowNum) {
+		for (Iterator<Row> i = iRows.descendingIterator(); i.hasNext(); ) {
+			Row row = i.next();
+			if (row.getRowNum() == rowNum) return row;
+			if (row.getRowNum() < rowNum) break;
+		}
+		return null;
+	}
+
+	public int getRowNum() { return iRowNum; }
+
+	public void addMergedRegion(int firstRow, int lastRow, int firstCol, int lastCol) {
+		if (firstRow == lastRow && firstCol == lastCol) return;
+		iMergedRegions.add(new int[] { firstRow, lastRow, firstCol, lastCol });
+	}
+
+	/**
+	 * Place a picture into the top left corner of the given cell; the row height and (if the sheet data have not been started yet)
+	 * the column width are expanded to fit the picture. Identical pictures are only stored once.
+	 */
+	public void addPicture(int rowNum, int col, BufferedImage image) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ImageIO.write(image, "PNG", bytes);
+		byte[] data = bytes.toByteArray();
+		String digest = digest(data);
+		Integer media = iMedia.get(digest);
+		if (media == null) {
+			media = iMedia.size() + 1;
+			iMedia.put(digest, media);
+			iPendingMedia.put(media, data);
+		}
+		iPictures.add(new Picture(rowNum, col, media, image.getWidth(), image.getHeight()));
+		Row row = getRow(rowNum);
+		if (row != null && row.getHeightInPoints() < 0.75f * image.getHeight())
+			row.setHeightInPoints(0.75f * image.getHeight());
+		if (!iSheetDataStarted) {
+			double width = image.getWidth() / 7.0 + 1.0;
+			Double current = iMinColumnWidths.get(col);
+			if (current == null || current < width)
+				iMinColumnWidths.put(col, Math.min(255.0, width));
+		}
+	}
+
+	protected static String digest(byte[] data) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			StringBuilder ret = new StringBuilder();
+			for (byte b: md.digest(data))
+				ret.append(String.format("%02x", b));
+			return ret.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return data.length + ":" + Arrays.hashCode(data);
+		}
+	}
+
+	protected int getStyleIndex(Style style) {
+		if (style == null) return 0;
+		Integer index = iCellXfs.get(style);
+		if (index == null) {
+			index = iCellXfs.size();
+			iCellXfs.put(style, index);
+			getFontIndex(style.getFont());
+			getFillIndex(style.getBackground());
+			getBorderIndex(style);
+			getNumFmtIndex(style.getFormat());
+		}
+		return index;
+	}
+
+	protected int getFontIndex(Font font) {
+		if (font == null) font = Font.DEFAULT;
+		Integer index = iFonts.get(font);
+		if (index == null) {
+			index = iFonts.size();
+			iFonts.put(font, index);
+		}
+		return index;
+	}
+
+	protected int getFillIndex(Color background) {
+		// fill 1 is reserved for the gray125 pattern
+		Integer index = iFills.get(background);
+		if (index == null) {
+			index = iFills.size() + 1;
+			iFills.put(background, index);
+		}
+		return index;
+	}
+
+	protected static String border(Style style) {
+		if (style == null) return "|||";
+		return border(style.getBorderLeft()) + "|" + border(style.getBorderRight()) + "|" + border(style.getBorderTop()) + "|" + border(style.getBorderBottom());
+	}
+
+	protected int getBorderIndex(Style style) {
+		String border = border(style);
+		Integer index = iBorders.get(border);
+		if (index == null) {
+			index = iBorders.size();
+			iBorders.put(border, index);
+		}
+		return index;
+	}
+
+	protected int getNumFmtIndex(String format) {
+		if (format == null || format.isEmpty()) return 0;
+		int builtin = BuiltinFormats.getBuiltinFormat(format);
+		if (builtin >= 0) return builtin;
+		Integer index = iNumFmts.get(format);
+		if (index == null) {
+			index = 164 + iNumFmts.size();
+			iNumFmts.put(format, index);
+		}
+		return index;
+	}
+
+	protected static String border(BorderStyle border) {
+		if (border == null) return "";
+		switch (border) {
+		case THIN: return "thin";
+		case MEDIUM: return "medium";
+		case DASHED: return "dashed";
+		case DOTTED: return "dotted";
+		case THICK: return "thick";
+		case DOUBLE: return "double";
+		case HAIR: return "hair";
+		case MEDIUM_DASHED: return "mediumDashed";
+		case DASH_DOT: return "dashDot";
+		case MEDIUM_DASH_DOT: return "mediumDashDot";
+		case DASH_DOT_DOT: return "dashDotDot";
+		case MEDIUM_DASH_DOT_DOT: return "mediumDashDotDot";
+		case SLANTED_DASH_DOT: return "slantDashDot";
+		default: return "";
+		}
+	}
+
+	protected static String alignment(HorizontalAlignment alignment) {
+		if (alignment == null) return null;
+		switch (alignment) {
+		case LEFT: return "left";
+		case RIGHT: return "right";
+		case CENTER: return "center";
+		case JUSTIFY: return "justify";
+		case FILL: return "fill";
+		case CENTER_SELECTION: return "centerContinuous";
+		case DISTRIBUTED: return "distributed";
+		default: return null;
+		}
+	}
+
+	protected static String rgb(Color color) {
+		return String.format("FF%02X%02X%02X", color.getRed(), color.getGreen(), color.getBlue());
+	}
+
+	protected static String column(int col) {
+		StringBuilder ret = new StringBuilder();
+		for (int c = col + 1; c > 0; c = (c - 1) / 26)
+			ret.insert(0, (char)('A' + (c - 1) % 26));
+		return ret.toString();
+	}
+
+	protected static String cell(int row, int col) {
+		return column(col) + (row + 1);
+	}
+
+	protected static String escape(String text) {
+		StringBuilder ret = new StringBuilder(text.length() + 16);
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			switch (ch) {
+			case '&': ret.append("&amp;"); break;
+			case '<': ret.append("&lt;"); break;
+			case '>': ret.append("&gt;"); break;
+			case '"': ret.append("&quot;"); break;
+			case '\n': case '\t': ret.append(ch); break;
+			case '\r': break;
+			default:
+				if (ch >= 0x20 && ch != 0xFFFE && ch != 0xFFFF) ret.append(ch);
+			}
+		}
+		return ret.toString();
+	}
+
+	protected static String number(double value) {
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) return String.valueOf((long)value);
+		return String.valueOf(value);
+	}
+
+	protected void putEntry(String name) throws IOException {
+		iZip.putNextEntry(new ZipEntry(name));
+	}
+
+	protected void closeEntry() throws IOException {
+		iXml.flush();
+		iZip.closeEntry();
+	}
+
+	protected void startSheetData() throws IOException {
+		iSheetDataStarted = true;
+		Map<Integer, Double> widths = new TreeMap<Integer, Double>(iMinColumnWidths);
+		widths.putAll(iColumnWidths);
+		for (Row row: iRows)
+			for (Cell cell: row.getCells()) {
+				if (cell == null || iColumnWidths.containsKey(cell.getColumnIndex())) continue;
+				double width = cell.getEstimatedWidth();
+				Double current = widths.get(cell.getColumnIndex());
+				if (current == null || current < width)
+					widths.put(cell.getColumnIndex(), Math.max(current == null ? 0.0 : current, Math.min(sMaxColumnWidth, width)));
+			}
+
+		putEntry("xl/worksheets/sheet" + iSheetNames.size() + ".xml");
+		iXml.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		iXml.write("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">");
+		iXml.write("<sheetPr><pageSetUpPr fitToPage=\"1\"/></sheetPr>");
+		iXml.write("<sheetViews><sheetView workbookViewId=\"0\"" + (iDisplayGridlines ? "" : " showGridLines=\"0\"") + (iSheetNames.size() == 1 ? " tabSelected=\"1\"" : "") + "/></sheetViews>");
+		iXml.write("<sheetFormatPr defaultRowHeight=\"" + DEFAULT_ROW_HEIGHT + "\"/>");
+		if (!widths.isEmpty()) {
+			iXml.write("<cols>");
+			for (Map.Entry<Integer, Double> e: widths.entrySet())
+				iXml.write("<col min=\"" + (e.getKey() + 1) + "\" max=\"" + (e.getKey() + 1) + "\" width=\"" + String.format(Locale.US, "%.2f", e.getValue()) + "\" customWidth=\"1\"/>");
+			iXml.write("</cols>");
+		}
+		iXml.write("<sheetData>");
+	}
+
+	protected void writeRow(Row row) throws IOException {
+		iXml.write("<row r=\"" + (row.getRowNum() + 1) + "\"");
+		if (row.getHeightInPoints() > 0f)
+			iXml.write(" ht=\"" + row.getHeightInPoints() + "\" customHeight=\"1\"");
+		iXml.write(">");
+		for (Cell cell: row.getCells()) {
+			if (cell == null) continue;
+			String ref = cell(row.getRowNum(), cell.getColumnIndex());
+			int style = getStyleIndex(cell.getCellStyle());
+			Object value = cell.getValue();
+			iXml.write("<c r=\"" + ref + "\"" + (style == 0 ? "" : " s=\"" + style + "\""));
+			if (value == null) {
+				iXml.write("/>");
+			} else if (value instanceof Number) {
+				iXml.write("><v>" + number(((Number)value).doubleValue()) + "</v></c>");
+			} else if (value instanceof Date) {
+				iXml.write("><v>" + number(DateUtil.getExcelDate((Date)value)) + "</v></c>");
+			} else if (value instanceof Boolean) {
+				iXml.write(" t=\"b\"><v>" + ((Boolean)value ? "1" : "0") + "</v></c>");
+			} else if (value instanceof RichText) {
+				iXml.write(" t=\"inlineStr\"><is>");
+				for (RichText.Run run: ((RichText)value).getRuns()) {
+					iXml.write("<r>");
+					if (run.getFont() != null) {
+						iXml.write("<rPr>");
+						writeFontProperties(run.getFont(), "rFont");
+						iXml.write("</rPr>");
+					}
+					iXml.write("<t xml:space=\"preserve\">" + escape(run.getText()) + "</t></r>");
+				}
+				iXml.write("</is></c>");
+			} else {
+				iXml.write(" t=\"inlineStr\"><is><t xml:space=\"preserve\">" + escape(value.toString()) + "</t></is></c>");
+			}
+		}
+		iXml.write("</row>");
+	}
+
+	protected void writeFontProperties(Font font, String name) throws IOException {
+		if (font.isBold()) iXml.write("<b/>");
+		if (font.isItalic()) iXml.write("<i/>");
+		if (font.isUnderline()) iXml.write("<u/>");
+		iXml.write("<sz val=\"" + number(font.getSize()) + "\"/>");
+		if (font.getColor() != null)
+			iXml.write("<color rgb=\"" + rgb(font.getColor()) + "\"/>");
+		iXml.write("<" + name + " val=\"" + escape(font.getName()) + "\"/>");
+		iXml.write("<family val=\"2\"/>");
+	}
+
+	protected void finishSheet() throws IOException {
+		if (!iSheetDataStarted) startSheetData();
+		while (!iRows.isEmpty())
+			writeRow(iRows.removeFirst());
+		iXml.write("</sheetData>");
+		if (!iMergedRegions.isEmpty()) {
+			iXml.write("<mergeCells count=\"" + iMergedRegions.size() + "\">");
+			for (int[] region: iMergedRegions)
+				iXml.write("<mergeCell ref=\"" + cell(region[0], region[2]) + ":" + cell(region[1], region[3]) + "\"/>");
+			iXml.write("</mergeCells>");
+		}
+		iXml.write("<printOptions horizontalCentered=\"1\"/>");
+		iXml.write("<pageMargins left=\"0.7\" right=\"0.7\" top=\"0.75\" bottom=\"0.75\" header=\"0.3\" footer=\"0.3\"/>");
+		iXml.write("<pageSetup orientation=\"landscape\" fitToWidth=\"1\" fitToHeight=\"1\"/>");
+		if (!iPictures.isEmpty())
+			iXml.write("<drawing r:id=\"rId1\"/>");
+		iXml.write("</worksheet>");
+		closeEntry();
+
+		if (!iPictures.isEmpty()) writeDrawing();
+		iSheetOpen = false;
+		iSheetDataStarted = false;
+	}
+
+	protected void writeDrawing() throws IOException {
+		int drawing = ++iNrDrawings;
+
+		for (Map.Entry<Integer, byte[]> e: iPendingMedia.entrySet()) {
+			putEntry("xl/media/image" + e.getKey() + ".png");
+			iZip.write(e.getValue());
+			iZip.closeEntry();
+		}
+		iPendingMedia.clear();
+
+		putEntry("xl/worksheets/_rels/sheet" + iSheetNames.size() + ".xml.rels");
+		iXml.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		iXml.write("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+		iXml.write("<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/drawing\" Target=\"../drawings/drawing" + drawing + ".xml\"/>");
+		iXml.write("</Relationships>");
+		closeEntry();
+
+		Map<Integer, Integer> rels = new LinkedHashMap<Integer, Integer>();
+		putEntry("xl/drawings/drawing" + drawing + ".xml");
+		iXml.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		iXml.write("<xdr:wsDr xmlns:xdr=\"http://schemas.openxmlformats.org/drawingml/2006/spreadsheetDrawing\" xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\" xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">");
+		int id = 1;
+		for (Picture picture: iPictures) {
+			Integer rel = rels.get(picture.getMedia());
+			if (rel == null) {
+				rel = rels.size() + 1;
+				rels.put(picture.getMedia(), rel);
+			}
+			id++;
+			long cx = 9525l * picture.getWidth(), cy = 9525l * picture.getHeight();
+			iXml.write("<xdr:oneCellAnchor editAs=\"oneCell\">");
+			iXml.write("<xdr:from><xdr:col>" + picture.getColumn() + "</xdr:col><xdr:colOff>0</xdr:colOff><xdr:row>" + picture.getRow() + "</xdr:row><xdr:rowOff>0</xdr:rowOff></xdr:from>");
+			iXml.write("<xdr:ext cx=\"" + cx + "\" cy=\"" + cy + "\"/>");
+			iXml.write("<xdr:pic><xdr:nvPicPr><xdr:cNvPr id=\"" + id + "\" name=\"Picture " + (id - 1) + "\"/><xdr:cNvPicPr><a:picLocks noChangeAspect=\"1\"/></xdr:cNvPicPr></xdr:nvPicPr>");
+			iXml.write("<xdr:blipFill><a:blip r:embed=\"rId" + rel + "\"/><a:stretch><a:fillRect/></a:stretch></xdr:blipFill>");
+			iXml.write("<xdr:spPr><a:xfrm><a:off x=\"0\" y=\"0\"/><a:ext cx=\"" + cx + "\" cy=\"" + cy + "\"/></a:xfrm><a:prstGeom prst=\"rect\"><a:avLst/></a:prstGeom></xdr:spPr></xdr:pic>");
+			iXml.write("<xdr:clientData/></xdr:oneCellAnchor>");
+		}
+		iXml.write("</xdr:wsDr>");
+		closeEntry();
+
+		putEntry("xl/drawings/_rels/drawing" + drawing + ".xml.rels");
+		iXml.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		iXml.write("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+		for (Map.Entry<Integer, Integer> e: rels.entrySet())
+			iXml.write("<Relationship Id=\"rId" + e.getValue() + "\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/image\" Target=\"../media/image" + e.getKey() + ".png\"/>");
+		iXml.write("</Relationships>");
+		closeEntry();
+	}
+
+	protected void writeStyles() throws IOException {
+		putEntry("xl/styles.xml");
+		iXml.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		iXml.write("<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">");
+		if (!iNumFmts.isEmpty()) {
+			iXml.write("<numFmts count=\"" + iNumFmts.size() + "\">");
+			for (Map.Entry<String, Integer> e: iNumFmts.entrySet())
+				iXml.write("<numFmt numFmtId=\"" + e.getValue() + "\" formatCode=\"" + escape(e.getKey()) + "\"/>");
+			iXml.write("</numFmts>");
+		}
+		iXml.write("<fonts count=\"" + iFonts.size() + "\">");
+		for (Font font: iFonts.keySet()) {
+			iXml.write("<font>");
+			writeFontProperties(font, "name");
+			iXml.write("</font>");
+		}
+		iXml.write("</fonts>");
+		iXml.write("<fills count=\"" + (iFills.size() + 1) + "\">");
+		iXml.write("<fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill>");
+		for (Color color: iFills.keySet()) {
+			if (color == null) continue;
+			iXml.write("<fill><patternFill patternType=\"solid\"><fgColor rgb=\"" + rgb(color) + "\"/><bgColor indexed=\"64\"/></patternFill></fill>");
+		}
+		iXml.write("</fills>");
+		iXml.write("<borders count=\"" + iBorders.size() + "\">");
+		for (String border: iBorders.keySet()) {
+			String[] sides = border.split("\\|", -1);
+			iXml.write("<border>");
+			String[] names = new String[] {"left", "right", "top", "bottom"};
+			for (int i = 0; i < names.length; i++) {
+				if (sides[i].isEmpty())
+					iXml.write("<" + names[i] + "/>");
+				else
+					iXml.write("<" + names[i] + " style=\"" + sides[i] + "\"><color indexed=\"64\"/></" + names[i] + ">");
+			}
+			iXml.write("<diagonal/></border>");
+		}
+		iXml.write("</borders>");
+		iXml.write("<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>");
+		iXml.write("<cellXfs count=\"" + iCellXfs.size() + "\">");
+		for (Style style: iCellXfs.keySet()) {
+			int numFmt = getNumFmtIndex(style.getFormat());
+			int font = getFontIndex(style.getFont());
+			int fill = (style.getBackground() == null ? 0 : getFillIndex(style.getBackground()));
+			int border = getBorderIndex(style);
+			iXml.write("<xf numFmtId=\"" + numFmt + "\" fontId=\"" + font + "\" fillId=\"" + fill + "\" borderId=\"" + border + "\" xfId=\"0\"" +
+					(numFmt == 0 ? "" : " applyNumberFormat=\"1\"") + (font == 0 ? "" : " applyFont=\"1\"") + (fill == 0 ? "" : " applyFill=\"1\"") + (border == 0 ? "" : " applyBorder=\"1\"") +
+					" applyAlignment=\"1\">");
+			String alignment = alignment(style.getAlignment());
+			iXml.write("<alignment" + (alignment == null ? "" : " horizontal=\"" + alignment + "\"") + " vertical=\"top\"" + (style.isWrapText() ? " wrapText=\"1\"" : "") + "/>");
+			iXml.write("</xf>");
+		}
+		iXml.write("</cellXfs>");
+		iXml.write("<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>");
+		iXml.write("</styleSheet>");
+		closeEntry();
+	}
+
+	protected void writeWorkbook() throws IOException {
+		putEntry("xl/workbook.xml");
+		iXml.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		iXml.write("<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">");
+		iXml.write("<bookViews><workbookView activeTab=\"0\"/></bookViews><sheets>");
+		for (int i = 0; i < iSheetNames.size(); i++)
+			iXml.write("<sheet name=\"" + escape(iSheetNames.get(i)) + "\" sheetId=\"" + (i + 1) + "\" r:id=\"rId" + (i + 1) + "\"/>");
+		iXml.write("</sheets></workbook>");
+		closeEntry();
+
+		putEntry("xl/_rels/workbook.xml.rels");
+		iXml.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		iXml.write("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+		for (int i = 0; i < iSheetNames.size(); i++)
+			iXml.write("<Relationship Id=\"rId" + (i + 1) + "\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet" + (i + 1) + ".xml\"/>");
+		iXml.write("<Relationship Id=\"rId" + (iSheetNames.size() + 1) + "\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>");
+		iXml.write("</Relationships>");
+		closeEntry();
+
+		putEntry("_rels/.rels");
+		iXml.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		iXml.write("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+		iXml.write("<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>");
+		iXml.write("</Relationships>");
+		closeEntry();
+
+		putEntry("[Content_Types].xml");
+		iXml.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		iXml.write("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+		iXml.write("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+		iXml.write("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+		if (!iMedia.isEmpty())
+			iXml.write("<Default Extension=\"png\" ContentType=\"image/png\"/>");
+		iXml.write("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+		iXml.write("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+		for (int i = 0; i < iSheetNames.size(); i++)
+			iXml.write("<Override PartName=\"/xl/worksheets/sheet" + (i + 1) + ".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+		for (int i = 1; i <= iNrDrawings; i++)
+			iXml.write("<Override PartName=\"/xl/drawings/drawing" + i + ".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.drawing+xml\"/>");
+		iXml.write("</Types>");
+		closeEntry();
+	}
+
+	/**
+	 * Flush the written data into the output
+	 */
+	public void flush() throws IOException {
+		iXml.flush();
+		iZip.flush();
+	}
+
+	/**
+	 * Finish the last sheet, write the style table and the workbook. The underlying output stream is not closed.
+	 */
+	public void close() throws IOException {
+		if (iSheetOpen || iSheetNames.isEmpty()) {
+			if (!iSheetOpen) createSheet(null);
+			finishSheet();
+		}
+		writeStyles();
+		writeWorkbook();
+		iXml.flush();
+		iZip.finish();
+		iZip.flush();
+	}
+
+	/**
+	 * Font (Arial, 10 points by default); immutable, so that it can be shared
+	 */
+	public static class Font {
+		public static final Font DEFAULT = new Font(false, false, false, null);
+		private boolean iBold, iItalic, iUnderline;
+		private Color iColor;
+		private String iName;
+		private double iSize;
+
+		public Font(String name, double size, boolean bold, boolean italic, boolean underline, Color color) {
+			iName = name; iSize = size;
+			iBold = bold; iItalic = italic; iUnderline = underline;
+			iColor = (color == null || Color.BLACK.equals(color) ? null : new Color(color.getRGB()));
+		}
+
+		public Font(boolean bold, boolean italic, boolean underline, Color color) {
+			this("Arial", 10.0, bold, italic, underline, color);
+		}
+
+		public String getName() { return iName; }
+		public double getSize() { return iSize; }
+		public boolean isBold() { return iBold; }
+		public boolean isItalic() { return iItalic; }
+		public boolean isUnderline() { return iUnderline; }
+		public Color getColor() { return iColor; }
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == null || !(o instanceof Font)) return false;
+			Font f = (Font)o;
+			return iBold == f.iBold && iItalic == f.iItalic && iUnderline == f.iUnderline && iSize == f.iSize && iName.equals(f.iName) &&
+					(iColor == null ? f.iColor == null : iColor.equals(f.iColor));
+		}
+
+		@Override
+		public int hashCode() {
+			return iName.hashCode() ^ Double.valueOf(iSize).hashCode() ^ (iBold ? 1 : 0) ^ (iItalic ? 2 : 0) ^ (iUnderline ? 4 : 0) ^ (iColor == null ? 0 : iColor.hashCode());
+		}
+	}
+
+	/**
+	 * Cell style (vertical alignment is always top); immutable, the with methods return a modified copy
+	 */
+	public static class Style implements Cloneable {
+		public static final Style DEFAULT = new Style();
+		private Font iFont = Font.DEFAULT;
+		private HorizontalAlignment iAlignment = null;
+		private boolean iWrapText = false;
+		private Color iBackground = null;
+		private BorderStyle iBorderTop = null, iBorderBottom = null, iBorderLeft = null, iBorderRight = null;
+		private String iFormat = null;
+
+		public Style() {}
+
+		public Style(Font font, HorizontalAlignment alignment, boolean wrapText) {
+			iFont = (font == null ? Font.DEFAULT : font);
+			iAlignment = alignment;
+			iWrapText = wrapText;
+		}
+
+		public Font getFont() { return iFont; }
+		public HorizontalAlignment getAlignment() { return iAlignment; }
+		public boolean isWrapText() { return iWrapText; }
+		public Color getBackground() { return iBackground; }
+		public BorderStyle getBorderTop() { return iBorderTop; }
+		public BorderStyle getBorderBottom() { return iBorderBottom; }
+		public BorderStyle getBorderLeft() { return iBorderLeft; }
+		public BorderStyle getBorderRight() { return iBorderRight; }
+		public String getFormat() { return iFormat; }
+
+		protected Style copy() {
+			try {
+				return (Style)clone();
+			} catch (CloneNotSupportedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		public Style withBackground(Color background) {
+			Style s = copy(); s.iBackground = (background == null ? null : new Color(background.getRGB())); return s;
+		}
+
+		public Style withBorderTop(BorderStyle border) {
+			if (border == iBorderTop) return this;
+			Style s = copy(); s.iBorderTop = (border == BorderStyle.NONE ? null : border); return s;
+		}
+
+		public Style withBorderBottom(BorderStyle border) {
+			if (border == iBorderBottom) return this;
+			Style s = copy(); s.iBorderBottom = (border == BorderStyle.NONE ? null : border); return s;
+		}
+
+		public Style withBorderLeft(BorderStyle border) {
+			if (border == iBorderLeft) return this;
+			Style s = copy(); s.iBorderLeft = (border == BorderStyle.NONE ? null : border); return s;
+		}
+
+		public Style withBorderRight(BorderStyle border) {
+			if (border == iBorderRight) return this;
+			Style s = copy(); s.iBorderRight = (border == BorderStyle.NONE ? null : border); return s;
+		}
+
+		public Style withFormat(String format) {
+			Style s = copy(); s.iFormat = format; return s;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == null || !(o instanceof Style)) return false;
+			Style s = (Style)o;
+			return iFont.equals(s.iFont) && iAlignment == s.iAlignment && iWrapText == s.iWrapText &&
+					(iBackground == null ? s.iBackground == null : iBackground.equals(s.iBackground)) &&
+					iBorderTop == s.iBorderTop && iBorderBottom == s.iBorderBottom && iBorderLeft == s.iBorderLeft && iBorderRight == s.iBorderRight &&
+					(iFormat == null ? s.iFormat == null : iFormat.equals(s.iFormat));
+		}
+
+		@Override
+		public int hashCode() {
+			int h = iFont.hashCode();
+			h = 31 * h + (iAlignment == null ? 0 : iAlignment.hashCode());
+			h = 31 * h + (iWrapText ? 1 : 0);
+			h = 31 * h + (iBackground == null ? 0 : iBackground.hashCode());
+			h = 31 * h + border(this).hashCode();
+			h = 31 * h + (iFormat == null ? 0 : iFormat.hashCode());
+			return h;
+		}
+	}
+
+	/**
+	 * Text with multiple fonts
+	 */
+	public static class RichText {
+		private List<Run> iRuns = new ArrayList<Run>();
+
+		public RichText add(String text, Font font) {
+			if (text != null && !text.isEmpty())
+				iRuns.add(new Run(text, font));
+			return this;
+		}
+
+		public List<Run> getRuns() { return iRuns; }
+
+		@Override
+		public String toString() {
+			StringBuilder ret = new StringBuilder();
+			for (Run run: iRuns) ret.append(run.getText());
+			return ret.toString();
+		}
+
+		public static class Run {
+			private String iText;
+			private Font iFont;
+
+			Run(String text, Font font) { iText = text; iFont = font; }
+			public String getText() { return iText; }
+			public Font getFont() { return iFont; }
+		}
+	}
+
+	public static class Row {
+		private int iRowNum;
+		private float iHeight = -1f;
+		private List<Cell> iCells = new ArrayList<Cell>();
+
+		Row(int rowNum) { iRowNum = rowNum; }
+
+		public int getRowNum() { return iRowNum; }
+
+		public float getHeightInPoints() { return iHeight; }
+		public void setHeightInPoints(float height) { iHeight = height; }
+
+		public Cell createCell(int col) {
+			while (iCells.size() <= col) iCells.add(null);
+			Cell cell = new Cell(col);
+			iCells.set(col, cell);
+			return cell;
+		}
+
+		public Cell getCell(int col) {
+			return (col < 0 || col >= iCells.size() ? null : iCells.get(col));
+		}
+
+		List<Cell> getCells() { return iCells; }
+
+		/** Index of the first cell, -1 if there are no cells */
+		public int getFirstCellNum() {
+			for (int i = 0; i < iCells.size(); i++)
+				if (iCells.get(i) != null) return i;
+			return -1;
+		}
+
+		/** Index of the last cell plus one, -1 if there are no cells */
+		public int getLastCellNum() {
+			return (iCells.isEmpty() ? -1 : iCells.size());
+		}
+	}
+
+	public static class Cell {
+		private int iCol;
+		private Style iStyle;
+		private Object iValue;
+
+		Cell(int col) { iCol = col; }
+
+		public int getColumnIndex() { return iCol; }
+
+		public Style getCellStyle() { return iStyle; }
+		public void setCellStyle(Style style) { iStyle = style; }
+
+		public Object getValue() { return iValue; }
+		public void setCellValue(String value) { iValue = value; }
+		public void setCellValue(double value) { iValue = value; }
+		public void setCellValue(Date value) { iValue = value; }
+		public void setCellValue(boolean value) { iValue = value; }
+		public void setCellValue(RichText value) { iValue = value; }
+
+		/**
+		 * Estimated width of the cell content in characters (the longest line)
+		 */
+		protected double getEstimatedWidth() {
+			if (iValue == null) return 0.0;
+			int length = 0;
+			if (iValue instanceof Date) {
+				length = 10;
+			} else if (iValue instanceof Number) {
+				length = number(((Number)iValue).doubleValue()).length();
+			} else {
+				for (String line: iValue.toString().split("\n"))
+					length = Math.max(length, line.length());
+			}
+			return length * (iStyle != null && iStyle.getFont().isBold() ? 1.1 : 1.0) + 2.0;
+		}
+	}
+
+	protected static class Picture {
+		private int iRow, iCol, iMedia, iWidth, iHeight;
+
+		Picture(int row, int col, int media, int width, int height) {
+			iRow = row; iCol = col; iMedia = media; iWidth = width; iHeight = height;
+		}
+
+		public int getRow() { return iRow; }
+		public int getColumn() { return iCol; }
+		public int getMedia() { return iMedia; }
+		public int getWidth() { return iWidth; }
+		public int getHeight() { return iHeight; }
+	}
+}
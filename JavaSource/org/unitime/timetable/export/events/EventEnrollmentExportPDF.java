@@ -37,7 +37,7 @@ public class EventEnrollmentExportPDF extends EventEnrollmentExport {
 	
 	@Override
 	protected Printer createPrinter(ExportHelper helper) throws IOException {
-		Printer out = new PDFPrinter(helper.getOutputStream(), false);
+		Printer out = new PDFPrinter(helper.getOutputStream(), false, reference());
 		helper.setup(out.getContentType(), reference(), false);
 		return out;
 	}
@@ -51,7 +51,7 @@ public class EventsExportEventsToPDF extends EventsExporter {
 	@Override
 	protected void print(ExportHelper helper, EventLookupRpcRequest request, List<EventInterface> events, int eventCookieFlags, EventMeetingSortBy sort, boolean asc) throws IOException {
 		sort(events, sort, asc);
-		Printer printer = new PDFPrinter(helper.getOutputStream(), true);
+		Printer printer = new PDFPrinter(helper.getOutputStream(), true, reference());
 		helper.setup(printer.getContentType(), reference(), false);
 		hideColumns(printer, events, eventCookieFlags);
 		print(printer, events, EventFlag.SHOW_MEETING_CONTACTS.in(eventCookieFlags));
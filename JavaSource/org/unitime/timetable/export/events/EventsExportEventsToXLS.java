@@ -24,7 +24,8 @@ import java.util.List;
 
 import org.springframework.stereotype.Service;
 import org.unitime.timetable.export.ExportHelper;
-import org.unitime.timetable.export.XLSPrinter;
+import org.unitime.timetable.export.Exporter.SpreadsheetPrinter;
+import org.unitime.timetable.export.XLSXPrinter;
 import org.unitime.timetable.gwt.client.events.EventComparator.EventMeetingSortBy;
 import org.unitime.timetable.gwt.shared.EventInterface;
 import org.unitime.timetable.gwt.shared.EventInterface.EventFlag;
@@ -44,8 +45,8 @@ public class EventsExportEventsToXLS extends EventsExportEventsToPDF {
 	@Override
 	protected void print(ExportHelper helper, EventLookupRpcRequest request, List<EventInterface> events, int eventCookieFlags, EventMeetingSortBy sort, boolean asc) throws IOException {
 		sort(events, sort, asc);
-		Printer printer = new XLSPrinter(helper.getOutputStream(), false);
-		helper.setup(printer.getContentType(), reference(), true);
+		SpreadsheetPrinter printer = XLSXPrinter.createPrinter(helper.getOutputStream(), false, reference());
+		helper.setup(printer.getContentType(), printer.getFileName(reference()), true);
 		hideColumns(printer, events, eventCookieFlags);
 		print(printer, events, EventFlag.SHOW_MEETING_CONTACTS.in(eventCookieFlags));
 	}
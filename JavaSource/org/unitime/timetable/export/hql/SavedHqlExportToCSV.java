@@ -172,16 +172,18 @@ public class SavedHqlExportToCSV implements Exporter {
 		}
 		if (!hasAppearancePermission) throw new AccessDeniedException();
 		
-		BufferedPrinter out = new BufferedPrinter(new CSVPrinter(helper, false));
+		String sort = helper.getParameter("sort");
+		Printer printer = new CSVPrinter(helper, false);
+		BufferedPrinter buffer = (sort != null && !"0".equals(sort) ? new BufferedPrinter(printer) : null);
+		Printer out = (buffer == null ? printer : buffer);
 		helper.setup(out.getContentType(), hql.getName().replace('/', '-').replace('\\', '-').replace(':', '-') + ".csv", false);
 		
 		execute(context.getUser(), out, hql.getQuery(), params, 0, -1, hql.getParameters());
 		
-		String sort = helper.getParameter("sort");
-		if (sort != null && !"0".equals(sort)) {
+		if (buffer != null) {
 			final boolean asc = Integer.parseInt(sort) > 0;
 			final int col = Math.abs(Integer.parseInt(sort)) - 1;
-			Collections.sort(out.getBuffer(), new Comparator<String[]>() {
+			Collections.sort(buffer.getBuffer(), new Comparator<String[]>() {
 				int compare(String[] a, String[] b, int col) {
 					for (int i = 0; i < a.length; i++) {
 						int c = (col + i) % a.length;
@@ -202,6 +204,7 @@ public class SavedHqlExportToCSV implements Exporter {
 			});
 		}
 		
+		out.flush();
 		out.close();
 	}
 	
@@ -307,7 +310,6 @@ public class SavedHqlExportToCSV implements Exporter {
 				String[] line = new String[len];
 				line(line, o, (SessionImplementor)hibSession);
 				out.printLine(line);
-				out.flush();
 			}
 		} catch (PageAccessException e) {
 			throw e;
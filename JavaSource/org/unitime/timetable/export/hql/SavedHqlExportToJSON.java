@@ -147,16 +147,18 @@ public class SavedHqlExportToJSON extends SavedHqlExportToCSV {
 		}
 		if (!hasAppearancePermission) throw new AccessDeniedException();
 		
-		BufferedPrinter out = new BufferedPrinter(new JSONPrinter(helper.getWriter()));
+		String sort = helper.getParameter("sort");
+		Printer printer = new JSONPrinter(helper.getWriter());
+		BufferedPrinter buffer = (sort != null && !"0".equals(sort) ? new BufferedPrinter(printer) : null);
+		Printer out = (buffer == null ? printer : buffer);
 		helper.setup(out.getContentType(), hql.getName().replace('/', '-').replace('\\', '-').replace(':', '-') + ".json", true);
 		
 		execute(context.getUser(), out, hql.getQuery(), params, 0, -1, hql.getParameters());
 		
-		String sort = helper.getParameter("sort");
-		if (sort != null && !"0".equals(sort)) {
+		if (buffer != null) {
 			final boolean asc = Integer.parseInt(sort) > 0;
 			final int col = Math.abs(Integer.parseInt(sort)) - 1;
-			Collections.sort(out.getBuffer(), new Comparator<String[]>() {
+			Collections.sort(buffer.getBuffer(), new Comparator<String[]>() {
 				int compare(String[] a, String[] b, int col) {
 					for (int i = 0; i < a.length; i++) {
 						int c = (col + i) % a.length;
@@ -177,6 +179,7 @@ public class SavedHqlExportToJSON extends SavedHqlExportToCSV {
 			});
 		}
 		
+		out.flush();
 		out.close();
 	}
 }
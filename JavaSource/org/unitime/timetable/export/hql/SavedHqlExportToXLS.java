@@ -29,7 +29,8 @@ import org.springframework.stereotype.Service;
 import org.unitime.timetable.events.EventAction.EventContext;
 import org.unitime.timetable.export.BufferedPrinter;
 import org.unitime.timetable.export.ExportHelper;
-import org.unitime.timetable.export.XLSPrinter;
+import org.unitime.timetable.export.Exporter.SpreadsheetPrinter;
+import org.unitime.timetable.export.XLSXPrinter;
 import org.unitime.timetable.gwt.shared.SavedHQLInterface;
 import org.unitime.timetable.model.SavedHQL;
 import org.unitime.timetable.model.SavedHQLParameter;
@@ -147,16 +148,19 @@ public class SavedHqlExportToXLS extends SavedHqlExportToCSV {
 		}
 		if (!hasAppearancePermission) throw new AccessDeniedException();
 		
-		BufferedPrinter out = new BufferedPrinter(new XLSPrinter(helper.getOutputStream(), false));
-		helper.setup(out.getContentType(), hql.getName().replace('/', '-').replace('\\', '-').replace(':', '-') + ".xls", true);
+		// rows are only buffered when they need to be sorted, otherwise they are written out as they are read
+		String sort = helper.getParameter("sort");
+		SpreadsheetPrinter printer = XLSXPrinter.createPrinter(helper.getOutputStream(), false, reference());
+		BufferedPrinter buffer = (sort != null && !"0".equals(sort) ? new BufferedPrinter(printer) : null);
+		Printer out = (buffer == null ? printer : buffer);
+		helper.setup(out.getContentType(), printer.getFileName(hql.getName().replace('/', '-').replace('\\', '-').replace(':', '-') + ".xls"), true);
 		
 		execute(context.getUser(), out, hql.getQuery(), params, 0, -1, hql.getParameters());
 		
-		String sort = helper.getParameter("sort");
-		if (sort != null && !"0".equals(sort)) {
+		if (buffer != null) {
 			final boolean asc = Integer.parseInt(sort) > 0;
 			final int col = Math.abs(Integer.parseInt(sort)) - 1;
-			Collections.sort(out.getBuffer(), new Comparator<String[]>() {
+			Collections.sort(buffer.getBuffer(), new Comparator<String[]>() {
 				int compare(String[] a, String[] b, int col) {
 					for (int i = 0; i < a.length; i++) {
 						int c = (col + i) % a.length;
@@ -177,6 +181,7 @@ public class SavedHqlExportToXLS extends SavedHqlExportToCSV {
 			});
 		}
 		
+		out.flush();
 		out.close();
 	}
 }
@@ -38,7 +38,6 @@ import org.unitime.commons.hibernate.util.HibernateUtil;
 import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.events.EventAction.EventContext;
-import org.unitime.timetable.export.BufferedPrinter;
 import org.unitime.timetable.export.CSVPrinter;
 import org.unitime.timetable.export.ExportHelper;
 import org.unitime.timetable.export.Exporter;
@@ -103,11 +102,12 @@ public class TestHqlExportToCSV implements Exporter {
         if (hql.indexOf("%USER%") >= 0)
         	hql = hql.replace("%USER%", HibernateUtil.escapeSql(helper.getSessionContext().getUser().getExternalUserId()));
 
-		BufferedPrinter out = new BufferedPrinter(new CSVPrinter(helper, false));
+		Printer out = new CSVPrinter(helper, false);
 		helper.setup(out.getContentType(), reference(), false);
 		
 		execute(context.getUser(), out, hql, 0, ApplicationProperty.TestHQLMaxLines.intValue());
 		
+		out.flush();
 		out.close();
 	}
 	
@@ -132,7 +132,6 @@ public class TestHqlExportToCSV implements Exporter {
 				String[] line = new String[len];
 				line(line, o, (SessionImplementor)hibSession);
 				out.printLine(line);
-				out.flush();
 			}
 		} catch (PageAccessException e) {
 			throw e;
@@ -51,7 +51,7 @@ public class TeachingAssignmentsExportPDF extends TeachingAssignmentsExportCSV {
 	public String reference() { return "teaching-assignments.pdf"; }
 
 	protected void export(TeachingAssignmentsPageRequest request, List<SingleTeachingAssingment> list, ExportHelper helper, boolean hasRequests, int cookie) throws IOException {
-		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false);
+		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false, reference());
 		helper.setup(out.getContentType(), reference(), false);
 		
 		List<Column> columns = new ArrayList<Column>();
@@ -51,7 +51,7 @@ public class TeachingRequestsExportPDF extends TeachingRequestsExportCSV {
 	public String reference() { return "teaching-requests.pdf"; }
 
 	protected void export(TeachingRequestsPageRequest request, List<SingleTeachingAssingment> list, ExportHelper helper, boolean hasInstructors, int cookie) throws IOException {
-		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false);
+		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false, reference());
 		helper.setup(out.getContentType(), reference(), false);
 		
 		List<Column> columns = new ArrayList<Column>();
@@ -43,7 +43,7 @@ public class RoomFeaturesExportPDF extends RoomFeaturesExportCSV {
 	public String reference() { return "roomfeatures.pdf"; }
 	
 	protected void print(ExportHelper helper, List<FeatureInterface> features, int dm, String department) throws IOException {
-		Printer out = new PDFPrinter(helper.getOutputStream(), false);
+		Printer out = new PDFPrinter(helper.getOutputStream(), false, reference());
 		helper.setup(out.getContentType(), reference(), false);
 		print(out, features, dm, department);
 		out.flush(); out.close();
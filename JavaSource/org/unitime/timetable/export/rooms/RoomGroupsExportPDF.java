@@ -43,7 +43,7 @@ public class RoomGroupsExportPDF extends RoomGroupsExportCSV {
 	public String reference() { return "roomgroups.pdf"; }
 	
 	protected void print(ExportHelper helper, List<GroupInterface> groups, int dm, String department) throws IOException {
-		Printer out = new PDFPrinter(helper.getOutputStream(), false);
+		Printer out = new PDFPrinter(helper.getOutputStream(), false, reference());
 		helper.setup(out.getContentType(), reference(), false);
 		print(out, groups, dm, department);
 		out.flush(); out.close();
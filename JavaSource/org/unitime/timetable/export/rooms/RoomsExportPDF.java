@@ -82,7 +82,7 @@ public class RoomsExportPDF extends RoomsExporter {
 			}
 		}
 		
-		PDFPrinter printer = new PDFPrinter(helper.getOutputStream(), false);
+		PDFPrinter printer = new PDFPrinter(helper.getOutputStream(), false, reference());
 		helper.setup(printer.getContentType(), reference(), false);
 		
 		String[] header = new String[columns.size()];
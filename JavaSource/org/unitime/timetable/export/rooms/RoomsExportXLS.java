@@ -28,7 +28,8 @@ import javax.imageio.ImageIO;
 
 import org.springframework.stereotype.Service;
 import org.unitime.timetable.export.ExportHelper;
-import org.unitime.timetable.export.XLSPrinter;
+import org.unitime.timetable.export.Exporter.SpreadsheetPrinter;
+import org.unitime.timetable.export.XLSXPrinter;
 import org.unitime.timetable.export.PDFPrinter.A;
 import org.unitime.timetable.gwt.shared.RoomInterface.AttachmentTypeInterface;
 import org.unitime.timetable.gwt.shared.RoomInterface.RoomDetailInterface;
@@ -61,8 +62,8 @@ public class RoomsExportXLS extends RoomsExportPDF {
 		
 		context.setGridAsText(true);
 		
-		XLSPrinter printer = new XLSPrinter(helper.getOutputStream(), false);
-		helper.setup(printer.getContentType(), reference(), true);
+		SpreadsheetPrinter printer = XLSXPrinter.createPrinter(helper.getOutputStream(), false, reference());
+		helper.setup(printer.getContentType(), printer.getFileName(reference()), true);
 		
 		String[] header = new String[columns.size()];
 		for (int i = 0; i < columns.size(); i++)
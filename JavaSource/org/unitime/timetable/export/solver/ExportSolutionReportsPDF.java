@@ -52,7 +52,7 @@ public class ExportSolutionReportsPDF extends TableExporter {
 		SolverReportsRequest request = new SolverReportsRequest();
 		SolverReportsResponse response = service.execute(request, helper.getSessionContext());
 		
-		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false);
+		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false, reference());
 		helper.setup(out.getContentType(), reference(), true);
 		
 		if (response.hasTables())
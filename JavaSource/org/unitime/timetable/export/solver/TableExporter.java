@@ -191,7 +191,7 @@ public abstract class TableExporter implements Exporter {
 	protected void printTablePDF(TableInterface table, ExportHelper helper) throws IOException {
 		sort(table, helper);
 		
-		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false);
+		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false, reference());
 		helper.setup(out.getContentType(), reference(), true);
 		
 		String[] header = new String[table.getHeader().length];
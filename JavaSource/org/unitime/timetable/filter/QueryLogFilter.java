@@ -20,14 +20,13 @@
 package org.unitime.timetable.filter;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -42,20 +41,17 @@ import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.cpsolver.ifs.util.JProf;
-import org.hibernate.CacheMode;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 import org.unitime.timetable.api.ApiToken;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.QueryLog;
-import org.unitime.timetable.model.dao.QueryLogDAO;
 import org.unitime.timetable.security.UserContext;
 import org.unitime.timetable.security.context.AnonymousUserContext;
 import org.unitime.timetable.spring.gwt.GwtDispatcherServlet;
 import org.unitime.timetable.spring.gwt.GwtDispatcherServlet.GwtCallInfo;
+import org.unitime.timetable.util.BatchedLogWriter;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -217,73 +213,67 @@ public class QueryLogFilter implements Filter {
 			iSaver.interrupt();
 	}
 	
-	public static class Saver extends Thread {
-		private List<QueryLog> iQueries = new Vector<QueryLog>();
-		private boolean iActive = true;
-		private int iLogLimit = -1;
+	public static class Saver extends BatchedLogWriter<QueryLog> {
+		private Map<String, Double> iSampling = new HashMap<String, Double>();
+		private Map<String, Double> iPrefixSampling = new HashMap<String, Double>();
+		private AtomicLong iSampledOut = new AtomicLong(0);
 		
 		public Saver() {
-			super("QueryLogSaver");
-			iLogLimit = ApplicationProperty.QueryLogLimit.intValue();
-			setDaemon(true);
-		}
-		
-		@Override
-		public void interrupt() {
-			iActive = false;
-			super.interrupt();
-			try { join(); } catch (InterruptedException e) {}
+			super("QueryLogSaver",
+					ApplicationProperty.QueryLogLimit.intValue(),
+					ApplicationProperty.QueryLogBatchSize.intValue(),
+					1000l * ApplicationProperty.QueryLogLinger.intValue());
+			String sampling = ApplicationProperty.QueryLogSampling.value();
+			if (sampling != null && !sampling.isEmpty())
+				for (String s: sampling.split("[\n,;]")) {
+					int idx = s.lastIndexOf('=');
+					if (idx <= 0) continue;
+					String uri = s.substring(0, idx).trim();
+					try {
+						double rate = Double.parseDouble(s.substring(idx + 1).trim());
+						if (uri.endsWith("*"))
+							iPrefixSampling.put(uri.substring(0, uri.length() - 1), rate);
+						else
+							iSampling.put(uri, rate);
+					} catch (NumberFormatException e) {
+						sLog.warn("Failed to parse query log sampling rate " + s + ": " + e.getMessage());
+					}
+				}
 		}
 		
-		public void add(QueryLog q) {
-			if (!iActive) return;
-			synchronized (iQueries) {
-				if (iLogLimit <= 0 || iQueries.size() < iLogLimit)
-					iQueries.add(q);
-			}
+		/**
+		 * Sampling rate of the given query (1.0 if not sampled)
+		 */
+		protected double getSamplingRate(QueryLog q) {
+			if (q.getUri() == null) return 1.0;
+			Double rate = iSampling.get(q.getUri());
+			if (rate != null) return rate;
+			for (Map.Entry<String, Double> e: iPrefixSampling.entrySet())
+				if (q.getUri().startsWith(e.getKey())) return e.getValue();
+			return 1.0;
 		}
 		
-		public void run() {
-			sLog.debug("Query Log Saver is up.");
-			while (true) {
-				try {
-					try {
-						sleep(60000);
-					} catch (InterruptedException e) {
-					}
-					List<QueryLog> queriesToSave = null;
-					synchronized (iQueries) {
-						if (!iQueries.isEmpty()) {
-							queriesToSave = new ArrayList<QueryLog>(iQueries);
-							iQueries.clear();
-						}
-					}
-					if (queriesToSave != null) {
-						sLog.debug("Persisting " + queriesToSave.size() + " log entries...");
-						if (iLogLimit > 0 && queriesToSave.size() >= iLogLimit)
-							sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, some messages have been dropped.");
-						Session hibSession = QueryLogDAO.getInstance().createNewSession();
-						hibSession.setCacheMode(CacheMode.IGNORE);
-						Transaction tx = hibSession.beginTransaction();
-						try {
-							for (QueryLog q: queriesToSave)
-								hibSession.save(q);
-							hibSession.flush();
-							tx.commit();
-						} catch (Exception e) {
-							tx.rollback();
-							sLog.error("Failed to persist " + queriesToSave.size() + " log entries:" + e.getMessage(), e);
-						} finally {
-							hibSession.close();
-						}
-					}
-					if (!iActive) break;
-				} catch (Exception e) {
-					sLog.error("Failed to persist log entries:" + e.getMessage(), e);
+		/**
+		 * Queries with an exception are always logged, other queries of a high-volume URI are only logged with the given sampling rate
+		 */
+		@Override
+		public boolean add(QueryLog q) {
+			if (q.getException() == null) {
+				double rate = getSamplingRate(q);
+				if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate) {
+					iSampledOut.incrementAndGet();
+					return false;
 				}
 			}
-			sLog.debug("Query Log Saver is down.");
+			return super.add(q);
 		}
 		
+		/** Number of queries that were not logged due to sampling */
+		public long getSampledOutCount() { return iSampledOut.get(); }
+		
+		@Override
+		public String toString() {
+			return super.toString() + "[sampledOut=" + getSampledOutCount() + "]";
+		}
 	}
 }
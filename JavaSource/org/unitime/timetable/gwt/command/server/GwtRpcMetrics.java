@@ -0,0 +1,277 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.gwt.command.server;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.commons.hibernate.connection.QueryStatisticsConnectionProvider;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Per-command metrics of the RPC calls ({@link GwtRpcServlet} commands and GWT service methods called through
+ * {@link org.unitime.timetable.spring.gwt.GwtDispatcherServlet}): number of calls, errors, calls in flight,
+ * latency histogram (with the 50th, 95th, and 99th percentiles), and the number and the time of database queries.
+ * Each command is registered as an MBean (org.unitime:type=RPC,name=command) and all the commands are
+ * available through the /api/rpc-metrics connector.
+ *
+ * @author Tomas Muller
+ */
+public class GwtRpcMetrics {
+	private static Log sLog = LogFactory.getLog(GwtRpcMetrics.class);
+	private static ConcurrentHashMap<String, CommandMetrics> sMetrics = new ConcurrentHashMap<String, CommandMetrics>();
+
+	/**
+	 * Start a call of the given command
+	 * @return execution that must be finished by {@link Execution#done(boolean)}, null when the metrics are disabled
+	 */
+	public static Execution start(String command) {
+		if (!ApplicationProperty.RpcMetricsEnabled.isTrue()) return null;
+		return new Execution(getMetrics(command));
+	}
+
+	public static CommandMetrics getMetrics(String command) {
+		CommandMetrics metrics = sMetrics.get(command);
+		if (metrics == null) {
+			metrics = new CommandMetrics(command);
+			CommandMetrics old = sMetrics.putIfAbsent(command, metrics);
+			if (old != null) return old;
+			register(metrics);
+		}
+		return metrics;
+	}
+
+	/**
+	 * All the commands, the command with the highest total time first
+	 */
+	public static List<CommandMetrics> getMetrics() {
+		List<CommandMetrics> ret = new ArrayList<CommandMetrics>(sMetrics.values());
+		Collections.sort(ret, new Comparator<CommandMetrics>() {
+			@Override
+			public int compare(CommandMetrics m1, CommandMetrics m2) {
+				int cmp = Long.compare(m2.getTotalTime(), m1.getTotalTime());
+				if (cmp != 0) return cmp;
+				return m1.getCommand().compareTo(m2.getCommand());
+			}
+		});
+		return ret;
+	}
+
+	public static void reset() {
+		for (CommandMetrics metrics: sMetrics.values())
+			metrics.reset();
+	}
+
+	protected static ObjectName getObjectName(String command) throws Exception {
+		return new ObjectName("org.unitime:type=RPC,name=" + ObjectName.quote(command));
+	}
+
+	protected static void register(CommandMetrics metrics) {
+		if (!ApplicationProperty.RpcMetricsJMX.isTrue()) return;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = getObjectName(metrics.getCommand());
+			if (!server.isRegistered(name))
+				server.registerMBean(metrics, name);
+		} catch (Exception e) {
+			sLog.debug("Failed to register RPC metrics of " + metrics.getCommand() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Unregister all the MBeans (e.g., when the application is being stopped)
+	 */
+	public static void unregister() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			for (String command: sMetrics.keySet()) {
+				ObjectName name = getObjectName(command);
+				if (server.isRegistered(name))
+					server.unregisterMBean(name);
+			}
+		} catch (Exception e) {
+			sLog.debug("Failed to unregister RPC metrics: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * A single call
+	 */
+	public static class Execution {
+		private CommandMetrics iMetrics;
+		private long iStart, iQueryCount, iQueryTime;
+
+		private Execution(CommandMetrics metrics) {
+			iMetrics = metrics;
+			iStart = System.nanoTime();
+			iQueryCount = QueryStatisticsConnectionProvider.getQueryCount();
+			iQueryTime = QueryStatisticsConnectionProvider.getQueryTime();
+			iMetrics.iInFlight.incrementAndGet();
+		}
+
+		public void done(boolean error) {
+			iMetrics.iInFlight.decrementAndGet();
+			iMetrics.record(System.nanoTime() - iStart,
+					QueryStatisticsConnectionProvider.getQueryCount() - iQueryCount,
+					QueryStatisticsConnectionProvider.getQueryTime() - iQueryTime,
+					error);
+		}
+	}
+
+	public static interface CommandMetricsMBean {
+		public String getCommand();
+		/** Number of finished calls */
+		public long getCount();
+		/** Number of calls that failed with an exception */
+		public long getErrorCount();
+		/** Number of failed calls divided by the number of calls */
+		public double getErrorRate();
+		/** Number of calls that are currently being executed */
+		public int getInFlight();
+		/** Average call time in milliseconds */
+		public double getAverageTime();
+		/** Longest call time in milliseconds */
+		public double getMaxTime();
+		/** Median call time in milliseconds */
+		public double getP50();
+		/** 95th percentile of call time in milliseconds */
+		public double getP95();
+		/** 99th percentile of call time in milliseconds */
+		public double getP99();
+		/** Average number of database queries per call */
+		public double getAverageQueryCount();
+		/** Average time spent in database queries per call, in milliseconds */
+		public double getAverageQueryTime();
+		public void reset();
+	}
+
+	/**
+	 * Metrics of a single command. The latency histogram has four buckets for each power of two microseconds
+	 * (the percentiles are within 12.5% of the actual value).
+	 */
+	public static class CommandMetrics implements CommandMetricsMBean {
+		private static final int sNrBuckets = 4 + 4 * 62;
+		private String iCommand;
+		private AtomicLong iCount = new AtomicLong(0), iErrors = new AtomicLong(0), iTotalTime = new AtomicLong(0), iMaxTime = new AtomicLong(0),
+				iQueryCount = new AtomicLong(0), iQueryTime = new AtomicLong(0);
+		private AtomicInteger iInFlight = new AtomicInteger(0);
+		private AtomicLongArray iHistogram = new AtomicLongArray(sNrBuckets);
+
+		private CommandMetrics(String command) {
+			iCommand = command;
+		}
+
+		protected static int bucket(long micros) {
+			if (micros < 4) return (int)Math.max(0, micros);
+			int exp = 63 - Long.numberOfLeadingZeros(micros);
+			return 4 + 4 * (exp - 2) + (int)((micros >> (exp - 2)) & 3);
+		}
+
+		protected static double midpoint(int bucket) {
+			if (bucket < 4) return bucket;
+			int exp = (bucket - 4) / 4 + 2;
+			int sub = (bucket - 4) % 4;
+			return (4 + sub + 0.5) * (1l << (exp - 2));
+		}
+
+		private void record(long nanos, long queryCount, long queryTime, boolean error) {
+			long micros = nanos / 1000;
+			iCount.incrementAndGet();
+			if (error) iErrors.incrementAndGet();
+			iTotalTime.addAndGet(micros);
+			long max = iMaxTime.get();
+			while (micros > max && !iMaxTime.compareAndSet(max, micros))
+				max = iMaxTime.get();
+			iHistogram.incrementAndGet(bucket(micros));
+			iQueryCount.addAndGet(queryCount);
+			iQueryTime.addAndGet(queryTime / 1000);
+		}
+
+		/** Estimated percentile of the call time in milliseconds */
+		public double getPercentile(double p) {
+			long total = 0;
+			long[] counts = new long[sNrBuckets];
+			for (int i = 0; i < sNrBuckets; i++) {
+				counts[i] = iHistogram.get(i);
+				total += counts[i];
+			}
+			if (total == 0) return 0.0;
+			long limit = (long)Math.ceil(p * total), sum = 0;
+			for (int i = 0; i < sNrBuckets; i++) {
+				sum += counts[i];
+				if (sum >= limit) return Math.min(midpoint(i), iMaxTime.get()) / 1000.0;
+			}
+			return iMaxTime.get() / 1000.0;
+		}
+
+		@Override
+		public String getCommand() { return iCommand; }
+		@Override
+		public long getCount() { return iCount.get(); }
+		@Override
+		public long getErrorCount() { return iErrors.get(); }
+		@Override
+		public double getErrorRate() { long count = getCount(); return count == 0 ? 0.0 : ((double)getErrorCount()) / count; }
+		@Override
+		public int getInFlight() { return iInFlight.get(); }
+		/** Total call time in microseconds */
+		public long getTotalTime() { return iTotalTime.get(); }
+		@Override
+		public double getAverageTime() { long count = getCount(); return count == 0 ? 0.0 : iTotalTime.get() / 1000.0 / count; }
+		@Override
+		public double getMaxTime() { return iMaxTime.get() / 1000.0; }
+		@Override
+		public double getP50() { return getPercentile(0.50); }
+		@Override
+		public double getP95() { return getPercentile(0.95); }
+		@Override
+		public double getP99() { return getPercentile(0.99); }
+		@Override
+		public double getAverageQueryCount() { long count = getCount(); return count == 0 ? 0.0 : ((double)iQueryCount.get()) / count; }
+		@Override
+		public double getAverageQueryTime() { long count = getCount(); return count == 0 ? 0.0 : iQueryTime.get() / 1000.0 / count; }
+
+		@Override
+		public void reset() {
+			iCount.set(0); iErrors.set(0); iTotalTime.set(0); iMaxTime.set(0); iQueryCount.set(0); iQueryTime.set(0);
+			for (int i = 0; i < sNrBuckets; i++)
+				iHistogram.set(i, 0);
+		}
+
+		@Override
+		public String toString() {
+			return iCommand + "{count=" + getCount() + ", errors=" + getErrorCount() + ", inFlight=" + getInFlight() +
+					", avg=" + Math.round(getAverageTime()) + " ms, p50=" + Math.round(getP50()) + " ms, p95=" + Math.round(getP95()) + " ms, p99=" + Math.round(getP99()) + " ms" +
+					", queries=" + Math.round(getAverageQueryCount()) + ", queryTime=" + Math.round(getAverageQueryTime()) + " ms}";
+		}
+	}
+}
@@ -127,6 +127,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	@Override
 	public void destroy() {
 		if (iSaver != null) iSaver.interrupt();
+		GwtRpcMetrics.unregister();
 	}
 	
 	public static <T extends GwtRpcResponse> GwtRpcImplementation<GwtRpcRequest<T>, T> getImplementation(Class<? extends GwtRpcRequest<T>> requestClass, ApplicationContext applicationContext) throws BeansException {
@@ -138,6 +139,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	}
 	
 	public static <T extends GwtRpcResponse> T execute(GwtRpcRequest<T> request, ApplicationContext applicationContext, SessionContext sessionContext) throws GwtRpcException {
+		GwtRpcMetrics.Execution metrics = GwtRpcMetrics.start("RPC:" + request.getClass().getSimpleName());
 		try {
 			// retrieve implementation from given request
 			GwtRpcImplementation<GwtRpcRequest<T>, T> implementation = getImplementation((Class<GwtRpcRequest<T>>)request.getClass(), applicationContext);
@@ -145,9 +147,15 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 			// execute request
 			T response = implementation.execute(request, sessionContext);
 			
+			// record metrics
+			if (metrics != null) metrics.done(false);
+			
 			// return response
 			return response;
 		} catch (Throwable t) {
+			// record metrics
+			if (metrics != null) metrics.done(true);
+			
 			// re-throw exception as GwtRpcException or IsSerializable runtime exception
 			if (t instanceof GwtRpcException) {
 				GwtRpcException e = (GwtRpcException)t;
@@ -174,6 +182,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 		// start time
 		long t0 = JProf.currentTimeMillis();
 		GwtRpcLogging logging = null;
+		GwtRpcMetrics.Execution metrics = GwtRpcMetrics.start("RPC:" + request.getClass().getSimpleName());
 		// create helper
 		try {
 			// retrieve implementation from given request
@@ -185,12 +194,18 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 			// execute request
 			T response = implementation.execute(request, getSessionContext());
 			
+			// record metrics
+			if (metrics != null) metrics.done(false);
+			
 			// log request
 			log(request, response, null, JProf.currentTimeMillis() - t0, getSessionContext(), logging);
 			
 			// return response
 			return response;
 		} catch (Throwable t) {
+			// record metrics
+			if (metrics != null) metrics.done(true);
+			
 			// log exception
 			log(request, null, t, JProf.currentTimeMillis() - t0, getSessionContext(), logging);
 			
@@ -354,6 +369,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 			// start time
 			long t0 = JProf.currentTimeMillis();
 			GwtRpcLogging logging = null;
+			GwtRpcMetrics.Execution metrics = GwtRpcMetrics.start("RPC:" + iRequest.getClass().getSimpleName());
 			try {
 				// retrieve implementation from given request
 				GwtRpcImplementation<GwtRpcRequest<T>, T> implementation = getImplementation(iRequest);
@@ -364,9 +380,15 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 				// execute request
 				iResponse = implementation.execute(iRequest, iContext);
 				
+				// record metrics
+				if (metrics != null) metrics.done(false);
+				
 				// log request
 				log(iRequest, iResponse, null, JProf.currentTimeMillis() - t0, iContext, logging);
 			} catch (Throwable t) {
+				// record metrics
+				if (metrics != null) metrics.done(true);
+				
 				// log exception
 				log(iRequest, null, t, JProf.currentTimeMillis() - t0, iContext, logging);
 				
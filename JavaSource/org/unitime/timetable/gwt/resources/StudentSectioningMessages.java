@@ -1087,6 +1087,9 @@ public interface StudentSectioningMessages extends Messages {
 	
 	@DefaultMessage("Academic session is not available for student scheduling.")
 	String exceptionNoServerForSession();
+	
+	@DefaultMessage("The server is too busy at the moment, please try again later.")
+	String exceptionLockTimeout();
 
 	@DefaultMessage("Wrong class or instructional offering.")
 	String exceptionBadClassOrOffering();
@@ -22,9 +22,6 @@ package org.unitime.timetable.model;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -37,9 +34,12 @@ import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
 import org.hibernate.HibernateException;
 import org.unitime.commons.Debug;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.base.BaseSolverInfo;
+import org.unitime.timetable.solver.BinaryDocument;
 import org.unitime.timetable.solver.ui.FileInfo;
 import org.unitime.timetable.solver.ui.TimetableInfo;
+import org.unitime.timetable.solver.ui.TimetableInfoCache;
 import org.unitime.timetable.solver.ui.TimetableInfoFileProxy;
 import org.unitime.timetable.solver.ui.TimetableInfoUtil;
 
@@ -80,6 +80,7 @@ public class SolverInfo extends BaseSolverInfo {
 			if (info!=null) return info;
 			
 			if (getData()==null) return null;
+			long t0 = System.nanoTime();
 			Element root = getValue().getRootElement();
 	        Class infoClass = null;
 	        try {
@@ -92,6 +93,7 @@ public class SolverInfo extends BaseSolverInfo {
 			if (info instanceof FileInfo) {
 				info = ((FileInfo)info).loadInfo(proxy);
 			}
+			TimetableInfoCache.getInstance().decoded(System.nanoTime() - t0, !BinaryDocument.isBinary(getData()));
 			
 			if (info!=null) setCached(getUniqueId(),info);
 			return info;
@@ -155,95 +157,28 @@ public class SolverInfo extends BaseSolverInfo {
 	}
 	
 	public static TimetableInfo getCached(Long uniqueId) {
-		if (uniqueId==null) return null;
-		synchronized (sInfoCache) {
-			CachedTimetableInfo cInfo = (CachedTimetableInfo)sInfoCache.get(uniqueId);
-			if (cInfo==null) return null;
-			cInfo.mark();
-			return cInfo.getInfo();
-		}
+		return TimetableInfoCache.getInstance().get(uniqueId);
 	}
 	
 	public static void setCached(Long uniqueId, TimetableInfo info) {
-		if (uniqueId==null) return;
-		synchronized (sInfoCache) {
-			sInfoCache.put(uniqueId, new CachedTimetableInfo(info));
-		}		
+		TimetableInfoCache.getInstance().put(uniqueId, info);
 	}
 	
 	public static void removeCached(Long uniqueId) {
-		if (uniqueId==null) return;
-		synchronized (sInfoCache) {
-			sInfoCache.remove(uniqueId);
-		}		
+		TimetableInfoCache.getInstance().remove(uniqueId);
 	}
-
-	protected static Hashtable sInfoCache = null;
-	protected static InfoCacheCleanup sCleanupThread = null;   
-	protected static long sInfoCacheTimeToLive = 600000; //10 minutes
-	protected static long sInfoCacheCleanupInterval = 30000; //30 secs
 	
-	static {
-		sInfoCache = new Hashtable();
-		sCleanupThread = new InfoCacheCleanup();
-		sCleanupThread.start();
+	public static void clearInfoCache() {
+		TimetableInfoCache.getInstance().clear();
 	}
 	
-	public static void stopInfoCacheCleanup() {
-		sInfoCache = null;
-		if (sCleanupThread!=null && sCleanupThread.isAlive())
-			sCleanupThread.interrupt();
-	}
-
-	protected static class InfoCacheCleanup extends Thread {
-		public InfoCacheCleanup() {
-			setDaemon(true);
-			setName("InfoCacheCleanup");
-		}
-		
-		public void run() {
-			Debug.info("InfoCache cleanup thread started.");
-			try {
-				while (true) {
-					sleep(sInfoCacheCleanupInterval);
-					if (sInfoCache==null) return;
-					synchronized (sInfoCache) {
-						if (sInfoCache.isEmpty()) continue;
-						for (Iterator i=sInfoCache.entrySet().iterator();i.hasNext();) {
-							Map.Entry entry = (Map.Entry)i.next();
-							CachedTimetableInfo cInfo = (CachedTimetableInfo)entry.getValue();
-							if (cInfo.getAge()>sInfoCacheTimeToLive) {
-								i.remove();
-							}
-						}
-					}
-				}
-			} catch (InterruptedException ex) {
-				Debug.info("InfoCache cleanup thread interrupted.");
-			}
-			Debug.info("InfoCache cleanup thread finished.");
-		}
-	}
-
-	protected static class CachedTimetableInfo {
-    	private TimetableInfo iInfo = null;
-    	private long iTimeStamp = System.currentTimeMillis();
-    	public CachedTimetableInfo(TimetableInfo info) {
-    		iInfo = info;
-    	}
-    	public TimetableInfo getInfo() {
-    		return iInfo;
-    	}
-    	public long getAge() {
-    		return System.currentTimeMillis()-iTimeStamp;
-    	}
-    	public void mark() {
-    		iTimeStamp = System.currentTimeMillis();
-    	}
-    }
-	
+	/**
+	 * Stored value, both the binary format (see {@link BinaryDocument}) and the gzipped XML are supported
+	 */
 	public Document getValue() {
 		try {
+			if (BinaryDocument.isBinary(getData()))
+				return BinaryDocument.read(new ByteArrayInputStream(getData()));
 			SAXReader reader = new SAXReader();
 			GZIPInputStream gzipInput = new GZIPInputStream(new ByteArrayInputStream(getData()));
 			Document document = reader.read(gzipInput);
@@ -260,6 +195,10 @@ public class SolverInfo extends BaseSolverInfo {
 		try {
 			if (document == null) {
 				setData(null);
+			} else if (ApplicationProperty.SolverInfoBinary.isTrue()) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				BinaryDocument.write(document, bytes);
+				setData(bytes.toByteArray());
 			} else {
 				 ByteArrayOutputStream bytes = new ByteArrayOutputStream();
 	             XMLWriter writer = new XMLWriter(new GZIPOutputStream(bytes),OutputFormat.createCompactFormat());
@@ -41,6 +41,7 @@ import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
 import org.hibernate.service.spi.ServiceBinding;
 import org.unitime.commons.hibernate.connection.LoggingConnectionProvider;
 import org.unitime.commons.hibernate.connection.LoggingDBCPConnectionProvider;
+import org.unitime.commons.hibernate.connection.QueryStatisticsConnectionProvider;
 import org.unitime.commons.hibernate.util.DatabaseUpdate;
 import org.unitime.commons.hibernate.util.HibernateUtil;
 import org.unitime.timetable.defaults.ApplicationProperty;
@@ -86,6 +87,11 @@ public abstract class _BaseRootDAO<T, K extends Serializable> {
             		scp.setService(new LoggingConnectionProvider(serviceRegistry.getService(ConnectionProvider.class)));
         	}
         }
+        if (ApplicationProperty.ConnectionQueryStatistics.isTrue()) {
+        	ServiceBinding<ConnectionProvider> scp = ((StandardServiceRegistryImpl)serviceRegistry).locateServiceBinding(ConnectionProvider.class);
+        	if (scp != null)
+        		scp.setService(new QueryStatisticsConnectionProvider(serviceRegistry.getService(ConnectionProvider.class)));
+        }
         setSessionFactory(configuration.buildSessionFactory(serviceRegistry));
         
         HibernateUtil.addBitwiseOperationsToDialect();
@@ -21,7 +21,9 @@ package org.unitime.timetable.onlinesectioning;
 
 import java.io.Serializable;
 import java.util.BitSet;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
 
 import org.unitime.timetable.model.Session;
 import org.unitime.timetable.security.Qualifiable;
@@ -84,6 +86,28 @@ public class AcademicSessionInfo implements Comparable<AcademicSessionInfo>, Ser
 		iCampus = campus;
 	}
 	
+	/**
+	 * Academic session that is not backed by a database session (e.g., for benchmarking), online sectioning is enabled
+	 * and classes take place every day between the session begin and end dates.
+	 */
+	public AcademicSessionInfo(Long uniqueId, String year, String term, String campus, Date sessionBegin, Date sessionEnd) {
+		this(uniqueId, year, term, campus);
+		Calendar c = Calendar.getInstance(Locale.US);
+		c.setTime(sessionBegin);
+		iDatePatternFirstDate = DateUtils.getDate(1, c.get(Calendar.MONTH), c.get(Calendar.YEAR));
+		iDayOfWeekOffset = Constants.getDayOfWeek(iDatePatternFirstDate);
+		iSessionBegin = sessionBegin;
+		iDefaultStartDate = sessionBegin;
+		iDefaultEndDate = sessionEnd;
+		int first = (int)Math.round((sessionBegin.getTime() - iDatePatternFirstDate.getTime()) / 86400000.0);
+		int last = (int)Math.round((sessionEnd.getTime() - iDatePatternFirstDate.getTime()) / 86400000.0);
+		iFreeTimePattern = new BitSet(last + 1);
+		iFreeTimePattern.set(0, last + 1);
+		iWeekPattern = new BitSet(last + 1);
+		iWeekPattern.set(first, last + 1);
+		iSectioningEnabled = true;
+	}
+	
 	public static Date getDatePatternFirstDay(Session s) {
 		return DateUtils.getDate(1, s.getPatternStartMonth(), s.getSessionStartYear());
 	}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Lock manager with the same semantics as {@link MultiLock}, but without a global mutex.
+ * Each locked id is held in a concurrent map, ids are always acquired in ascending order (so
+ * there can be no deadlock between two multi-id locks), and a thread waiting for an id only
+ * waits for the holder of that particular id. Locks can be released by any thread and
+ * {@link #tryLock(Collection, long, TimeUnit)} can be used to limit the time spent waiting.
+ *
+ * @author Tomas Muller
+ */
+public class ConcurrentMultiLock {
+	private Log iLog = LogFactory.getLog(ConcurrentMultiLock.class);
+	private ConcurrentHashMap<Long, Holder> iIndividualLocks = new ConcurrentHashMap<Long, Holder>();
+	private AtomicReference<Holder> iAllLocked = new AtomicReference<Holder>();
+	private AtomicLong iNrLocks = new AtomicLong(0), iNrWaits = new AtomicLong(0), iNrTimeouts = new AtomicLong(0);
+
+	public ConcurrentMultiLock() {
+		iLog = LogFactory.getLog(ConcurrentMultiLock.class.getName() + ".lock");
+	}
+
+	public ConcurrentMultiLock(AcademicSessionInfo session) {
+		iLog = LogFactory.getLog(ConcurrentMultiLock.class.getName() + ".lock[" + session.toCompactString() + "]");
+	}
+
+	public Unlock lock(Long... ids) {
+		List<Long> list = new ArrayList<Long>(ids.length);
+		for (Long id: ids)
+			list.add(id);
+		return lock(list);
+	}
+
+	public Unlock lock(Collection<Long> ids) {
+		return tryLock(ids, -1l, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Lock the given ids, waiting at most the given time.
+	 * @param ids ids to lock
+	 * @param timeout maximal time to wait, negative value means wait for as long as needed
+	 * @param unit time unit of the timeout argument
+	 * @return lock that is to be released once done, null if the ids could not be locked in the given time
+	 */
+	public Unlock tryLock(Collection<Long> ids, long timeout, TimeUnit unit) {
+		if (ids == null || ids.isEmpty()) return new Unlock(null, null);
+		// System.nanoTime() can be negative, so no timeout is kept in a separate flag rather than a deadline sentinel
+		boolean timed = (timeout >= 0);
+		long deadline = (timed ? System.nanoTime() + unit.toNanos(timeout) : 0l);
+		List<Long> sorted = new ArrayList<Long>(new TreeSet<Long>(ids));
+		iLog.debug("Locking " + sorted + " ...");
+		iNrLocks.incrementAndGet();
+		while (true) {
+			Holder all = iAllLocked.get();
+			if (all != null) {
+				iNrWaits.incrementAndGet();
+				if (!all.await(timed, deadline)) return timeout(sorted);
+				continue;
+			}
+			Holder holder = new Holder();
+			List<Long> acquired = new ArrayList<Long>(sorted.size());
+			for (Long id: sorted) {
+				Holder other = null;
+				while ((other = iIndividualLocks.putIfAbsent(id, holder)) != null) {
+					iNrWaits.incrementAndGet();
+					if (!other.await(timed, deadline)) {
+						release(acquired, holder);
+						return timeout(sorted);
+					}
+				}
+				acquired.add(id);
+			}
+			if (iAllLocked.get() == null) {
+				iLog.debug("Locked: " + sorted);
+				return new Unlock(sorted, holder);
+			}
+			// lock all is in progress -> back off and wait for it to finish
+			release(acquired, holder);
+		}
+	}
+
+	private Unlock timeout(List<Long> ids) {
+		iNrTimeouts.incrementAndGet();
+		iLog.debug("Timeout: " + ids);
+		return null;
+	}
+
+	private void release(Collection<Long> ids, Holder holder) {
+		for (Long id: ids)
+			iIndividualLocks.remove(id, holder);
+		holder.release();
+	}
+
+	public UnlockAll lockAll() {
+		iLog.debug("Locking all ...");
+		Holder holder = new Holder();
+		while (!iAllLocked.compareAndSet(null, holder)) {
+			Holder other = iAllLocked.get();
+			if (other != null) other.await(false, 0l);
+		}
+		while (true) {
+			Iterator<Holder> i = iIndividualLocks.values().iterator();
+			if (!i.hasNext()) break;
+			i.next().await(false, 0l);
+		}
+		iLog.debug("Locked: all");
+		return new UnlockAll(holder);
+	}
+
+	public void unlockAll() {
+		Holder holder = iAllLocked.get();
+		if (holder != null) unlockAll(holder);
+	}
+
+	private void unlockAll(Holder holder) {
+		iLog.debug("Unlocking all ...");
+		if (iAllLocked.compareAndSet(holder, null))
+			holder.release();
+		iLog.debug("Unlocked: all");
+	}
+
+	private void unlock(Collection<Long> ids, Holder holder) {
+		if (ids == null || ids.isEmpty()) return;
+		iLog.debug("Unlocking " + ids + " ...");
+		release(ids, holder);
+		iLog.debug("Unlocked: " + ids);
+	}
+
+	public Set<Long> locked() {
+		return new TreeSet<Long>(iIndividualLocks.keySet());
+	}
+
+	public boolean isLocked(Long id) {
+		return iIndividualLocks.containsKey(id);
+	}
+
+	/** Number of lock requests so far */
+	public long getNrLocks() { return iNrLocks.get(); }
+
+	/** Number of times a lock request had to wait for some other lock to be released */
+	public long getNrWaits() { return iNrWaits.get(); }
+
+	/** Number of lock requests that have timed out */
+	public long getNrTimeouts() { return iNrTimeouts.get(); }
+
+	@Override
+	public String toString() {
+		return "ConcurrentMultiLock{locked=" + iIndividualLocks.size() + ", all=" + (iAllLocked.get() != null) +
+				", locks=" + getNrLocks() + ", waits=" + getNrWaits() + ", timeouts=" + getNrTimeouts() + "}";
+	}
+
+	/**
+	 * Lock holder, any thread waiting for a lock held by this holder is awaken when the holder is released.
+	 */
+	private static class Holder {
+		private CountDownLatch iReleased = new CountDownLatch(1);
+
+		private void release() {
+			iReleased.countDown();
+		}
+
+		private boolean await(boolean timed, long deadline) {
+			boolean interrupted = false;
+			try {
+				while (true) {
+					try {
+						if (!timed) {
+							iReleased.await();
+							return true;
+						}
+						long remaining = deadline - System.nanoTime();
+						if (remaining <= 0) return iReleased.getCount() == 0;
+						return iReleased.await(remaining, TimeUnit.NANOSECONDS);
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			} finally {
+				if (interrupted) Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public class Unlock implements OnlineSectioningServer.Lock {
+		private Collection<Long> iIds;
+		private Holder iHolder;
+
+		private Unlock(Collection<Long> ids, Holder holder) {
+			iIds = ids; iHolder = holder;
+		}
+
+		public void release() {
+			unlock(iIds, iHolder);
+		}
+	}
+
+	public class UnlockAll implements OnlineSectioningServer.Lock {
+		private Holder iHolder;
+
+		private UnlockAll(Holder holder) {
+			iHolder = holder;
+		}
+
+		public void release() {
+			unlockAll(iHolder);
+		}
+	}
+}
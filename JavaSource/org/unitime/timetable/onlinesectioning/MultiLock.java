@@ -22,7 +22,6 @@ package org.unitime.timetable.onlinesectioning;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -33,7 +32,6 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.cpsolver.ifs.util.ToolBox;
 
 
 /**
@@ -173,76 +171,4 @@ public class MultiLock {
 			unlockAll();
 		}
 	}
-
-	public static void main(String[] args) {
-		try {
-			final MultiLock lock = new MultiLock();
-			for (int i = 1; i <= 1000; i++) {
-				Thread t = new Thread(new Runnable() {
-					@Override
-					public void run() {
-						try {
-							while (true) {
-								int nrCourses = 2 + ToolBox.random(9);
-								Set<Long> courses = new HashSet<Long>();
-								String s = "";
-								for (int i = 0; i < nrCourses; i++) {
-									long courseId;
-									do {
-										courseId = ToolBox.random(10000);
-									} while (!courses.add(courseId));
-									s += (i > 0 ? ", " : "") + courseId;
-								}
-								System.out.println(Thread.currentThread().getName() + "Locking: [" + s + "]");
-								Unlock l = lock.lock(courses);
-								System.out.println(Thread.currentThread().getName() + "Locked: [" + s + "]");
-								try {
-									Thread.sleep(ToolBox.random(1000));
-								} catch (InterruptedException e) {}
-								System.out.println(Thread.currentThread().getName() + "Unlocking: [" + s + "]");
-								l.release();
-								System.out.println(Thread.currentThread().getName() + "Unlocked: [" + s + "]");
-							}
-						} catch (Exception e) {
-							System.err.println(Thread.currentThread().getName() + e.getMessage());
-							e.printStackTrace();
-						}
-					}
-				});
-				t.setName("[T" + i + "]: ");
-				t.start();
-			}
-			for (int i = 1; i <= 3; i++) {
-				Thread t = new Thread(new Runnable() {
-					@Override
-					public void run() {
-						try {
-							while (true) {
-								try {
-									Thread.sleep(ToolBox.random(5000));
-								} catch (InterruptedException e) {}
-								System.out.println(Thread.currentThread().getName() + "Locking all...");
-								lock.lockAll();
-								System.out.println(Thread.currentThread().getName() + "All locked.");
-								try {
-									Thread.sleep(ToolBox.random(1000));
-								} catch (InterruptedException e) {}
-								System.out.println(Thread.currentThread().getName() + "Unlocking all.");
-								lock.unlockAll();
-								System.out.println(Thread.currentThread().getName() + "All unlocked.");
-							}
-						} catch (Exception e) {
-							System.err.println(Thread.currentThread().getName() + e.getMessage());
-							e.printStackTrace();
-						}
-					}
-				});
-				t.setName("[A" + i + "]: ");
-				t.start();		
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-	}
-
 }
@@ -25,9 +25,17 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
-import java.util.Vector;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,22 +45,31 @@ import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.resources.StudentSectioningConstants;
 import org.unitime.timetable.gwt.server.DayCode;
 import org.unitime.timetable.model.Session;
-import org.unitime.timetable.model.Student;
 import org.unitime.timetable.model.dao.OnlineSectioningLogDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
-import org.unitime.timetable.model.dao.StudentDAO;
 
 /**
+ * Online sectioning log writer. The recorded actions are held in a bounded queue (see {@link ApplicationProperty#OnlineSchedulingLogLimit})
+ * and persisted in batches, either every {@link ApplicationProperty#OnlineSchedulingLogFlushInterval} seconds or as soon as there are
+ * {@link ApplicationProperty#OnlineSchedulingLogFlushSize} actions waiting. When the queue is full, a new action is either dropped or
+ * the caller waits for up to {@link ApplicationProperty#OnlineSchedulingLogBlockTimeout} milliseconds.
+ * 
  * @author Tomas Muller
  */
 public class OnlineSectioningLogger extends Thread {
 	private static Log sLog = LogFactory.getLog(OnlineSectioningLogger.class);
 	protected static StudentSectioningConstants CONST = Localization.create(StudentSectioningConstants.class);
-	private List<OnlineSectioningLog.Action> iActions = new Vector<OnlineSectioningLog.Action>();
+	private BlockingQueue<OnlineSectioningLog.Action> iActions;
+	private Object iFlushLock = new Object();
 	private boolean iActive = false;
 	private boolean iEnabled = false;
 	private int iLogLimit = -1;
+	private long iFlushInterval = 60000;
+	private int iFlushSize = 1000;
+	private long iBlockTimeout = 0;
 	private PrintWriter iOut = null;
+	private AtomicLong iDropped = new AtomicLong(0), iPersisted = new AtomicLong(0), iFlushes = new AtomicLong(0), iFlushTime = new AtomicLong(0);
+	private long iDroppedReported = 0, iLastFlushTime = 0;
 	
 	private static OnlineSectioningLogger sInstance = null;
 	
@@ -84,6 +101,10 @@ public class OnlineSectioningLogger extends Thread {
 		setDaemon(true);
 		iEnabled = ApplicationProperty.OnlineSchedulingLoggingEnabled.isTrue(); 
 		iLogLimit = ApplicationProperty.OnlineSchedulingLogLimit.intValue();
+		iActions = (iLogLimit > 0 ? new ArrayBlockingQueue<OnlineSectioningLog.Action>(iLogLimit) : new LinkedBlockingQueue<OnlineSectioningLog.Action>());
+		iFlushInterval = 1000l * ApplicationProperty.OnlineSchedulingLogFlushInterval.intValue();
+		iFlushSize = Math.max(1, ApplicationProperty.OnlineSchedulingLogFlushSize.intValue());
+		iBlockTimeout = ApplicationProperty.OnlineSchedulingLogBlockTimeout.intValue();
 		try {
 			if (ApplicationProperty.OnlineSchedulingLogFile.value() != null)
 				iOut = new PrintWriter(new FileWriter(new File(ApplicationProperty.OnlineSchedulingLogFile.value()), true));
@@ -95,15 +116,52 @@ public class OnlineSectioningLogger extends Thread {
 	public boolean isEnabled() { return iEnabled; }
 	public void setEnabled(boolean enabled) { iEnabled = enabled; }
 	public boolean isActive() { return iActive; }
+	
+	/** Number of actions waiting to be persisted */
+	public int getQueueSize() { return iActions.size(); }
+	/** Number of actions that were dropped because the queue was full */
+	public long getDropCount() { return iDropped.get(); }
+	/** Number of actions persisted so far */
+	public long getPersistedCount() { return iPersisted.get(); }
+	/** Number of flushes (batches of persisted actions) */
+	public long getFlushCount() { return iFlushes.get(); }
+	/** Average time needed to persist a batch of actions, in milliseconds */
+	public double getAverageFlushTime() { long flushes = iFlushes.get(); return flushes == 0 ? 0.0 : ((double)iFlushTime.get()) / flushes; }
+	/** Time needed to persist the last batch of actions, in milliseconds */
+	public long getLastFlushTime() { return iLastFlushTime; }
+	
+	@Override
+	public String toString() {
+		return "OnlineSectioningLogger{queue=" + getQueueSize() + ", dropped=" + getDropCount() + ", persisted=" + getPersistedCount() +
+				", flushes=" + getFlushCount() + ", avgFlush=" + Math.round(getAverageFlushTime()) + " ms, lastFlush=" + getLastFlushTime() + " ms}";
+	}
+	
+	private boolean enqueue(OnlineSectioningLog.Action action) {
+		if (iActions.offer(action)) return true;
+		if (iBlockTimeout != 0) {
+			try {
+				if (iBlockTimeout < 0) {
+					iActions.put(action);
+					return true;
+				}
+				if (iActions.offer(action, iBlockTimeout, TimeUnit.MILLISECONDS)) return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		iDropped.incrementAndGet();
+		return false;
+	}
 
 	public void record(OnlineSectioningLog.Log log) {
 		if (log == null || !isEnabled() || !isActive()) return;
 		for (OnlineSectioningLog.Action action: log.getActionList()) {
 			if (action.hasStartTime() && action.hasStudent() && action.hasOperation() && action.hasSession() && ApplicationProperty.OnlineSchedulingLogOperation.isTrue(action.getOperation())
 				&& ApplicationProperty.OnlineSchedulingLogOperation.isTrue(action.getOperation() + "." + (action.hasResult() ? action.getResult().name() : "NULL"))) {
-				synchronized (iActions) {
-					if (iLogLimit <= 0 || iActions.size() < iLogLimit)
-						iActions.add(action);
+				if (enqueue(action) && iActions.size() >= iFlushSize) {
+					synchronized (iFlushLock) {
+						iFlushLock.notify();
+					}
 				}
 				if (iOut != null) {
 					synchronized (iOut) {
@@ -249,84 +307,35 @@ public class OnlineSectioningLogger extends Thread {
 		try {
 			iActive = true;
 			while (true) {
-				try {
-					sleep(60000);
-				} catch (InterruptedException e) {
-				}
-				List<OnlineSectioningLog.Action> actionsToSave = null;
-				synchronized (iActions) {
-					if (!iActions.isEmpty()) {
-						actionsToSave = new ArrayList<OnlineSectioningLog.Action>(iActions);
-						iActions.clear();
+				long deadline = System.currentTimeMillis() + iFlushInterval;
+				synchronized (iFlushLock) {
+					try {
+						long wait;
+						while (iActive && iActions.size() < iFlushSize && (wait = deadline - System.currentTimeMillis()) > 0)
+							iFlushLock.wait(wait);
+					} catch (InterruptedException e) {
 					}
 				}
-				try {
-					if (actionsToSave != null) {
+				long dropped = iDropped.get();
+				if (dropped > iDroppedReported) {
+					sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, " + (dropped - iDroppedReported) + " messages have been dropped.");
+					iDroppedReported = dropped;
+				}
+				List<OnlineSectioningLog.Action> actionsToSave = new ArrayList<OnlineSectioningLog.Action>(Math.min(iFlushSize, iActions.size()));
+				while (iActions.drainTo(actionsToSave, iFlushSize) > 0) {
+					try {
 						sLog.debug("Persisting " + actionsToSave.size() + " actions...");
-						if (iLogLimit > 0 && actionsToSave.size() >= iLogLimit)
-							sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, some messages have been dropped.");
-						org.hibernate.Session hibSession = OnlineSectioningLogDAO.getInstance().createNewSession();
-						hibSession.setCacheMode(CacheMode.IGNORE);
-						try {
-							Hashtable<Long, Session> sessions = new Hashtable<Long, Session>();
-							for (OnlineSectioningLog.Action q: actionsToSave) {
-								org.unitime.timetable.model.OnlineSectioningLog log = new org.unitime.timetable.model.OnlineSectioningLog();
-								log.setAction(q.toByteArray());
-								log.setOperation(q.getOperation());
-								String studentExternalId = (q.getStudent().hasExternalId() ? q.getStudent().getExternalId() : null);
-								if (studentExternalId == null || studentExternalId.isEmpty()) {
-									Student student = StudentDAO.getInstance().get(q.getStudent().getUniqueId(), hibSession);
-									if (student == null) continue;
-									studentExternalId = student.getExternalUniqueId();
-								}
-								log.setStudent(studentExternalId);
-								log.setTimeStamp(new Date(q.getStartTime()));
-								if (q.hasResult())
-									log.setResult(q.getResult().getNumber());
-								if (q.hasUser() && q.getUser().hasExternalId())
-									log.setUser(q.getUser().getExternalId());
-								if (q.hasCpuTime())
-									log.setCpuTime(q.getCpuTime());
-								if (q.hasStartTime() && q.hasEndTime())
-									log.setWallTime(q.getEndTime() - q.getStartTime());
-								if (q.hasApiGetTime())
-									log.setApiGetTime(q.getApiGetTime());
-								if (q.hasApiPostTime())
-									log.setApiPostTime(q.getApiPostTime());
-								if (q.hasApiException())
-									log.setApiException(q.getApiException() != null && q.getApiException().length() > 255 ? q.getApiException().substring(0, 255) : q.getApiException());
-								try {
-									String message = getMessage(q);
-									if (message != null && !message.isEmpty())
-										log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
-								} catch (Exception e) {
-									if (!q.getMessageList().isEmpty()) {
-										String message = null; int level = 0;
-										for (OnlineSectioningLog.Message m: q.getMessageList()) {
-											if (message != null && !message.isEmpty() && (!m.hasLevel() || level > m.getLevel().getNumber())) continue;
-											if (m.hasText()) { message = m.getText(); level = m.getLevel().getNumber(); }
-											else if (m.hasException()) { message = m.getException(); level = m.getLevel().getNumber(); }
-										}
-										if (message != null && !message.isEmpty())
-											log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
-									}
-								}
-								Long sessionId = q.getSession().getUniqueId();
-								Session session = sessions.get(sessionId);
-								if (session == null) {
-									session = SessionDAO.getInstance().get(sessionId, hibSession);
-									sessions.put(sessionId, session);
-								}
-								log.setSession(session);
-								hibSession.save(log);
-							}
-							hibSession.flush();
-						} finally {
-							hibSession.close();
-						}
+						long t0 = System.currentTimeMillis();
+						persist(actionsToSave);
+						iLastFlushTime = System.currentTimeMillis() - t0;
+						iFlushes.incrementAndGet();
+						iFlushTime.addAndGet(iLastFlushTime);
+						iPersisted.addAndGet(actionsToSave.size());
+						sLog.debug("Persisted " + actionsToSave.size() + " actions in " + iLastFlushTime + " ms (" + this + ")");
+					} catch (Throwable t) {
+						sLog.warn("Failed to save " + actionsToSave.size() + " log actions: " + t.getMessage(), t);
 					}
-				} catch (Throwable t) {
-					sLog.warn("Failed to save " + actionsToSave.size() + " log actions: " + t.getMessage(), t);
+					actionsToSave.clear();
 				}
 				if (!iActive) break;
 			}
@@ -336,6 +345,88 @@ public class OnlineSectioningLogger extends Thread {
 			iActive = false;
 			if (iOut != null) { iOut.flush(); iOut.close(); }
 		}
-		sLog.info("Online Sectioning Logger is down.");	}
+		sLog.info("Online Sectioning Logger is down.");
+	}
+	
+	/**
+	 * Persist the given actions in one Hibernate session. The records are inserted using JDBC batches (of hibernate.jdbc.batch_size),
+	 * student external ids that are missing in the log are looked up using a single query.
+	 */
+	protected void persist(List<OnlineSectioningLog.Action> actionsToSave) {
+		org.hibernate.Session hibSession = OnlineSectioningLogDAO.getInstance().createNewSession();
+		hibSession.setCacheMode(CacheMode.IGNORE);
+		try {
+			Map<Long, String> studentExternalIds = new HashMap<Long, String>();
+			Set<Long> studentIds = new HashSet<Long>();
+			for (OnlineSectioningLog.Action q: actionsToSave) {
+				if (!q.getStudent().hasExternalId() || q.getStudent().getExternalId().isEmpty())
+					studentIds.add(q.getStudent().getUniqueId());
+			}
+			if (!studentIds.isEmpty()) {
+				List<Long> ids = new ArrayList<Long>(studentIds);
+				for (int i = 0; i < ids.size(); i += 1000) {
+					for (Object[] o: (List<Object[]>)hibSession.createQuery(
+							"select s.uniqueId, s.externalUniqueId from Student s where s.uniqueId in :studentIds")
+							.setParameterList("studentIds", ids.subList(i, Math.min(i + 1000, ids.size()))).list()) {
+						studentExternalIds.put((Long)o[0], (String)o[1]);
+					}
+				}
+			}
+			Hashtable<Long, Session> sessions = new Hashtable<Long, Session>();
+			for (OnlineSectioningLog.Action q: actionsToSave) {
+				org.unitime.timetable.model.OnlineSectioningLog log = new org.unitime.timetable.model.OnlineSectioningLog();
+				log.setAction(q.toByteArray());
+				log.setOperation(q.getOperation());
+				String studentExternalId = (q.getStudent().hasExternalId() ? q.getStudent().getExternalId() : null);
+				if (studentExternalId == null || studentExternalId.isEmpty()) {
+					if (!studentExternalIds.containsKey(q.getStudent().getUniqueId())) continue;
+					studentExternalId = studentExternalIds.get(q.getStudent().getUniqueId());
+				}
+				log.setStudent(studentExternalId);
+				log.setTimeStamp(new Date(q.getStartTime()));
+				if (q.hasResult())
+					log.setResult(q.getResult().getNumber());
+				if (q.hasUser() && q.getUser().hasExternalId())
+					log.setUser(q.getUser().getExternalId());
+				if (q.hasCpuTime())
+					log.setCpuTime(q.getCpuTime());
+				if (q.hasStartTime() && q.hasEndTime())
+					log.setWallTime(q.getEndTime() - q.getStartTime());
+				if (q.hasApiGetTime())
+					log.setApiGetTime(q.getApiGetTime());
+				if (q.hasApiPostTime())
+					log.setApiPostTime(q.getApiPostTime());
+				if (q.hasApiException())
+					log.setApiException(q.getApiException() != null && q.getApiException().length() > 255 ? q.getApiException().substring(0, 255) : q.getApiException());
+				try {
+					String message = getMessage(q);
+					if (message != null && !message.isEmpty())
+						log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
+				} catch (Exception e) {
+					if (!q.getMessageList().isEmpty()) {
+						String message = null; int level = 0;
+						for (OnlineSectioningLog.Message m: q.getMessageList()) {
+							if (message != null && !message.isEmpty() && (!m.hasLevel() || level > m.getLevel().getNumber())) continue;
+							if (m.hasText()) { message = m.getText(); level = m.getLevel().getNumber(); }
+							else if (m.hasException()) { message = m.getException(); level = m.getLevel().getNumber(); }
+						}
+						if (message != null && !message.isEmpty())
+							log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
+					}
+				}
+				Long sessionId = q.getSession().getUniqueId();
+				Session session = sessions.get(sessionId);
+				if (session == null) {
+					session = SessionDAO.getInstance().get(sessionId, hibSession);
+					sessions.put(sessionId, session);
+				}
+				log.setSession(session);
+				hibSession.save(log);
+			}
+			hibSession.flush();
+		} finally {
+			hibSession.close();
+		}
+	}
 
 }
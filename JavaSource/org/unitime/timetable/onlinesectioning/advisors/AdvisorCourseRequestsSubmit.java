@@ -58,6 +58,7 @@ import org.unitime.timetable.onlinesectioning.custom.CriticalCoursesProvider.Cri
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.model.XStudentId;
+import org.unitime.timetable.onlinesectioning.status.StudentFacetIndex;
 
 import com.lowagie.text.DocumentException;
 
@@ -446,6 +447,7 @@ public class AdvisorCourseRequestsSubmit implements OnlineSectioningAction<Advis
 								"-" + dbStudent.getExternalUniqueId());
 					}
 					helper.commitTransaction();
+					StudentFacetIndex.studentChanged(server.getAcademicSession().getUniqueId(), getDetails().getStudentId());
 					ret.setUpdated(true);
 				} catch (Exception e) {
 					helper.rollbackTransaction();
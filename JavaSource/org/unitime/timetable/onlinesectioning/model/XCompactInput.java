@@ -0,0 +1,205 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.model;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Reads the compact encoding written by {@link XCompactOutput}. Strings and week patterns that are referenced
+ * multiple times are shared by the read objects, short strings (names, types, abbreviations) are also interned
+ * so that they are shared among the objects read from different messages.
+ *
+ * @author Tomas Muller
+ */
+public class XCompactInput implements ObjectInput {
+	private static final int sInternLength = 32;
+
+	private ObjectInput iIn;
+	private List<String> iStrings = new ArrayList<String>();
+	private List<BitSet> iWeeks = new ArrayList<BitSet>();
+
+	protected XCompactInput(ObjectInput in) {
+		iIn = in;
+	}
+
+	/**
+	 * Return the input from which the object is to be read (see {@link XCompactOutput#wrap(ObjectOutput)}). When the compact encoding is enabled,
+	 * the format of the following object is read first; otherwise, the given input is returned.
+	 */
+	public static ObjectInput wrap(ObjectInput in) throws IOException {
+		if (!XCompactOutput.isEnabled()) return in;
+		byte format = in.readByte();
+		if (format != XCompactOutput.sFormatCompact)
+			throw new StreamCorruptedException("Unknown serialization format " + format + ".");
+		return new XCompactInput(in);
+	}
+
+	/**
+	 * Read an unsigned variable-length number
+	 */
+	public static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			value |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new StreamCorruptedException("Malformed number.");
+	}
+
+	/**
+	 * Read a signed (zig-zag encoded) variable-length number
+	 */
+	public static long readZigZag(DataInput in) throws IOException {
+		long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	protected String readString() throws IOException {
+		byte[] bytes = new byte[(int)readVarLong(iIn)];
+		iIn.readFully(bytes);
+		String value = new String(bytes, StandardCharsets.UTF_8);
+		return (value.length() <= sInternLength ? value.intern() : value);
+	}
+
+	protected BitSet readWeeks() throws IOException {
+		BitSet weeks = new BitSet();
+		int runs = (int)readVarLong(iIn);
+		int pos = 0;
+		for (int i = 0; i < runs; i++) {
+			pos += (int)readVarLong(iIn);
+			int length = (int)readVarLong(iIn);
+			weeks.set(pos, pos + length);
+			pos += length;
+		}
+		return weeks;
+	}
+
+	protected <T> T get(List<T> dictionary) throws IOException {
+		int index = (int)readVarLong(iIn);
+		if (index < 0 || index >= dictionary.size())
+			throw new StreamCorruptedException("Unknown reference " + index + ".");
+		return dictionary.get(index);
+	}
+
+	@Override
+	public Object readObject() throws ClassNotFoundException, IOException {
+		byte type = iIn.readByte();
+		switch (type) {
+		case XCompactOutput.sNull:
+			return null;
+		case XCompactOutput.sString:
+			String string = readString();
+			iStrings.add(string);
+			return string;
+		case XCompactOutput.sStringRef:
+			return get(iStrings);
+		case XCompactOutput.sWeeks:
+			BitSet weeks = readWeeks();
+			iWeeks.add(weeks);
+			return weeks;
+		case XCompactOutput.sWeeksRef:
+			return get(iWeeks);
+		case XCompactOutput.sInteger:
+			return Integer.valueOf((int)readZigZag(iIn));
+		case XCompactOutput.sLong:
+			return Long.valueOf(readZigZag(iIn));
+		case XCompactOutput.sObject:
+			return iIn.readObject();
+		default:
+			throw new StreamCorruptedException("Unknown object type " + type + ".");
+		}
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		return (int)readZigZag(iIn);
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return readZigZag(iIn);
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException { return iIn.readBoolean(); }
+
+	@Override
+	public byte readByte() throws IOException { return iIn.readByte(); }
+
+	@Override
+	public int readUnsignedByte() throws IOException { return iIn.readUnsignedByte(); }
+
+	@Override
+	public short readShort() throws IOException { return iIn.readShort(); }
+
+	@Override
+	public int readUnsignedShort() throws IOException { return iIn.readUnsignedShort(); }
+
+	@Override
+	public char readChar() throws IOException { return iIn.readChar(); }
+
+	@Override
+	public float readFloat() throws IOException { return iIn.readFloat(); }
+
+	@Override
+	public double readDouble() throws IOException { return iIn.readDouble(); }
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public String readLine() throws IOException { return iIn.readLine(); }
+
+	@Override
+	public String readUTF() throws IOException { return iIn.readUTF(); }
+
+	@Override
+	public void readFully(byte[] b) throws IOException { iIn.readFully(b); }
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException { iIn.readFully(b, off, len); }
+
+	@Override
+	public int skipBytes(int n) throws IOException { return iIn.skipBytes(n); }
+
+	@Override
+	public int read() throws IOException { return iIn.read(); }
+
+	@Override
+	public int read(byte[] b) throws IOException { return iIn.read(b); }
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException { return iIn.read(b, off, len); }
+
+	@Override
+	public long skip(long n) throws IOException { return iIn.skip(n); }
+
+	@Override
+	public int available() throws IOException { return iIn.available(); }
+
+	@Override
+	public void close() throws IOException { iIn.close(); }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.model;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Compact encoding of the online sectioning model, used by the Infinispan externalizers of the top-level
+ * objects (offerings, students, courses, course requests, expectations) when unitime.sectioning.serialization.compact is enabled.<br>
+ * The hand-written writeExternal methods are not changed, the output only encodes the values differently:
+ * <ul>
+ * <li>ints and longs (ids, counts, limits, time stamps) are written as variable-length zig-zag numbers (-1 used for a null id takes a single byte)
+ * <li>strings are dictionary-encoded: each distinct string is written only once within the top-level object, then referenced by its index
+ * (e.g., subpart names, instructional types, date pattern names, subject areas)
+ * <li>week patterns (bit sets) are dictionary-encoded as well and written as run lengths of the alternating clear and set bits
+ * <li>boxed integers and longs are written without the object header
+ * </ul>
+ * Any other object is passed to the underlying output. The matching input is {@link XCompactInput}.
+ *
+ * @author Tomas Muller
+ */
+public class XCompactOutput implements ObjectOutput {
+	static final byte sFormatCompact = 1;
+	static final byte sNull = 0, sString = 1, sStringRef = 2, sWeeks = 3, sWeeksRef = 4, sInteger = 5, sLong = 6, sObject = 7;
+
+	private ObjectOutput iOut;
+	private Map<String, Integer> iStrings = new HashMap<String, Integer>();
+	private Map<BitSet, Integer> iWeeks = new HashMap<BitSet, Integer>();
+
+	protected XCompactOutput(ObjectOutput out) {
+		iOut = out;
+	}
+
+	/**
+	 * Is the compact encoding enabled (unitime.sectioning.serialization.compact)
+	 */
+	public static boolean isEnabled() {
+		return ApplicationProperty.OnlineSchedulingCompactSerialization.isTrue();
+	}
+
+	/**
+	 * Return the output into which the object is to be written. When the compact encoding is enabled, the format of the following object is written first;
+	 * otherwise, the given output is returned and the object is written exactly as before (with no format marker).
+	 */
+	public static ObjectOutput wrap(ObjectOutput out) throws IOException {
+		if (!isEnabled()) return out;
+		out.writeByte(sFormatCompact);
+		return new XCompactOutput(out);
+	}
+
+	/**
+	 * Write an unsigned variable-length number (7 bits per byte)
+	 */
+	public static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	/**
+	 * Write a signed variable-length number (zig-zag encoding, small negative numbers are also short)
+	 */
+	public static void writeZigZag(DataOutput out, long value) throws IOException {
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	protected void writeString(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(iOut, bytes.length);
+		iOut.write(bytes);
+	}
+
+	protected void writeWeeks(BitSet weeks) throws IOException {
+		int runs = 0;
+		for (int i = weeks.nextSetBit(0); i >= 0; i = weeks.nextSetBit(weeks.nextClearBit(i)))
+			runs ++;
+		writeVarLong(iOut, runs);
+		int pos = 0;
+		for (int i = weeks.nextSetBit(0); i >= 0; i = weeks.nextSetBit(pos)) {
+			int end = weeks.nextClearBit(i);
+			writeVarLong(iOut, i - pos);
+			writeVarLong(iOut, end - i);
+			pos = end;
+		}
+	}
+
+	@Override
+	public void writeObject(Object obj) throws IOException {
+		if (obj == null) {
+			iOut.writeByte(sNull);
+		} else if (obj instanceof String) {
+			Integer index = iStrings.get(obj);
+			if (index == null) {
+				iStrings.put((String)obj, iStrings.size());
+				iOut.writeByte(sString);
+				writeString((String)obj);
+			} else {
+				iOut.writeByte(sStringRef);
+				writeVarLong(iOut, index);
+			}
+		} else if (obj instanceof BitSet) {
+			Integer index = iWeeks.get(obj);
+			if (index == null) {
+				iWeeks.put((BitSet)((BitSet)obj).clone(), iWeeks.size());
+				iOut.writeByte(sWeeks);
+				writeWeeks((BitSet)obj);
+			} else {
+				iOut.writeByte(sWeeksRef);
+				writeVarLong(iOut, index);
+			}
+		} else if (obj instanceof Integer) {
+			iOut.writeByte(sInteger);
+			writeZigZag(iOut, (Integer)obj);
+		} else if (obj instanceof Long) {
+			iOut.writeByte(sLong);
+			writeZigZag(iOut, (Long)obj);
+		} else {
+			iOut.writeByte(sObject);
+			iOut.writeObject(obj);
+		}
+	}
+
+	@Override
+	public void writeInt(int v) throws IOException {
+		writeZigZag(iOut, v);
+	}
+
+	@Override
+	public void writeLong(long v) throws IOException {
+		writeZigZag(iOut, v);
+	}
+
+	@Override
+	public void writeBoolean(boolean v) throws IOException { iOut.writeBoolean(v); }
+
+	@Override
+	public void writeByte(int v) throws IOException { iOut.writeByte(v); }
+
+	@Override
+	public void writeShort(int v) throws IOException { iOut.writeShort(v); }
+
+	@Override
+	public void writeChar(int v) throws IOException { iOut.writeChar(v); }
+
+	@Override
+	public void writeFloat(float v) throws IOException { iOut.writeFloat(v); }
+
+	@Override
+	public void writeDouble(double v) throws IOException { iOut.writeDouble(v); }
+
+	@Override
+	public void writeBytes(String s) throws IOException { iOut.writeBytes(s); }
+
+	@Override
+	public void writeChars(String s) throws IOException { iOut.writeChars(s); }
+
+	@Override
+	public void writeUTF(String s) throws IOException { iOut.writeUTF(s); }
+
+	@Override
+	public void write(int b) throws IOException { iOut.write(b); }
+
+	@Override
+	public void write(byte[] b) throws IOException { iOut.write(b); }
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException { iOut.write(b, off, len); }
+
+	@Override
+	public void flush() throws IOException { iOut.flush(); }
+
+	@Override
+	public void close() throws IOException { iOut.close(); }
+}
@@ -218,12 +218,12 @@ public class XCourse extends XCourseId {
 
 		@Override
 		public void writeObject(ObjectOutput output, XCourse object) throws IOException {
-			object.writeExternal(output);
+			object.writeExternal(XCompactOutput.wrap(output));
 		}
 
 		@Override
 		public XCourse readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-			return new XCourse(input);
+			return new XCourse(XCompactInput.wrap(input));
 		}
 	}
 }
\ No newline at end of file
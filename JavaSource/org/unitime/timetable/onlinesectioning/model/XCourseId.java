@@ -210,12 +210,12 @@ public class XCourseId implements Serializable, Comparable<XCourseId>, Externali
 
 		@Override
 		public void writeObject(ObjectOutput output, XCourseId object) throws IOException {
-			object.writeExternal(output);
+			object.writeExternal(XCompactOutput.wrap(output));
 		}
 
 		@Override
 		public XCourseId readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-			return new XCourseId(input);
+			return new XCourseId(XCompactInput.wrap(input));
 		}
 	}
 }
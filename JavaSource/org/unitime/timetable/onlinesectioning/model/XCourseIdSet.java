@@ -64,12 +64,12 @@ public class XCourseIdSet extends TreeSet<XCourseId> implements Externalizable {
 
 		@Override
 		public void writeObject(ObjectOutput output, XCourseIdSet object) throws IOException {
-			object.writeExternal(output);
+			object.writeExternal(XCompactOutput.wrap(output));
 		}
 
 		@Override
 		public XCourseIdSet readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-			return new XCourseIdSet(input);
+			return new XCourseIdSet(XCompactInput.wrap(input));
 		}		
 	}
 }
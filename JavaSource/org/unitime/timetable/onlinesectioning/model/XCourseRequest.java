@@ -875,12 +875,12 @@ public class XCourseRequest extends XRequest {
 
 		@Override
 		public void writeObject(ObjectOutput output, XCourseRequest object) throws IOException {
-			object.writeExternal(output);
+			object.writeExternal(XCompactOutput.wrap(output));
 		}
 
 		@Override
 		public XCourseRequest readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-			return new XCourseRequest(input);
+			return new XCourseRequest(XCompactInput.wrap(input));
 		}
 	}
 	
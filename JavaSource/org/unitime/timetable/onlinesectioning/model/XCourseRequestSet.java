@@ -64,12 +64,12 @@ public class XCourseRequestSet extends HashSet<XCourseRequest> implements Extern
 
 		@Override
 		public void writeObject(ObjectOutput output, XCourseRequestSet object) throws IOException {
-			object.writeExternal(output);
+			object.writeExternal(XCompactOutput.wrap(output));
 		}
 
 		@Override
 		public XCourseRequestSet readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-			return new XCourseRequestSet(input);
+			return new XCourseRequestSet(XCompactInput.wrap(input));
 		}		
 	}
 }
\ No newline at end of file
@@ -143,12 +143,12 @@ public class XExpectations implements Serializable, Externalizable {
 
 		@Override
 		public void writeObject(ObjectOutput output, XExpectations object) throws IOException {
-			object.writeExternal(output);
+			object.writeExternal(XCompactOutput.wrap(output));
 		}
 
 		@Override
 		public XExpectations readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-			return new XExpectations(input);
+			return new XExpectations(XCompactInput.wrap(input));
 		}
 	}
 }
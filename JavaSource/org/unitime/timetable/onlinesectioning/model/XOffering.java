@@ -1042,12 +1042,12 @@ public class XOffering implements Serializable, Externalizable {
 
 		@Override
 		public void writeObject(ObjectOutput output, XOffering object) throws IOException {
-			object.writeExternal(output);
+			object.writeExternal(XCompactOutput.wrap(output));
 		}
 
 		@Override
 		public XOffering readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-			return new XOffering(input);
+			return new XOffering(XCompactInput.wrap(input));
 		}
 	}
 }
@@ -619,7 +619,7 @@ public class XSection implements Serializable, Comparable<XSection>, Externaliza
 		int nrCreditsByCourse = in.readInt();
 		if (nrCreditsByCourse > 0) {
 			iCreditByCourse = new HashMap<Long, Float>();
-			for (int i = 0; i < nrExtIds; i++)
+			for (int i = 0; i < nrCreditsByCourse; i++)
 				iCreditByCourse.put(in.readLong(), in.readFloat());
 		} else {
 			iCreditByCourse = null;
@@ -770,12 +770,12 @@ public class XStudent extends XStudentId implements Externalizable {
 
 		@Override
 		public void writeObject(ObjectOutput output, XStudent object) throws IOException {
-			object.writeExternal(output);
+			object.writeExternal(XCompactOutput.wrap(output));
 		}
 
 		@Override
 		public XStudent readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-			return new XStudent(input);
+			return new XStudent(XCompactInput.wrap(input));
 		}
 	}
 	
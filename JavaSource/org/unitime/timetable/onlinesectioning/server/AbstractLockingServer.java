@@ -25,12 +25,15 @@ import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.gwt.resources.StudentSectioningMessages;
 import org.unitime.timetable.gwt.shared.CourseRequestInterface;
 import org.unitime.timetable.gwt.shared.SectioningException;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
-import org.unitime.timetable.onlinesectioning.MultiLock;
+import org.unitime.timetable.onlinesectioning.ConcurrentMultiLock;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
@@ -41,8 +44,9 @@ import org.unitime.timetable.onlinesectioning.model.XStudent;
  * @author Tomas Muller
  */
 public abstract class AbstractLockingServer extends AbstractServer {
+	private static StudentSectioningMessages MSG = Localization.create(StudentSectioningMessages.class);
 	private ReentrantReadWriteLock iLock = new ReentrantReadWriteLock();
-	private MultiLock iMultiLock;
+	private ConcurrentMultiLock iMultiLock;
 	private Map<Long, Lock> iOfferingLocks = new Hashtable<Long, Lock>();
 	
 	public AbstractLockingServer(OnlineSectioningServerContext context) throws SectioningException {
@@ -51,12 +55,12 @@ public abstract class AbstractLockingServer extends AbstractServer {
 	
 	protected AbstractLockingServer(AcademicSessionInfo session, boolean allowAsyncCalls) {
 		super(session, allowAsyncCalls);
-		iMultiLock = new MultiLock(getAcademicSession());
+		iMultiLock = new ConcurrentMultiLock(getAcademicSession());
 	}
 	
 	@Override
 	protected void load(OnlineSectioningServerContext context) {
-		iMultiLock = new MultiLock(getAcademicSession());
+		iMultiLock = new ConcurrentMultiLock(getAcademicSession());
 		super.load(context);
 	}
 	
@@ -143,7 +147,7 @@ public abstract class AbstractLockingServer extends AbstractServer {
 		} finally {
 			iLock.readLock().unlock();
 		}
-		return iMultiLock.lock(ids);
+		return lock(ids, actionName);
 	}
 	
 	@Override
@@ -173,7 +177,20 @@ public abstract class AbstractLockingServer extends AbstractServer {
 		} finally {
 			iLock.readLock().unlock();
 		}
-		return iMultiLock.lock(ids);
+		return lock(ids, actionName);
+	}
+	
+	/**
+	 * Lock the given ids. When the LockTimeout property (in milliseconds, can be set for each action as [action].LockTimeout) is set,
+	 * the call fails with an exception if the ids cannot be locked in the given time.
+	 */
+	protected Lock lock(Collection<Long> ids, String actionName) {
+		long timeout = getConfig().getPropertyLong(actionName + ".LockTimeout", getConfig().getPropertyLong("LockTimeout", 0l));
+		if (timeout <= 0l) return iMultiLock.lock(ids);
+		Lock lock = iMultiLock.tryLock(ids, timeout, TimeUnit.MILLISECONDS);
+		if (lock == null)
+			throw new SectioningException(MSG.exceptionLockTimeout());
+		return lock;
 	}
 	
 	private Long getOfferingIdFromCourseName(String courseName) {
@@ -227,7 +244,7 @@ public abstract class AbstractLockingServer extends AbstractServer {
 		} finally {
 			iLock.readLock().unlock();
 		}
-		return iMultiLock.lock(ids);
+		return lock(ids, actionName);
 	}
 
 	@Override
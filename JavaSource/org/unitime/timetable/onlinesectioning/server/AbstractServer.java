@@ -141,7 +141,8 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 	protected AbstractServer(AcademicSessionInfo session, boolean allowAsyncCalls) {
 		iConfig = new ServerConfig();
 		iDistanceMetric = new DistanceMetric(iConfig);
-		TravelTime.populateTravelTimes(iDistanceMetric, session.getUniqueId());
+		if (_RootDAO.isConfigured())
+			TravelTime.populateTravelTimes(iDistanceMetric, session.getUniqueId());
 		try {
 			iActionFactory = ((OnlineSectioningActionFactory)Class.forName(ApplicationProperty.CustomizationOnlineSectioningActionFactory.value()).getDeclaredConstructor().newInstance());
 		} catch (Exception e) {
@@ -251,7 +252,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 							if (obj != null) {
 								long est = estimate(mc, obj);
 								if (est > 1024)
-									info.put(clazz.getSimpleName() + "." + fields[i].getName(), df.format(est / 1024.0) + " kB" + (obj instanceof Map ? " (" + ((Map)obj).size() + " records)" : obj instanceof Collection ? "(" + ((Collection)obj).size() + " records)" : ""));
+									info.put(clazz.getSimpleName() + "." + fields[i].getName(), df.format(est / 1024.0) + " kB" + (obj instanceof Map ? " (" + ((Map)obj).size() + " records)" : obj instanceof Collection ? "(" + ((Collection)obj).size() + " records)" : obj instanceof ConcurrentLongMap ? " (" + ((ConcurrentLongMap)obj).size() + " records)" : ""));
 								total += est;
 							}
 						} catch (IllegalAccessException ex) {
@@ -287,6 +288,18 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 				total += mc.estimate(val);
 			}
 			return col.size() * total / limit;
+		} else if (obj instanceof ConcurrentLongMap) {
+			ConcurrentLongMap map = (ConcurrentLongMap)obj;
+			if (map.size() <= 1000) return mc.estimate(obj);
+			// bucket array + one entry (header, long key, value and next pointers) per record
+			long total = 16 + MemoryCounter.sSizes.getPointerSize() * map.capacity();
+			long entry = MemoryCounter.sSizes.getClassSize() + 8 + 2 * MemoryCounter.sSizes.getPointerSize();
+			long values = 0;
+			int limit = map.size() / 5; Iterator it = map.values().iterator();
+			for (int i = 0; i < limit && it.hasNext(); i++) {
+				values += mc.estimate(it.next());
+			}
+			return total + map.size() * (entry + values / limit);
 		} else {
 			return mc.estimate(obj);
 		}
@@ -677,33 +690,35 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			setProperty("student-email.LockOfferings", "false");
 			setProperty("eligibility.LockOfferings", "false");
 			
-			org.hibernate.Session hibSession = SessionDAO.getInstance().createNewSession();
-			try {
-				for (SolverParameterDef def: (List<SolverParameterDef>)hibSession.createQuery(
-						"from SolverParameterDef x where x.group.type = :type and x.default is not null")
-						.setInteger("type", SolverParameterGroup.SolverType.STUDENT.ordinal()).list()) {
-					setProperty(def.getName(), def.getDefault());
-				}
-				SolverPredefinedSetting settings = (SolverPredefinedSetting)hibSession.createQuery(
-						"from SolverPredefinedSetting x where x.name = :reference")
-						.setString("reference", "StudentSct.Online").setMaxResults(1).uniqueResult();
-				if (settings != null) {
-					for (SolverParameter param: settings.getParameters()) {
-						if (!param.getDefinition().isVisible().booleanValue()) continue;
-						if (param.getDefinition().getGroup().getSolverType() != SolverParameterGroup.SolverType.STUDENT) continue;
-						setProperty(param.getDefinition().getName(), param.getValue());
+			if (_RootDAO.isConfigured()) {
+				org.hibernate.Session hibSession = SessionDAO.getInstance().createNewSession();
+				try {
+					for (SolverParameterDef def: (List<SolverParameterDef>)hibSession.createQuery(
+							"from SolverParameterDef x where x.group.type = :type and x.default is not null")
+							.setInteger("type", SolverParameterGroup.SolverType.STUDENT.ordinal()).list()) {
+						setProperty(def.getName(), def.getDefault());
+					}
+					SolverPredefinedSetting settings = (SolverPredefinedSetting)hibSession.createQuery(
+							"from SolverPredefinedSetting x where x.name = :reference")
+							.setString("reference", "StudentSct.Online").setMaxResults(1).uniqueResult();
+					if (settings != null) {
+						for (SolverParameter param: settings.getParameters()) {
+							if (!param.getDefinition().isVisible().booleanValue()) continue;
+							if (param.getDefinition().getGroup().getSolverType() != SolverParameterGroup.SolverType.STUDENT) continue;
+							setProperty(param.getDefinition().getName(), param.getValue());
+						}
+						setProperty("General.SettingsId", settings.getUniqueId().toString());
 					}
-					setProperty("General.SettingsId", settings.getUniqueId().toString());
+				} finally {
+					hibSession.close();
 				}
-				if (getProperty("Distances.Ellipsoid") == null || "DEFAULT".equals(getProperty("Distances.Ellipsoid")))
-					setProperty("Distances.Ellipsoid", ApplicationProperty.DistanceEllipsoid.value());
-				if ("Priority".equals(getProperty("StudentWeights.Mode")))
-					setProperty("StudentWeights.PriorityWeighting", "true");
-				else if ("Equal".equals(getProperty("StudentWeights.Mode")))
-					setProperty("StudentWeights.PriorityWeighting", "false");
-			} finally {
-				hibSession.close();
 			}
+			if (getProperty("Distances.Ellipsoid") == null || "DEFAULT".equals(getProperty("Distances.Ellipsoid")))
+				setProperty("Distances.Ellipsoid", ApplicationProperty.DistanceEllipsoid.value());
+			if ("Priority".equals(getProperty("StudentWeights.Mode")))
+				setProperty("StudentWeights.PriorityWeighting", "true");
+			else if ("Equal".equals(getProperty("StudentWeights.Mode")))
+				setProperty("StudentWeights.PriorityWeighting", "false");
 		}
 		
 		@Override
@@ -0,0 +1,457 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.unitime.timetable.gwt.shared.SectioningException;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
+import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
+import org.unitime.timetable.onlinesectioning.match.StudentMatcher;
+import org.unitime.timetable.onlinesectioning.model.XCourse;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XRequest;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+
+/**
+ * In-memory server with a more compact and read-optimized store than {@link InMemoryServer}.
+ * Students, offerings, courses, and expectations are kept in primitive long-keyed maps ({@link ConcurrentLongMap}),
+ * course requests of an offering are kept in immutable arrays that are replaced on each change (copy-on-write),
+ * so {@link #getRequests(Long)} can return the current snapshot without making a copy.
+ * All the lookups are lock-free, updates are still serialized using the write lock.
+ * Use unitime.enrollment.server.class=org.unitime.timetable.onlinesectioning.server.CompactInMemoryServer to enable,
+ * the memory usage of the two stores can be compared using {@link #getMemUsage()}.
+ *
+ * @author Tomas Muller
+ */
+public class CompactInMemoryServer extends AbstractLockingServer {
+	private static final XCourseRequest[] sNoRequests = new XCourseRequest[0];
+	private static final XCourseId[] sNoCourses = new XCourseId[0];
+
+	private ConcurrentLongMap<XCourseId> iCourseForId = new ConcurrentLongMap<XCourseId>();
+	private ConcurrentHashMap<String, XCourseId[]> iCourseForName = new ConcurrentHashMap<String, XCourseId[]>();
+	private CourseSearchIndex iCourseIndex = new CourseSearchIndex();
+
+	private ConcurrentLongMap<XStudent> iStudentTable = new ConcurrentLongMap<XStudent>();
+	private ConcurrentLongMap<XOffering> iOfferingTable = new ConcurrentLongMap<XOffering>();
+	private ConcurrentLongMap<XCourseRequest[]> iOfferingRequests = new ConcurrentLongMap<XCourseRequest[]>();
+	private ConcurrentLongMap<XExpectations> iExpectations = new ConcurrentLongMap<XExpectations>();
+	private ConcurrentHashMap<String, Set<Long>> iInstructedOfferings = new ConcurrentHashMap<String, Set<Long>>();
+
+	public CompactInMemoryServer(OnlineSectioningServerContext context) throws SectioningException {
+		super(context);
+	}
+
+	/**
+	 * Empty server that is not loaded from the database (e.g., for benchmarking), use the update methods to populate it
+	 */
+	public CompactInMemoryServer(AcademicSessionInfo session, boolean allowAsyncCalls) {
+		super(session, allowAsyncCalls);
+	}
+
+	@Override
+	public Collection<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher) {
+		return findCourses(query, limit, matcher, new CourseComparator(query));
+	}
+
+	@Override
+	public Collection<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher, Comparator<XCourseId> cmp) {
+		if (matcher != null) matcher.setServer(this);
+		return iCourseIndex.findCourses(query.toLowerCase(), limit, matcher, cmp);
+	}
+
+	@Override
+	public Collection<XCourseId> findCourses(CourseMatcher matcher) {
+		if (matcher != null) matcher.setServer(this);
+		Set<XCourseId> ret = new TreeSet<XCourseId>();
+		for (XCourseId c : iCourseForId.values()) {
+			if (matcher == null || matcher.match(c)) ret.add(c);
+		}
+		return ret;
+	}
+
+	@Override
+	public Collection<XStudent> findStudents(StudentMatcher matcher) {
+		if (matcher != null) matcher.setServer(this);
+		List<XStudent> ret = new ArrayList<XStudent>();
+		for (XStudent s: iStudentTable.values())
+			if (matcher == null || matcher.match(s)) ret.add(s);
+		return ret;
+	}
+
+	@Override
+	public XCourseId getCourse(String course) {
+		for (int idx = course.indexOf('-'); idx >= 0; idx = course.indexOf('-', idx + 1)) {
+			String courseName = course.substring(0, idx).trim();
+			String title = course.substring(idx + 1).trim();
+			XCourseId[] infos = iCourseForName.get(courseName.toLowerCase());
+			if (infos != null)
+				for (XCourseId info: infos)
+					if (title.equalsIgnoreCase(info.getTitle())) return info;
+		}
+		XCourseId[] infos = iCourseForName.get(course.toLowerCase());
+		if (infos != null && infos.length > 0) return infos[0];
+		return null;
+	}
+
+	private XCourse toCourse(XCourseId course) {
+		if (course == null) return null;
+		if (course instanceof XCourse)
+			return (XCourse)course;
+		XOffering offering = getOffering(course.getOfferingId());
+		return offering == null ? null : offering.getCourse(course);
+	}
+
+	@Override
+	public XCourse getCourse(Long courseId) {
+		return toCourse(iCourseForId.get(courseId));
+	}
+
+	@Override
+	public XStudent getStudent(Long studentId) {
+		return iStudentTable.get(studentId);
+	}
+
+	@Override
+	public XOffering getOffering(Long offeringId) {
+		return iOfferingTable.get(offeringId);
+	}
+
+	@Override
+	public Collection<XCourseRequest> getRequests(Long offeringId) {
+		XCourseRequest[] requests = iOfferingRequests.get(offeringId);
+		return requests == null ? null : Collections.unmodifiableList(Arrays.asList(requests));
+	}
+
+	@Override
+	public XExpectations getExpectations(Long offeringId) {
+		XExpectations expectations = iExpectations.get(offeringId);
+		return expectations == null ? new XExpectations(offeringId) : expectations;
+	}
+
+	@Override
+	public void update(XExpectations expectations) {
+		Lock lock = writeLock();
+		try {
+			iExpectations.put(expectations.getOfferingId(), expectations);
+		} finally {
+			lock.release();
+		}
+	}
+
+	/**
+	 * Replace the course requests of an offering by a new array: all the requests that are equal to some of the removed
+	 * requests are dropped and the added requests are appended at the end.
+	 */
+	private void updateRequests(Long offeringId, Collection<XCourseRequest> removed, Collection<XCourseRequest> added) {
+		XCourseRequest[] requests = iOfferingRequests.get(offeringId);
+		if (requests == null) {
+			if (added == null || added.isEmpty()) return;
+			requests = sNoRequests;
+		}
+		List<XCourseRequest> ret = new ArrayList<XCourseRequest>(requests.length + (added == null ? 0 : added.size()));
+		for (XCourseRequest request: requests)
+			if (removed == null || !removed.contains(request)) ret.add(request);
+		if (added != null) ret.addAll(added);
+		iOfferingRequests.put(offeringId, ret.toArray(new XCourseRequest[ret.size()]));
+	}
+
+	/**
+	 * Replace the given course request in all its offerings: the request is removed from every offering of its courses
+	 * and added back to the offerings for which it is not a duplicate. Each offering is updated only once, so that
+	 * alternatives of the same offering (e.g., cross-listed courses) do not drop the request again once it is added.
+	 */
+	private void replaceRequest(XCourseRequest cr) {
+		Set<Long> removed = new LinkedHashSet<Long>();
+		Set<Long> added = new HashSet<Long>();
+		for (XCourseId course: cr.getCourseIds()) {
+			removed.add(course.getOfferingId());
+			if (!cr.isDuplicateOffering(course)) added.add(course.getOfferingId());
+		}
+		Collection<XCourseRequest> requests = Collections.singleton(cr);
+		for (Long offeringId: removed)
+			updateRequests(offeringId, requests, added.contains(offeringId) ? requests : null);
+	}
+
+	private static void addRequest(Map<Long, List<XCourseRequest>> table, Long offeringId, XCourseRequest request) {
+		List<XCourseRequest> requests = table.get(offeringId);
+		if (requests == null) {
+			requests = new ArrayList<XCourseRequest>();
+			table.put(offeringId, requests);
+		}
+		requests.add(request);
+	}
+
+	@Override
+	public void remove(XStudent student) {
+		Lock lock = writeLock();
+		try {
+			XStudent oldStudent = iStudentTable.remove(student.getStudentId());
+			if (oldStudent != null) {
+				Map<Long, List<XCourseRequest>> removed = new HashMap<Long, List<XCourseRequest>>();
+				for (XRequest request: oldStudent.getRequests())
+					if (request instanceof XCourseRequest)
+						for (XCourseId course: ((XCourseRequest)request).getCourseIds())
+							addRequest(removed, course.getOfferingId(), (XCourseRequest)request);
+				for (Map.Entry<Long, List<XCourseRequest>> e: removed.entrySet())
+					updateRequests(e.getKey(), e.getValue(), null);
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void update(XStudent student, boolean updateRequests) {
+		Lock lock = writeLock();
+		try {
+			XStudent oldStudent = iStudentTable.put(student.getStudentId(), student);
+			if (updateRequests) {
+				Map<Long, List<XCourseRequest>> removed = new HashMap<Long, List<XCourseRequest>>();
+				Map<Long, List<XCourseRequest>> added = new HashMap<Long, List<XCourseRequest>>();
+				if (oldStudent != null) {
+					for (XRequest request: oldStudent.getRequests())
+						if (request instanceof XCourseRequest)
+							for (XCourseId course: ((XCourseRequest)request).getCourseIds())
+								addRequest(removed, course.getOfferingId(), (XCourseRequest)request);
+				}
+				for (XRequest request: student.getRequests())
+					if (request instanceof XCourseRequest) {
+						XCourseRequest cr = (XCourseRequest)request;
+						for (XCourseId course: cr.getCourseIds()) {
+							if (cr.isDuplicateOffering(course)) continue;
+							addRequest(added, course.getOfferingId(), cr);
+						}
+					}
+				Set<Long> offeringIds = new HashSet<Long>(removed.keySet());
+				offeringIds.addAll(added.keySet());
+				for (Long offeringId: offeringIds)
+					updateRequests(offeringId, removed.get(offeringId), added.get(offeringId));
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void remove(XOffering offering) {
+		Lock lock = writeLock();
+		try {
+			iOfferingTable.remove(offering.getOfferingId());
+			removeCourses(offering, null);
+			iExpectations.remove(offering.getOfferingId());
+			removeInstructors(offering, null);
+		} finally {
+			lock.release();
+		}
+	}
+
+	/**
+	 * Remove courses of an offering from the course indexes, except of the courses of the replacement offering (if present).
+	 */
+	private void removeCourses(XOffering offering, XOffering replacement) {
+		for (XCourse course: offering.getCourses()) {
+			if (replacement != null && replacement.getCourse(course.getCourseId()) != null) continue;
+			iCourseForId.remove(course.getCourseId());
+			iCourseIndex.remove(course.getCourseId());
+			XCourseId[] courses = iCourseForName.get(course.getCourseNameInLowerCase());
+			if (courses != null) {
+				List<XCourseId> ret = new ArrayList<XCourseId>(courses.length);
+				for (XCourseId c: courses)
+					if (!c.equals(course)) ret.add(c);
+				if (ret.size() == 1)
+					for (XCourseId x: ret) x.setHasUniqueName(true);
+				if (ret.isEmpty())
+					iCourseForName.remove(course.getCourseNameInLowerCase());
+				else
+					iCourseForName.put(course.getCourseNameInLowerCase(), ret.toArray(sNoCourses));
+			}
+		}
+	}
+
+	private void removeInstructors(XOffering offering, XOffering replacement) {
+		for (String externalId: offering.getInstructorExternalIds()) {
+			if (replacement != null && replacement.getInstructorExternalIds().contains(externalId)) continue;
+			Set<Long> offeringIds = iInstructedOfferings.get(externalId);
+			if (offeringIds != null && offeringIds.contains(offering.getOfferingId())) {
+				Set<Long> ret = new HashSet<Long>(offeringIds);
+				ret.remove(offering.getOfferingId());
+				iInstructedOfferings.put(externalId, Collections.unmodifiableSet(ret));
+			}
+		}
+	}
+
+	@Override
+	public void update(XOffering offering) {
+		Lock lock = writeLock();
+		try {
+			XOffering oldOffering = iOfferingTable.put(offering.getOfferingId(), offering);
+
+			for (XCourse course: offering.getCourses()) {
+				XCourseId oldCourse = iCourseForId.put(course.getCourseId(), course);
+				iCourseIndex.add(course);
+				if (oldCourse != null && !oldCourse.getCourseNameInLowerCase().equals(course.getCourseNameInLowerCase())) {
+					XCourseId[] courses = iCourseForName.get(oldCourse.getCourseNameInLowerCase());
+					if (courses != null) {
+						List<XCourseId> ret = new ArrayList<XCourseId>(courses.length);
+						for (XCourseId c: courses)
+							if (!c.equals(course)) ret.add(c);
+						if (ret.size() == 1)
+							for (XCourseId x: ret) x.setHasUniqueName(true);
+						if (ret.isEmpty())
+							iCourseForName.remove(oldCourse.getCourseNameInLowerCase());
+						else
+							iCourseForName.put(oldCourse.getCourseNameInLowerCase(), ret.toArray(sNoCourses));
+					}
+				}
+				XCourseId[] courses = iCourseForName.get(course.getCourseNameInLowerCase());
+				TreeSet<XCourseId> ret = new TreeSet<XCourseId>();
+				if (courses != null)
+					for (XCourseId c: courses)
+						if (!c.equals(course)) ret.add(c);
+				ret.add(course);
+				for (XCourseId x: ret) x.setHasUniqueName(ret.size() == 1);
+				iCourseForName.put(course.getCourseNameInLowerCase(), ret.toArray(sNoCourses));
+			}
+
+			if (oldOffering != null) {
+				removeCourses(oldOffering, offering);
+				removeInstructors(oldOffering, offering);
+			}
+
+			for (String externalId: offering.getInstructorExternalIds()) {
+				Set<Long> offeringIds = iInstructedOfferings.get(externalId);
+				if (offeringIds == null || !offeringIds.contains(offering.getOfferingId())) {
+					Set<Long> ret = (offeringIds == null ? new HashSet<Long>() : new HashSet<Long>(offeringIds));
+					ret.add(offering.getOfferingId());
+					iInstructedOfferings.put(externalId, Collections.unmodifiableSet(ret));
+				}
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void clearAll() {
+		Lock lock = writeLock();
+		try {
+			iStudentTable.clear();
+			iOfferingTable.clear();
+			iOfferingRequests.clear();
+			iExpectations.clear();
+			iCourseForId.clear();
+			iCourseForName.clear();
+			iCourseIndex.clear();
+			iInstructedOfferings.clear();
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void clearAllStudents() {
+		Lock lock = writeLock();
+		try {
+			iStudentTable.clear();
+			iOfferingRequests.clear();
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public XCourseRequest assign(XCourseRequest request, XEnrollment enrollment) {
+		Lock lock = writeLock();
+		try {
+			XStudent student = iStudentTable.get(request.getStudentId());
+			for (XRequest r: student.getRequests()) {
+				if (r.equals(request)) {
+					XCourseRequest cr = (XCourseRequest)r;
+
+					// assign
+					cr.setEnrollment(enrollment);
+
+					// replace old requests with the new ones
+					replaceRequest(cr);
+
+					return cr;
+				}
+			}
+			return null;
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public XCourseRequest waitlist(XCourseRequest request, boolean waitlist) {
+		Lock lock = writeLock();
+		try {
+			XStudent student = iStudentTable.get(request.getStudentId());
+			for (XRequest r: student.getRequests()) {
+				if (r.equals(request)) {
+					XCourseRequest cr = (XCourseRequest)r;
+
+					// assign
+					cr.setWaitlist(waitlist);
+					cr.setWaitListedTimeStamp(request.getWaitListedTimeStamp());
+					cr.setWaitListSwapWithCourseOffering(request.getWaitListSwapWithCourseOffering());
+
+					// replace old requests with the new ones
+					replaceRequest(cr);
+
+					return cr;
+				}
+			}
+			return null;
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public Collection<Long> getInstructedOfferings(String instructorExternalId) {
+		return iInstructedOfferings.get(instructorExternalId);
+	}
+
+	@Override
+	public Set<Long> getRequestedCourseIds(Long studentId) {
+		XStudent student = iStudentTable.get(studentId);
+		return (student == null ? null : student.getRequestedCourseIds());
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hash map with primitive long keys. Each bucket is an immutable chain of entries that is replaced
+ * as a whole on update, so the reads never block and never see a partially updated bucket. Updates
+ * are serialized on the map itself. Unlike a {@link java.util.Hashtable}, there is no boxed key and
+ * no per-entry hash field, which saves about 24 bytes per entry.
+ *
+ * @author Tomas Muller
+ */
+public class ConcurrentLongMap<V> {
+	private static final int sInitialCapacity = 64;
+	private volatile AtomicReferenceArray<Entry<V>> iTable;
+	private volatile int iSize = 0;
+
+	public ConcurrentLongMap() {
+		this(sInitialCapacity);
+	}
+
+	public ConcurrentLongMap(int expectedSize) {
+		int capacity = sInitialCapacity;
+		while (capacity * 3 < 4 * expectedSize) capacity <<= 1;
+		iTable = new AtomicReferenceArray<Entry<V>>(capacity);
+	}
+
+	private static int index(long key, int length) {
+		int h = (int)(key ^ (key >>> 32));
+		h ^= (h >>> 16);
+		return h & (length - 1);
+	}
+
+	public V get(long key) {
+		AtomicReferenceArray<Entry<V>> table = iTable;
+		for (Entry<V> e = table.get(index(key, table.length())); e != null; e = e.iNext)
+			if (e.iKey == key) return e.iValue;
+		return null;
+	}
+
+	public V get(Long key) {
+		return key == null ? null : get(key.longValue());
+	}
+
+	public boolean containsKey(long key) {
+		AtomicReferenceArray<Entry<V>> table = iTable;
+		for (Entry<V> e = table.get(index(key, table.length())); e != null; e = e.iNext)
+			if (e.iKey == key) return true;
+		return false;
+	}
+
+	public synchronized V put(long key, V value) {
+		AtomicReferenceArray<Entry<V>> table = iTable;
+		int idx = index(key, table.length());
+		Entry<V> head = table.get(idx);
+		for (Entry<V> e = head; e != null; e = e.iNext) {
+			if (e.iKey == key) {
+				table.set(idx, replace(head, e, new Entry<V>(key, value, e.iNext)));
+				return e.iValue;
+			}
+		}
+		table.set(idx, new Entry<V>(key, value, head));
+		iSize ++;
+		if (4 * iSize > 3 * table.length()) resize(table);
+		return null;
+	}
+
+	public synchronized V remove(long key) {
+		AtomicReferenceArray<Entry<V>> table = iTable;
+		int idx = index(key, table.length());
+		Entry<V> head = table.get(idx);
+		for (Entry<V> e = head; e != null; e = e.iNext) {
+			if (e.iKey == key) {
+				table.set(idx, replace(head, e, e.iNext));
+				iSize --;
+				return e.iValue;
+			}
+		}
+		return null;
+	}
+
+	public synchronized void clear() {
+		iTable = new AtomicReferenceArray<Entry<V>>(sInitialCapacity);
+		iSize = 0;
+	}
+
+	public int size() {
+		return iSize;
+	}
+
+	public boolean isEmpty() {
+		return iSize == 0;
+	}
+
+	/** Number of buckets, used for memory estimates */
+	public int capacity() {
+		return iTable.length();
+	}
+
+	/**
+	 * Values of the map. The returned collection is a weakly consistent view: the iteration never fails,
+	 * but it may or may not reflect updates made after the iteration has started.
+	 */
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			@Override
+			public Iterator<V> iterator() {
+				return new ValueIterator<V>(iTable);
+			}
+
+			@Override
+			public int size() {
+				return iSize;
+			}
+		};
+	}
+
+	/** Copy the chain up to the entry to be replaced, the rest of the chain is shared */
+	private static <V> Entry<V> replace(Entry<V> head, Entry<V> entry, Entry<V> replacement) {
+		if (head == entry) return replacement;
+		return new Entry<V>(head.iKey, head.iValue, replace(head.iNext, entry, replacement));
+	}
+
+	private void resize(AtomicReferenceArray<Entry<V>> table) {
+		AtomicReferenceArray<Entry<V>> newTable = new AtomicReferenceArray<Entry<V>>(2 * table.length());
+		for (int i = 0; i < table.length(); i++) {
+			for (Entry<V> e = table.get(i); e != null; e = e.iNext) {
+				int idx = index(e.iKey, newTable.length());
+				newTable.set(idx, new Entry<V>(e.iKey, e.iValue, newTable.get(idx)));
+			}
+		}
+		iTable = newTable;
+	}
+
+	private static class Entry<V> {
+		private final long iKey;
+		private final V iValue;
+		private final Entry<V> iNext;
+
+		private Entry(long key, V value, Entry<V> next) {
+			iKey = key; iValue = value; iNext = next;
+		}
+	}
+
+	private static class ValueIterator<V> implements Iterator<V> {
+		private AtomicReferenceArray<Entry<V>> iTable;
+		private int iIndex = 0;
+		private Entry<V> iNext = null;
+
+		private ValueIterator(AtomicReferenceArray<Entry<V>> table) {
+			iTable = table;
+			advance();
+		}
+
+		private void advance() {
+			if (iNext != null) iNext = iNext.iNext;
+			while (iNext == null && iIndex < iTable.length())
+				iNext = iTable.get(iIndex++);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iNext != null;
+		}
+
+		@Override
+		public V next() {
+			if (iNext == null) throw new NoSuchElementException();
+			V value = iNext.iValue;
+			advance();
+			return value;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+
+/**
+ * Search index for {@link org.unitime.timetable.onlinesectioning.OnlineSectioningServer#findCourses(String, Integer, CourseMatcher, Comparator)}.
+ * Courses matching the query by the course name (see {@link XCourseId#matchCourseName(String)}) are looked up in a sorted map of
+ * all the course name prefixes (course name, course number, course name and title), courses matching the query by the title
+ * (see {@link XCourseId#matchTitle(String)}) are looked up using a trigram index of the course titles. All the candidates are
+ * checked against the original match methods, so the results are the same as of the full scan.
+ * The index is updated incrementally, updates are serialized, lookups are lock-free.
+ *
+ * @author Tomas Muller
+ */
+public class CourseSearchIndex {
+	private ConcurrentHashMap<Long, XCourseId> iCourses = new ConcurrentHashMap<Long, XCourseId>();
+	private ConcurrentSkipListMap<String, Set<XCourseId>> iPrefixes = new ConcurrentSkipListMap<String, Set<XCourseId>>();
+	private ConcurrentHashMap<String, Set<XCourseId>> iTrigrams = new ConcurrentHashMap<String, Set<XCourseId>>();
+
+	/**
+	 * Add a course to the index, replacing the course of the same id (if present)
+	 */
+	public synchronized void add(XCourseId course) {
+		XCourseId old = iCourses.put(course.getCourseId(), course);
+		if (old != null) {
+			for (String key: prefixes(old)) remove(iPrefixes, key, old);
+			for (String key: trigrams(old)) remove(iTrigrams, key, old);
+		}
+		for (String key: prefixes(course)) add(iPrefixes, key, course);
+		for (String key: trigrams(course)) add(iTrigrams, key, course);
+	}
+
+	/**
+	 * Remove a course of the given id from the index
+	 */
+	public synchronized XCourseId remove(Long courseId) {
+		XCourseId old = iCourses.remove(courseId);
+		if (old != null) {
+			for (String key: prefixes(old)) remove(iPrefixes, key, old);
+			for (String key: trigrams(old)) remove(iTrigrams, key, old);
+		}
+		return old;
+	}
+
+	public synchronized void clear() {
+		iCourses.clear();
+		iPrefixes.clear();
+		iTrigrams.clear();
+	}
+
+	public int size() {
+		return iCourses.size();
+	}
+
+	public Collection<XCourseId> getCourses() {
+		return iCourses.values();
+	}
+
+	public boolean contains(Long courseId) {
+		return iCourses.containsKey(courseId);
+	}
+
+	private static void add(Map<String, Set<XCourseId>> map, String key, XCourseId course) {
+		Set<XCourseId> courses = map.get(key);
+		if (courses == null) {
+			courses = ConcurrentHashMap.newKeySet();
+			map.put(key, courses);
+		}
+		courses.add(course);
+	}
+
+	private static void remove(Map<String, Set<XCourseId>> map, String key, XCourseId course) {
+		Set<XCourseId> courses = map.get(key);
+		if (courses != null && courses.remove(course) && courses.isEmpty())
+			map.remove(key);
+	}
+
+	/**
+	 * All the strings of which a prefix needs to match for {@link XCourseId#matchCourseName(String)} to be true
+	 */
+	protected static Set<String> prefixes(XCourseId course) {
+		Set<String> prefixes = new HashSet<String>();
+		String name = course.getCourseName();
+		prefixes.add(name.toLowerCase());
+		if (course.getCourseNumber() != null)
+			prefixes.add(course.getCourseNumber().toLowerCase());
+		if (name.indexOf('-') >= 0)
+			prefixes.add(name.substring(name.lastIndexOf('-') + 1).trim().toLowerCase());
+		if (course.getTitle() != null) {
+			prefixes.add((name + " " + course.getTitle()).toLowerCase());
+			prefixes.add((name + " - " + course.getTitle()).toLowerCase());
+		}
+		return prefixes;
+	}
+
+	/**
+	 * Trigrams of the course title, a space is added in front of the title so that a title starting with the query
+	 * is handled the same way as a title containing a word starting with the query
+	 */
+	protected static Set<String> trigrams(XCourseId course) {
+		if (course.getTitle() == null) return new HashSet<String>();
+		return trigrams(" " + course.getTitle().toLowerCase());
+	}
+
+	protected static Set<String> trigrams(String text) {
+		Set<String> trigrams = new HashSet<String>();
+		for (int i = 0; i + 3 <= text.length(); i++)
+			trigrams.add(text.substring(i, i + 3));
+		return trigrams;
+	}
+
+	/**
+	 * Courses with a matching course name
+	 */
+	protected Collection<XCourseId> getCourseNameCandidates(String queryInLowerCase) {
+		if (queryInLowerCase.isEmpty()) return iCourses.values();
+		Set<XCourseId> ret = new HashSet<XCourseId>();
+		for (Set<XCourseId> courses: iPrefixes.subMap(queryInLowerCase, true, queryInLowerCase + Character.MAX_VALUE, false).values())
+			ret.addAll(courses);
+		return ret;
+	}
+
+	/**
+	 * Courses that contain all the trigrams of the query (the smallest of the trigram sets is returned)
+	 */
+	protected Collection<XCourseId> getTitleCandidates(String queryInLowerCase) {
+		Set<XCourseId> ret = null;
+		for (String trigram: trigrams(" " + queryInLowerCase)) {
+			Set<XCourseId> courses = iTrigrams.get(trigram);
+			if (courses == null) return new HashSet<XCourseId>();
+			if (ret == null || courses.size() < ret.size()) ret = courses;
+		}
+		return ret == null ? iCourses.values() : ret;
+	}
+
+	/**
+	 * Find courses matching the given query, same as {@link InMemoryServer#findCourses(String, Integer, CourseMatcher, Comparator)}, but using the index.
+	 * Courses with a matching course name are preferred, courses with a matching title are only considered when the limit
+	 * has not been reached and the query has at least three characters. The best courses (using the given comparator) are returned.
+	 */
+	public SubSet<XCourseId> findCourses(String queryInLowerCase, Integer limit, CourseMatcher matcher, Comparator<XCourseId> cmp) {
+		SubSet<XCourseId> ret = new SubSet<XCourseId>(limit, cmp);
+		for (XCourseId c: getCourseNameCandidates(queryInLowerCase)) {
+			if (c.matchCourseName(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
+		}
+		if (!ret.isLimitReached() && queryInLowerCase.length() > 2) {
+			for (XCourseId c: getTitleCandidates(queryInLowerCase)) {
+				if (c.matchTitle(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.transaction.Status;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryCreatedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryRemovedEvent;
+import org.infinispan.notifications.cachelistener.filter.CacheEventConverter;
+import org.infinispan.notifications.cachelistener.filter.EventType;
+
+/**
+ * Local, size-bounded near-cache in front of an Infinispan cache (see {@link ReplicatedServer}).<br>
+ * In a distributed cache, a read of an entry that is owned by some other node means a remote fetch and a deserialization
+ * of the object. The near-cache keeps up to the given number of the most recently used objects locally (LRU eviction),
+ * the entries expire after the given time to live. The entries are invalidated by a clustered cache listener (only the
+ * keys of the changed entries are sent to the listening node) and by the writes made through the near-cache on this node.
+ * The near-cache is bypassed when the current thread is in a transaction (so that the uncommitted changes are never cached).
+ * A clear of the underlying cache made on some other node is not propagated, such entries are dropped when they expire.<br>
+ * Hits, misses, evictions, and the fetch latency of the underlying cache are registered as an MBean (org.unitime:type=NearCache,name=...).
+ *
+ * @author Tomas Muller
+ */
+public class NearCache<K, V> {
+	private static Log sLog = LogFactory.getLog(NearCache.class);
+
+	private Cache<K, V> iCache;
+	private String iName;
+	private int iMaxSize;
+	private long iTimeToLive;
+	private long iGeneration = 0;
+	private InvalidationListener iListener = null;
+	private ObjectName iObjectName = null;
+	private Statistics iStatistics = new Statistics();
+	private Map<K, CachedValue<V>> iValues = new LinkedHashMap<K, CachedValue<V>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+			if (size() > iMaxSize) {
+				iStatistics.iEvictions ++;
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * @param cache underlying cache
+	 * @param maxSize maximal number of locally cached entries (0 to disable the near-cache, only the statistics are kept)
+	 * @param timeToLive time to live of a locally cached entry in milliseconds
+	 */
+	public NearCache(Cache<K, V> cache, int maxSize, long timeToLive) {
+		iCache = cache;
+		iName = cache.getName();
+		iMaxSize = Math.max(0, maxSize);
+		iTimeToLive = timeToLive;
+		if (isEnabled()) {
+			iListener = new InvalidationListener();
+			iCache.addListener(iListener, null, new KeyOnlyConverter<K, V>());
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("org.unitime:type=NearCache,name=" + ObjectName.quote(iName));
+			if (!server.isRegistered(name)) {
+				server.registerMBean(iStatistics, name);
+				iObjectName = name;
+			}
+		} catch (Exception e) {
+			sLog.debug("Failed to register near-cache statistics for " + iName + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * True if the objects are being cached locally
+	 */
+	public boolean isEnabled() { return iMaxSize > 0; }
+
+	/**
+	 * Underlying cache
+	 */
+	public Cache<K, V> getCache() { return iCache; }
+
+	private boolean inTransaction() {
+		TransactionManager tm = iCache.getAdvancedCache().getTransactionManager();
+		if (tm == null) return false;
+		try {
+			Transaction tx = tm.getTransaction();
+			return tx != null && tx.getStatus() != Status.STATUS_NO_TRANSACTION;
+		} catch (Exception e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Returns the locally cached value, or retrieves the value from the underlying cache
+	 */
+	public V get(K key) {
+		if (key == null) return null;
+		boolean bypass = !isEnabled() || inTransaction();
+		long generation = 0;
+		if (!bypass) {
+			synchronized (this) {
+				CachedValue<V> value = iValues.get(key);
+				if (value != null) {
+					if (System.currentTimeMillis() - value.iTimeStamp <= iTimeToLive) {
+						iStatistics.iHits ++;
+						return value.iValue;
+					}
+					iValues.remove(key);
+					iStatistics.iExpirations ++;
+				}
+				iStatistics.iMisses ++;
+				generation = iGeneration;
+			}
+		}
+		long t0 = System.nanoTime();
+		V value = iCache.get(key);
+		long time = System.nanoTime() - t0;
+		synchronized (this) {
+			iStatistics.iFetches ++;
+			iStatistics.iFetchTime += time;
+			if (time > iStatistics.iMaxFetchTime) iStatistics.iMaxFetchTime = time;
+			// do not cache the value when there was an invalidation in the mean time (the value may be already stale)
+			if (!bypass && value != null && generation == iGeneration) {
+				iValues.put(key, new CachedValue<V>(value));
+				expire();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Put a value into the underlying cache, the locally cached value is invalidated
+	 */
+	public void put(K key, V value) {
+		iCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(key, value);
+		invalidate(key);
+	}
+
+	/**
+	 * Remove a value from the underlying cache, the locally cached value is invalidated
+	 */
+	public void remove(K key) {
+		iCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(key);
+		invalidate(key);
+	}
+
+	/**
+	 * Clear the underlying cache and the near-cache
+	 */
+	public void clear() {
+		iCache.clear();
+		invalidateAll();
+	}
+
+	/**
+	 * Invalidate the locally cached value
+	 */
+	public synchronized void invalidate(K key) {
+		iGeneration ++;
+		if (iValues.remove(key) != null)
+			iStatistics.iInvalidations ++;
+	}
+
+	/**
+	 * Invalidate all locally cached values
+	 */
+	public synchronized void invalidateAll() {
+		iGeneration ++;
+		iStatistics.iInvalidations += iValues.size();
+		iValues.clear();
+	}
+
+	/**
+	 * Remove expired entries (starting from the least recently used ones)
+	 */
+	private void expire() {
+		long now = System.currentTimeMillis();
+		for (Iterator<CachedValue<V>> i = iValues.values().iterator(); i.hasNext(); ) {
+			if (now - i.next().iTimeStamp > iTimeToLive) {
+				i.remove();
+				iStatistics.iExpirations ++;
+			} else {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Remove the cache listener and unregister the statistics MBean
+	 */
+	public void dispose() {
+		if (iListener != null) {
+			try {
+				iCache.removeListener(iListener);
+			} catch (Exception e) {
+				sLog.debug("Failed to remove near-cache listener of " + iName + ": " + e.getMessage());
+			}
+			iListener = null;
+		}
+		invalidateAll();
+		if (iObjectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(iObjectName);
+			} catch (Exception e) {
+				sLog.debug("Failed to unregister near-cache statistics for " + iName + ": " + e.getMessage());
+			}
+			iObjectName = null;
+		}
+	}
+
+	public Statistics getStatistics() { return iStatistics; }
+
+	private static class CachedValue<V> {
+		private V iValue;
+		private long iTimeStamp = System.currentTimeMillis();
+
+		private CachedValue(V value) {
+			iValue = value;
+		}
+	}
+
+	/**
+	 * Only the keys of the changed entries are needed by the invalidation listener
+	 */
+	public static class KeyOnlyConverter<K, V> implements CacheEventConverter<K, V, Object>, Serializable {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Object convert(K key, V oldValue, Metadata oldMetadata, V newValue, Metadata newMetadata, EventType eventType) {
+			return null;
+		}
+	}
+
+	@Listener(clustered = true)
+	public class InvalidationListener {
+
+		@CacheEntryCreated
+		public void created(CacheEntryCreatedEvent<K, Object> event) {
+			if (!event.isPre()) invalidate(event.getKey());
+		}
+
+		@CacheEntryModified
+		public void modified(CacheEntryModifiedEvent<K, Object> event) {
+			if (!event.isPre()) invalidate(event.getKey());
+		}
+
+		@CacheEntryRemoved
+		public void removed(CacheEntryRemovedEvent<K, Object> event) {
+			if (!event.isPre()) invalidate(event.getKey());
+		}
+	}
+
+	public static interface StatisticsMBean {
+		public long getHits();
+		public long getMisses();
+		public double getHitRate();
+		public long getEvictions();
+		public long getExpirations();
+		public long getInvalidations();
+		public long getFetches();
+		public double getAverageFetchTime();
+		public double getMaxFetchTime();
+		public int getSize();
+		public int getMaxSize();
+		public void reset();
+		public void clear();
+	}
+
+	public class Statistics implements StatisticsMBean {
+		private long iHits = 0, iMisses = 0, iEvictions = 0, iExpirations = 0, iInvalidations = 0, iFetches = 0, iFetchTime = 0, iMaxFetchTime = 0;
+
+		@Override
+		public long getHits() { synchronized (NearCache.this) { return iHits; } }
+		@Override
+		public long getMisses() { synchronized (NearCache.this) { return iMisses; } }
+		@Override
+		public long getEvictions() { synchronized (NearCache.this) { return iEvictions; } }
+		@Override
+		public long getExpirations() { synchronized (NearCache.this) { return iExpirations; } }
+		@Override
+		public long getInvalidations() { synchronized (NearCache.this) { return iInvalidations; } }
+		@Override
+		public long getFetches() { synchronized (NearCache.this) { return iFetches; } }
+		@Override
+		public int getSize() { synchronized (NearCache.this) { return iValues.size(); } }
+		@Override
+		public int getMaxSize() { return iMaxSize; }
+
+		@Override
+		public double getHitRate() {
+			synchronized (NearCache.this) {
+				long total = iHits + iMisses;
+				return (total == 0 ? 0.0 : ((double)iHits) / total);
+			}
+		}
+
+		/** Average time of a read from the underlying cache in milliseconds */
+		@Override
+		public double getAverageFetchTime() {
+			synchronized (NearCache.this) {
+				return (iFetches == 0 ? 0.0 : iFetchTime / 1000000.0 / iFetches);
+			}
+		}
+
+		/** Longest read from the underlying cache in milliseconds */
+		@Override
+		public double getMaxFetchTime() {
+			synchronized (NearCache.this) {
+				return iMaxFetchTime / 1000000.0;
+			}
+		}
+
+		@Override
+		public void reset() {
+			synchronized (NearCache.this) {
+				iHits = 0; iMisses = 0; iEvictions = 0; iExpirations = 0; iInvalidations = 0; iFetches = 0; iFetchTime = 0; iMaxFetchTime = 0;
+			}
+		}
+
+		@Override
+		public void clear() {
+			invalidateAll();
+		}
+
+		@Override
+		public String toString() {
+			return iName + "{hits=" + getHits() + ", misses=" + getMisses() + ", hitRate=" + Math.round(100.0 * getHitRate()) + "%, evictions=" + getEvictions() +
+					", expirations=" + getExpirations() + ", invalidations=" + getInvalidations() + ", size=" + getSize() + "/" + getMaxSize() +
+					", fetches=" + getFetches() + " (avg=" + new DecimalFormat("0.000").format(getAverageFetchTime()) + " ms)}";
+		}
+	}
+}
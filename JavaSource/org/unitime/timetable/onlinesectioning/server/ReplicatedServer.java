@@ -45,11 +45,20 @@ import org.infinispan.distexec.DistributedCallable;
 import org.infinispan.distexec.DistributedExecutorService;
 import org.infinispan.jmx.CacheJmxRegistration;
 import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryCreatedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryRemovedEvent;
 import org.infinispan.transaction.LockingMode;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.shared.CourseRequestInterface;
 import org.unitime.timetable.gwt.shared.SectioningException;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
+import org.unitime.timetable.onlinesectioning.match.AbstractCourseMatcher;
 import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
 import org.unitime.timetable.onlinesectioning.match.StudentMatcher;
 import org.unitime.timetable.onlinesectioning.model.XCourse;
@@ -78,6 +87,13 @@ public class ReplicatedServer extends AbstractServer {
 	private Cache<Long, XExpectations> iExpectations;
 	private Cache<Long, Boolean> iOfferingLocks;
 	private Cache<String, Set<Long>> iInstructedOfferings; 
+	private CourseSearchIndex iCourseIndex = new CourseSearchIndex();
+	private NearCache<Long, XCourseId> iNearCourseForId;
+	private NearCache<Long, XStudent> iNearStudentTable;
+	private NearCache<Long, XOffering> iNearOfferingTable;
+	private NearCache<Long, Set<XCourseRequest>> iNearOfferingRequests;
+	private NearCache<Long, XExpectations> iNearExpectations;
+	private CourseForIdListener iCourseForIdListener;
 
 	public ReplicatedServer(OnlineSectioningServerContext context) throws SectioningException {
 		super(context);
@@ -96,6 +112,19 @@ public class ReplicatedServer extends AbstractServer {
 		return iCacheManager.getCache(cacheName(name), true);
 	}
 	
+	/**
+	 * Near-cache is only used for distributed caches (where a read may need a remote fetch), for the other caches only the statistics are kept
+	 */
+	private <U,T> NearCache<U,T> getNearCache(Cache<U,T> cache) {
+		boolean distributed = cache.getCacheConfiguration().clustering().cacheMode().isDistributed();
+		NearCache<U,T> nearCache = new NearCache<U,T>(cache,
+				distributed ? ApplicationProperty.OnlineSchedulingNearCacheSize.intValue() : 0,
+				1000l * ApplicationProperty.OnlineSchedulingNearCacheTimeToLive.intValue());
+		if (nearCache.isEnabled())
+			iLog.info("Using near-cache of size " + ApplicationProperty.OnlineSchedulingNearCacheSize.intValue() + " for " + cache.getName() + " cache.");
+		return nearCache;
+	}
+	
 	@Override
 	protected void load(OnlineSectioningServerContext context) throws SectioningException {
 		iCacheManager = context.getCacheManager();
@@ -107,6 +136,13 @@ public class ReplicatedServer extends AbstractServer {
 		iExpectations = getCache("Expectations");
 		iOfferingLocks = getCache("OfferingLocks");
 		iInstructedOfferings = getCache("InstructedOfferings");
+		iNearCourseForId = getNearCache(iCourseForId);
+		iNearStudentTable = getNearCache(iStudentTable);
+		iNearOfferingTable = getNearCache(iOfferingTable);
+		iNearOfferingRequests = getNearCache(iOfferingRequests);
+		iNearExpectations = getNearCache(iExpectations);
+		iCourseForIdListener = new CourseForIdListener(iCourseForId.getAdvancedCache().withFlags(Flag.CACHE_MODE_LOCAL).values());
+		iCourseForId.addListener(iCourseForIdListener);
 
 		Map<String, Object> original = new HashMap<String, Object>(iProperties);
 		iProperties = getCache("Config");
@@ -132,6 +168,15 @@ public class ReplicatedServer extends AbstractServer {
 	@Override
 	public void unload() {
 		super.unload();
+		if (iCourseForIdListener != null) {
+			iCourseForId.removeListener(iCourseForIdListener);
+			iCourseForIdListener = null;
+		}
+		iNearCourseForId.dispose();
+		iNearStudentTable.dispose();
+		iNearOfferingTable.dispose();
+		iNearOfferingRequests.dispose();
+		iNearExpectations.dispose();
 		removeCache(iCourseForId);
 		removeCache(iCourseForName);
 		removeCache(iStudentTable);
@@ -271,7 +316,7 @@ public class ReplicatedServer extends AbstractServer {
 	public XCourse getCourse(Long courseId) {
 		Lock lock = readLock();
 		try {
-			return toCourse(iCourseForId.get(courseId));
+			return toCourse(iNearCourseForId.get(courseId));
 		} finally {
 			lock.release();
 		}
@@ -281,7 +326,7 @@ public class ReplicatedServer extends AbstractServer {
 	public XStudent getStudent(Long studentId) {
 		Lock lock = readLock();
 		try {
-			return iStudentTable.get(studentId);
+			return iNearStudentTable.get(studentId);
 		} finally {
 			lock.release();
 		}
@@ -291,7 +336,7 @@ public class ReplicatedServer extends AbstractServer {
 	public XOffering getOffering(Long offeringId) {
 		Lock lock = readLock();
 		try {
-			return iOfferingTable.get(offeringId);
+			return iNearOfferingTable.get(offeringId);
 		} finally {
 			lock.release();
 		}
@@ -301,7 +346,7 @@ public class ReplicatedServer extends AbstractServer {
 	public Collection<XCourseRequest> getRequests(Long offeringId) {
 		Lock lock = readLock();
 		try {
-			Collection<XCourseRequest> requests = iOfferingRequests.get(offeringId);
+			Collection<XCourseRequest> requests = iNearOfferingRequests.get(offeringId);
 			return requests == null ? null : new ArrayList<XCourseRequest>(requests);
 		} finally {
 			lock.release();
@@ -312,7 +357,7 @@ public class ReplicatedServer extends AbstractServer {
 	public XExpectations getExpectations(Long offeringId) {
 		Lock lock = readLock();
 		try {
-			XExpectations expectations = iExpectations.get(offeringId);
+			XExpectations expectations = iNearExpectations.get(offeringId);
 			return expectations == null ? new XExpectations(offeringId) : expectations;
 		} finally {
 			lock.release();
@@ -323,7 +368,7 @@ public class ReplicatedServer extends AbstractServer {
 	public void update(XExpectations expectations) {
 		Lock lock = writeLock();
 		try {
-			iExpectations.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(expectations.getOfferingId(), expectations);
+			iNearExpectations.put(expectations.getOfferingId(), expectations);
 		} finally {
 			lock.release();
 		}
@@ -342,7 +387,7 @@ public class ReplicatedServer extends AbstractServer {
 							if (requests != null) {
 								if (!requests.remove(request))
 									iLog.warn("REMOVE[1]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
-								iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
+								iNearOfferingRequests.put(course.getOfferingId(), requests);
 							} else {
 								iLog.warn("REMOVE[2]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
 							}
@@ -359,7 +404,7 @@ public class ReplicatedServer extends AbstractServer {
 		try {
 			if (updateRequests) {
 				XStudent oldStudent = iStudentTable.get(student.getStudentId());
-				iStudentTable.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(student.getStudentId(), student);
+				iNearStudentTable.put(student.getStudentId(), student);
 				if (oldStudent != null) {
 					for (XRequest request: oldStudent.getRequests())
 						if (request instanceof XCourseRequest)
@@ -368,7 +413,7 @@ public class ReplicatedServer extends AbstractServer {
 								if (requests != null) {
 									if (!requests.remove(request))
 										iLog.warn("UPDATE[1]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
-									iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
+									iNearOfferingRequests.put(course.getOfferingId(), requests);
 								} else {
 									iLog.warn("UPDATE[2]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
 								}
@@ -381,10 +426,10 @@ public class ReplicatedServer extends AbstractServer {
 							if (requests == null)
 								requests = new HashSet<XCourseRequest>();
 							requests.add((XCourseRequest)request);
-							iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
+							iNearOfferingRequests.put(course.getOfferingId(), requests);
 						}
 			} else {
-				iStudentTable.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(student.getStudentId(), student);
+				iNearStudentTable.put(student.getStudentId(), student);
 			}
 		} finally {
 			lock.release();
@@ -400,7 +445,7 @@ public class ReplicatedServer extends AbstractServer {
 		Lock lock = writeLock();
 		try {
 			for (XCourse course: offering.getCourses()) {
-				iCourseForId.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(course.getCourseId());
+				iNearCourseForId.remove(course.getCourseId());
 				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
 				if (courses != null) {
 					courses.remove(course);
@@ -412,9 +457,9 @@ public class ReplicatedServer extends AbstractServer {
 						iCourseForName.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getCourseNameInLowerCase(), courses);
 				}
 			}
-			iOfferingTable.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(offering.getOfferingId());
+			iNearOfferingTable.remove(offering.getOfferingId());
 			if (removeExpectations)
-				iExpectations.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(offering.getOfferingId());
+				iNearExpectations.remove(offering.getOfferingId());
 			for (String externalId: offering.getInstructorExternalIds()) {
 				Set<Long> offeringIds = iInstructedOfferings.get(externalId);
 				if (offeringIds != null) {
@@ -435,9 +480,9 @@ public class ReplicatedServer extends AbstractServer {
 			if (oldOffering != null)
 				remove(oldOffering, false);
 			
-			iOfferingTable.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(offering.getOfferingId(), offering);
+			iNearOfferingTable.put(offering.getOfferingId(), offering);
 			for (XCourse course: offering.getCourses()) {
-				iCourseForId.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getCourseId(), new XCourseId(course));
+				iNearCourseForId.put(course.getCourseId(), new XCourseId(course));
 				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
 				if (courses == null) {
 					courses = new TreeSet<XCourseId>();
@@ -468,11 +513,12 @@ public class ReplicatedServer extends AbstractServer {
 	public void clearAll() {
 		Lock lock = writeLock();
 		try {
-			iStudentTable.clear();
-			iOfferingTable.clear();
-			iCourseForId.clear();
+			iNearStudentTable.clear();
+			iNearOfferingTable.clear();
+			iNearCourseForId.clear();
+			iCourseIndex.clear();
 			iCourseForName.clear();
-			iOfferingRequests.clear();
+			iNearOfferingRequests.clear();
 			iInstructedOfferings.clear();
 		} finally {
 			lock.release();
@@ -483,8 +529,8 @@ public class ReplicatedServer extends AbstractServer {
 	public void clearAllStudents() {
 		Lock lock = writeLock();
 		try {
-			iStudentTable.clear();
-			iOfferingRequests.clear();
+			iNearStudentTable.clear();
+			iNearOfferingRequests.clear();
 		} finally {
 			lock.release();
 		}
@@ -505,7 +551,7 @@ public class ReplicatedServer extends AbstractServer {
 						if (requests != null) {
 							if (!requests.remove(cr))
 								iLog.warn("ASSIGN[1]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
-							iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
+							iNearOfferingRequests.put(course.getOfferingId(), requests);
 						} else {
 							iLog.warn("ASSIGN[2]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
 						}
@@ -520,10 +566,10 @@ public class ReplicatedServer extends AbstractServer {
 						if (requests == null)
 							requests = new HashSet<XCourseRequest>();
 						requests.add(cr);
-						iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
+						iNearOfferingRequests.put(course.getOfferingId(), requests);
 					}
 					
-					iStudentTable.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(student.getStudentId(), student);
+					iNearStudentTable.put(student.getStudentId(), student);
 					return cr;
 				}
 			}
@@ -532,7 +578,7 @@ public class ReplicatedServer extends AbstractServer {
 				Set<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
 				if (requests != null) {
 					requests.remove(request);
-					iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
+					iNearOfferingRequests.put(course.getOfferingId(), requests);
 				}
 			}
 			return null;
@@ -556,7 +602,7 @@ public class ReplicatedServer extends AbstractServer {
 						if (requests != null) {
 							if (!requests.remove(cr))
 								iLog.warn("WAITLIST[1]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
-							iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
+							iNearOfferingRequests.put(course.getOfferingId(), requests);
 						} else {
 							iLog.warn("WAITLIST[2]: Request " + student + " " + request + " was not present in the offering requests table for " + course);
 						}
@@ -572,10 +618,10 @@ public class ReplicatedServer extends AbstractServer {
 						Set<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
 						if (requests == null)
 							requests = new HashSet<XCourseRequest>();
-						iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
+						iNearOfferingRequests.put(course.getOfferingId(), requests);
 					}
 					
-					iStudentTable.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(student.getStudentId(), student);
+					iNearStudentTable.put(student.getStudentId(), student);
 					return cr;
 				}
 			}
@@ -584,7 +630,7 @@ public class ReplicatedServer extends AbstractServer {
 				Set<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
 				if (requests != null) {
 					requests.remove(request);
-					iOfferingRequests.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(course.getOfferingId(), requests);
+					iNearOfferingRequests.put(course.getOfferingId(), requests);
 				}
 			}
 			return null;
@@ -620,7 +666,20 @@ public class ReplicatedServer extends AbstractServer {
 
 		@Override
 		public Collection<XCourseId> call() throws Exception {
-			if (iMatcher != null) iMatcher.setServer(getLocalServer(iSessionId));
+			OnlineSectioningServer server = getLocalServer(iSessionId);
+			if (iMatcher != null) iMatcher.setServer(server);
+			if (iQuery != null && server instanceof ReplicatedServer) {
+				// use the search index of the local entries, ignore courses that are no longer in the cache (e.g., when cleared on some other node)
+				final Cache<Long, XCourseId> local = iCache.getAdvancedCache().withFlags(Flag.CACHE_MODE_LOCAL);
+				CourseMatcher matcher = new AbstractCourseMatcher() {
+					private static final long serialVersionUID = 1L;
+					@Override
+					public boolean match(XCourseId course) {
+						return local.containsKey(course.getCourseId()) && (iMatcher == null || iMatcher.match(course));
+					}
+				};
+				return ((ReplicatedServer)server).iCourseIndex.findCourses(iQuery, iLimit, matcher, new CourseComparator(iQuery));
+			}
 			SubSet<XCourseId> ret = new SubSet<XCourseId>(iLimit, new CourseComparator(iQuery));
 			for (XCourseId c : iCache.values()) {
 				if (iQuery != null && !c.matchCourseName(iQuery)) continue;
@@ -638,6 +697,33 @@ public class ReplicatedServer extends AbstractServer {
 		}
 	}
 	
+	@Listener(sync=true)
+	public class CourseForIdListener {
+		
+		public CourseForIdListener(Collection<XCourseId> courses) {
+			for (XCourseId course: courses)
+				iCourseIndex.add(course);
+		}
+		
+		@CacheEntryCreated
+		public void created(CacheEntryCreatedEvent<Long, XCourseId> event) {
+			if (!event.isPre() && event.getValue() != null)
+				iCourseIndex.add(event.getValue());
+		}
+		
+		@CacheEntryModified
+		public void modified(CacheEntryModifiedEvent<Long, XCourseId> event) {
+			if (!event.isPre() && event.getValue() != null)
+				iCourseIndex.add(event.getValue());
+		}
+		
+		@CacheEntryRemoved
+		public void removed(CacheEntryRemovedEvent<Long, XCourseId> event) {
+			if (!event.isPre())
+				iCourseIndex.remove(event.getKey());
+		}
+	}
+	
 	public static class GetKeysCallable<T> implements DistributedCallable<Long, T, Collection<Long>>, Serializable {
 		private static final long serialVersionUID = 1L;
 		private transient Cache<Long, T> iCache;
@@ -948,7 +1034,7 @@ public class ReplicatedServer extends AbstractServer {
 	public Set<Long> getRequestedCourseIds(Long studentId) {
 		Lock lock = readLock();
 		try {
-			XStudent student = iStudentTable.get(studentId);
+			XStudent student = iNearStudentTable.get(studentId);
 			return (student == null ? null : student.getRequestedCourseIds());
 		} finally {
 			lock.release();
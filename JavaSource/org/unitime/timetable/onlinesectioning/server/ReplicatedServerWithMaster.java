@@ -77,6 +77,7 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 	private Cache<Long, XExpectations> iExpectations;
 	private Cache<Long, Boolean> iOfferingLocks;
 	private Map<String, Set<Long>> iInstructedOfferings;
+	private CourseSearchIndex iCourseIndex;
 
 	public ReplicatedServerWithMaster(OnlineSectioningServerContext context) throws SectioningException {
 		super(context);
@@ -106,6 +107,7 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 		iExpectations = getCache("Expectations");
 		iOfferingLocks = getCache("OfferingLocks");
 		iInstructedOfferings = new HashMap<String, Set<Long>>();
+		iCourseIndex = new CourseSearchIndex();
 		
 		Map<String, Object> original = new HashMap<String, Object>(iProperties);
 		iProperties = getCache("Config");
@@ -150,17 +152,7 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 		if (matcher != null) matcher.setServer(this);
 		Lock lock = readLock();
 		try {
-			SubSet<XCourseId> ret = new SubSet<XCourseId>(limit, cmp);
-			String queryInLowerCase = query.toLowerCase();
-			for (XCourseId c : iCourseForId.values()) {
-				if (c.matchCourseName(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
-			}
-			if (!ret.isLimitReached() && queryInLowerCase.length() > 2) {
-				for (XCourseId c : iCourseForId.values()) {
-					if (c.matchTitle(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
-				}
-			}
-			return ret;
+			return iCourseIndex.findCourses(query.toLowerCase(), limit, matcher, cmp);
 		} finally {
 			lock.release();
 		}
@@ -602,6 +594,7 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 			try {
 				for (XCourse course: offering.getCourses()) {
 					iCourseForId.remove(course.getCourseId());
+					iCourseIndex.remove(course.getCourseId());
 					XCourseIdSet courses = iCourseForName.get(course.getCourseNameInLowerCase());
 					if (courses != null) {
 						courses.remove(course);
@@ -624,13 +617,15 @@ public class ReplicatedServerWithMaster extends AbstractLockingServer {
 			Lock lock = writeLockIfNotHeld();
 			try {
 				for (XCourse course: offering.getCourses()) {
-					iCourseForId.put(course.getCourseId(), new XCourseId(course));
+					XCourseId courseId = new XCourseId(course);
+					iCourseForId.put(course.getCourseId(), courseId);
+					iCourseIndex.add(courseId);
 					XCourseIdSet courses = iCourseForName.get(course.getCourseNameInLowerCase());
 					if (courses == null) {
 						courses = new XCourseIdSet();
 						iCourseForName.put(course.getCourseNameInLowerCase(), courses);
 					}
-					courses.add(new XCourseId(course));
+					courses.add(courseId);
 					if (courses.size() == 1) 
 						for (XCourseId x: courses) x.setHasUniqueName(true);
 					else if (courses.size() > 1)
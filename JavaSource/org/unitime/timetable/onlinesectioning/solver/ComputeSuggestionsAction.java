@@ -55,7 +55,6 @@ import org.cpsolver.studentsct.online.expectations.NeverOverExpected;
 import org.cpsolver.studentsct.online.expectations.OverExpectedCriterion;
 import org.cpsolver.studentsct.online.selection.BestPenaltyCriterion;
 import org.cpsolver.studentsct.online.selection.MultiCriteriaBranchAndBoundSelection;
-import org.cpsolver.studentsct.online.selection.MultiCriteriaBranchAndBoundSuggestions;
 import org.cpsolver.studentsct.online.selection.SuggestionsBranchAndBound;
 import org.cpsolver.studentsct.reservation.IndividualRestriction;
 import org.cpsolver.studentsct.reservation.Reservation;
@@ -386,8 +385,6 @@ public class ComputeSuggestionsAction extends FindAssignmentAction {
 		
 		if (selectedRequest == null) return new ArrayList<ClassAssignmentInterface>();
 		
-		SuggestionsBranchAndBound suggestionBaB = null;
-		
 		boolean avoidOverExpected = server.getAcademicSession().isSectioningEnabled();
 		if (avoidOverExpected && helper.getUser() != null && helper.getUser().hasType() && helper.getUser().getType() != OnlineSectioningLog.Entity.EntityType.STUDENT)
 			avoidOverExpected = false;
@@ -427,29 +424,33 @@ public class ComputeSuggestionsAction extends FindAssignmentAction {
 		if (maxOverExpected >= 0.0)
 			model.addGlobalConstraint(new MaxOverExpectedConstraint(maxOverExpected));
 		
-		if (server.getConfig().getPropertyBoolean("StudentWeights.MultiCriteria", true)) {
-			suggestionBaB = new MultiCriteriaBranchAndBoundSuggestions(
-					model.getProperties(), student, assignment,
-					requiredSectionsForCourse, requiredFreeTimes, preferredSectionsForCourse,
-					selectedRequest, selectedSection,
-					filter, maxOverExpected, server.getConfig().getPropertyBoolean("StudentWeights.PriorityWeighting", true));
-		} else {
-			suggestionBaB = new SuggestionsBranchAndBound(model.getProperties(), student, assignment,
-					requiredSectionsForCourse, requiredFreeTimes, preferredSectionsForCourse,
-					selectedRequest, selectedSection, filter, maxOverExpected);
-		}
+		long budget = server.getConfig().getPropertyLong("Suggestions.LatencyBudget", 0l);
+		ParallelSuggestionsBranchAndBound suggestionBaB = new ParallelSuggestionsBranchAndBound(
+				model.getProperties(), student, assignment,
+				requiredSectionsForCourse, requiredFreeTimes, preferredSectionsForCourse,
+				selectedRequest, selectedSection,
+				filter, maxOverExpected, budget > 0 ? t0 + budget : 0l);
 		
 		helper.debug("Using " + (server.getConfig().getPropertyBoolean("StudentWeights.MultiCriteria", true) ? "multi-criteria ": "") +
 				(server.getConfig().getPropertyBoolean("StudentWeights.PriorityWeighting", true) ? "priority" : "equal") + " weighting model" +
 				" with " + server.getConfig().getPropertyInt("Suggestions.Timeout", 5000) +" ms time limit" +
+				(budget > 0 ? ", " + budget + " ms latency budget" : "") +
 				(maxOverExpected < 0 ? "" : ", maximal over-expected of " + maxOverExpected) +
-				" and maximal depth of " + server.getConfig().getPropertyInt("Suggestions.MaxDepth", 4) + ".");
+				", maximal depth of " + server.getConfig().getPropertyInt("Suggestions.MaxDepth", 4) +
+				" and " + suggestionBaB.getNrThreads() + " thread" + (suggestionBaB.getNrThreads() == 1 ? "" : "s") + ".");
 
-		TreeSet<SuggestionsBranchAndBound.Suggestion> suggestions = suggestionBaB.computeSuggestions();
-		iValue = (suggestions.isEmpty() ? 0.0 : - suggestions.first().getValue());
+		List<SuggestionsBranchAndBound.Suggestion> suggestions = suggestionBaB.computeSuggestions();
+		iValue = (suggestions.isEmpty() ? 0.0 : - suggestions.get(0).getValue());
         
 		long t3 = System.currentTimeMillis();
-		helper.debug("  -- suggestion B&B took "+suggestionBaB.getTime()+"ms"+(suggestionBaB.isTimeoutReached()?", timeout reached":""));
+		helper.debug("  -- suggestion B&B took "+suggestionBaB.getTime()+"ms"+(suggestionBaB.isTimeoutReached()?", timeout reached":"")+
+				" ("+suggestionBaB.getNrNodes()+" nodes, "+suggestionBaB.getNrPrunes()+" prunes)");
+		action.addOptionBuilder().setKey("search-nodes").setValue(String.valueOf(suggestionBaB.getNrNodes()));
+		action.addOptionBuilder().setKey("search-prunes").setValue(String.valueOf(suggestionBaB.getNrPrunes()));
+		action.addOptionBuilder().setKey("search-time").setValue(suggestionBaB.getTime() + " ms");
+		action.addOptionBuilder().setKey("search-threads").setValue(String.valueOf(suggestionBaB.getNrThreads()));
+		if (suggestionBaB.isTimeoutReached())
+			action.addOptionBuilder().setKey("search-timeout").setValue("true");
 
 		for (SuggestionsBranchAndBound.Suggestion suggestion : suggestions) {
 			ClassAssignmentInterface ca = convert(server, assignment, suggestion.getEnrollments(), requiredSectionsForCourse, requiredFreeTimes, true, model.getStudentQuality(), enrolled); 
@@ -0,0 +1,548 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.solver;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.assignment.AssignmentMap;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+import org.cpsolver.studentsct.model.CourseRequest;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.FreeTimeRequest;
+import org.cpsolver.studentsct.model.Request;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Student;
+import org.cpsolver.studentsct.online.OnlineSectioningModel;
+import org.cpsolver.studentsct.online.selection.MultiCriteriaBranchAndBoundSuggestions;
+import org.cpsolver.studentsct.online.selection.SuggestionsBranchAndBound;
+import org.cpsolver.studentsct.online.selection.SuggestionsBranchAndBound.Suggestion;
+import org.cpsolver.studentsct.online.selection.SuggestionsBranchAndBound.SuggestionFilter;
+
+/**
+ * Parallel suggestions branch and bound. The possible enrollments of the selected request (the top-level branches
+ * of {@link SuggestionsBranchAndBound} or {@link MultiCriteriaBranchAndBoundSuggestions}) are explored by a number of
+ * workers (Suggestions.NrThreads, defaults to 1 which is the same as the single-threaded search) running on a fork-join pool,
+ * each worker taking the next unexplored branch when done with the previous one.<br>
+ * All the workers share the same model (each with its own assignment, the same way the parallel solver works), the
+ * deadline, and a bound on the number of unassigned requests: once there are enough suggestions (Suggestions.MaxSuggestions)
+ * with at most the given number of unassigned requests, branches leaving more requests unassigned are cut.
+ * The suggestions found by the workers are merged at the end.<br>
+ * When a deadline is given, the search returns the best suggestions found so far once the deadline is reached (in addition
+ * to the Suggestions.Timeout of each worker).
+ *
+ * @author Tomas Muller
+ */
+public class ParallelSuggestionsBranchAndBound {
+	private static ForkJoinPool sPool = null;
+	private Student iStudent;
+	private Request iSelectedRequest;
+	private Section iSelectedSection;
+	private int iMaxSuggestions = 20;
+	private long iDeadline = 0;
+	private volatile boolean iDeadlineReached = false;
+	private AtomicInteger iBranch = new AtomicInteger(0);
+	private Bound iBound;
+	private List<Worker> iWorkers = new ArrayList<Worker>();
+	private long iTime = 0;
+
+	/**
+	 * Constructor
+	 * @param properties configuration
+	 * @param student given student
+	 * @param assignment current assignment (used by the first worker, the other workers get their own assignments)
+	 * @param requiredSections required sections
+	 * @param requiredFreeTimes required free times (free time requests that must be assigned)
+	 * @param preferredSections preferred sections
+	 * @param selectedRequest selected request
+	 * @param selectedSection selected section
+	 * @param filter section filter
+	 * @param maxSectionsWithPenalty maximal number of sections that have a positive over-expectation penalty
+	 * @param deadline time (in milliseconds) at which the search must stop, zero if there is no deadline
+	 */
+	public ParallelSuggestionsBranchAndBound(DataProperties properties, Student student,
+			Assignment<Request, Enrollment> assignment, Hashtable<CourseRequest, Set<Section>> requiredSections,
+			Set<FreeTimeRequest> requiredFreeTimes, Hashtable<CourseRequest, Set<Section>> preferredSections,
+			Request selectedRequest, Section selectedSection, SuggestionFilter filter, double maxSectionsWithPenalty, long deadline) {
+		iStudent = student;
+		iSelectedRequest = selectedRequest;
+		iSelectedSection = selectedSection;
+		iMaxSuggestions = properties.getPropertyInt("Suggestions.MaxSuggestions", iMaxSuggestions);
+		iDeadline = deadline;
+		iBound = new Bound(iMaxSuggestions);
+		int nrThreads = Math.max(1, properties.getPropertyInt("Suggestions.NrThreads", 1));
+		boolean multiCriteria = properties.getPropertyBoolean("StudentWeights.MultiCriteria", true);
+		boolean priorityWeighting = properties.getPropertyBoolean("StudentWeights.PriorityWeighting", true);
+		for (int i = 0; i < nrThreads; i++) {
+			Assignment<Request, Enrollment> a = (i == 0 ? assignment : new AssignmentMap<Request, Enrollment>());
+			if (multiCriteria)
+				iWorkers.add(new MultiCriteriaWorker(properties, student, a, requiredSections, requiredFreeTimes, preferredSections,
+						selectedRequest, selectedSection, filter, maxSectionsWithPenalty, priorityWeighting));
+			else
+				iWorkers.add(new SimpleWorker(properties, student, a, requiredSections, requiredFreeTimes, preferredSections,
+						selectedRequest, selectedSection, filter, maxSectionsWithPenalty));
+		}
+	}
+
+	protected static synchronized ForkJoinPool getPool() {
+		if (sPool == null)
+			sPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		return sPool;
+	}
+
+	/**
+	 * Stop the shared fork-join pool (e.g., when the application is being stopped)
+	 */
+	public static synchronized void shutdownPool() {
+		if (sPool != null) {
+			sPool.shutdownNow();
+			sPool = null;
+		}
+	}
+
+	/**
+	 * Perform the search, the first worker runs on the calling thread
+	 * @return suggestions, the best one first
+	 */
+	public List<Suggestion> computeSuggestions() {
+		long t0 = System.currentTimeMillis();
+		List<ForkJoinTask<TreeSet<Suggestion>>> tasks = new ArrayList<ForkJoinTask<TreeSet<Suggestion>>>();
+		for (int i = 1; i < iWorkers.size(); i++) {
+			final Worker worker = iWorkers.get(i);
+			tasks.add(getPool().submit(new Callable<TreeSet<Suggestion>>() {
+				@Override
+				public TreeSet<Suggestion> call() throws Exception {
+					return worker.getSearch().computeSuggestions();
+				}
+			}));
+		}
+		List<TreeSet<Suggestion>> results = new ArrayList<TreeSet<Suggestion>>();
+		try {
+			results.add(iWorkers.get(0).getSearch().computeSuggestions());
+			for (ForkJoinTask<TreeSet<Suggestion>> task: tasks)
+				results.add(task.join());
+		} catch (RuntimeException e) {
+			iDeadlineReached = true;
+			throw e;
+		}
+		List<Suggestion> suggestions = merge(results);
+		iTime = System.currentTimeMillis() - t0;
+		return suggestions;
+	}
+
+	/**
+	 * Merge suggestions of all the workers: order them and keep only the best suggestion for each
+	 * selected section (unless there is only one choice for the selected request)
+	 */
+	protected List<Suggestion> merge(List<TreeSet<Suggestion>> results) {
+		final Map<Suggestion, Integer> worker = new HashMap<Suggestion, Integer>();
+		List<Suggestion> all = new ArrayList<Suggestion>();
+		for (int i = 0; i < results.size(); i++)
+			for (Suggestion s: results.get(i)) {
+				worker.put(s, i);
+				all.add(s);
+			}
+		Collections.sort(all, new Comparator<Suggestion>() {
+			@Override
+			public int compare(Suggestion s1, Suggestion s2) {
+				int cmp = s1.compareTo(s2);
+				if (cmp != 0) return cmp;
+				return worker.get(s1).compareTo(worker.get(s2));
+			}
+		});
+		boolean dedupe = (iWorkers.get(0).getSearch().getNrMatched() != 1);
+		int index = iStudent.getRequests().indexOf(iSelectedRequest);
+		Set<Object> keys = new HashSet<Object>();
+		List<Suggestion> ret = new ArrayList<Suggestion>();
+		for (Suggestion s: all) {
+			if (ret.size() >= iMaxSuggestions) break;
+			if (!keys.add(getKey(index < 0 ? null : s.getEnrollments()[index], dedupe))) continue;
+			ret.add(s);
+		}
+		return ret;
+	}
+
+	/**
+	 * Suggestions with the same key are considered to be the same (only the better one is kept), the same way
+	 * the branch and bound considers suggestions with the same selected section
+	 */
+	protected Object getKey(Enrollment enrollment, boolean dedupe) {
+		if (!dedupe || iSelectedSection == null || enrollment == null || enrollment.getAssignments() == null) return new Object();
+		Section selected = null;
+		for (Section section: enrollment.getSections()) {
+			if (section.getSubpart().getId() == iSelectedSection.getSubpart().getId()) {
+				selected = section; break;
+			}
+			if (section.getSubpart().getConfig().getId() != iSelectedSection.getSubpart().getConfig().getId() &&
+					section.getSubpart().getInstructionalType().equals(iSelectedSection.getSubpart().getInstructionalType())) {
+				selected = section; break;
+			}
+		}
+		if (selected == null) return new Object();
+		if (selected.getTime() != null && iSelectedSection.getSubpart().getSections().size() > iMaxSuggestions &&
+				!ToolBox.equals(selected.getTime(), iSelectedSection.getTime()))
+			return selected.getTime();
+		return selected;
+	}
+
+	protected boolean isDeadlineReached() {
+		if (!iDeadlineReached && iDeadline > 0 && System.currentTimeMillis() > iDeadline)
+			iDeadlineReached = true;
+		return iDeadlineReached;
+	}
+
+	/**
+	 * Cut the branch when the value leaves more requests unassigned than the shared bound
+	 */
+	protected boolean checkBound(Worker worker, ArrayList<Request> requests2resolve, int idx, Enrollment value) {
+		int nrUnassigned = (value.getAssignments().isEmpty() ? 1 : 0);
+		for (int i = 0; i < idx; i++) {
+			Enrollment e = worker.getAssignment().getValue(requests2resolve.get(i));
+			if (e != null && e.getAssignments().isEmpty()) nrUnassigned++;
+		}
+		return nrUnassigned <= iBound.getMaxUnassigned();
+	}
+
+	/**
+	 * A complete assignment was found: update the shared bound if the suggestion meets the over-expected limit
+	 */
+	protected void leaf(Worker worker, ArrayList<Request> requests2resolve) {
+		Assignment<Request, Enrollment> assignment = worker.getAssignment();
+		double maxSectionsWithPenalty = worker.getMaxSectionsWithPenalty();
+		if (maxSectionsWithPenalty >= 0) {
+			OnlineSectioningModel model = (OnlineSectioningModel)iSelectedRequest.getModel();
+			double sectionsWithPenalty = 0;
+			for (Request r: iStudent.getRequests()) {
+				Enrollment e = assignment.getValue(r);
+				if (e != null && r instanceof CourseRequest) {
+					for (Section s: e.getSections())
+						sectionsWithPenalty += model.getOverExpected(assignment, s, r);
+				}
+				if (e != null && e.isCourseRequest() && e.getSections().isEmpty()) {
+					Double minPenalty = null;
+					for (Enrollment other: worker.getValues(r)) {
+						if (!worker.getSearch().isAllowed(other) || e.equals(other)) continue;
+						double penalty = 0.0;
+						for (Section s: other.getSections())
+							penalty += model.getOverExpected(assignment, s, other.getRequest());
+						if (minPenalty == null || minPenalty > penalty) minPenalty = penalty;
+						if (minPenalty == 0.0) break;
+					}
+					if (minPenalty != null) sectionsWithPenalty += minPenalty;
+				}
+			}
+			if (sectionsWithPenalty > maxSectionsWithPenalty) return;
+		}
+		int nrUnassigned = 0;
+		for (Request r: requests2resolve) {
+			Enrollment e = assignment.getValue(r);
+			if (e != null && e.getAssignments().isEmpty()) nrUnassigned++;
+		}
+		iBound.update(getKey(assignment.getValue(iSelectedRequest), worker.getSearch().getNrMatched() != 1), nrUnassigned);
+	}
+
+	/**
+	 * Top-level branches: enrollments of the selected request, shared by all the workers.
+	 * Only used by the top-level iteration of each worker, any other lookup of the selected request's domain gets all the values.
+	 */
+	protected List<Enrollment> branches(List<Enrollment> values) {
+		return new BranchList(values);
+	}
+
+	/** Search time in milliseconds */
+	public long getTime() { return iTime; }
+
+	/** Was the deadline or the time limit of any of the workers reached */
+	public boolean isTimeoutReached() {
+		if (iDeadlineReached) return true;
+		for (Worker worker: iWorkers)
+			if (worker.getSearch().isTimeoutReached()) return true;
+		return false;
+	}
+
+	/** Number of workers */
+	public int getNrThreads() { return iWorkers.size(); }
+
+	/** Number of visited nodes */
+	public long getNrNodes() {
+		long nodes = 0;
+		for (Worker worker: iWorkers) nodes += worker.getNrNodes();
+		return nodes;
+	}
+
+	/** Number of cut branches */
+	public long getNrPrunes() {
+		long prunes = 0;
+		for (Worker worker: iWorkers) prunes += worker.getNrPrunes();
+		return prunes;
+	}
+
+	/**
+	 * Shared bound: the lowest number of unassigned requests for each suggestion key, the bound is the highest
+	 * number of unassigned requests among the best Suggestions.MaxSuggestions keys
+	 */
+	private static class Bound {
+		private int iLimit;
+		private Map<Object, Integer> iBest = new HashMap<Object, Integer>();
+		private TreeMap<Integer, Integer> iCounts = new TreeMap<Integer, Integer>();
+		private volatile int iMaxUnassigned = Integer.MAX_VALUE;
+
+		Bound(int limit) {
+			iLimit = limit;
+		}
+
+		int getMaxUnassigned() { return iMaxUnassigned; }
+
+		synchronized void update(Object key, int nrUnassigned) {
+			if (nrUnassigned > iMaxUnassigned || (nrUnassigned == iMaxUnassigned && iBest.size() >= iLimit)) return;
+			Integer old = iBest.put(key, nrUnassigned);
+			if (old != null) {
+				if (old <= nrUnassigned) { iBest.put(key, old); return; }
+				remove(old);
+			}
+			Integer count = iCounts.get(nrUnassigned);
+			iCounts.put(nrUnassigned, count == null ? 1 : count + 1);
+			if (iBest.size() < iLimit) return;
+			int total = 0;
+			for (Map.Entry<Integer, Integer> e: iCounts.entrySet()) {
+				total += e.getValue();
+				if (total >= iLimit) {
+					iMaxUnassigned = e.getKey();
+					break;
+				}
+			}
+			for (Iterator<Map.Entry<Object, Integer>> i = iBest.entrySet().iterator(); i.hasNext(); ) {
+				Map.Entry<Object, Integer> e = i.next();
+				if (e.getValue() > iMaxUnassigned) {
+					remove(e.getValue());
+					i.remove();
+				}
+			}
+		}
+
+		private void remove(Integer nrUnassigned) {
+			Integer count = iCounts.get(nrUnassigned);
+			if (count == null || count <= 1)
+				iCounts.remove(nrUnassigned);
+			else
+				iCounts.put(nrUnassigned, count - 1);
+		}
+	}
+
+	/**
+	 * Enrollments of the selected request, iteration takes the next unexplored enrollment (shared between the workers)
+	 */
+	private class BranchList extends AbstractList<Enrollment> {
+		private List<Enrollment> iValues;
+
+		BranchList(List<Enrollment> values) {
+			iValues = values;
+		}
+
+		@Override
+		public Enrollment get(int index) { return iValues.get(index); }
+
+		@Override
+		public int size() { return iValues.size(); }
+
+		@Override
+		public Iterator<Enrollment> iterator() {
+			return new Iterator<Enrollment>() {
+				private int iNext = -1;
+
+				@Override
+				public boolean hasNext() {
+					if (iNext < 0) iNext = iBranch.getAndIncrement();
+					return iNext < iValues.size();
+				}
+
+				@Override
+				public Enrollment next() {
+					if (!hasNext()) throw new NoSuchElementException();
+					Enrollment enrollment = iValues.get(iNext);
+					iNext = -1;
+					return enrollment;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+	private static interface Worker {
+		public SuggestionsBranchAndBound getSearch();
+		public Assignment<Request, Enrollment> getAssignment();
+		public List<Enrollment> getValues(Request request);
+		public double getMaxSectionsWithPenalty();
+		public long getNrNodes();
+		public long getNrPrunes();
+	}
+
+	private class SimpleWorker extends SuggestionsBranchAndBound implements Worker {
+		private Assignment<Request, Enrollment> iAssignment;
+		private List<Enrollment> iBranches = null;
+		private boolean iTopLevel = false;
+		private long iNodes = 0, iPrunes = 0;
+
+		SimpleWorker(DataProperties properties, Student student,
+				Assignment<Request, Enrollment> assignment, Hashtable<CourseRequest, Set<Section>> requiredSections,
+				Set<FreeTimeRequest> requiredFreeTimes, Hashtable<CourseRequest, Set<Section>> preferredSections,
+				Request selectedRequest, Section selectedSection, SuggestionFilter filter, double maxSectionsWithPenalty) {
+			super(properties, student, assignment, requiredSections, requiredFreeTimes, preferredSections, selectedRequest, selectedSection, filter, maxSectionsWithPenalty);
+			iAssignment = assignment;
+		}
+
+		@Override
+		protected void backtrack(ArrayList<Request> requests2resolve, TreeSet<Request> altRequests2resolve, int idx, int depth, boolean alt) {
+			iNodes++;
+			if (requests2resolve.size() == idx) leaf(this, requests2resolve);
+			iTopLevel = (idx == 0);
+			super.backtrack(requests2resolve, altRequests2resolve, idx, depth, alt);
+		}
+
+		@Override
+		protected List<Enrollment> values(Request request) {
+			if (iTopLevel && request.equals(iSelectedRequest)) {
+				iTopLevel = false;
+				if (iBranches == null) iBranches = branches(super.values(request));
+				return iBranches;
+			}
+			return super.values(request);
+		}
+
+		@Override
+		protected boolean canContinue(ArrayList<Request> requests2resolve, int idx, int depth) {
+			return !isDeadlineReached() && super.canContinue(requests2resolve, idx, depth);
+		}
+
+		@Override
+		protected boolean canContinueEvaluation() {
+			return !isDeadlineReached() && super.canContinueEvaluation();
+		}
+
+		@Override
+		protected boolean checkBound(ArrayList<Request> requests2resolve, int idx, int depth, Enrollment value, Set<Enrollment> conflicts) {
+			if (!super.checkBound(requests2resolve, idx, depth, value, conflicts) || !ParallelSuggestionsBranchAndBound.this.checkBound(this, requests2resolve, idx, value)) {
+				iPrunes++;
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public SuggestionsBranchAndBound getSearch() { return this; }
+		@Override
+		public Assignment<Request, Enrollment> getAssignment() { return iAssignment; }
+		@Override
+		public List<Enrollment> getValues(Request request) { return values(request); }
+		@Override
+		public double getMaxSectionsWithPenalty() { return iMaxSectionsWithPenalty; }
+		@Override
+		public long getNrNodes() { return iNodes; }
+		@Override
+		public long getNrPrunes() { return iPrunes; }
+	}
+
+	private class MultiCriteriaWorker extends MultiCriteriaBranchAndBoundSuggestions implements Worker {
+		private Assignment<Request, Enrollment> iAssignment;
+		private List<Enrollment> iBranches = null;
+		private boolean iTopLevel = false;
+		private long iNodes = 0, iPrunes = 0;
+
+		MultiCriteriaWorker(DataProperties properties, Student student,
+				Assignment<Request, Enrollment> assignment, Hashtable<CourseRequest, Set<Section>> requiredSections,
+				Set<FreeTimeRequest> requiredFreeTimes, Hashtable<CourseRequest, Set<Section>> preferredSections,
+				Request selectedRequest, Section selectedSection, SuggestionFilter filter, double maxSectionsWithPenalty, boolean priorityWeighting) {
+			super(properties, student, assignment, requiredSections, requiredFreeTimes, preferredSections, selectedRequest, selectedSection, filter, maxSectionsWithPenalty, priorityWeighting);
+			iAssignment = assignment;
+		}
+
+		@Override
+		protected void backtrack(ArrayList<Request> requests2resolve, TreeSet<Request> altRequests2resolve, int idx, int depth, boolean alt) {
+			iNodes++;
+			if (requests2resolve.size() == idx) leaf(this, requests2resolve);
+			iTopLevel = (idx == 0);
+			super.backtrack(requests2resolve, altRequests2resolve, idx, depth, alt);
+		}
+
+		@Override
+		protected List<Enrollment> values(Request request) {
+			if (iTopLevel && request.equals(iSelectedRequest)) {
+				iTopLevel = false;
+				if (iBranches == null) iBranches = branches(super.values(request));
+				return iBranches;
+			}
+			return super.values(request);
+		}
+
+		@Override
+		protected boolean canContinue(ArrayList<Request> requests2resolve, int idx, int depth) {
+			return !isDeadlineReached() && super.canContinue(requests2resolve, idx, depth);
+		}
+
+		@Override
+		protected boolean canContinueEvaluation() {
+			return !isDeadlineReached() && super.canContinueEvaluation();
+		}
+
+		@Override
+		protected boolean checkBound(ArrayList<Request> requests2resolve, int idx, int depth, Enrollment value, Set<Enrollment> conflicts) {
+			if (!super.checkBound(requests2resolve, idx, depth, value, conflicts) || !ParallelSuggestionsBranchAndBound.this.checkBound(this, requests2resolve, idx, value)) {
+				iPrunes++;
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public SuggestionsBranchAndBound getSearch() { return this; }
+		@Override
+		public Assignment<Request, Enrollment> getAssignment() { return iAssignment; }
+		@Override
+		public List<Enrollment> getValues(Request request) { return values(request); }
+		@Override
+		public double getMaxSectionsWithPenalty() { return iMaxSectionsWithPenalty; }
+		@Override
+		public long getNrNodes() { return iNodes; }
+		@Override
+		public long getNrPrunes() { return iPrunes; }
+	}
+}
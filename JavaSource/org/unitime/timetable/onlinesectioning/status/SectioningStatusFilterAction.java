@@ -20,6 +20,7 @@
 package org.unitime.timetable.onlinesectioning.status;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -104,32 +105,46 @@ public class SectioningStatusFilterAction implements OnlineSectioningAction<Filt
 		
 		StudentQuery query = getQuery(iRequest, server, helper);
 		CourseQuery courseQuery = getCourseQuery(iRequest, server, helper);
+		StudentFacetIndex index = StudentFacetIndex.getIndex(server, helper);
 		
 		Map<Long, Entity> areas = new HashMap<Long, Entity>();
-		for (Object[] o: (List<Object[]>)query.select("aac.academicArea.uniqueId, aac.academicArea.academicAreaAbbreviation, aac.academicArea.title, count(distinct s.uniqueId)")
-				.order("aac.academicArea.academicAreaAbbreviation, aac.academicArea.title").group("aac.academicArea.uniqueId, aac.academicArea.academicAreaAbbreviation, aac.academicArea.title")
-				.exclude("area").exclude("major").exclude("concentration").exclude("minor").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
-			Entity a = new Entity(
-					(Long)o[0],
-					(String)o[1],
-					(String)o[2]);
-			a.setCount(((Number)o[3]).intValue());
-			areas.put(a.getUniqueId(), a);
-		}
-		for (Object[] o: (List<Object[]>)query.select("aam.academicArea.uniqueId, aam.academicArea.academicAreaAbbreviation, aam.academicArea.title, count(distinct s.uniqueId)")
-				.from("StudentAreaClassificationMinor aam")
-				.where("aam.student = s")
-				.order("aam.academicArea.academicAreaAbbreviation, aam.academicArea.title").group("aam.academicArea.uniqueId, aam.academicArea.academicAreaAbbreviation, aam.academicArea.title")
-				.exclude("area").exclude("major").exclude("concentration").exclude("minor").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
-			Entity a = areas.get((Long)o[0]);
-			if (a == null) {
-				a = new Entity((Long)o[0], (String)o[1], (String)o[2]);
+		BitSet areaRows = (index == null ? null : index.getRows(iRequest, query, "area", "major", "concentration", "minor", "course", "lookup", "prefer", "require", "im", "credit"));
+		if (areaRows != null) {
+			for (Entity a: index.getFacet("area", areaRows))
+				areas.put(a.getUniqueId(), a);
+			for (Entity a: index.getFacet("minorArea", areaRows)) {
+				Entity b = areas.get(a.getUniqueId());
+				if (b == null)
+					areas.put(a.getUniqueId(), a);
+				else
+					b.setCount(b.getCount() + a.getCount());
+			}
+		} else {
+			for (Object[] o: (List<Object[]>)query.select("aac.academicArea.uniqueId, aac.academicArea.academicAreaAbbreviation, aac.academicArea.title, count(distinct s.uniqueId)")
+					.order("aac.academicArea.academicAreaAbbreviation, aac.academicArea.title").group("aac.academicArea.uniqueId, aac.academicArea.academicAreaAbbreviation, aac.academicArea.title")
+					.exclude("area").exclude("major").exclude("concentration").exclude("minor").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
+				Entity a = new Entity(
+						(Long)o[0],
+						(String)o[1],
+						(String)o[2]);
 				a.setCount(((Number)o[3]).intValue());
 				areas.put(a.getUniqueId(), a);
-			} else {
-				a.setCount(a.getCount() + ((Number)o[3]).intValue());
 			}
-			areas.put(a.getUniqueId(), a);
+			for (Object[] o: (List<Object[]>)query.select("aam.academicArea.uniqueId, aam.academicArea.academicAreaAbbreviation, aam.academicArea.title, count(distinct s.uniqueId)")
+					.from("StudentAreaClassificationMinor aam")
+					.where("aam.student = s")
+					.order("aam.academicArea.academicAreaAbbreviation, aam.academicArea.title").group("aam.academicArea.uniqueId, aam.academicArea.academicAreaAbbreviation, aam.academicArea.title")
+					.exclude("area").exclude("major").exclude("concentration").exclude("minor").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
+				Entity a = areas.get((Long)o[0]);
+				if (a == null) {
+					a = new Entity((Long)o[0], (String)o[1], (String)o[2]);
+					a.setCount(((Number)o[3]).intValue());
+					areas.put(a.getUniqueId(), a);
+				} else {
+					a.setCount(a.getCount() + ((Number)o[3]).intValue());
+				}
+				areas.put(a.getUniqueId(), a);
+			}
 		}
 		response.add("area", new TreeSet<Entity>(areas.values()));
 		
@@ -215,89 +230,122 @@ public class SectioningStatusFilterAction implements OnlineSectioningAction<Filt
 		}
 		
 		List<Entity> classifications = new ArrayList<Entity>();
-		for (Object[] o: (List<Object[]>)query.select("aac.academicClassification.uniqueId, aac.academicClassification.code, aac.academicClassification.name, count(distinct s)")
-				.order("aac.academicClassification.code, aac.academicClassification.name").group("aac.academicClassification.uniqueId, aac.academicClassification.code, aac.academicClassification.name")
-				.exclude("classification").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
-			Entity c = new Entity(
-					(Long)o[0],
-					(String)o[1],
-					(String)o[2]);
-			c.setCount(((Number)o[3]).intValue());
-			classifications.add(c);
+		BitSet classificationRows = (index == null ? null : index.getRows(iRequest, query, "classification", "course", "lookup", "prefer", "require", "im", "credit"));
+		if (classificationRows != null) {
+			classifications.addAll(index.getFacet("classification", classificationRows));
+		} else {
+			for (Object[] o: (List<Object[]>)query.select("aac.academicClassification.uniqueId, aac.academicClassification.code, aac.academicClassification.name, count(distinct s)")
+					.order("aac.academicClassification.code, aac.academicClassification.name").group("aac.academicClassification.uniqueId, aac.academicClassification.code, aac.academicClassification.name")
+					.exclude("classification").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
+				Entity c = new Entity(
+						(Long)o[0],
+						(String)o[1],
+						(String)o[2]);
+				c.setCount(((Number)o[3]).intValue());
+				classifications.add(c);
+			}
 		}
 		response.add("classification", classifications);
 		
 		List<Entity> degrees = new ArrayList<Entity>();
-		for (Object[] o: (List<Object[]>)query.select("aac.degree.uniqueId, aac.degree.reference, aac.degree.label, count(distinct s)")
-				.order("aac.degree.reference, aac.degree.label").group("aac.degree.uniqueId, aac.degree.reference, aac.degree.label")
-				.exclude("degree").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
-			Entity c = new Entity(
-					(Long)o[0],
-					(String)o[1],
-					(String)o[2]);
-			c.setCount(((Number)o[3]).intValue());
-			degrees.add(c);
+		BitSet degreeRows = (index == null ? null : index.getRows(iRequest, query, "degree", "course", "lookup", "prefer", "require", "im", "credit"));
+		if (degreeRows != null) {
+			degrees.addAll(index.getFacet("degree", degreeRows));
+		} else {
+			for (Object[] o: (List<Object[]>)query.select("aac.degree.uniqueId, aac.degree.reference, aac.degree.label, count(distinct s)")
+					.order("aac.degree.reference, aac.degree.label").group("aac.degree.uniqueId, aac.degree.reference, aac.degree.label")
+					.exclude("degree").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
+				Entity c = new Entity(
+						(Long)o[0],
+						(String)o[1],
+						(String)o[2]);
+				c.setCount(((Number)o[3]).intValue());
+				degrees.add(c);
+			}
 		}
 		response.add("degree", degrees);
 		
 		List<Entity> programs = new ArrayList<Entity>();
-		for (Object[] o: (List<Object[]>)query.select("aac.program.uniqueId, aac.program.reference, aac.program.label, count(distinct s)")
-				.order("aac.program.reference, aac.program.label").group("aac.program.uniqueId, aac.program.reference, aac.program.label")
-				.exclude("program").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
-			Entity c = new Entity(
-					(Long)o[0],
-					(String)o[1],
-					(String)o[2]);
-			c.setCount(((Number)o[3]).intValue());
-			programs.add(c);
+		BitSet programRows = (index == null ? null : index.getRows(iRequest, query, "program", "course", "lookup", "prefer", "require", "im", "credit"));
+		if (programRows != null) {
+			programs.addAll(index.getFacet("program", programRows));
+		} else {
+			for (Object[] o: (List<Object[]>)query.select("aac.program.uniqueId, aac.program.reference, aac.program.label, count(distinct s)")
+					.order("aac.program.reference, aac.program.label").group("aac.program.uniqueId, aac.program.reference, aac.program.label")
+					.exclude("program").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
+				Entity c = new Entity(
+						(Long)o[0],
+						(String)o[1],
+						(String)o[2]);
+				c.setCount(((Number)o[3]).intValue());
+				programs.add(c);
+			}
 		}
 		response.add("program", programs);
 		
 		if (!(server instanceof StudentSolver)) {
 			List<Entity> campuses = new ArrayList<Entity>();
 			boolean hasDefaultCampus = false;
-			for (Object[] o: (List<Object[]>)query.select("aac.campus.uniqueId, aac.campus.reference, aac.campus.label, count(distinct s)")
-					.order("aac.campus.reference, aac.campus.label").group("aac.campus.uniqueId, aac.campus.reference, aac.campus.label")
-					.exclude("campus").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
-				Entity c = new Entity(
-						(Long)o[0],
-						(String)o[1],
-						(String)o[2]);
-				c.setCount(((Number)o[3]).intValue());
-				if (server.getAcademicSession().getCampus().equals(o[1])) hasDefaultCampus = true;
-				campuses.add(c);
+			BitSet campusRows = (index == null ? null : index.getRows(iRequest, query, "campus", "course", "lookup", "prefer", "require", "im", "credit"));
+			if (campusRows != null) {
+				for (Entity c: index.getFacet("campus", campusRows)) {
+					if (server.getAcademicSession().getCampus().equals(c.getAbbreviation())) hasDefaultCampus = true;
+					campuses.add(c);
+				}
+			} else {
+				for (Object[] o: (List<Object[]>)query.select("aac.campus.uniqueId, aac.campus.reference, aac.campus.label, count(distinct s)")
+						.order("aac.campus.reference, aac.campus.label").group("aac.campus.uniqueId, aac.campus.reference, aac.campus.label")
+						.exclude("campus").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
+					Entity c = new Entity(
+							(Long)o[0],
+							(String)o[1],
+							(String)o[2]);
+					c.setCount(((Number)o[3]).intValue());
+					if (server.getAcademicSession().getCampus().equals(o[1])) hasDefaultCampus = true;
+					campuses.add(c);
+				}
 			}
 			if (campuses.size() == 1 && hasDefaultCampus) campuses.clear();
 			response.add("campus", campuses);
 		}
 		
 		List<Entity> groups = new ArrayList<Entity>();
-		for (Object[] o: (List<Object[]>)query.select("g.uniqueId, g.groupAbbreviation, g.groupName, count(distinct s)")
-				.from("inner join s.groups g").where("g.type is null")
-				.order("g.groupAbbreviation, g.groupName").group("g.uniqueId, g.groupAbbreviation, g.groupName")
-				.exclude("group").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
-			Entity c = new Entity(
-					(Long)o[0],
-					(String)o[1],
-					(String)o[2]);
-			c.setCount(((Number)o[3]).intValue());
-			groups.add(c);
-		}
-		response.add("group", groups);
-		
-		for (StudentGroupType type: StudentGroupTypeDAO.getInstance().findAll(helper.getHibSession())) {
-			List<Entity> groupsOfThisType = new ArrayList<Entity>();
-			for (Object[] o: (List<Object[]>)query.select("gt.uniqueId, gt.groupAbbreviation, gt.groupName, count(distinct s)")
-					.from("inner join s.groups gt").where("gt.type = :groupTypeId")
-					.set("groupTypeId", type.getUniqueId())
-					.order("gt.groupAbbreviation, gt.groupName").group("gt.uniqueId, gt.groupAbbreviation, gt.groupName")
-					.exclude(type.getReference().replace(' ', '_')).exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
+		BitSet groupRows = (index == null ? null : index.getRows(iRequest, query, "group", "course", "lookup", "prefer", "require", "im", "credit"));
+		if (groupRows != null) {
+			groups.addAll(index.getGroups(null, groupRows));
+		} else {
+			for (Object[] o: (List<Object[]>)query.select("g.uniqueId, g.groupAbbreviation, g.groupName, count(distinct s)")
+					.from("inner join s.groups g").where("g.type is null")
+					.order("g.groupAbbreviation, g.groupName").group("g.uniqueId, g.groupAbbreviation, g.groupName")
+					.exclude("group").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
 				Entity c = new Entity(
 						(Long)o[0],
 						(String)o[1],
 						(String)o[2]);
 				c.setCount(((Number)o[3]).intValue());
-				groupsOfThisType.add(c);
+				groups.add(c);
+			}
+		}
+		response.add("group", groups);
+		
+		for (StudentGroupType type: StudentGroupTypeDAO.getInstance().findAll(helper.getHibSession())) {
+			List<Entity> groupsOfThisType = new ArrayList<Entity>();
+			BitSet typeRows = (index == null ? null : index.getRows(iRequest, query, type.getReference().replace(' ', '_'), "course", "lookup", "prefer", "require", "im", "credit"));
+			if (typeRows != null) {
+				groupsOfThisType.addAll(index.getGroups(type.getReference().replace(' ', '_'), typeRows));
+			} else {
+				for (Object[] o: (List<Object[]>)query.select("gt.uniqueId, gt.groupAbbreviation, gt.groupName, count(distinct s)")
+						.from("inner join s.groups gt").where("gt.type = :groupTypeId")
+						.set("groupTypeId", type.getUniqueId())
+						.order("gt.groupAbbreviation, gt.groupName").group("gt.uniqueId, gt.groupAbbreviation, gt.groupName")
+						.exclude(type.getReference().replace(' ', '_')).exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
+					Entity c = new Entity(
+							(Long)o[0],
+							(String)o[1],
+							(String)o[2]);
+					c.setCount(((Number)o[3]).intValue());
+					groupsOfThisType.add(c);
+				}
 			}
 			response.add(type.getReference().replace(' ', '_'), groupsOfThisType);
 			if (type.getLabel() != null)
@@ -305,21 +353,28 @@ public class SectioningStatusFilterAction implements OnlineSectioningAction<Filt
 		}
 		
 		List<Entity> acc = new ArrayList<Entity>();
-		for (Object[] o: (List<Object[]>)query.select("a.uniqueId, a.abbreviation, a.name, count(distinct s)")
-				.from("inner join s.accomodations a")
-				.order("a.abbreviation, a.name").group("a.uniqueId, a.abbreviation, a.name")
-				.exclude("accommodation").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
-			Entity c = new Entity(
-					(Long)o[0],
-					(String)o[1],
-					(String)o[2]);
-			c.setCount(((Number)o[3]).intValue());
-			acc.add(c);
+		BitSet accRows = (index == null ? null : index.getRows(iRequest, query, "accommodation", "course", "lookup", "prefer", "require", "im", "credit"));
+		if (accRows != null) {
+			acc.addAll(index.getFacet("accommodation", accRows));
+		} else {
+			for (Object[] o: (List<Object[]>)query.select("a.uniqueId, a.abbreviation, a.name, count(distinct s)")
+					.from("inner join s.accomodations a")
+					.order("a.abbreviation, a.name").group("a.uniqueId, a.abbreviation, a.name")
+					.exclude("accommodation").exclude("course").exclude("lookup").exclude("prefer").exclude("require").exclude("im").exclude("credit").query(helper.getHibSession()).list()) {
+				Entity c = new Entity(
+						(Long)o[0],
+						(String)o[1],
+						(String)o[2]);
+				c.setCount(((Number)o[3]).intValue());
+				acc.add(c);
+			}
 		}
 		response.add("accommodation", acc);
 		
 		List<Entity> states = new ArrayList<Entity>();
-		int defaultStatus = ((Number)query.select("count(distinct s)").where("s.sectioningStatus is null").exclude("status").exclude("credit").query(helper.getHibSession()).uniqueResult()).intValue();
+		BitSet statusRows = (index == null ? null : index.getRows(iRequest, query, "status", "credit"));
+		int defaultStatus = (statusRows != null ? index.getCount("status", null, statusRows) :
+			((Number)query.select("count(distinct s)").where("s.sectioningStatus is null").exclude("status").exclude("credit").query(helper.getHibSession()).uniqueResult()).intValue());
 		if (defaultStatus > 0) {
 			Session session = SessionDAO.getInstance().get(server.getAcademicSession().getUniqueId(), helper.getHibSession());
 			Entity s;
@@ -331,16 +386,20 @@ public class SectioningStatusFilterAction implements OnlineSectioningAction<Filt
 			s.setCount(defaultStatus);
 			states.add(s);
 		}
-		for (Object[] o: (List<Object[]>)query.select("s.sectioningStatus.uniqueId, s.sectioningStatus.reference, s.sectioningStatus.label, count(distinct s)")
-				.order("s.sectioningStatus.reference, s.sectioningStatus.label").group("s.sectioningStatus.uniqueId, s.sectioningStatus.reference, s.sectioningStatus.label")
-				.exclude("status").exclude("credit").query(helper.getHibSession()).list()) {
-			Entity s = new Entity(
-					(Long)o[0],
-					(String)o[1],
-					(String)o[1],
-					"hint", (String)o[2]);
-			s.setCount(((Number)o[3]).intValue());
-			states.add(s);
+		if (statusRows != null) {
+			states.addAll(index.getFacet("status", statusRows));
+		} else {
+			for (Object[] o: (List<Object[]>)query.select("s.sectioningStatus.uniqueId, s.sectioningStatus.reference, s.sectioningStatus.label, count(distinct s)")
+					.order("s.sectioningStatus.reference, s.sectioningStatus.label").group("s.sectioningStatus.uniqueId, s.sectioningStatus.reference, s.sectioningStatus.label")
+					.exclude("status").exclude("credit").query(helper.getHibSession()).list()) {
+				Entity s = new Entity(
+						(Long)o[0],
+						(String)o[1],
+						(String)o[1],
+						"hint", (String)o[2]);
+				s.setCount(((Number)o[3]).intValue());
+				states.add(s);
+			}
 		}
 		if (states.size() > 1)
 			response.add("status", states);
@@ -1275,6 +1334,10 @@ public class SectioningStatusFilterAction implements OnlineSectioningAction<Filt
 				params.put(name, value);
 		}
 		
+		public Set<String> getWhereOptions() {
+			return iWhere.keySet();
+		}
+		
 		public String getFrom(Collection<String> excludeOption) {
 			String from = "";
 			for (Map.Entry<String, String> entry: iFrom.entrySet()) {
@@ -1392,7 +1455,12 @@ public class SectioningStatusFilterAction implements OnlineSectioningAction<Filt
 	}
 	
 	public Set<Long> getStudentIds(OnlineSectioningServer server, OnlineSectioningHelper helper) {
-		return new HashSet<Long>((List<Long>)getQuery(iRequest, server, helper).select("distinct s.uniqueId").query(helper.getHibSession()).list());
+		StudentQuery query = getQuery(iRequest, server, helper);
+		StudentFacetIndex index = StudentFacetIndex.getIndex(server, helper);
+		BitSet rows = (index == null ? null : index.getRows(iRequest, query));
+		if (rows != null)
+			return index.getStudentIds(rows);
+		return new HashSet<Long>((List<Long>)query.select("distinct s.uniqueId").query(helper.getHibSession()).list());
 	}
 
 	public Map<Long, List<AdvisorCourseRequest>> getAdvisorCourseRequests(OnlineSectioningServer server, OnlineSectioningHelper helper) {
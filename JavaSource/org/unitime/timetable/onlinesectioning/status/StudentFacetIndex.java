@@ -0,0 +1,455 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.shared.EventInterface.FilterRpcRequest;
+import org.unitime.timetable.gwt.shared.EventInterface.FilterRpcResponse.Entity;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.onlinesectioning.status.SectioningStatusFilterAction.StudentQuery;
+
+/**
+ * In-memory index of the student attributes used by the {@link SectioningStatusFilterAction} (academic areas,
+ * classifications, majors, concentrations, degrees, programs, campuses, groups, accommodations, and statuses).
+ * Each student is represented by one row per area, classification, and major combination (or by a single row when
+ * the student has none), matching the left outer join on the student's majors that is used by the filter queries.
+ * Each attribute value has a bitmap of its rows, the facet counts and the matching students are computed using
+ * bitmap intersections. The rows are never reused: when a student changes, the student's old rows are removed from
+ * the live rows and new rows are appended, so that a bitmap returned by {@link StudentFacetIndex#getRows(FilterRpcRequest, StudentQuery, String...)}
+ * remains valid. The changed students are reloaded the next time the index is used, the whole index is reloaded
+ * after unitime.enrollment.filter.facetIndex.ttl seconds or when there are more removed rows than live rows.
+ * The students are queried outside of the index monitor, so that a reload does not block the readers of the index.
+ *
+ * @author Tomas Muller
+ */
+public class StudentFacetIndex {
+	private static Log sLog = LogFactory.getLog(StudentFacetIndex.class);
+	private static Map<Long, StudentFacetIndex> sIndexes = new HashMap<Long, StudentFacetIndex>();
+
+	private final Long iSessionId;
+	private final long iCreated = System.currentTimeMillis();
+	private final ReentrantLock iUpdateLock = new ReentrantLock();
+	private volatile boolean iLoaded = false;
+	private final Set<Long> iChangedStudentIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+	private volatile int iNrRows = 0, iNrLiveRows = 0;
+	private long[] iRowStudentId = new long[1024];
+	private BitSet iLiveRows = new BitSet();
+	private Map<Long, int[]> iStudentRows = new HashMap<Long, int[]>();
+
+	private Map<String, Map<Long, Value>> iFacets = new HashMap<String, Map<Long, Value>>();
+	private Map<Long, Value> iGroups = new HashMap<Long, Value>();
+	private Set<String> iGroupTypes = new HashSet<String>();
+
+	protected StudentFacetIndex(Long sessionId) {
+		iSessionId = sessionId;
+	}
+
+	/**
+	 * Index of the given academic session (loaded or updated if needed), null if unitime.enrollment.filter.facetIndex is disabled
+	 */
+	public static StudentFacetIndex getIndex(OnlineSectioningServer server, OnlineSectioningHelper helper) {
+		if (!ApplicationProperty.OnlineSchedulingDashboardFacetIndex.isTrue()) return null;
+		Long sessionId = server.getAcademicSession().getUniqueId();
+		StudentFacetIndex index = null;
+		synchronized (sIndexes) {
+			index = sIndexes.get(sessionId);
+			if (index == null || index.isExpired()) {
+				index = new StudentFacetIndex(sessionId);
+				sIndexes.put(sessionId, index);
+			}
+		}
+		index.update(helper.getHibSession());
+		return index;
+	}
+
+	/**
+	 * Students of the given academic session have changed, they will be reloaded the next time the index is used
+	 */
+	public static void studentsChanged(Long sessionId, Collection<Long> studentIds) {
+		synchronized (sIndexes) {
+			StudentFacetIndex index = sIndexes.get(sessionId);
+			if (index != null) index.changed(studentIds);
+		}
+	}
+
+	/**
+	 * Students of the given academic session are changed by the current transaction of the given hibernate session,
+	 * they will be reloaded the next time the index is used after the transaction is committed
+	 */
+	public static void studentsChanged(org.hibernate.Session hibSession, final Long sessionId, Collection<Long> studentIds) {
+		final Set<Long> ids = new HashSet<Long>(studentIds);
+		hibSession.getTransaction().registerSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {}
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED)
+					studentsChanged(sessionId, ids);
+			}
+		});
+	}
+
+	/**
+	 * Student of the given academic session has changed, it will be reloaded the next time the index is used
+	 */
+	public static void studentChanged(Long sessionId, Long studentId) {
+		studentsChanged(sessionId, Collections.singleton(studentId));
+	}
+
+	/**
+	 * All students of the given academic session may have changed, the index will be reloaded the next time it is used
+	 */
+	public static void sessionChanged(Long sessionId) {
+		synchronized (sIndexes) {
+			sIndexes.remove(sessionId);
+		}
+	}
+
+	protected void changed(Collection<Long> studentIds) {
+		iChangedStudentIds.addAll(studentIds);
+	}
+
+	protected boolean isExpired() {
+		int ttl = ApplicationProperty.OnlineSchedulingDashboardFacetIndexTimeToLive.intValue();
+		if (ttl >= 0 && System.currentTimeMillis() - iCreated > 1000l * ttl) return true;
+		int nrRows = iNrRows;
+		return nrRows > 1000 && nrRows > 2 * iNrLiveRows;
+	}
+
+	protected void update(org.hibernate.Session hibSession) {
+		if (iLoaded) {
+			// changed students are reloaded by one thread, the others keep using the index as it is
+			if (iChangedStudentIds.isEmpty() || !iUpdateLock.tryLock()) return;
+		} else {
+			iUpdateLock.lock();
+		}
+		try {
+			if (!iLoaded) {
+				long t0 = System.currentTimeMillis();
+				iChangedStudentIds.clear();
+				List<String> types = (List<String>)hibSession.createQuery("select t.reference from StudentGroupType t").setCacheable(true).list();
+				StudentData data = new StudentData(hibSession, null);
+				synchronized (this) {
+					for (String type: types)
+						iGroupTypes.add(type.replace(' ', '_'));
+					load(data);
+				}
+				iLoaded = true;
+				sLog.debug("Student facet index of session " + iSessionId + " loaded in " + (System.currentTimeMillis() - t0) + " ms (" + iStudentRows.size() + " students, " + iNrRows + " rows).");
+			} else if (!iChangedStudentIds.isEmpty()) {
+				Set<Long> studentIds = new HashSet<Long>();
+				for (Iterator<Long> i = iChangedStudentIds.iterator(); i.hasNext(); ) {
+					studentIds.add(i.next()); i.remove();
+				}
+				StudentData data = new StudentData(hibSession, studentIds);
+				synchronized (this) {
+					for (Long studentId: studentIds) {
+						int[] rows = iStudentRows.remove(studentId);
+						if (rows != null) {
+							iLiveRows.clear(rows[0], rows[0] + rows[1]);
+							iNrLiveRows -= rows[1];
+						}
+					}
+					load(data);
+				}
+			}
+		} finally {
+			iUpdateLock.unlock();
+		}
+	}
+
+	protected void load(StudentData data) {
+		Long lastStudentId = null;
+		for (Object[] o: data.iStudents) {
+			Long studentId = (Long)o[0];
+			int row = iNrRows++;
+			if (row >= iRowStudentId.length)
+				iRowStudentId = Arrays.copyOf(iRowStudentId, 2 * iRowStudentId.length);
+			iRowStudentId[row] = studentId;
+			iLiveRows.set(row);
+			iNrLiveRows ++;
+			if (studentId.equals(lastStudentId))
+				iStudentRows.get(studentId)[1] ++;
+			else
+				iStudentRows.put(studentId, new int[] {row, 1});
+			lastStudentId = studentId;
+			add("area", o, 1, row);
+			add("classification", o, 4, row);
+			add("major", o, 7, row);
+			add("concentration", o, 10, row);
+			add("degree", o, 13, row);
+			add("program", o, 16, row);
+			add("campus", o, 19, row);
+			value("status", (Long)o[22], (o[22] == null ? null : (String)o[23]), (String)o[24]).iRows.set(row);
+		}
+		for (Object[] o: data.iMinors) {
+			int[] rows = iStudentRows.get((Long)o[0]);
+			if (rows != null) value("minorArea", (Long)o[1], (String)o[2], (String)o[3]).iRows.set(rows[0], rows[0] + rows[1]);
+		}
+		for (Object[] o: data.iAccommodations) {
+			int[] rows = iStudentRows.get((Long)o[0]);
+			if (rows != null) value("accommodation", (Long)o[1], (String)o[2], (String)o[3]).iRows.set(rows[0], rows[0] + rows[1]);
+		}
+		for (Object[] o: data.iGroups) {
+			int[] rows = iStudentRows.get((Long)o[0]);
+			if (rows == null) continue;
+			Value group = iGroups.get((Long)o[1]);
+			if (group == null) {
+				group = new Value((Long)o[1], (String)o[2], (String)o[3]);
+				group.iType = (o[4] == null ? null : ((String)o[4]).replace(' ', '_'));
+				iGroups.put(group.iId, group);
+			}
+			group.iRows.set(rows[0], rows[0] + rows[1]);
+		}
+	}
+
+	/**
+	 * Student attributes as returned by the database, queried before the index is locked
+	 */
+	private class StudentData {
+		private List<Object[]> iStudents, iMinors, iAccommodations, iGroups;
+
+		private StudentData(org.hibernate.Session hibSession, Collection<Long> studentIds) {
+			iStudents = list(hibSession,
+					"select s.uniqueId, ar.uniqueId, ar.academicAreaAbbreviation, ar.title, cl.uniqueId, cl.code, cl.name, " +
+					"mj.uniqueId, mj.code, mj.name, cn.uniqueId, cn.code, cn.name, dg.uniqueId, dg.reference, dg.label, " +
+					"pg.uniqueId, pg.reference, pg.label, cp.uniqueId, cp.reference, cp.label, st.uniqueId, st.reference, st.label " +
+					"from Student s left outer join s.areaClasfMajors aac left outer join aac.academicArea ar left outer join aac.academicClassification cl " +
+					"left outer join aac.major mj left outer join aac.concentration cn left outer join aac.degree dg left outer join aac.program pg " +
+					"left outer join aac.campus cp left outer join s.sectioningStatus st " +
+					"where s.session.uniqueId = :sessionId", " order by s.uniqueId", studentIds);
+			iMinors = list(hibSession,
+					"select s.uniqueId, ar.uniqueId, ar.academicAreaAbbreviation, ar.title " +
+					"from StudentAreaClassificationMinor aam inner join aam.student s inner join aam.academicArea ar " +
+					"where s.session.uniqueId = :sessionId", "", studentIds);
+			iAccommodations = list(hibSession,
+					"select s.uniqueId, a.uniqueId, a.abbreviation, a.name " +
+					"from Student s inner join s.accomodations a " +
+					"where s.session.uniqueId = :sessionId", "", studentIds);
+			iGroups = list(hibSession,
+					"select s.uniqueId, g.uniqueId, g.groupAbbreviation, g.groupName, t.reference " +
+					"from Student s inner join s.groups g left outer join g.type t " +
+					"where s.session.uniqueId = :sessionId", "", studentIds);
+		}
+	}
+
+	private List<Object[]> list(org.hibernate.Session hibSession, String query, String orderBy, Collection<Long> studentIds) {
+		if (studentIds == null)
+			return (List<Object[]>)hibSession.createQuery(query + orderBy).setLong("sessionId", iSessionId).list();
+		List<Object[]> ret = new ArrayList<Object[]>();
+		List<Long> ids = new ArrayList<Long>(studentIds);
+		for (int i = 0; i < ids.size(); i += 1000) {
+			ret.addAll((List<Object[]>)hibSession.createQuery(query + " and s.uniqueId in (:studentIds)" + orderBy)
+					.setLong("sessionId", iSessionId).setParameterList("studentIds", ids.subList(i, Math.min(i + 1000, ids.size()))).list());
+		}
+		return ret;
+	}
+
+	private void add(String facet, Object[] o, int index, int row) {
+		if (o[index] != null)
+			value(facet, (Long)o[index], (String)o[index + 1], (String)o[index + 2]).iRows.set(row);
+	}
+
+	private Value value(String facet, Long id, String abbv, String name) {
+		Map<Long, Value> values = iFacets.get(facet);
+		if (values == null) {
+			values = new HashMap<Long, Value>();
+			iFacets.put(facet, values);
+		}
+		Value value = values.get(id);
+		if (value == null) {
+			value = new Value(id, abbv, name);
+			values.put(id, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Rows matching the given filter, ignoring the given options
+	 * @param request filter request
+	 * @param query student query created for the filter request (see {@link SectioningStatusFilterAction#getQuery(FilterRpcRequest, OnlineSectioningServer, OnlineSectioningHelper)})
+	 * @param exclude options of the filter that are to be ignored
+	 * @return matching rows, null if the filter (without the excluded options) cannot be evaluated using the index
+	 */
+	public synchronized BitSet getRows(FilterRpcRequest request, StudentQuery query, String... exclude) {
+		Set<String> excludeOptions = new HashSet<String>(Arrays.asList(exclude));
+		BitSet rows = (BitSet)iLiveRows.clone();
+		for (String option: query.getWhereOptions()) {
+			if (excludeOptions.contains(option)) continue;
+			BitSet match = match(option, request);
+			if (match == null) return null;
+			rows.and(match);
+		}
+		return rows;
+	}
+
+	protected BitSet match(String option, FilterRpcRequest request) {
+		Set<String> values = request.getOptions(option);
+		if (values == null) return null;
+		if ("area".equals(option)) {
+			// area and minor options combined use a different query
+			return (request.hasOptions("minor") ? null : match(iFacets.get(option), values));
+		} else if ("classification".equals(option) || "major".equals(option) || "concentration".equals(option) || "accommodation".equals(option)) {
+			return match(iFacets.get(option), values);
+		} else if ("degree".equals(option) || "program".equals(option) || "campus".equals(option)) {
+			for (String value: values)
+				if (value.indexOf('%') >= 0) return null;
+			return match(iFacets.get(option), values);
+		} else if ("status".equals(option)) {
+			// Not Set stands for the students without a status
+			BitSet rows = new BitSet();
+			Map<Long, Value> statuses = iFacets.get(option);
+			if (statuses != null)
+				for (Value status: statuses.values()) {
+					if (status.iId == null ? values.contains("Not Set") : !"Not Set".equals(status.iAbbv) && values.contains(status.iAbbv)) rows.or(status.iRows);
+				}
+			return rows;
+		} else if ("group".equals(option) || iGroupTypes.contains(option)) {
+			// groups are matched by their abbreviations, regardless of the group type
+			return match(iGroups, values);
+		}
+		return null;
+	}
+
+	protected BitSet match(Map<Long, Value> facet, Collection<String> values) {
+		BitSet rows = new BitSet();
+		if (facet != null)
+			for (Value value: facet.values()) {
+				if (value.iAbbv != null && values.contains(value.iAbbv)) rows.or(value.iRows);
+			}
+		return rows;
+	}
+
+	/**
+	 * Number of students of the given rows that have the given attribute value
+	 * @param facet attribute name (e.g., status)
+	 * @param id attribute value unique id (null for the students without the attribute, only for the status)
+	 */
+	public synchronized int getCount(String facet, Long id, BitSet rows) {
+		Map<Long, Value> values = iFacets.get(facet);
+		Value value = (values == null ? null : values.get(id));
+		return (value == null ? 0 : countStudents(rows, value.iRows));
+	}
+
+	/**
+	 * Attribute values with the number of matching students of the given rows, ordered by abbreviation and name, excluding the values without any student
+	 * @param facet attribute name (area, minorArea, classification, major, concentration, degree, program, campus, accommodation, or status)
+	 */
+	public synchronized List<Entity> getFacet(String facet, BitSet rows) {
+		Map<Long, Value> values = iFacets.get(facet);
+		return (values == null ? new ArrayList<Entity>() : entities(values.values(), rows, "status".equals(facet)));
+	}
+
+	/**
+	 * Student groups of the given type (null for groups without a type) with the number of matching students of the given rows
+	 */
+	public synchronized List<Entity> getGroups(String type, BitSet rows) {
+		List<Value> groups = new ArrayList<Value>();
+		for (Value group: iGroups.values())
+			if (type == null ? group.iType == null : type.equals(group.iType)) groups.add(group);
+		return entities(groups, rows, false);
+	}
+
+	protected List<Entity> entities(Collection<Value> values, BitSet rows, boolean status) {
+		List<Value> sorted = new ArrayList<Value>(values);
+		Collections.sort(sorted);
+		List<Entity> entities = new ArrayList<Entity>();
+		for (Value value: sorted) {
+			if (value.iId == null) continue;
+			int count = countStudents(rows, value.iRows);
+			if (count == 0) continue;
+			Entity entity = (status ? new Entity(value.iId, value.iAbbv, value.iAbbv, "hint", value.iName) : new Entity(value.iId, value.iAbbv, value.iName));
+			entity.setCount(count);
+			entities.add(entity);
+		}
+		return entities;
+	}
+
+	/**
+	 * Number of distinct students of the intersection of the two bitmaps (the rows of a student are always consecutive)
+	 */
+	protected int countStudents(BitSet rows, BitSet valueRows) {
+		BitSet intersection = (BitSet)rows.clone();
+		intersection.and(valueRows);
+		int count = 0, last = -2;
+		for (int row = intersection.nextSetBit(0); row >= 0; row = intersection.nextSetBit(row + 1)) {
+			if (last < 0 || iRowStudentId[last] != iRowStudentId[row]) count ++;
+			last = row;
+		}
+		return count;
+	}
+
+	/**
+	 * Unique ids of the students of the given rows
+	 */
+	public synchronized Set<Long> getStudentIds(BitSet rows) {
+		Set<Long> studentIds = new HashSet<Long>();
+		for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1))
+			studentIds.add(iRowStudentId[row]);
+		return studentIds;
+	}
+
+	private static class Value implements Comparable<Value> {
+		private Long iId;
+		private String iAbbv, iName, iType;
+		private BitSet iRows = new BitSet();
+
+		private Value(Long id, String abbv, String name) {
+			iId = id; iAbbv = abbv; iName = name;
+		}
+
+		@Override
+		public int compareTo(Value v) {
+			int cmp = compare(iAbbv, v.iAbbv);
+			if (cmp != 0) return cmp;
+			cmp = compare(iName, v.iName);
+			if (cmp != 0) return cmp;
+			return compare(iId, v.iId);
+		}
+
+		private static <T extends Comparable<T>> int compare(T a, T b) {
+			if (a == null) return (b == null ? 0 : -1);
+			if (b == null) return 1;
+			return a.compareTo(b);
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.test;
+
+import java.text.DecimalFormat;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.onlinesectioning.ConcurrentMultiLock;
+import org.unitime.timetable.onlinesectioning.MultiLock;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+
+/**
+ * Contention benchmark of the {@link MultiLock} and {@link ConcurrentMultiLock} lock managers.
+ * Each worker thread repeatedly locks a random set of offering ids and a student id (like a typical
+ * enrollment does), holds the lock for a short while, and releases it. A few threads also periodically lock all.
+ * Use system properties threads, duration (in seconds), offerings, students, hold (in microseconds), and lockAll
+ * (number of lock all threads) to change the parameters.
+ *
+ * @author Tomas Muller
+ */
+public class MultiLockBenchmark {
+	private static Log sLog = LogFactory.getLog(MultiLockBenchmark.class);
+	private static DecimalFormat sDF = new DecimalFormat("0.000");
+
+	public static interface LockManager {
+		public OnlineSectioningServer.Lock lock(Collection<Long> ids);
+		public OnlineSectioningServer.Lock lockAll();
+	}
+
+	public static class Result {
+		private long iNrLocks, iWaitNanos, iMaxWaitNanos, iElapsedNanos;
+
+		public Result(long nrLocks, long waitNanos, long maxWaitNanos, long elapsedNanos) {
+			iNrLocks = nrLocks; iWaitNanos = waitNanos; iMaxWaitNanos = maxWaitNanos; iElapsedNanos = elapsedNanos;
+		}
+
+		public double getThroughput() { return iNrLocks / (iElapsedNanos / 1e9); }
+		public double getAverageWaitMillis() { return iNrLocks == 0 ? 0.0 : iWaitNanos / 1e6 / iNrLocks; }
+		public double getMaxWaitMillis() { return iMaxWaitNanos / 1e6; }
+
+		@Override
+		public String toString() {
+			return iNrLocks + " locks, throughput " + sDF.format(getThroughput()) + " locks / s," +
+					" wait " + sDF.format(getAverageWaitMillis()) + " ms on average," +
+					" max wait " + sDF.format(getMaxWaitMillis()) + " ms";
+		}
+	}
+
+	public static Result run(final LockManager manager, int nrThreads, int nrLockAllThreads, long durationMillis, final int nrOfferings, final int nrStudents, final long holdMicros) throws InterruptedException {
+		final AtomicLong nrLocks = new AtomicLong(0), waitNanos = new AtomicLong(0), maxWaitNanos = new AtomicLong(0);
+		final long end = System.currentTimeMillis() + durationMillis;
+		final CountDownLatch done = new CountDownLatch(nrThreads + nrLockAllThreads);
+		long t0 = System.nanoTime();
+		for (int i = 0; i < nrThreads; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						ThreadLocalRandom rnd = ThreadLocalRandom.current();
+						while (System.currentTimeMillis() < end) {
+							Set<Long> ids = new HashSet<Long>();
+							ids.add(-1l - rnd.nextInt(nrStudents));
+							int nrCourses = 2 + rnd.nextInt(9);
+							while (ids.size() <= nrCourses)
+								ids.add((long)rnd.nextInt(nrOfferings));
+							long w0 = System.nanoTime();
+							OnlineSectioningServer.Lock lock = manager.lock(ids);
+							long wait = System.nanoTime() - w0;
+							try {
+								spin(holdMicros);
+							} finally {
+								lock.release();
+							}
+							nrLocks.incrementAndGet();
+							waitNanos.addAndGet(wait);
+							maxWaitNanos.accumulateAndGet(wait, Math::max);
+						}
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+			t.setName("[T" + (1 + i) + "]");
+			t.setDaemon(true);
+			t.start();
+		}
+		for (int i = 0; i < nrLockAllThreads; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (System.currentTimeMillis() < end) {
+							try {
+								Thread.sleep(ThreadLocalRandom.current().nextInt(1000));
+							} catch (InterruptedException e) {}
+							OnlineSectioningServer.Lock lock = manager.lockAll();
+							try {
+								spin(10 * holdMicros);
+							} finally {
+								lock.release();
+							}
+						}
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+			t.setName("[A" + (1 + i) + "]");
+			t.setDaemon(true);
+			t.start();
+		}
+		done.await();
+		return new Result(nrLocks.get(), waitNanos.get(), maxWaitNanos.get(), System.nanoTime() - t0);
+	}
+
+	private static void spin(long micros) {
+		long end = System.nanoTime() + 1000l * micros;
+		while (System.nanoTime() < end)
+			;
+	}
+
+	public static void main(String[] args) {
+		try {
+			int duration = Integer.getInteger("duration", 10);
+			int nrOfferings = Integer.getInteger("offerings", 10000);
+			int nrStudents = Integer.getInteger("students", 40000);
+			int holdMicros = Integer.getInteger("hold", 100);
+			int nrLockAllThreads = Integer.getInteger("lockAll", 1);
+			String threads = System.getProperty("threads", "1,2,4,8,16,32,64,128,256,1000");
+
+			for (String t: threads.split(",")) {
+				int nrThreads = Integer.parseInt(t.trim());
+
+				final MultiLock multiLock = new MultiLock();
+				Result r1 = run(new LockManager() {
+					@Override
+					public OnlineSectioningServer.Lock lock(Collection<Long> ids) { return multiLock.lock(ids); }
+					@Override
+					public OnlineSectioningServer.Lock lockAll() { return multiLock.lockAll(); }
+				}, nrThreads, nrLockAllThreads, 1000l * duration, nrOfferings, nrStudents, holdMicros);
+				sLog.info("MultiLock, " + nrThreads + " threads: " + r1);
+
+				final ConcurrentMultiLock concurrentLock = new ConcurrentMultiLock();
+				Result r2 = run(new LockManager() {
+					@Override
+					public OnlineSectioningServer.Lock lock(Collection<Long> ids) { return concurrentLock.lock(ids); }
+					@Override
+					public OnlineSectioningServer.Lock lockAll() { return concurrentLock.lockAll(); }
+				}, nrThreads, nrLockAllThreads, 1000l * duration, nrOfferings, nrStudents, holdMicros);
+				sLog.info("ConcurrentMultiLock, " + nrThreads + " threads: " + r2 + " (" + concurrentLock + ")");
+			}
+		} catch (Exception e) {
+			sLog.fatal("Benchmark failed: " + e.getMessage(), e);
+		}
+	}
+}
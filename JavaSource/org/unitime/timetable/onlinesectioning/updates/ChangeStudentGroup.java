@@ -35,6 +35,7 @@ import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
 import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster.Master;
+import org.unitime.timetable.onlinesectioning.status.StudentFacetIndex;
 
 /**
  * @author Tomas Muller
@@ -102,6 +103,7 @@ public class ChangeStudentGroup implements OnlineSectioningAction<Boolean> {
 						action.setResult(changed ? OnlineSectioningLog.Action.ResultType.TRUE : OnlineSectioningLog.Action.ResultType.FALSE);
 					}
 					helper.commitTransaction();
+					StudentFacetIndex.studentChanged(server.getAcademicSession().getUniqueId(), studentId);
 				} catch (Exception e) {
 					helper.rollbackTransaction();
 					if (e instanceof SectioningException) throw (SectioningException)e;
@@ -38,6 +38,7 @@ import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.model.XStudentNote;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster.Master;
+import org.unitime.timetable.onlinesectioning.status.StudentFacetIndex;
 
 /**
  * @author Tomas Muller
@@ -138,6 +139,7 @@ public class ChangeStudentStatus implements OnlineSectioningAction<Boolean> {
 						server.update(student, false);
 					}
 					helper.commitTransaction();
+					StudentFacetIndex.studentChanged(server.getAcademicSession().getUniqueId(), studentId);
 				} catch (Exception e) {
 					helper.rollbackTransaction();
 					if (e instanceof SectioningException) throw (SectioningException)e;
@@ -58,6 +58,7 @@ import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster.Master;
 import org.unitime.timetable.onlinesectioning.solver.SectioningRequest;
+import org.unitime.timetable.onlinesectioning.status.StudentFacetIndex;
 
 /**
  * @author Tomas Muller
@@ -266,6 +267,7 @@ public class MassCancelAction implements OnlineSectioningAction<Boolean>{
 						}
 					}
 					helper.commitTransaction();
+					StudentFacetIndex.studentChanged(server.getAcademicSession().getUniqueId(), studentId);
 				} catch (Exception e) {
 					helper.rollbackTransaction();
 					caughtException = e;
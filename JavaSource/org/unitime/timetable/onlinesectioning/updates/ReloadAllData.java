@@ -23,6 +23,7 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -31,10 +32,20 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.cpsolver.coursett.constraint.GroupConstraint;
 import org.cpsolver.coursett.constraint.IgnoreStudentConflictsConstraint;
+import org.hibernate.CacheMode;
+import org.hibernate.Transaction;
 import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.resources.StudentSectioningMessages;
 import org.unitime.timetable.gwt.shared.OnlineSectioningInterface.WaitListMode;
@@ -49,9 +60,12 @@ import org.unitime.timetable.model.PreferenceLevel;
 import org.unitime.timetable.model.SchedulingSubpart;
 import org.unitime.timetable.model.WaitList;
 import org.unitime.timetable.model.comparators.ClassComparator;
+import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningAction;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningLog;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper.Message;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
 import org.unitime.timetable.onlinesectioning.model.XConfig;
 import org.unitime.timetable.onlinesectioning.model.XCourseId;
@@ -67,9 +81,15 @@ import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.model.XSubpart;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster.Master;
+import org.unitime.timetable.onlinesectioning.status.StudentFacetIndex;
 import org.unitime.timetable.solver.TimetableDatabaseLoader;
 
 /**
+ * Reload all the offerings and students of an online student scheduling server.<br>
+ * Offerings and students are fetched in id-range chunks, each chunk on a separate Hibernate session, and
+ * the X-objects are created on a pool of unitime.sectioning.reload.threads worker threads.
+ * The loaded chunks are published to the server in the order of their ids, by the thread holding the server lock.
+ * 
  * @author Tomas Muller
  */
 @CheckMaster(Master.REQUIRED)
@@ -94,100 +114,137 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
 				helper.info("Updating course infos and the student sectining model for session " + server.getAcademicSession());
 				long t0 = System.currentTimeMillis();
 				server.clearAll();
-
-				Map<Long, List<XDistribution>> distributions = new Hashtable<Long, List<XDistribution>>();
-		    	List<DistributionPref> distPrefs = helper.getHibSession().createQuery(
-		        		"select p from DistributionPref p, Department d where p.distributionType.reference in (:ref1, :ref2) and d.session.uniqueId = :sessionId" +
-		        		" and p.owner = d and p.prefLevel.prefProlog = :pref")
-		        		.setString("ref1", GroupConstraint.ConstraintType.LINKED_SECTIONS.reference())
-		        		.setString("ref2", IgnoreStudentConflictsConstraint.REFERENCE)
-		        		.setString("pref", PreferenceLevel.sRequired)
-		        		.setLong("sessionId", server.getAcademicSession().getUniqueId())
-		        		.list();
-		        if (!distPrefs.isEmpty()) {
-		        	for (DistributionPref pref: distPrefs) {
-		        		int variant = 0;
-		        		for (Collection<Class_> sections: getSections(pref)) {
-		        			XDistributionType type = XDistributionType.IngoreConflicts;
-		        			if (GroupConstraint.ConstraintType.LINKED_SECTIONS.reference().equals(pref.getDistributionType().getReference()))
-		        				type = XDistributionType.LinkedSections;
-		        			XDistribution distribution = new XDistribution(type, pref.getUniqueId(), variant++, sections);
-		        			for (Long offeringId: distribution.getOfferingIds()) {
-		        				List<XDistribution> list = distributions.get(offeringId);
-		        				if (list == null) {
-		        					list = new ArrayList<XDistribution>();
-		        					distributions.put(offeringId, list);
-		        				}
-		        				list.add(distribution);
-		        			}
-		        				
-		        		}
-		        	}
-		        }
-		        
-				Map<Long, XOffering> offeringMap = new HashMap<Long, XOffering>();
-				Map<Long, XSection> sectionMap = new HashMap<Long, XSection>();
-				Map<Long, Map<Long, Double>> spaceMap = new HashMap<Long, Map<Long,Double>>();
-				List<InstructionalOffering> offerings = helper.getHibSession().createQuery(
-						"select distinct io from InstructionalOffering io " +
-						"left join io.courseOfferings co " +
-						"left join fetch io.instrOfferingConfigs cf " +
-						"left join fetch cf.schedulingSubparts ss " +
-						"left join fetch ss.classes as c "+
-						"left join fetch io.reservations x " +
-						"where io.session.uniqueId = :sessionId and io.notOffered = false and co.subjectArea.department.allowStudentScheduling = true")
-						.setLong("sessionId", server.getAcademicSession().getUniqueId()).list();
-				for (InstructionalOffering io: offerings) {
-					XOffering offering = loadOffering(io, distributions.get(io.getUniqueId()), server, helper);
-					if (offering != null) {
-						offeringMap.put(offering.getOfferingId(), offering);
-						for (XConfig config: offering.getConfigs())
-							for (XSubpart subpart: config.getSubparts())
-								for (XSection section: subpart.getSections())
-									sectionMap.put(section.getSectionId(), section);
-						spaceMap.put(offering.getOfferingId(), new HashMap<Long, Double>());
-						server.update(offering);
+				
+				int nrThreads = Math.max(1, ApplicationProperty.OnlineSchedulingReloadThreads.intValue());
+				int chunkSize = Math.max(1, ApplicationProperty.OnlineSchedulingReloadChunkSize.intValue());
+				ExecutorService executor = Executors.newFixedThreadPool(nrThreads, new ThreadFactory() {
+					private AtomicInteger iCount = new AtomicInteger(0);
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "ReloadAllData-" + iCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
 					}
+				});
+				try {
+					long t = System.currentTimeMillis();
+					Map<Long, List<XDistribution>> distributions = new Hashtable<Long, List<XDistribution>>();
+			    	List<DistributionPref> distPrefs = helper.getHibSession().createQuery(
+			        		"select p from DistributionPref p, Department d where p.distributionType.reference in (:ref1, :ref2) and d.session.uniqueId = :sessionId" +
+			        		" and p.owner = d and p.prefLevel.prefProlog = :pref")
+			        		.setString("ref1", GroupConstraint.ConstraintType.LINKED_SECTIONS.reference())
+			        		.setString("ref2", IgnoreStudentConflictsConstraint.REFERENCE)
+			        		.setString("pref", PreferenceLevel.sRequired)
+			        		.setLong("sessionId", server.getAcademicSession().getUniqueId())
+			        		.list();
+			        if (!distPrefs.isEmpty()) {
+			        	for (DistributionPref pref: distPrefs) {
+			        		int variant = 0;
+			        		for (Collection<Class_> sections: getSections(pref)) {
+			        			XDistributionType type = XDistributionType.IngoreConflicts;
+			        			if (GroupConstraint.ConstraintType.LINKED_SECTIONS.reference().equals(pref.getDistributionType().getReference()))
+			        				type = XDistributionType.LinkedSections;
+			        			XDistribution distribution = new XDistribution(type, pref.getUniqueId(), variant++, sections);
+			        			for (Long offeringId: distribution.getOfferingIds()) {
+			        				List<XDistribution> list = distributions.get(offeringId);
+			        				if (list == null) {
+			        					list = new ArrayList<XDistribution>();
+			        					distributions.put(offeringId, list);
+			        				}
+			        				list.add(distribution);
+			        			}
+			        				
+			        		}
+			        	}
+			        }
+			        t = logThroughput(helper, "distributions", distPrefs.size(), t);
+			        
+			        // Start loading the offerings and students in chunks (both can be loaded at the same time, they are published in the order of their ids)
+			        List<Long> offeringIds = helper.getHibSession().createQuery(
+			        		"select distinct io.uniqueId from InstructionalOffering io " +
+			        		"left join io.courseOfferings co " +
+			        		"where io.session.uniqueId = :sessionId and io.notOffered = false and co.subjectArea.department.allowStudentScheduling = true " +
+			        		"order by io.uniqueId")
+			        		.setLong("sessionId", server.getAcademicSession().getUniqueId()).list();
+			        List<Future<Chunk<XOffering>>> offeringChunks = new ArrayList<Future<Chunk<XOffering>>>();
+			        for (int i = 0; i < offeringIds.size(); i += chunkSize)
+			        	offeringChunks.add(executor.submit(new OfferingLoader(offeringIds.get(i), offeringIds.get(Math.min(i + chunkSize, offeringIds.size()) - 1), distributions, server, helper)));
+			        List<Long> studentIds = helper.getHibSession().createQuery(
+			        		"select s.uniqueId from Student s where s.session.uniqueId=:sessionId order by s.uniqueId")
+			        		.setLong("sessionId", server.getAcademicSession().getUniqueId()).list();
+			        List<Future<Chunk<LoadedStudent>>> studentChunks = new ArrayList<Future<Chunk<LoadedStudent>>>();
+			        for (int i = 0; i < studentIds.size(); i += chunkSize)
+			        	studentChunks.add(executor.submit(new StudentLoader(studentIds.get(i), studentIds.get(Math.min(i + chunkSize, studentIds.size()) - 1), server, helper)));
+			        
+					Map<Long, XOffering> offeringMap = new HashMap<Long, XOffering>();
+					Map<Long, XSection> sectionMap = new HashMap<Long, XSection>();
+					Map<Long, Map<Long, Double>> spaceMap = new HashMap<Long, Map<Long,Double>>();
+					for (Future<Chunk<XOffering>> future: offeringChunks) {
+						Chunk<XOffering> chunk = get(future, helper);
+						for (XOffering offering: chunk.getItems()) {
+							offeringMap.put(offering.getOfferingId(), offering);
+							for (XConfig config: offering.getConfigs())
+								for (XSubpart subpart: config.getSubparts())
+									for (XSection section: subpart.getSections())
+										sectionMap.put(section.getSectionId(), section);
+							spaceMap.put(offering.getOfferingId(), new HashMap<Long, Double>());
+							server.update(offering);
+						}
+					}
+					t = logThroughput(helper, "offerings", offeringMap.size(), t);
+					
+			        Map<Long, List<XCourseRequest>> requestMap = new HashMap<Long, List<XCourseRequest>>();
+			        List<Long> resetWaitListIds = new ArrayList<Long>();
+			        int nrStudents = 0;
+			        for (Future<Chunk<LoadedStudent>> future: studentChunks) {
+			        	Chunk<LoadedStudent> chunk = get(future, helper);
+			        	for (LoadedStudent student: chunk.getItems()) {
+			        		checkStudent(student.getStudent(), student.getName(), requestMap, server, helper);
+			        		server.update(student.getStudent(), true);
+			        		if (student.isResetWaitLists()) resetWaitListIds.add(student.getStudent().getStudentId());
+			        		nrStudents ++;
+			        	}
+			        }
+			        t = logThroughput(helper, "students", nrStudents, t);
+			        
+			        // Wait-list changes are written by the calling session (so that they are committed or rolled back with the rest of the reload)
+			        for (int i = 0; i < resetWaitListIds.size(); i += chunkSize) {
+			        	List<org.unitime.timetable.model.Student> students = helper.getHibSession().createQuery(
+			        			"select distinct s from Student s " +
+			        			"left join fetch s.waitlists as w " +
+			        			"left join fetch s.classEnrollments as e " +
+			        			"where s.uniqueId in :studentIds")
+			        			.setParameterList("studentIds", resetWaitListIds.subList(i, Math.min(i + chunkSize, resetWaitListIds.size()))).list();
+			        	for (org.unitime.timetable.model.Student s: students)
+			        		s.resetWaitLists(WaitList.WaitListType.RELOAD, helper.getUser().getExternalId(), null, helper.getHibSession());
+			        }
+			        if (!resetWaitListIds.isEmpty())
+			        	t = logThroughput(helper, "wait-lists", resetWaitListIds.size(), t);
+					
+			    	List<Object[]> infos = helper.getHibSession().createQuery(
+			    			"select i.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId, i.clazz.uniqueId, i.nbrExpectedStudents from SectioningInfo i where i.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId = :sessionId")
+			    			.setLong("sessionId", server.getAcademicSession().getUniqueId())
+			    			.list();
+			    	for (Object[] info : infos) {
+			    		Long offeringId = (Long)info[0];
+			    		Long sectionId = (Long)info[1];
+			    		Double expected = (Double)info[2];
+			    		Map<Long, Double> space = spaceMap.get(offeringId);
+			    		if (space != null)
+			    			space.put(sectionId, expected);
+			    	}
+			    	for (Map.Entry<Long, Map<Long, Double>> entry: spaceMap.entrySet())
+			    		server.update(new XExpectations(entry.getKey(), entry.getValue()));
+			    	t = logThroughput(helper, "expectations", infos.size(), t);
+				} finally {
+					executor.shutdownNow();
 				}
-				
-		        Map<Long, List<XCourseRequest>> requestMap = new HashMap<Long, List<XCourseRequest>>();
-				List<org.unitime.timetable.model.Student> students = helper.getHibSession().createQuery(
-	                    "select distinct s from Student s " +
-	                    "left join fetch s.courseDemands as cd " +
-	                    "left join fetch cd.courseRequests as cr " +
-	                    "left join fetch cr.classWaitLists as cwl " + 
-	                    "left join fetch s.classEnrollments as e " +
-	                    "left join fetch s.areaClasfMajors as acm " +
-	                    "left join fetch s.waitlists as w " +
-	                    "left join fetch s.groups as g " +
-	                    "left join fetch s.notes as n " +
-	                    "where s.session.uniqueId=:sessionId").
-	                    setLong("sessionId",server.getAcademicSession().getUniqueId()).list();
-	            for (org.unitime.timetable.model.Student student: students) {
-	            	XStudent s = loadStudent(student, requestMap, server, helper, WaitList.WaitListType.RELOAD);
-	            	if (s != null)
-	            		server.update(s, true);
-	            }
-				
-		    	List<Object[]> infos = helper.getHibSession().createQuery(
-		    			"select i.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId, i.clazz.uniqueId, i.nbrExpectedStudents from SectioningInfo i where i.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId = :sessionId")
-		    			.setLong("sessionId", server.getAcademicSession().getUniqueId())
-		    			.list();
-		    	for (Object[] info : infos) {
-		    		Long offeringId = (Long)info[0];
-		    		Long sectionId = (Long)info[1];
-		    		Double expected = (Double)info[2];
-		    		Map<Long, Double> space = spaceMap.get(offeringId);
-		    		if (space != null)
-		    			space.put(sectionId, expected);
-		    	}
-		    	for (Map.Entry<Long, Map<Long, Double>> entry: spaceMap.entrySet())
-		    		server.update(new XExpectations(entry.getKey(), entry.getValue()));
 		        
 				long t1 = System.currentTimeMillis();
 				helper.info("  Update of session " + server.getAcademicSession() + " done " + new DecimalFormat("0.0").format((t1 - t0) / 1000.0) + " seconds.");
 				
 				helper.commitTransaction();
+				StudentFacetIndex.sessionChanged(server.getAcademicSession().getUniqueId());
 				return true;
 			} catch (Exception e) {
 				helper.rollbackTransaction();
@@ -212,6 +269,20 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
     public static XStudent loadStudent(org.unitime.timetable.model.Student s, Map<Long, List<XCourseRequest>> requestMap, OnlineSectioningServer server, OnlineSectioningHelper helper, WaitList.WaitListType resetWaitListType) {
     	XStudent student = new XStudent(s, helper, server.getAcademicSession().getFreeTimePattern(), server.getAcademicSession().getDatePatternFirstDate());
     	
+    	checkStudent(student, helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + ")", requestMap, server, helper);
+
+    	if (resetWaitListType != null && s.getWaitListMode() == WaitListMode.WaitList)
+    		s.resetWaitLists(resetWaitListType, helper.getUser().getExternalId(), null, helper.getHibSession());
+
+        return student;
+    }
+    
+    /**
+     * Remove requests for courses that are not loaded, guess reservations of the enrollments, and check the enrollments for problems
+     * (overlapping classes, classes from different configurations, etc.)
+     * @param studentName student name and external id, used in the warnings
+     */
+    protected static void checkStudent(XStudent student, String studentName, Map<Long, List<XCourseRequest>> requestMap, OnlineSectioningServer server, OnlineSectioningHelper helper) {
     	for (Iterator<XRequest> i = student.getRequests().iterator(); i.hasNext(); ) {
     		XRequest request = i.next();
     		if (request instanceof XCourseRequest) {
@@ -221,7 +292,7 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
     				XCourseId course = j.next();
     				XOffering offering = server.getOffering(course.getOfferingId());
                     if (offering == null) {
-                    	helper.warn("Student " + helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + ") requests course " + course.getCourseName() + " that is not loaded.");
+                    	helper.warn("Student " + studentName + " requests course " + course.getCourseName() + " that is not loaded.");
                     	j.remove();
                     }
     			}
@@ -255,13 +326,13 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
     							if (enrollment.getSectionIds().contains(section.getSectionId())) {
     		    					for (XSection other: checked.keySet()) {
     		    						if (section.isOverlapping(offering.getDistributions(), other)) {
-    		    							helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + "): "+
+    		    							helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + studentName + ": "+
     		    									section.getSubpartName() + " " + section.getName() + " " + section.getTime() +
     		            							" overlaps with " + checked.get(other).getCourseName() + " " + other.getSubpartName() + " " + other.getName() + " " + other.getTime());
     		    						}
     		    					}
     		    					if (!mixedConfig && !config.getConfigId().equals(enrollment.getConfigId())) {
-    		    						helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + "): classes from different configurations.");
+    		    						helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + studentName + ": classes from different configurations.");
     		    						mixedConfig = true;
     		    					}
     		    					checked.put(section, enrollment);
@@ -270,20 +341,15 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
     						}
 							if (config.getConfigId().equals(enrollment.getConfigId()) && nrMatches != 1) {
 								if (nrMatches > 1)
-									helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + "): two or more classes of the same subpart " + subpart.getName() + ".");
+									helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + studentName + ": two or more classes of the same subpart " + subpart.getName() + ".");
 								else
-									helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + "): no class of the subpart " + subpart.getName() + ".");
+									helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + studentName + ": no class of the subpart " + subpart.getName() + ".");
 							}
     					}
     				}
     			}
     		}
     	}
-    	
-    	if (resetWaitListType != null && s.getWaitListMode() == WaitListMode.WaitList)
-    		s.resetWaitLists(resetWaitListType, helper.getUser().getExternalId(), null, helper.getHibSession());
-    	
-        return student;
     }
     
     public static XStudent loadStudentNoCheck(org.unitime.timetable.model.Student s, OnlineSectioningServer server, OnlineSectioningHelper helper) {
@@ -444,4 +510,203 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
 	@Override
     public String name() { return "reload-all"; }
 	
+	/**
+	 * Wait for a chunk to be loaded, replay its messages on the given helper
+	 */
+	protected static <T> Chunk<T> get(Future<Chunk<T>> future, OnlineSectioningHelper helper) throws Exception {
+		Chunk<T> chunk = null;
+		try {
+			chunk = future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) throw (Exception)e.getCause();
+			throw e;
+		}
+		for (Message m: chunk.getMessages())
+			helper.log(m);
+		return chunk;
+	}
+	
+	/**
+	 * Log the number of loaded items and the throughput of a phase, returns the current time
+	 */
+	protected static long logThroughput(OnlineSectioningHelper helper, String phase, int count, long start) {
+		long end = System.currentTimeMillis();
+		double seconds = (end - start) / 1000.0;
+		helper.info("  Loaded " + count + " " + phase + " in " + new DecimalFormat("0.00").format(seconds) + " seconds" +
+				(seconds > 0.0 ? " (" + new DecimalFormat("0.0").format(count / seconds) + " " + phase + "/s)." : "."));
+		return end;
+	}
+	
+	/**
+	 * Objects loaded from one id range together with the messages that were logged during the load
+	 */
+	protected static class Chunk<T> {
+		private List<T> iItems = new ArrayList<T>();
+		private List<Message> iMessages;
+		
+		Chunk(List<Message> messages) { iMessages = messages; }
+		
+		public List<T> getItems() { return iItems; }
+		public List<Message> getMessages() { return iMessages; }
+	}
+	
+	/**
+	 * Loaded student, the student name is computed on the worker session as the student entity is not available afterwards.
+	 * The wait-lists are not reset by the worker, the student is only marked so that the reset is done by the calling session.
+	 */
+	protected static class LoadedStudent {
+		private XStudent iStudent;
+		private String iName;
+		private boolean iResetWaitLists;
+		
+		LoadedStudent(XStudent student, String name, boolean resetWaitLists) { iStudent = student; iName = name; iResetWaitLists = resetWaitLists; }
+		
+		public XStudent getStudent() { return iStudent; }
+		public String getName() { return iName; }
+		public boolean isResetWaitLists() { return iResetWaitLists; }
+	}
+	
+	/**
+	 * Helper used by the worker threads: it uses its own Hibernate session and the logged messages are
+	 * kept until the chunk is published (so that they are replayed in order by the thread holding the server lock)
+	 */
+	protected static class ChunkHelper extends OnlineSectioningHelper {
+		private List<Message> iMessages = new ArrayList<Message>();
+		private boolean iDebug;
+		
+		ChunkHelper(org.hibernate.Session hibSession, OnlineSectioningHelper parent) {
+			super(hibSession, parent.getUser(), CacheMode.IGNORE);
+			setGradableSubpartsProvider(parent.getGradableSubpartsProvider());
+			iDebug = parent.isDebugEnabled();
+		}
+		
+		@Override
+		public void log(Message m) {
+			if (m.getLevel() != LogLevel.DEBUG || iDebug)
+				iMessages.add(m);
+		}
+		
+		@Override
+		public void log(Message m, OnlineSectioningLog.Action.Builder action) {
+			log(m);
+		}
+		
+		@Override
+		public boolean isDebugEnabled() {
+			return iDebug;
+		}
+		
+		public List<Message> getMessages() { return iMessages; }
+	}
+	
+	/**
+	 * Load objects with the unique id in the given range, using a new Hibernate session
+	 */
+	protected static abstract class ChunkLoader<T> implements Callable<Chunk<T>> {
+		protected Long iFirstId, iLastId;
+		protected OnlineSectioningServer iServer;
+		protected OnlineSectioningHelper iParent;
+		
+		ChunkLoader(Long firstId, Long lastId, OnlineSectioningServer server, OnlineSectioningHelper parent) {
+			iFirstId = firstId; iLastId = lastId; iServer = server; iParent = parent;
+		}
+		
+		protected abstract void load(ChunkHelper helper, Chunk<T> chunk);
+		
+		@Override
+		public Chunk<T> call() throws Exception {
+			ApplicationProperties.setSessionId(iServer.getAcademicSession().getUniqueId());
+			org.hibernate.Session hibSession = new _RootDAO().createNewSession();
+			Transaction tx = null;
+			try {
+				hibSession.setCacheMode(CacheMode.IGNORE);
+				tx = hibSession.beginTransaction();
+				ChunkHelper helper = new ChunkHelper(hibSession, iParent);
+				Chunk<T> chunk = new Chunk<T>(helper.getMessages());
+				load(helper, chunk);
+				hibSession.flush();
+				tx.commit();
+				return chunk;
+			} catch (Exception e) {
+				if (tx != null && tx.isActive()) tx.rollback();
+				throw e;
+			} finally {
+				hibSession.close();
+				ApplicationProperties.setSessionId(null);
+				_RootDAO.closeCurrentThreadSessions();
+			}
+		}
+	}
+	
+	protected static class OfferingLoader extends ChunkLoader<XOffering> {
+		private Map<Long, List<XDistribution>> iDistributions;
+		
+		OfferingLoader(Long firstId, Long lastId, Map<Long, List<XDistribution>> distributions, OnlineSectioningServer server, OnlineSectioningHelper parent) {
+			super(firstId, lastId, server, parent);
+			iDistributions = distributions;
+		}
+		
+		@Override
+		protected void load(ChunkHelper helper, Chunk<XOffering> chunk) {
+			List<InstructionalOffering> offerings = helper.getHibSession().createQuery(
+					"select distinct io from InstructionalOffering io " +
+					"left join io.courseOfferings co " +
+					"left join fetch io.instrOfferingConfigs cf " +
+					"left join fetch cf.schedulingSubparts ss " +
+					"left join fetch ss.classes as c "+
+					"left join fetch io.reservations x " +
+					"where io.session.uniqueId = :sessionId and io.notOffered = false and co.subjectArea.department.allowStudentScheduling = true " +
+					"and io.uniqueId between :firstId and :lastId")
+					.setLong("sessionId", iServer.getAcademicSession().getUniqueId())
+					.setLong("firstId", iFirstId).setLong("lastId", iLastId).list();
+			List<InstructionalOffering> sorted = new ArrayList<InstructionalOffering>(offerings);
+			Collections.sort(sorted, new Comparator<InstructionalOffering>() {
+				@Override
+				public int compare(InstructionalOffering io1, InstructionalOffering io2) {
+					return io1.getUniqueId().compareTo(io2.getUniqueId());
+				}
+			});
+			for (InstructionalOffering io: sorted) {
+				XOffering offering = loadOffering(io, iDistributions.get(io.getUniqueId()), iServer, helper);
+				if (offering != null)
+					chunk.getItems().add(offering);
+			}
+		}
+	}
+	
+	protected static class StudentLoader extends ChunkLoader<LoadedStudent> {
+		
+		StudentLoader(Long firstId, Long lastId, OnlineSectioningServer server, OnlineSectioningHelper parent) {
+			super(firstId, lastId, server, parent);
+		}
+		
+		@Override
+		protected void load(ChunkHelper helper, Chunk<LoadedStudent> chunk) {
+			List<org.unitime.timetable.model.Student> students = helper.getHibSession().createQuery(
+                    "select distinct s from Student s " +
+                    "left join fetch s.courseDemands as cd " +
+                    "left join fetch cd.courseRequests as cr " +
+                    "left join fetch cr.classWaitLists as cwl " + 
+                    "left join fetch s.classEnrollments as e " +
+                    "left join fetch s.areaClasfMajors as acm " +
+                    "left join fetch s.waitlists as w " +
+                    "left join fetch s.groups as g " +
+                    "left join fetch s.notes as n " +
+                    "where s.session.uniqueId=:sessionId and s.uniqueId between :firstId and :lastId").
+                    setLong("sessionId", iServer.getAcademicSession().getUniqueId())
+                    .setLong("firstId", iFirstId).setLong("lastId", iLastId).list();
+			List<org.unitime.timetable.model.Student> sorted = new ArrayList<org.unitime.timetable.model.Student>(students);
+			Collections.sort(sorted, new Comparator<org.unitime.timetable.model.Student>() {
+				@Override
+				public int compare(org.unitime.timetable.model.Student s1, org.unitime.timetable.model.Student s2) {
+					return s1.getUniqueId().compareTo(s2.getUniqueId());
+				}
+			});
+			for (org.unitime.timetable.model.Student s: sorted) {
+				XStudent student = new XStudent(s, helper, iServer.getAcademicSession().getFreeTimePattern(), iServer.getAcademicSession().getDatePatternFirstDate());
+				chunk.getItems().add(new LoadedStudent(student, helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + ")",
+						s.getWaitListMode() == WaitListMode.WaitList && ApplicationProperty.WaitListLogging.isTrue()));
+			}
+		}
+	}
 }
@@ -34,6 +34,7 @@ import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
 import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster.Master;
+import org.unitime.timetable.onlinesectioning.status.StudentFacetIndex;
 
 /**
  * @author Tomas Muller
@@ -71,6 +72,7 @@ public class ReloadAllStudents extends ReloadAllData {
 	            }
 
 				helper.commitTransaction();
+				StudentFacetIndex.sessionChanged(server.getAcademicSession().getUniqueId());
 				return true;
 			} catch (Exception e) {
 				helper.rollbackTransaction();
@@ -40,6 +40,7 @@ import org.unitime.timetable.onlinesectioning.model.XSection;
 import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster.Master;
+import org.unitime.timetable.onlinesectioning.status.StudentFacetIndex;
 
 /**
  * @author Tomas Muller
@@ -129,6 +130,7 @@ public class ReloadStudent extends ReloadAllData {
 					
 					server.execute(server.createAction(NotifyStudentAction.class).forStudent(studentId).fromAction(name()).oldStudent(oldStudent), helper.getUser());
 					helper.commitTransaction();
+					StudentFacetIndex.studentChanged(server.getAcademicSession().getUniqueId(), studentId);
 				} catch (Exception e) {
 					helper.rollbackTransaction();
 					if (e instanceof SectioningException)
@@ -61,7 +61,10 @@ public abstract class AbstractReport implements ReportWriter.Listener {
 			iWriter = new PdfReportWriter(out, title, title2, subject, session);
 			break;
 		case XLS:
-			iWriter = new XlsReportWriter(out, title, title2, subject, session);
+			if (XlsxReportWriter.isEnabled())
+				iWriter = new XlsxReportWriter(out, title, title2, subject, session);
+			else
+				iWriter = new XlsReportWriter(out, title, title2, subject, session);
 			break;
 		}
 		iWriter.setListener(this);
@@ -183,7 +186,7 @@ public abstract class AbstractReport implements ReportWriter.Listener {
 		case CSV:
 			return ".csv";
 		case XLS:
-			return ".xls";
+			return XlsxReportWriter.isEnabled() ? ".xlsx" : ".xls";
 		default:
 			return ".pdf";
 		}
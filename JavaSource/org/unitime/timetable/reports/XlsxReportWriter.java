@@ -0,0 +1,322 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.reports;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.unitime.timetable.export.XLSXPrinter;
+import org.unitime.timetable.export.XLSXWriter;
+import org.unitime.timetable.export.XLSXWriter.Cell;
+import org.unitime.timetable.export.XLSXWriter.Font;
+import org.unitime.timetable.export.XLSXWriter.Row;
+import org.unitime.timetable.export.XLSXWriter.Style;
+import org.unitime.timetable.reports.AbstractReport.Alignment;
+import org.unitime.timetable.reports.AbstractReport.Line;
+
+import com.lowagie.text.DocumentException;
+
+/**
+ * Streaming counterpart of the {@link XlsReportWriter}, the report is written using the {@link XLSXWriter} as it is printed.
+ * Used instead of the XLS writer when unitime.export.xlsx.streaming.reports (or unitime.export.xlsx.streaming) is enabled.
+ *
+ * @author Tomas Muller
+ */
+public class XlsxReportWriter implements ReportWriter {
+	private static final Color sHeaderBackground = new Color(0xC0, 0xC0, 0xC0);
+	private XLSXWriter iWriter;
+	private int iPageNo = -1;
+    private int iLineNo = 0;
+    private int iNrColumns = 0;
+    private boolean iHeaderPrinted = false;
+    private boolean iEmpty = true;
+    private String iFooter = null, iPageName = null;
+    private Map<String, Style> iStyles = new HashMap<String, Style>();
+
+    private Line iHeaderLine[] = null;
+
+	public XlsxReportWriter(OutputStream out, String title, String title2, String subject, String session) throws DocumentException, IOException {
+		if (out != null) open(out);
+	}
+
+	/**
+	 * Is the streaming XLSX writer enabled for the XLS reports (unitime.export.xlsx.streaming.reports)
+	 */
+	public static boolean isEnabled() {
+		return XLSXPrinter.isEnabled("reports");
+	}
+
+	@Override
+	public void setFooter(String footer) {
+		iFooter = footer;
+		if (iWriter != null && footer != null)
+			iWriter.setSheetName(iPageNo, footer.replaceAll("/", "-").replaceAll(":", ""));
+	}
+
+	@Override
+	public void setHeader(Line... line) {
+		if (iHeaderPrinted) {
+			try {
+				printSeparator(null);
+			} catch (DocumentException e) {}
+		}
+		iHeaderLine = line;
+		iNrColumns = 0;
+		if (line != null) {
+			for (Line l: line) {
+				if (l.isEmpty()) continue;
+				int cols = countColumns(l);
+				if (cols > iNrColumns)
+					iNrColumns = cols;
+			}
+		}
+		iHeaderPrinted = false;
+	}
+
+	@Override
+	public Line[] getHeader() { return iHeaderLine; }
+
+	protected Row createRow() throws DocumentException {
+		try {
+			iLineNo++;
+			return iWriter.createRow();
+		} catch (IOException e) {
+			throw new DocumentException(e);
+		}
+	}
+
+	@Override
+	public void printLine(Line line) throws DocumentException {
+		render(line, createRow(), false, 0);
+		iEmpty = false;
+	}
+
+	@Override
+	public void close() throws IOException, DocumentException {
+		lastPage();
+		iWriter.close();
+	}
+
+	@Override
+	public void open(OutputStream out) throws DocumentException, IOException {
+		iWriter = new XLSXWriter(out);
+		createSheet();
+	}
+
+	protected void createSheet() throws DocumentException {
+		try {
+			iWriter.createSheet(null);
+		} catch (IOException e) {
+			throw new DocumentException(e);
+		}
+		iPageNo = iWriter.getSheetIndex();
+		iLineNo = 0;
+		iEmpty = true;
+		iFooter = null;
+		iPageName = null;
+		if (iHeaderLine != null && iHeaderLine.length > 0)
+			printHeader(false);
+	}
+
+	protected Style getStyle(boolean header, Alignment a) {
+		String styleId = (header ? "H" : "") + (a.name().charAt(0));
+		Style style = iStyles.get(styleId);
+		if (style == null) {
+			style = new Style(new Font(header, false, false, Color.BLACK),
+					a == Alignment.Left ? HorizontalAlignment.LEFT : a == Alignment.Right ? HorizontalAlignment.RIGHT : HorizontalAlignment.CENTER, true);
+			if (header)
+				style = style.withBackground(sHeaderBackground);
+			iStyles.put(styleId, style);
+		}
+		return style;
+	}
+
+	@Override
+	public void setPageName(String pageName) {
+		iPageName = pageName;
+	}
+
+	@Override
+	public void setCont(String cont) {}
+
+	@Override
+	public void printHeader(boolean newPage) throws DocumentException {
+		if (!iEmpty && newPage)
+			newPage();
+		if (iHeaderLine != null) {
+			iHeaderPrinted = true;
+			boolean first = true;
+			for (Line line: iHeaderLine) {
+				if (line.isEmpty()) continue;
+				Row row = createRow();
+				render(line, row, true, 0);
+				iEmpty = false;
+				if (first) {
+					for (int c = row.getFirstCellNum(); c < row.getLastCellNum(); c++) {
+						Cell cell = row.getCell(c);
+						if (cell != null) cell.setCellStyle(cell.getCellStyle().withBorderTop(BorderStyle.THIN));
+					}
+					first = false;
+				}
+			}
+			printSeparator(null);
+		}
+	}
+
+	@Override
+	public void newPage() throws DocumentException {
+		lastPage();
+		createSheet();
+	}
+
+	@Override
+	public void lastPage() throws DocumentException {
+		if (iPageName != null && iFooter == null)
+			iWriter.setSheetName(iPageNo, iPageName.replaceAll("/", "-").replaceAll(":", ""));
+		printSeparator(null);
+	}
+
+	@Override
+	public int getLineNumber() { return iLineNo; }
+
+	@Override
+	public int getNrLinesPerPage() { return 0; }
+
+	@Override
+	public int getNrCharsPerLine() { return 1000; }
+
+	@Override
+	public void printSeparator(Line line) throws DocumentException {
+		if (iLineNo > 0) {
+			Row row = iWriter.getRow(iLineNo - 1);
+			if (row != null)
+				for (int c = 0; c < iNrColumns; c++) {
+					Cell cell = row.getCell(c);
+					if (cell == null) cell = row.createCell(c);
+					cell.setCellStyle((cell.getCellStyle() != null ? cell.getCellStyle() : getStyle(false, Alignment.Left)).withBorderBottom(BorderStyle.THIN));
+				}
+		}
+	}
+
+	@Override
+	public int getSeparatorNrLines() { return 0; }
+
+	private String render(AbstractReport.Cell cell) {
+    	StringBuffer ret = new StringBuffer();
+    	if (cell.getText() != null) {
+    		if (cell.getPadding() != ' ' && cell.getText().length() < cell.getLength())
+    			ret.append(cell.render());
+    		else
+    			ret.append(cell.getText());
+    	}
+    	if (cell.getCells() != null) {
+    		if (cell.getText() != null) {
+    			if (cell.getCellSeparator().isEmpty())
+    				ret.append(" ");
+    			else
+    				ret.append(cell.getCellSeparator());
+    		}
+    		for (int i = 0; i < cell.getCells().length; i++) {
+    			if (i > 0) {
+    				if (cell.getCells()[i-1].getCellSeparator().isEmpty())
+    					ret.append(" ");
+    				else
+    					ret.append(cell.getCells()[i-1].getCellSeparator());
+    			}
+    			ret.append(render(cell.getCells()[i]));
+    		}
+    	}
+    	return ret.toString();
+    }
+
+    private int render(Line line, Row row, boolean header, int col) {
+    	if (line == null) return col;
+    	if (line.getLines() != null) {
+    		for (int i = 0; i < line.getLines().length; i++) {
+    			col = render(line.getLines()[i], row, header, col);
+    		}
+    	}
+    	if (line.getCells() != null) {
+    		String leftOver = null;
+    		for (AbstractReport.Cell cell: line.getCells()) {
+    			if (cell.getColSpan() == 0) {
+    				leftOver = ((leftOver == null || leftOver.isEmpty() ? "" : leftOver + " ") + render(cell)).trim();
+    				continue;
+    			}
+    			Cell c = row.createCell(col);
+    			Style style = getStyle(header, cell.getAlignment());
+    			c.setCellStyle(style);
+    			c.setCellValue((leftOver == null || leftOver.isEmpty() ? "" : leftOver + " ") + render(cell));
+    			Cell last = c;
+    			if (cell.getColSpan() > 1) {
+    				for (int x = 1; x < cell.getColSpan(); x++) {
+    					Cell d = row.createCell(col + x);
+    					d.setCellStyle(style);
+    					last = d;
+    				}
+    				iWriter.addMergedRegion(row.getRowNum(), row.getRowNum(), col, col + cell.getColSpan() - 1);
+    			}
+    			if (cell.getCellSeparator().trim().equals("|"))
+    				last.setCellStyle(style.withBorderRight(BorderStyle.THIN));
+    			col += cell.getColSpan();
+    			leftOver = null;
+    		}
+    		if (row.getLastCellNum() < 0 && iNrColumns > 0) {
+    			for (int i = 0; i < iNrColumns; i++) {
+    				Cell c = row.createCell(i);
+    				c.setCellStyle(getStyle(header, Alignment.Left));
+    			}
+    			iWriter.addMergedRegion(row.getRowNum(), row.getRowNum(), 0, iNrColumns - 1);
+    		}
+    		if (iHeaderPrinted && row.getLastCellNum() > 0) {
+    			Cell first = row.getCell(row.getFirstCellNum());
+    			first.setCellStyle(first.getCellStyle().withBorderLeft(BorderStyle.THIN));
+    			Cell last = row.getCell(row.getLastCellNum() - 1);
+    			last.setCellStyle(last.getCellStyle().withBorderRight(BorderStyle.THIN));
+			}
+    	}
+		return col;
+    }
+
+    private int countColumns(Line line) {
+    	if (line == null) return 0;
+		int cols = 0;
+    	if (line.getLines() != null) {
+    		for (Line l: line.getLines())
+    			cols += countColumns(l);
+    	}
+    	if (line.getCells() != null) {
+    		for (AbstractReport.Cell cell: line.getCells())
+    			cols += cell.getColSpan();
+    	}
+    	return cols;
+    }
+
+	@Override
+	public void setListener(Listener listener) {}
+
+	@Override
+	public boolean isSkipRepeating() { return true; }
+}
@@ -0,0 +1,362 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.security.evaluation;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.Department;
+import org.unitime.timetable.model.DepartmentStatusType;
+import org.unitime.timetable.model.ExamStatus;
+import org.unitime.timetable.model.ManagerRole;
+import org.unitime.timetable.model.Roles;
+import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.StudentSectioningStatus;
+import org.unitime.timetable.model.TimetableManager;
+import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.security.rights.Right;
+
+/**
+ * Cache of the permission decisions made by {@link UniTimePermissionCheck#hasPermission(UserContext, Object, Right)},
+ * keyed by the user, the current authority, the right, and the target (type and unique id).<br>
+ * There are two levels: a per-request cache (active between {@link #beginRequest()} and {@link #endRequest()}, see
+ * {@link org.unitime.timetable.filter.HibSessionFilter}) and a short-lived per-user cache that expires after
+ * unitime.permissions.cache.ttl seconds. Changes of the database entities are tracked by the {@link EntityChangeListener}:
+ * a change drops the decisions of the users checked in the same request, a change of roles, managers, statuses, departments,
+ * or academic sessions drops all the decisions (see {@link #invalidate()}). As the per-user cache is local to the server,
+ * changes made on another server of a cluster (or by another user) are reflected after the time to live has passed.<br>
+ * Hits and misses are counted and registered as an MBean (org.unitime:type=Permissions,name=cache).
+ *
+ * @author Tomas Muller
+ */
+public class PermissionCache {
+	private static Log sLog = LogFactory.getLog(PermissionCache.class);
+	private static ThreadLocal<Map<Key, Boolean>> sRequestCache = new ThreadLocal<Map<Key, Boolean>>();
+	private static ConcurrentHashMap<String, UserCache> sUserCaches = new ConcurrentHashMap<String, UserCache>();
+	private static AtomicLong sEpoch = new AtomicLong(0);
+	private static long sLastCleanup = System.currentTimeMillis();
+	private static Statistics sStatistics = new Statistics();
+
+	static {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("org.unitime:type=Permissions,name=cache");
+			if (!server.isRegistered(name))
+				server.registerMBean(sStatistics, name);
+		} catch (Exception e) {
+			sLog.debug("Failed to register permission cache statistics: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Start the per-request cache for the current thread
+	 */
+	public static void beginRequest() {
+		if (ApplicationProperty.PermissionCacheEnabled.isTrue())
+			sRequestCache.set(new HashMap<Key, Boolean>());
+	}
+
+	/**
+	 * Drop the per-request cache of the current thread
+	 */
+	public static void endRequest() {
+		sRequestCache.remove();
+	}
+
+	/**
+	 * Drop all cached decisions (roles, permissions, statuses, or academic sessions have changed)
+	 */
+	public static void invalidate() {
+		sEpoch.incrementAndGet();
+		sUserCaches.clear();
+		Map<Key, Boolean> request = sRequestCache.get();
+		if (request != null) request.clear();
+		sStatistics.iInvalidations.incrementAndGet();
+	}
+
+	/**
+	 * Drop all cached decisions of the given user (e.g., the user's roles have changed)
+	 */
+	public static void invalidate(UserContext user) {
+		if (user == null) return;
+		String prefix = (user.getExternalUserId() == null ? "" : user.getExternalUserId()) + "|";
+		for (Iterator<String> i = sUserCaches.keySet().iterator(); i.hasNext(); )
+			if (i.next().startsWith(prefix)) i.remove();
+		Map<Key, Boolean> request = sRequestCache.get();
+		if (request != null) request.clear();
+	}
+
+	/**
+	 * An entity has been changed in the current thread: drop the per-request cache and the per-user caches of the users
+	 * that have been checked during the request. Changes of roles, managers, statuses, departments, or academic sessions
+	 * invalidate everything.
+	 */
+	public static void entityChanged(Object entity) {
+		if (entity == null) return;
+		if (entity instanceof Roles || entity instanceof ManagerRole || entity instanceof TimetableManager ||
+			entity instanceof DepartmentStatusType || entity instanceof StudentSectioningStatus || entity instanceof ExamStatus ||
+			entity instanceof Department || entity instanceof Session) {
+			invalidate();
+			return;
+		}
+		Map<Key, Boolean> request = sRequestCache.get();
+		if (request != null && !request.isEmpty()) {
+			for (Key key: request.keySet())
+				sUserCaches.remove(key.iUser);
+			request.clear();
+		}
+	}
+
+	protected static String getUserKey(UserContext user) {
+		return (user.getExternalUserId() == null ? "" : user.getExternalUserId()) + "|" + user.getCurrentAuthority().getAuthority();
+	}
+
+	/**
+	 * Cached decision, null if not cached
+	 */
+	static Boolean get(UserContext user, Right right, String targetType, Serializable targetId) {
+		if (!ApplicationProperty.PermissionCacheEnabled.isTrue() || user.getCurrentAuthority() == null) return null;
+		Key key = new Key(getUserKey(user), right, targetType, targetId);
+		Map<Key, Boolean> request = sRequestCache.get();
+		if (request != null) {
+			Boolean ret = request.get(key);
+			if (ret != null) {
+				sStatistics.iRequestHits.incrementAndGet();
+				return ret;
+			}
+		}
+		UserCache cache = sUserCaches.get(key.iUser);
+		if (cache != null) {
+			if (cache.isValid()) {
+				Boolean ret = cache.iDecisions.get(key);
+				if (ret != null) {
+					sStatistics.iUserHits.incrementAndGet();
+					if (request != null) request.put(key, ret);
+					return ret;
+				}
+			} else {
+				sUserCaches.remove(key.iUser, cache);
+			}
+		}
+		sStatistics.iMisses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Remember a decision
+	 */
+	static void put(UserContext user, Right right, String targetType, Serializable targetId, boolean decision) {
+		if (!ApplicationProperty.PermissionCacheEnabled.isTrue() || user.getCurrentAuthority() == null) return;
+		Key key = new Key(getUserKey(user), right, targetType, targetId);
+		Map<Key, Boolean> request = sRequestCache.get();
+		if (request != null) request.put(key, decision);
+		int ttl = ApplicationProperty.PermissionCacheTimeToLive.intValue();
+		if (ttl <= 0) return;
+		UserCache cache = sUserCaches.get(key.iUser);
+		if (cache == null || !cache.isValid()) {
+			cleanup(ttl);
+			UserCache newCache = new UserCache(ttl);
+			if (cache == null) {
+				cache = sUserCaches.putIfAbsent(key.iUser, newCache);
+				if (cache == null) cache = newCache;
+			} else {
+				sUserCaches.replace(key.iUser, cache, newCache);
+				cache = newCache;
+			}
+		}
+		if (cache.iDecisions.size() < ApplicationProperty.PermissionCacheMaxEntries.intValue())
+			cache.iDecisions.put(key, decision);
+	}
+
+	/**
+	 * Remove expired per-user caches (at most once per time to live)
+	 */
+	private static void cleanup(int ttl) {
+		long now = System.currentTimeMillis();
+		if (now - sLastCleanup < 1000l * ttl) return;
+		sLastCleanup = now;
+		for (Iterator<UserCache> i = sUserCaches.values().iterator(); i.hasNext(); )
+			if (!i.next().isValid()) i.remove();
+	}
+
+	public static Statistics getStatistics() { return sStatistics; }
+
+	/**
+	 * Hibernate listener calling {@link PermissionCache#entityChanged(Object)} whenever an entity or a collection is changed
+	 */
+	public static class EntityChangeListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener, PostCollectionUpdateEventListener, PostCollectionRecreateEventListener {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void onPostInsert(PostInsertEvent event) {
+			entityChanged(event.getEntity());
+		}
+
+		@Override
+		public void onPostUpdate(PostUpdateEvent event) {
+			entityChanged(event.getEntity());
+		}
+
+		@Override
+		public void onPostDelete(PostDeleteEvent event) {
+			entityChanged(event.getEntity());
+		}
+
+		@Override
+		public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+			entityChanged(event.getAffectedOwnerOrNull());
+		}
+
+		@Override
+		public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+			entityChanged(event.getAffectedOwnerOrNull());
+		}
+
+		public boolean requiresPostCommitHanding(EntityPersister persister) {
+			return false;
+		}
+
+		/**
+		 * Register the listener with the given session factory
+		 */
+		public static void register(SessionFactory factory) {
+			if (!ApplicationProperty.PermissionCacheEnabled.isTrue()) return;
+			EventListenerRegistry registry = ((SessionFactoryImplementor)factory).getServiceRegistry().getService(EventListenerRegistry.class);
+			EntityChangeListener listener = new EntityChangeListener();
+			registry.appendListeners(EventType.POST_INSERT, listener);
+			registry.appendListeners(EventType.POST_UPDATE, listener);
+			registry.appendListeners(EventType.POST_DELETE, listener);
+			registry.appendListeners(EventType.POST_COLLECTION_UPDATE, listener);
+			registry.appendListeners(EventType.POST_COLLECTION_RECREATE, listener);
+		}
+	}
+
+	private static class UserCache {
+		private long iExpires, iEpoch;
+		private Map<Key, Boolean> iDecisions = new ConcurrentHashMap<Key, Boolean>();
+
+		UserCache(int ttl) {
+			iExpires = System.currentTimeMillis() + 1000l * ttl;
+			iEpoch = sEpoch.get();
+		}
+
+		boolean isValid() {
+			return iEpoch == sEpoch.get() && System.currentTimeMillis() < iExpires;
+		}
+	}
+
+	private static class Key {
+		private String iUser;
+		private Right iRight;
+		private String iType;
+		private Serializable iId;
+
+		Key(String user, Right right, String type, Serializable id) {
+			iUser = user; iRight = right; iType = type; iId = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * (31 * iUser.hashCode() + iRight.hashCode()) + iType.hashCode()) + iId.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == null || !(o instanceof Key)) return false;
+			Key k = (Key)o;
+			return iRight == k.iRight && iId.equals(k.iId) && iType.equals(k.iType) && iUser.equals(k.iUser);
+		}
+	}
+
+	public static interface StatisticsMBean {
+		public long getRequestHits();
+		public long getUserHits();
+		public long getMisses();
+		public double getHitRate();
+		public long getInvalidations();
+		public int getUsers();
+		public void reset();
+		public void invalidate();
+	}
+
+	public static class Statistics implements StatisticsMBean {
+		private AtomicLong iRequestHits = new AtomicLong(0), iUserHits = new AtomicLong(0), iMisses = new AtomicLong(0), iInvalidations = new AtomicLong(0);
+
+		@Override
+		public long getRequestHits() { return iRequestHits.get(); }
+		@Override
+		public long getUserHits() { return iUserHits.get(); }
+		@Override
+		public long getMisses() { return iMisses.get(); }
+		@Override
+		public long getInvalidations() { return iInvalidations.get(); }
+		@Override
+		public int getUsers() { return sUserCaches.size(); }
+
+		@Override
+		public double getHitRate() {
+			long hits = getRequestHits() + getUserHits();
+			long total = hits + getMisses();
+			return (total == 0 ? 0.0 : ((double)hits) / total);
+		}
+
+		@Override
+		public void reset() {
+			iRequestHits.set(0); iUserHits.set(0); iMisses.set(0); iInvalidations.set(0);
+		}
+
+		@Override
+		public void invalidate() {
+			PermissionCache.invalidate();
+		}
+
+		@Override
+		public String toString() {
+			return "hits=" + (getRequestHits() + getUserHits()) + " (request=" + getRequestHits() + ", user=" + getUserHits() + "), misses=" + getMisses() +
+					", hitRate=" + Math.round(100.0 * getHitRate()) + "%, invalidations=" + getInvalidations() + ", users=" + getUsers();
+		}
+	}
+}
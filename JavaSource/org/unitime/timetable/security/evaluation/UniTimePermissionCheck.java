@@ -26,6 +26,8 @@ import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.HibernateProxyHelper;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -474,11 +476,16 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 				} catch (Exception e) {}
 			}
 			
+			Boolean cached = PermissionCache.get(user, right, className, targetId);
+			if (cached != null) return cached;
+			
 			Object domainObject = new _RootDAO().getSession().get(Class.forName(className), targetId);
 			if (domainObject == null)
 				return false;
 
-			return hasPermission(user, domainObject, right);
+			boolean ret = hasPermission(user, domainObject, right);
+			PermissionCache.put(user, right, className, targetId, ret);
+			return ret;
 		} catch (Exception e) {
 			return false;
 		}
@@ -513,6 +520,34 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 			return false;
 		}
 		
+		Serializable targetId = getUniqueId(domainObject);
+		if (targetId == null)
+			return evaluatePermission(user, domainObject, right);
+		String targetType = HibernateProxyHelper.getClassWithoutInitializingProxy(domainObject).getName();
+		Boolean cached = PermissionCache.get(user, right, targetType, targetId);
+		if (cached != null) return cached;
+		boolean ret = evaluatePermission(user, domainObject, right);
+		PermissionCache.put(user, right, targetType, targetId, ret);
+		return ret;
+	}
+	
+	/**
+	 * Unique id of a domain object, null if the object does not have one
+	 */
+	protected Serializable getUniqueId(Object domainObject) {
+		if (domainObject instanceof HibernateProxy)
+			return ((HibernateProxy)domainObject).getHibernateLazyInitializer().getIdentifier();
+		try {
+			return (Serializable)domainObject.getClass().getMethod("getUniqueId").invoke(domainObject);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Evaluate the permission on a single domain object of the right type (no caching)
+	 */
+	protected boolean evaluatePermission(UserContext user, Object domainObject, Right right) {
 		try {
 			Permission<?> perm = (Permission<?>)applicationContext.getBean("permission" + right.name(), Permission.class);
 			if (perm != null && perm.type().isInstance(domainObject))
@@ -43,7 +43,7 @@ public class AdminExportToPDF extends AdminExportToCSV {
 	}
 
 	protected void export(SimpleEditInterface data, ExportHelper helper, String hidden) throws IOException {
-		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false);
+		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false, reference());
 		try {
 			helper.setup(out.getContentType(), helper.getParameter("type") + ".pdf", false);
 			
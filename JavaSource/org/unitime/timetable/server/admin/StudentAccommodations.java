@@ -46,6 +46,7 @@ import org.unitime.timetable.model.ChangeLog.Source;
 import org.unitime.timetable.model.StudentSectioningQueue;
 import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.model.dao.StudentAccomodationDAO;
+import org.unitime.timetable.onlinesectioning.status.StudentFacetIndex;
 import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.security.rights.Right;
 
@@ -100,8 +101,10 @@ public class StudentAccommodations implements AdminTable {
 		}
 		for (Record r: data.getNewRecords())
 			save(r, context, hibSession, studentIds);
-		if (!studentIds.isEmpty())
+		if (!studentIds.isEmpty()) {
 			StudentSectioningQueue.studentChanged(hibSession, context.getUser(), context.getUser().getCurrentAcademicSessionId(), studentIds);
+			StudentFacetIndex.studentsChanged(hibSession, context.getUser().getCurrentAcademicSessionId(), studentIds);
+		}
 	}
 	
 	protected void save(Record record, SessionContext context, Session hibSession, Set<Long> studentIds) {
@@ -143,8 +146,10 @@ public class StudentAccommodations implements AdminTable {
 	public void save(Record record, SessionContext context, Session hibSession) {
 		Set<Long> studentIds = new HashSet<Long>();
 		save(record, context, hibSession, studentIds);
-		if (!studentIds.isEmpty())
+		if (!studentIds.isEmpty()) {
 			StudentSectioningQueue.studentChanged(hibSession, context.getUser(), context.getUser().getCurrentAcademicSessionId(), studentIds);
+			StudentFacetIndex.studentsChanged(hibSession, context.getUser().getCurrentAcademicSessionId(), studentIds);
+		}
 	}
 	
 	protected void update(StudentAccomodation accomodation, Record record, SessionContext context, Session hibSession, Set<Long> studentIds) {
@@ -203,8 +208,10 @@ public class StudentAccommodations implements AdminTable {
 	public void update(Record record, SessionContext context, Session hibSession) {
 		Set<Long> studentIds = new HashSet<Long>();
 		update(StudentAccomodationDAO.getInstance().get(record.getUniqueId()), record, context, hibSession, studentIds);
-		if (!studentIds.isEmpty())
+		if (!studentIds.isEmpty()) {
 			StudentSectioningQueue.studentChanged(hibSession, context.getUser(), context.getUser().getCurrentAcademicSessionId(), studentIds);
+			StudentFacetIndex.studentsChanged(hibSession, context.getUser().getCurrentAcademicSessionId(), studentIds);
+		}
 	}
 
 	protected void delete(StudentAccomodation accomodation, SessionContext context, Session hibSession, Set<Long> studentIds) {
@@ -230,7 +237,9 @@ public class StudentAccommodations implements AdminTable {
 	public void delete(Record record, SessionContext context, Session hibSession) {
 		Set<Long> studentIds = new HashSet<Long>();
 		delete(StudentAccomodationDAO.getInstance().get(record.getUniqueId()), context, hibSession, studentIds);		
-		if (!studentIds.isEmpty())
+		if (!studentIds.isEmpty()) {
 			StudentSectioningQueue.studentChanged(hibSession, context.getUser(), context.getUser().getCurrentAcademicSessionId(), studentIds);
+			StudentFacetIndex.studentsChanged(hibSession, context.getUser().getCurrentAcademicSessionId(), studentIds);
+		}
 	}
 }
@@ -54,6 +54,7 @@ import org.unitime.timetable.model.StudentSectioningQueue;
 import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.model.dao.StudentGroupDAO;
 import org.unitime.timetable.model.dao.StudentGroupTypeDAO;
+import org.unitime.timetable.onlinesectioning.status.StudentFacetIndex;
 import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.security.rights.Right;
 import org.unitime.timetable.server.admin.AdminTable.HasFilter;
@@ -152,8 +153,10 @@ public class StudentGroups implements AdminTable, HasLazyFields, HasFilter {
 		}
 		for (Record r: data.getNewRecords())
 			save(r, context, hibSession, studentIds);
-		if (!studentIds.isEmpty())
+		if (!studentIds.isEmpty()) {
 			StudentSectioningQueue.studentChanged(hibSession, context.getUser(), context.getUser().getCurrentAcademicSessionId(), studentIds);
+			StudentFacetIndex.studentsChanged(hibSession, context.getUser().getCurrentAcademicSessionId(), studentIds);
+		}
 	}
 
 	protected void save(Record record, SessionContext context, Session hibSession, Set<Long> studentIds) {
@@ -215,8 +218,10 @@ public class StudentGroups implements AdminTable, HasLazyFields, HasFilter {
 	public void save(Record record, SessionContext context, Session hibSession) {
 		Set<Long> studentIds = new HashSet<Long>();
 		save(record, context, hibSession, studentIds);
-		if (!studentIds.isEmpty())
+		if (!studentIds.isEmpty()) {
 			StudentSectioningQueue.studentChanged(hibSession, context.getUser(), context.getUser().getCurrentAcademicSessionId(), studentIds);
+			StudentFacetIndex.studentsChanged(hibSession, context.getUser().getCurrentAcademicSessionId(), studentIds);
+		}
 	}
 
 	
@@ -305,8 +310,10 @@ public class StudentGroups implements AdminTable, HasLazyFields, HasFilter {
 	public void update(Record record, SessionContext context, Session hibSession) {
 		Set<Long> studentIds = new HashSet<Long>();
 		update(StudentGroupDAO.getInstance().get(record.getUniqueId()), record, context, hibSession, studentIds);
-		if (!studentIds.isEmpty())
+		if (!studentIds.isEmpty()) {
 			StudentSectioningQueue.studentChanged(hibSession, context.getUser(), context.getUser().getCurrentAcademicSessionId(), studentIds);
+			StudentFacetIndex.studentsChanged(hibSession, context.getUser().getCurrentAcademicSessionId(), studentIds);
+		}
 	}
 
 	protected void delete(StudentGroup group, SessionContext context, Session hibSession, Set<Long> studentIds) {
@@ -332,8 +339,10 @@ public class StudentGroups implements AdminTable, HasLazyFields, HasFilter {
 	public void delete(Record record, SessionContext context, Session hibSession) {
 		Set<Long> studentIds = new HashSet<Long>();
 		delete(StudentGroupDAO.getInstance().get(record.getUniqueId()), context, hibSession, studentIds);		
-		if (!studentIds.isEmpty())
+		if (!studentIds.isEmpty()) {
 			StudentSectioningQueue.studentChanged(hibSession, context.getUser(), context.getUser().getCurrentAcademicSessionId(), studentIds);
+			StudentFacetIndex.studentsChanged(hibSession, context.getUser().getCurrentAcademicSessionId(), studentIds);
+		}
 	}
 
 	@Override
@@ -58,7 +58,7 @@ public class ExportDepartmentsPDF implements Exporter {
 		boolean dispLastChanges = CommonValues.Yes.eq(UserProperty.DisplayLastChanges.get(context.getUser()));
 		helper.getSessionContext().checkPermission(Right.Departments);
 		
-		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false);
+		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false, reference());
 		helper.setup(out.getContentType(), reference(), false);
 		
         DecimalFormat df5 = new DecimalFormat("####0.######");
@@ -47,7 +47,7 @@ public class ExportBuildingsPDF implements Exporter {
 	@Override
 	public void export(ExportHelper helper) throws IOException {
 		helper.getSessionContext().checkPermission(Right.BuildingExportPdf);
-		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false);
+		PDFPrinter out = new PDFPrinter(helper.getOutputStream(), false, reference());
 		helper.setup(out.getContentType(), reference(), false);
 		
         DecimalFormat df5 = new DecimalFormat("####0.######");
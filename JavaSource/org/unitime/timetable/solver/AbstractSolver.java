@@ -420,24 +420,30 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
         Lock lock = currentSolution().getLock().readLock();
         lock.lock();
         try {
-            File outXmlFile = new File(folder, getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
+            boolean binary = ApplicationProperty.SolverBackupBinary.isTrue();
+            File outFile = new File(folder, getType().getPrefix() + puid + (binary ? BackupFileFilter.sBinaryExtension : BackupFileFilter.sXmlExtension));
+            File otherFile = new File(folder, getType().getPrefix() + puid + (binary ? BackupFileFilter.sXmlExtension : BackupFileFilter.sBinaryExtension));
             try {
                 FileOutputStream fos = null;
                 try {
-                    fos = new FileOutputStream(outXmlFile);
+                    fos = new FileOutputStream(outFile);
                     Document document = createCurrentSolutionBackup(false, false);
                     saveProperties(document);
-                    (new XMLWriter(fos,OutputFormat.createPrettyPrint())).write(document);
+                    if (binary)
+                    	BinaryDocument.write(document, fos);
+                    else
+                    	(new XMLWriter(fos,OutputFormat.createPrettyPrint())).write(document);
                     fos.flush(); fos.close(); fos=null;
                 } finally {
                     try {
                         if (fos!=null) fos.close();
                     } catch (IOException e) {}
                 }
+                if (otherFile.exists()) otherFile.delete();
                 return true;
             } catch (Exception e) {
                 sLog.error(e.getMessage(),e);
-                if (outXmlFile.exists()) outXmlFile.delete();
+                if (outFile.exists()) outFile.delete();
             }
         } finally {
         	lock.unlock();
@@ -455,14 +461,17 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
     @Override
     public boolean restore(File folder, String puid, boolean removeFiles) {
         sLog.debug("restore(folder="+folder+","+puid+")");
-        File inXmlFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
+        File inFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sBinaryExtension);
+        boolean binary = inFile.exists();
+        if (!binary)
+        	inFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
         
         M model = null;
         try {
             if (isRunning()) stopSolver();
             disposeNoInherit(false);
 
-            Document document = (new SAXReader()).read(inXmlFile);
+            Document document = (binary ? BinaryDocument.read(inFile) : (new SAXReader()).read(inFile));
             readProperties(document);
             
             model = createModel(getProperties());
@@ -474,7 +483,7 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
             Progress.getInstance(model).setStatus(MSG.statusReady());
             
             if (removeFiles) {
-                inXmlFile.delete();
+                inFile.delete();
             }
             
             return true;
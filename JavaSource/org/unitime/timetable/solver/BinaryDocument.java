@@ -0,0 +1,262 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.dom4j.Attribute;
+import org.dom4j.CharacterData;
+import org.dom4j.Comment;
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.Node;
+
+/**
+ * Compact binary encoding of a solver backup document (see {@link AbstractSolver#backup(File, String)}),
+ * also used to store the solution infos (see {@link org.unitime.timetable.model.SolverInfo}).
+ * The document is written directly into a deflated stream: element and attribute names are written only once
+ * (and referenced by an index afterwards), strings are length-prefixed UTF-8, numbers are variable-length encoded.
+ * This avoids producing (pretty-printed) XML text when a solver is being passivated and the XML parsing when it is
+ * being activated again. Namespaces, comments, and processing instructions are not preserved.
+ *
+ * @author Tomas Muller
+ */
+public class BinaryDocument {
+	private static final byte[] sHeader = new byte[] {'U', 'T', 'B', '1'};
+	private static final int sBufferSize = 65536;
+	private static final byte sElement = 1, sText = 2, sEnd = 0;
+
+	/**
+	 * Write the given document into the output stream (the stream is not closed)
+	 */
+	public static void write(Document document, OutputStream out) throws IOException {
+		out.write(sHeader);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, sBufferSize);
+			DataOutputStream data = new DataOutputStream(new BufferedOutputStream(deflated, sBufferSize));
+			new Writer(data).writeElement(document.getRootElement());
+			data.flush();
+			deflated.finish();
+			out.flush();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Check whether the given data start with the binary document header
+	 */
+	public static boolean isBinary(byte[] data) {
+		if (data == null || data.length < sHeader.length) return false;
+		for (int i = 0; i < sHeader.length; i++)
+			if (data[i] != sHeader[i]) return false;
+		return true;
+	}
+
+	/**
+	 * Check whether the given stream starts with the binary document header (the stream must support mark and reset)
+	 */
+	public static boolean isBinary(InputStream in) throws IOException {
+		byte[] header = new byte[sHeader.length];
+		in.mark(header.length);
+		try {
+			int len = 0;
+			while (len < header.length) {
+				int r = in.read(header, len, header.length - len);
+				if (r < 0) return false;
+				len += r;
+			}
+			return isBinary(header);
+		} finally {
+			in.reset();
+		}
+	}
+
+	/**
+	 * Read a document from the input stream
+	 */
+	public static Document read(InputStream in) throws IOException {
+		byte[] header = new byte[sHeader.length];
+		new DataInputStream(in).readFully(header);
+		for (int i = 0; i < header.length; i++)
+			if (header[i] != sHeader[i]) throw new IOException("Not a binary solver backup.");
+		Inflater inflater = new Inflater();
+		try {
+			DataInputStream data = new DataInputStream(new BufferedInputStream(new InflaterInputStream(in, inflater, sBufferSize), sBufferSize));
+			Document document = DocumentHelper.createDocument();
+			Reader reader = new Reader(data);
+			if (data.readByte() != sElement) throw new IOException("Root element expected.");
+			reader.readElement(document.addElement(reader.readName()));
+			return document;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Read a document from the given file
+	 */
+	public static Document read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static class Writer {
+		private DataOutputStream iOut;
+		private Map<String, Integer> iNames = new HashMap<String, Integer>();
+
+		Writer(DataOutputStream out) {
+			iOut = out;
+		}
+
+		void writeElement(Element element) throws IOException {
+			iOut.writeByte(sElement);
+			writeName(element.getQualifiedName());
+			writeInt(element.attributeCount());
+			for (Iterator<?> i = element.attributeIterator(); i.hasNext(); ) {
+				Attribute attribute = (Attribute)i.next();
+				writeName(attribute.getQualifiedName());
+				writeString(attribute.getValue());
+			}
+			for (Iterator<?> i = element.nodeIterator(); i.hasNext(); ) {
+				Node node = (Node)i.next();
+				if (node instanceof Element) {
+					writeElement((Element)node);
+				} else if (node instanceof CharacterData && !(node instanceof Comment)) {
+					String text = node.getText();
+					if (text == null || text.isEmpty()) continue;
+					iOut.writeByte(sText);
+					writeString(text);
+				}
+			}
+			iOut.writeByte(sEnd);
+		}
+
+		void writeName(String name) throws IOException {
+			Integer index = iNames.get(name);
+			if (index == null) {
+				iNames.put(name, iNames.size());
+				writeInt(0);
+				writeString(name);
+			} else {
+				writeInt(1 + index);
+			}
+		}
+
+		void writeString(String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeInt(bytes.length);
+			iOut.write(bytes);
+		}
+
+		void writeInt(int value) throws IOException {
+			while ((value & ~0x7F) != 0) {
+				iOut.writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			iOut.writeByte(value);
+		}
+	}
+
+	private static class Reader {
+		private DataInputStream iIn;
+		private List<String> iNames = new ArrayList<String>();
+
+		Reader(DataInputStream in) {
+			iIn = in;
+		}
+
+		void readElement(Element element) throws IOException {
+			int nrAttributes = readInt();
+			for (int i = 0; i < nrAttributes; i++) {
+				String name = readName();
+				element.addAttribute(name, readString());
+			}
+			while (true) {
+				byte type = iIn.readByte();
+				switch (type) {
+				case sEnd:
+					return;
+				case sElement:
+					readElement(element.addElement(readName()));
+					break;
+				case sText:
+					element.addText(readString());
+					break;
+				default:
+					throw new IOException("Unknown node type " + type + ".");
+				}
+			}
+		}
+
+		String readName() throws IOException {
+			int index = readInt();
+			if (index == 0) {
+				String name = readString();
+				iNames.add(name);
+				return name;
+			}
+			if (index > iNames.size()) throw new IOException("Unknown name " + index + ".");
+			return iNames.get(index - 1);
+		}
+
+		String readString() throws IOException {
+			byte[] bytes = new byte[readInt()];
+			iIn.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		int readInt() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				int b = iIn.read();
+				if (b < 0) throw new EOFException();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) return value;
+			}
+			throw new IOException("Malformed number.");
+		}
+	}
+}
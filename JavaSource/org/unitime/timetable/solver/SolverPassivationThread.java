@@ -20,11 +20,20 @@
 package org.unitime.timetable.solver;
 
 import java.io.File;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.solver.exam.ExamSolverProxy;
 import org.unitime.timetable.solver.studentsct.StudentSolverProxy;
 
@@ -38,6 +47,7 @@ public class SolverPassivationThread extends Thread {
 	private Map<String, ? extends ExamSolverProxy> iExamSolvers = null;
 	private Map<String, ? extends StudentSolverProxy> iStudentSolvers = null;
 	public static long sDelay = 30000;
+	private static ExecutorService sPool = null;
 	
 	public SolverPassivationThread(File folder, Map<String, ? extends SolverProxy> solvers, Map<String, ? extends ExamSolverProxy> examSolvers, Map<String, ? extends StudentSolverProxy> studentSolvers) {
 		iFolder = folder;
@@ -53,24 +63,9 @@ public class SolverPassivationThread extends Thread {
 		try {
             sLog.info("Solver passivation thread started.");
 			while (true) {
-				for (Iterator i=iSolvers.entrySet().iterator();i.hasNext();) {
-					Map.Entry entry = (Map.Entry)i.next();
-					String puid = (String)entry.getKey();
-					SolverProxy solver = (SolverProxy)entry.getValue();
-					solver.passivateIfNeeded(iFolder, puid);
-				}
-                for (Iterator i=iExamSolvers.entrySet().iterator();i.hasNext();) {
-                    Map.Entry entry = (Map.Entry)i.next();
-                    String puid = (String)entry.getKey();
-                    ExamSolverProxy solver = (ExamSolverProxy)entry.getValue();
-                    solver.passivateIfNeeded(iFolder, puid);
-                }
-                for (Iterator i=iStudentSolvers.entrySet().iterator();i.hasNext();) {
-                    Map.Entry entry = (Map.Entry)i.next();
-                    String puid = (String)entry.getKey();
-                    StudentSolverProxy solver = (StudentSolverProxy)entry.getValue();
-                    solver.passivateIfNeeded(iFolder, puid);
-                }
+				passivateIfNeeded(iFolder, iSolvers);
+				passivateIfNeeded(iFolder, iExamSolvers);
+				passivateIfNeeded(iFolder, iStudentSolvers);
 				try {
 					sleep(sDelay);
 				} catch (InterruptedException e) {
@@ -82,5 +77,54 @@ public class SolverPassivationThread extends Thread {
 			sLog.error("Solver passivation thread failed, reason: "+e.getMessage(), e);
 		}
 	}
+	
+	private static synchronized ExecutorService getPool(int nrThreads) {
+		if (sPool == null) {
+			sPool = Executors.newFixedThreadPool(nrThreads, new ThreadFactory() {
+				private AtomicInteger iCount = new AtomicInteger(0);
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SolverPassivation-" + iCount.incrementAndGet());
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			});
+		}
+		return sPool;
+	}
+	
+	/**
+	 * Passivate solvers that have not been used for a while (see {@link CommonSolverInterface#passivateIfNeeded(File, String)}).
+	 * Solvers are passivated in parallel on a pool of unitime.solver.passivation.threads threads (shared by all solver containers),
+	 * the method returns when all the solvers have been checked.
+	 */
+	public static void passivateIfNeeded(final File folder, Map<String, ? extends CommonSolverInterface> solvers) throws InterruptedException {
+		int nrThreads = ApplicationProperty.SolverPassivationThreads.intValue();
+		if (nrThreads <= 1) {
+			for (Map.Entry<String, ? extends CommonSolverInterface> entry: solvers.entrySet())
+				entry.getValue().passivateIfNeeded(folder, entry.getKey());
+			return;
+		}
+		List<Future<Boolean>> tasks = new ArrayList<Future<Boolean>>();
+		ExecutorService pool = getPool(nrThreads);
+		for (Map.Entry<String, ? extends CommonSolverInterface> entry: solvers.entrySet()) {
+			final String puid = entry.getKey();
+			final CommonSolverInterface solver = entry.getValue();
+			tasks.add(pool.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					return solver.passivateIfNeeded(folder, puid);
+				}
+			}));
+		}
+		for (Future<Boolean> task: tasks) {
+			try {
+				task.get();
+			} catch (ExecutionException e) {
+				sLog.warn("Solver passivation failed, reason: " + e.getCause().getMessage(), e.getCause());
+			}
+		}
+	}
 
 }
@@ -31,11 +31,19 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -73,6 +81,8 @@ import org.hibernate.CacheMode;
 import org.hibernate.FlushMode;
 import org.hibernate.LazyInitializationException;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Transaction;
 import org.hibernate.type.StringType;
 import org.unitime.localization.impl.Localization;
@@ -131,6 +141,7 @@ import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.model.dao.SolutionDAO;
 import org.unitime.timetable.model.dao.SolverGroupDAO;
 import org.unitime.timetable.model.dao.TimetableManagerDAO;
+import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.onlinesectioning.status.db.DbFindEnrollmentInfoAction.DbStudentMatcher;
 import org.unitime.timetable.solver.course.weights.ClassWeightProvider;
 import org.unitime.timetable.solver.course.weights.DefaultClassWeights;
@@ -214,6 +225,12 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     private String iInstructorFormat = null;
     
     private boolean iRoomAvailabilityTimeStampIsSet = false;
+    private AvailabilityPrefetch iAvailabilityPrefetch = null;
+    private static final int sFetchSize = 1000;
+    
+    private String iPhase = null;
+    private long iPhaseStart = 0;
+    private Map<String, Long> iPhaseTimes = new LinkedHashMap<String, Long>();
     
     private CommittedStudentConflictsMode iCommittedStudentConflictsMode = CommittedStudentConflictsMode.Load;
     
@@ -1485,19 +1502,23 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     			"where ci.lead = true and i.externalUniqueId in :puids and a.solution.owner.session.uniqueId=:sessionId and a.solution.commited=true and a.solution.owner.uniqueId not in ("+iSolverGroupIds+")");
     	q.setLong("sessionId",iSessionId.longValue());
     	q.setParameterList("puids", puids, StringType.INSTANCE);
-		for (Iterator i=q.iterate();i.hasNext();) {
-			Object[] x = (Object[])i.next();
-			String puid = (String)x[0];
-			Assignment a = (Assignment)x[1];
-			InstructorConstraint ic = (InstructorConstraint)iInstructors.get(puid);
-			Placement p = a.getPlacement();
-			ic.setNotAvailable(p);
-			if (!iLectures.containsKey(a.getClassId())) {
-				iLectures.put(a.getClassId(), p.variable());
-				getModel().addVariable(p.variable());
-			}
-			
-		}
+    	q.setFetchSize(sFetchSize);
+    	ScrollableResults results = q.scroll(ScrollMode.FORWARD_ONLY);
+    	try {
+    		while (results.next()) {
+    			String puid = (String)results.get(0);
+    			Assignment a = (Assignment)results.get(1);
+    			InstructorConstraint ic = (InstructorConstraint)iInstructors.get(puid);
+    			Placement p = a.getPlacement();
+    			ic.setNotAvailable(p);
+    			if (!iLectures.containsKey(a.getClassId())) {
+    				iLectures.put(a.getClassId(), p.variable());
+    				getModel().addVariable(p.variable());
+    			}
+    		}
+    	} finally {
+    		results.close();
+    	}
     }
     
     private void loadInstructorAvailabilities(org.hibernate.Session hibSession) {
@@ -1556,17 +1577,22 @@ public class TimetableDatabaseLoader extends TimetableLoader {
 		Query q = hibSession.createQuery("select distinct r.uniqueId, a from Location r inner join r.assignments as a "+
 				"where r.uniqueId in ("+roomids+") and a.solution.owner.session.uniqueId=:sessionId and a.solution.commited=true and a.solution.owner.uniqueId not in ("+iSolverGroupIds+") and r.ignoreRoomCheck = false");
 		q.setLong("sessionId",iSessionId.longValue());
-		for (Iterator i=q.iterate();i.hasNext();) {
-			Object[] x = (Object[])i.next();
-			Long roomId = (Long)x[0];
-			Assignment a = (Assignment)x[1];
-			Placement p = a.getPlacement();
-			RoomConstraint rc = (RoomConstraint)iRooms.get(roomId);
-			rc.setNotAvailable(p);
-			if (!iLectures.containsKey(a.getClassId())) {
-				iLectures.put(a.getClassId(), p.variable());
-				getModel().addVariable(p.variable());
+		q.setFetchSize(sFetchSize);
+		ScrollableResults results = q.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (results.next()) {
+				Long roomId = (Long)results.get(0);
+				Assignment a = (Assignment)results.get(1);
+				Placement p = a.getPlacement();
+				RoomConstraint rc = (RoomConstraint)iRooms.get(roomId);
+				rc.setNotAvailable(p);
+				if (!iLectures.containsKey(a.getClassId())) {
+					iLectures.put(a.getClassId(), p.variable());
+					getModel().addVariable(p.variable());
+				}
 			}
+		} finally {
+			results.close();
 		}
     }
     
@@ -2160,6 +2186,7 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     	ApplicationProperties.setSessionId(iSessionId);
     	org.hibernate.Session hibSession = null;
     	Transaction tx = null;
+    	long t0 = System.currentTimeMillis();
     	try {
     		hibSession = TimetableManagerDAO.getInstance().getSession();
     		hibSession.setCacheMode(CacheMode.IGNORE);
@@ -2174,8 +2201,13 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     		iProgress.message(msglevel("loadFailed", Progress.MSGLEVEL_FATAL), MSG.fatalLoadFailed(e.getMessage()), e);
     		tx.rollback();
     	} finally {
+    		if (iAvailabilityPrefetch != null) {
+    			iAvailabilityPrefetch.dispose();
+    			iAvailabilityPrefetch = null;
+    		}
     		// here we need to close the session since this code may run in a separate thread
     		if (hibSession!=null && hibSession.isOpen()) hibSession.close();
+    		logPhaseTimes(System.currentTimeMillis() - t0);
     	}
     }
     
@@ -2859,6 +2891,9 @@ public class TimetableDatabaseLoader extends TimetableLoader {
 		
 		loadRoomAvailabilities(hibSession);
 		
+		// retrieve room and instructor availabilities in the background while the rest of the problem is being loaded
+		iAvailabilityPrefetch = startAvailabilityPrefetch();
+		
 		setPhase(MSG.phaseLoadingOfferings(), iAllClasses.size());
     	Set<Long> loadedOfferings = new HashSet<Long>();
 		for (Class_ clazz: iAllClasses) {
@@ -3491,18 +3526,24 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     	if (!hibSession.isOpen())
     		iProgress.message(msglevel("hibernateFailure", Progress.MSGLEVEL_FATAL), MSG.fatalHibernateSessionClosed());
     	
-    	RoomAvailabilityInterface availability = null;
-    	if (SolverServerImplementation.getInstance() != null)
-    		availability = SolverServerImplementation.getInstance().getRoomAvailability();
-    	else
-    		availability = RoomAvailability.getInstance();
+    	RoomAvailabilityInterface availability = getRoomAvailabilityService();
         if (availability != null) {
-        	Date[] startEnd = initializeRoomAvailability(availability);
+        	Date[] startEnd = null;
+        	if (iAvailabilityPrefetch != null) {
+        		startEnd = iAvailabilityPrefetch.getStartEnd();
+        		iAvailabilityPrefetch.waitForActivation();
+        	} else {
+        		startEnd = initializeRoomAvailability(availability);
+        	}
         	if (startEnd != null) {
         		loadRoomAvailability(availability, startEnd);
         		loadInstructorAvailability(availability, startEnd);
         	}
         }
+        if (iAvailabilityPrefetch != null) {
+        	iAvailabilityPrefetch.dispose();
+        	iAvailabilityPrefetch = null;
+        }
 
         if (!hibSession.isOpen())
             iProgress.message(msglevel("hibernateFailure", Progress.MSGLEVEL_FATAL), MSG.fatalHibernateSessionClosed());
@@ -3817,6 +3858,35 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     }
     
     public Date[] initializeRoomAvailability(RoomAvailabilityInterface availability) {
+    	Date[] startEnd = getRoomAvailabilityStartEnd();
+    	if (startEnd != null)
+    		roomAvailabilityActivate(availability, startEnd[0], startEnd[1]);
+    	return startEnd;
+    }
+    
+    protected RoomAvailabilityInterface getRoomAvailabilityService() {
+    	if (SolverServerImplementation.getInstance() != null)
+    		return SolverServerImplementation.getInstance().getRoomAvailability();
+    	else
+    		return RoomAvailability.getInstance();
+    }
+    
+    /**
+     * Start retrieving the room and instructor availabilities in the background, using unitime.solver.load.availabilityThreads threads.
+     * Returns null when disabled or when there is no room availability service.
+     */
+    protected AvailabilityPrefetch startAvailabilityPrefetch() {
+    	int nrThreads = ApplicationProperty.SolverLoadAvailabilityThreads.intValue();
+    	if (nrThreads <= 0) return null;
+    	RoomAvailabilityInterface availability = getRoomAvailabilityService();
+    	if (availability == null) return null;
+    	return new AvailabilityPrefetch(availability, getRoomAvailabilityStartEnd(), nrThreads);
+    }
+    
+    /**
+     * First and last date of the date patterns that are being used, null if there are none
+     */
+    protected Date[] getRoomAvailabilityStartEnd() {
     	Date startDate = null, endDate = null;
         for (Iterator i=iAllUsedDatePatterns.iterator();i.hasNext();) {
             DatePattern dp = (DatePattern)i.next();
@@ -3839,7 +3909,6 @@ public class TimetableDatabaseLoader extends TimetableLoader {
         endDateCal.set(Calendar.HOUR_OF_DAY, 23);
         endDateCal.set(Calendar.MINUTE, 59);
         endDateCal.set(Calendar.SECOND, 59);
-        roomAvailabilityActivate(availability, startDateCal.getTime(),endDateCal.getTime());
         return new Date[] {startDateCal.getTime(), endDateCal.getTime()};
     }
     
@@ -3907,7 +3976,11 @@ public class TimetableDatabaseLoader extends TimetableLoader {
         Collection<TimeBlock> ret = null;
         String ts = null;
         try {
-            ret = availability.getRoomAvailability(room.getResourceId(), startTime, endTime, RoomAvailabilityInterface.sClassType);
+        	Future<Collection<TimeBlock>> prefetched = (iAvailabilityPrefetch == null ? null : iAvailabilityPrefetch.getRoomAvailability(room));
+        	if (prefetched != null)
+        		ret = getPrefetched(prefetched);
+        	else
+        		ret = availability.getRoomAvailability(room.getResourceId(), startTime, endTime, RoomAvailabilityInterface.sClassType);
             if (!iRoomAvailabilityTimeStampIsSet) ts = availability.getTimeStamp(startTime, endTime, RoomAvailabilityInterface.sClassType);
         } catch (Exception e) {
             sLog.error(e.getMessage(),e);
@@ -4003,7 +4076,11 @@ public class TimetableDatabaseLoader extends TimetableLoader {
         Collection<TimeBlock> ret = null;
         String ts = null;
         try {
-            ret = availability.getInstructorAvailability(instructor.getResourceId(), startTime, endTime, RoomAvailabilityInterface.sClassType);
+        	Future<Collection<TimeBlock>> prefetched = (iAvailabilityPrefetch == null ? null : iAvailabilityPrefetch.getInstructorAvailability(instructor));
+        	if (prefetched != null)
+        		ret = getPrefetched(prefetched);
+        	else
+        		ret = availability.getInstructorAvailability(instructor.getResourceId(), startTime, endTime, RoomAvailabilityInterface.sClassType);
             if (!iRoomAvailabilityTimeStampIsSet) ts = availability.getTimeStamp(startTime, endTime, RoomAvailabilityInterface.sClassType);
         } catch (Exception e) {
             sLog.error(e.getMessage(),e);
@@ -4269,6 +4346,109 @@ public class TimetableDatabaseLoader extends TimetableLoader {
 		}
     }
     
+    /**
+     * Room and instructor availabilities retrieved from the room availability service in the background, while the rest of the
+     * problem is being loaded from the database. The availabilities are put into the model only by the loading thread
+     * (see {@link TimetableDatabaseLoader#loadRoomAvailability(RoomAvailabilityInterface, Date[])}), so the model is never modified concurrently.
+     */
+    protected class AvailabilityPrefetch {
+    	private ExecutorService iExecutor;
+    	private Date[] iStartEnd;
+    	private Future<?> iActivation = null;
+    	private Map<RoomConstraint, Future<Collection<TimeBlock>>> iRoomAvailabilities = new HashMap<RoomConstraint, Future<Collection<TimeBlock>>>();
+    	private Map<InstructorConstraint, Future<Collection<TimeBlock>>> iInstructorAvailabilities = new HashMap<InstructorConstraint, Future<Collection<TimeBlock>>>();
+    	
+    	protected AvailabilityPrefetch(final RoomAvailabilityInterface availability, final Date[] startEnd, int nrThreads) {
+    		iStartEnd = startEnd;
+    		if (startEnd == null) return;
+    		iExecutor = Executors.newFixedThreadPool(nrThreads, new ThreadFactory() {
+    			private AtomicInteger iCount = new AtomicInteger(0);
+    			@Override
+    			public Thread newThread(Runnable r) {
+    				Thread thread = new Thread(r, "LoadAvailability-" + iCount.incrementAndGet());
+    				thread.setDaemon(true);
+    				return thread;
+    			}
+    		});
+    		iActivation = iExecutor.submit(new Runnable() {
+    			@Override
+    			public void run() {
+    				ApplicationProperties.setSessionId(iSessionId);
+    				try {
+    					roomAvailabilityActivate(availability, startEnd[0], startEnd[1]);
+    				} finally {
+    					ApplicationProperties.setSessionId(null);
+    					_RootDAO.closeCurrentThreadSessions();
+    				}
+    			}
+    		});
+    		for (Enumeration e=iRooms.elements();e.hasMoreElements();) {
+    			final RoomConstraint room = (RoomConstraint)e.nextElement();
+    			if (!room.getConstraint()) continue;
+    			iRoomAvailabilities.put(room, iExecutor.submit(new Callable<Collection<TimeBlock>>() {
+    				@Override
+    				public Collection<TimeBlock> call() throws Exception {
+    					iActivation.get();
+    					ApplicationProperties.setSessionId(iSessionId);
+    					try {
+    						return availability.getRoomAvailability(room.getResourceId(), startEnd[0], startEnd[1], RoomAvailabilityInterface.sClassType);
+    					} finally {
+    						ApplicationProperties.setSessionId(null);
+    						_RootDAO.closeCurrentThreadSessions();
+    					}
+    				}
+    			}));
+    		}
+    		for (final InstructorConstraint instructor: getModel().getInstructorConstraints()) {
+    			iInstructorAvailabilities.put(instructor, iExecutor.submit(new Callable<Collection<TimeBlock>>() {
+    				@Override
+    				public Collection<TimeBlock> call() throws Exception {
+    					iActivation.get();
+    					ApplicationProperties.setSessionId(iSessionId);
+    					try {
+    						return availability.getInstructorAvailability(instructor.getResourceId(), startEnd[0], startEnd[1], RoomAvailabilityInterface.sClassType);
+    					} finally {
+    						ApplicationProperties.setSessionId(null);
+    						_RootDAO.closeCurrentThreadSessions();
+    					}
+    				}
+    			}));
+    		}
+    	}
+    	
+    	public Date[] getStartEnd() { return iStartEnd; }
+    	
+    	public void waitForActivation() {
+    		if (iActivation == null) return;
+    		try {
+    			iActivation.get();
+    		} catch (Exception e) {
+    			sLog.error(e.getMessage(), e);
+    		}
+    	}
+    	
+    	public Future<Collection<TimeBlock>> getRoomAvailability(RoomConstraint room) {
+    		return iRoomAvailabilities.get(room);
+    	}
+    	
+    	public Future<Collection<TimeBlock>> getInstructorAvailability(InstructorConstraint instructor) {
+    		return iInstructorAvailabilities.get(instructor);
+    	}
+    	
+    	public void dispose() {
+    		if (iExecutor != null) iExecutor.shutdownNow();
+    	}
+    }
+    
+    private static Collection<TimeBlock> getPrefetched(Future<Collection<TimeBlock>> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) throw (Exception)e.getCause();
+			throw e;
+		}
+    }
+    
     protected void checkTermination() {
     	if (getTerminationCondition() != null && !getTerminationCondition().canContinue(new org.cpsolver.ifs.solution.Solution(getModel(), getAssignment())))
     		throw new RuntimeException(MSG.fatalLoadInterrupted());
@@ -4276,9 +4456,36 @@ public class TimetableDatabaseLoader extends TimetableLoader {
     
     protected void setPhase(String phase, long progressMax) {
     	checkTermination();
+    	endPhase();
+    	iPhase = phase; iPhaseStart = System.currentTimeMillis();
     	iProgress.setPhase(phase, progressMax);
     }
     
+    private void endPhase() {
+    	if (iPhase == null) return;
+    	Long time = iPhaseTimes.get(iPhase);
+    	iPhaseTimes.put(iPhase, (time == null ? 0l : time.longValue()) + System.currentTimeMillis() - iPhaseStart);
+    	iPhase = null;
+    }
+    
+    /**
+     * Time spent in each of the load phases (in milliseconds, phases of the same name are summed up)
+     */
+    public Map<String, Long> getPhaseTimes() {
+    	return iPhaseTimes;
+    }
+    
+    private void logPhaseTimes(long total) {
+    	endPhase();
+    	StringBuffer sb = new StringBuffer();
+    	for (Map.Entry<String, Long> e: iPhaseTimes.entrySet()) {
+    		if (e.getValue() < 10) continue;
+    		sb.append("\n  " + e.getKey() + ": " + e.getValue() + " ms");
+    	}
+    	sLog.info("Loading took " + total + " ms." + sb);
+    	iProgress.debug("Load phase times (over 10 ms):" + sb);
+    }
+    
     protected void incProgress() {
     	checkTermination();
     	iProgress.incProgress();
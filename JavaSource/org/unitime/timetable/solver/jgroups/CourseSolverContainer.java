@@ -31,6 +31,7 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.SolverParameterGroup;
 import org.unitime.timetable.solver.SolverDisposeListener;
+import org.unitime.timetable.solver.SolverPassivationThread;
 import org.unitime.timetable.solver.SolverProxy;
 import org.unitime.timetable.solver.TimetableSolver;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
@@ -160,9 +161,8 @@ public class CourseSolverContainer implements SolverContainer<SolverProxy> {
 			try {
 				sLog.info("Solver passivation thread started.");
 				while (iContinue) {
-					for (Map.Entry<String, TimetableSolver> entry: iCourseSolvers.entrySet())
-						entry.getValue().passivateIfNeeded(iFolder, entry.getKey());
 					try {
+						SolverPassivationThread.passivateIfNeeded(iFolder, iCourseSolvers);
 						sleep(iDelay);
 					} catch (InterruptedException e) {
 					    break;
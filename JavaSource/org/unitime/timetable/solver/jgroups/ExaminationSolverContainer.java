@@ -32,6 +32,7 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.SolverParameterGroup;
 import org.unitime.timetable.solver.SolverDisposeListener;
+import org.unitime.timetable.solver.SolverPassivationThread;
 import org.unitime.timetable.solver.exam.ExamSolver;
 import org.unitime.timetable.solver.exam.ExamSolverProxy;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
@@ -159,9 +160,8 @@ public class ExaminationSolverContainer implements SolverContainer<ExamSolverPro
 			try {
 				sLog.info("Solver passivation thread started.");
 				while (iContinue) {
-					for (Map.Entry<String, ExamSolver> entry: iExamSolvers.entrySet())
-						entry.getValue().passivateIfNeeded(iFolder, entry.getKey());
 					try {
+						SolverPassivationThread.passivateIfNeeded(iFolder, iExamSolvers);
 						sleep(iDelay);
 					} catch (InterruptedException e) {
 					    break;
@@ -31,6 +31,7 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.SolverParameterGroup;
 import org.unitime.timetable.solver.SolverDisposeListener;
+import org.unitime.timetable.solver.SolverPassivationThread;
 import org.unitime.timetable.solver.instructor.InstructorSchedulingProxy;
 import org.unitime.timetable.solver.instructor.InstructorSchedulingSolver;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
@@ -158,9 +159,8 @@ public class InstructorSchedulingContainer implements SolverContainer<Instructor
 			try {
 				sLog.info("Solver passivation thread started.");
 				while (iContinue) {
-					for (Map.Entry<String, InstructorSchedulingSolver> entry: iInstrSchdSolvers.entrySet())
-						entry.getValue().passivateIfNeeded(iFolder, entry.getKey());
 					try {
+						SolverPassivationThread.passivateIfNeeded(iFolder, iInstrSchdSolvers);
 						sleep(iDelay);
 					} catch (InterruptedException e) {
 					    break;
@@ -32,6 +32,7 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.SolverParameterGroup;
 import org.unitime.timetable.solver.SolverDisposeListener;
+import org.unitime.timetable.solver.SolverPassivationThread;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
 import org.unitime.timetable.solver.studentsct.StudentSolver;
 import org.unitime.timetable.solver.studentsct.StudentSolverProxy;
@@ -158,9 +159,8 @@ public class StudentSolverContainer implements SolverContainer<StudentSolverProx
 			try {
 				sLog.info("Solver passivation thread started.");
 				while (iContinue) {
-					for (Map.Entry<String, StudentSolver> entry: iStudentSolvers.entrySet())
-						entry.getValue().passivateIfNeeded(iFolder, entry.getKey());
 					try {
+						SolverPassivationThread.passivateIfNeeded(iFolder, iStudentSolvers);
 						sleep(iDelay);
 					} catch (InterruptedException e) {
 					    break;
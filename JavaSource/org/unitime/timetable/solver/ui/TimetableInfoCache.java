@@ -0,0 +1,222 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.ui;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Size-bounded LRU cache of decoded solution infos (see {@link org.unitime.timetable.model.SolverInfo#getInfo()}).
+ * At most unitime.solverInfo.cache.size infos are kept, the least recently used ones are evicted first and
+ * infos that have not been used for unitime.solverInfo.cache.ttl minutes expire on access (no cleanup thread is needed).
+ * Hits, misses, evictions, and decoding times are registered as an MBean (org.unitime:type=SolverInfo,name=cache).
+ *
+ * @author Tomas Muller
+ */
+public class TimetableInfoCache {
+	private static Log sLog = LogFactory.getLog(TimetableInfoCache.class);
+	private static TimetableInfoCache sInstance = new TimetableInfoCache();
+
+	private Map<Long, CachedInfo> iCache = new LinkedHashMap<Long, CachedInfo>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, CachedInfo> eldest) {
+			if (size() > getMaxSize()) {
+				iStatistics.iEvictions ++;
+				return true;
+			}
+			return false;
+		}
+	};
+	private Statistics iStatistics = new Statistics();
+
+	private TimetableInfoCache() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("org.unitime:type=SolverInfo,name=cache");
+			if (!server.isRegistered(name))
+				server.registerMBean(iStatistics, name);
+		} catch (Exception e) {
+			sLog.debug("Failed to register solver info cache statistics: " + e.getMessage());
+		}
+	}
+
+	public static TimetableInfoCache getInstance() { return sInstance; }
+
+	protected int getMaxSize() {
+		return Math.max(0, ApplicationProperty.SolverInfoCacheSize.intValue());
+	}
+
+	protected long getTimeToLive() {
+		return 60000l * ApplicationProperty.SolverInfoCacheTimeToLive.intValue();
+	}
+
+	/**
+	 * Cached info, null if not present (or expired)
+	 */
+	public synchronized TimetableInfo get(Long uniqueId) {
+		if (uniqueId == null) return null;
+		CachedInfo entry = iCache.get(uniqueId);
+		if (entry == null) {
+			iStatistics.iMisses ++;
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if (now - entry.iTimeStamp > getTimeToLive()) {
+			iCache.remove(uniqueId);
+			iStatistics.iExpirations ++; iStatistics.iMisses ++;
+			return null;
+		}
+		entry.iTimeStamp = now;
+		iStatistics.iHits ++;
+		return entry.iInfo;
+	}
+
+	public synchronized void put(Long uniqueId, TimetableInfo info) {
+		if (uniqueId == null || info == null || getMaxSize() == 0) return;
+		iCache.put(uniqueId, new CachedInfo(info));
+		expire();
+	}
+
+	public synchronized void remove(Long uniqueId) {
+		if (uniqueId == null) return;
+		iCache.remove(uniqueId);
+	}
+
+	public synchronized void clear() {
+		iCache.clear();
+	}
+
+	/**
+	 * Record the time needed to decode an info that was not cached
+	 * @param time decoding time in nanoseconds
+	 * @param legacy true if the info was stored in the (old) XML format
+	 */
+	public synchronized void decoded(long time, boolean legacy) {
+		iStatistics.iDecoded ++;
+		iStatistics.iDecodeTime += time;
+		if (legacy) iStatistics.iLegacy ++;
+	}
+
+	/**
+	 * Remove expired entries (starting from the least recently used ones)
+	 */
+	private void expire() {
+		long now = System.currentTimeMillis(), ttl = getTimeToLive();
+		for (Iterator<CachedInfo> i = iCache.values().iterator(); i.hasNext(); ) {
+			if (now - i.next().iTimeStamp > ttl) {
+				i.remove();
+				iStatistics.iExpirations ++;
+			} else {
+				break;
+			}
+		}
+	}
+
+	public Statistics getStatistics() { return iStatistics; }
+
+	private static class CachedInfo {
+		private TimetableInfo iInfo;
+		private long iTimeStamp = System.currentTimeMillis();
+
+		private CachedInfo(TimetableInfo info) {
+			iInfo = info;
+		}
+	}
+
+	public static interface StatisticsMBean {
+		public long getHits();
+		public long getMisses();
+		public double getHitRate();
+		public long getEvictions();
+		public long getExpirations();
+		public long getDecoded();
+		public long getDecodedLegacy();
+		public double getAverageDecodeTime();
+		public int getSize();
+		public int getMaxSize();
+		public void reset();
+		public void clear();
+	}
+
+	public class Statistics implements StatisticsMBean {
+		private long iHits = 0, iMisses = 0, iEvictions = 0, iExpirations = 0, iDecoded = 0, iLegacy = 0, iDecodeTime = 0;
+
+		@Override
+		public long getHits() { synchronized (TimetableInfoCache.this) { return iHits; } }
+		@Override
+		public long getMisses() { synchronized (TimetableInfoCache.this) { return iMisses; } }
+		@Override
+		public long getEvictions() { synchronized (TimetableInfoCache.this) { return iEvictions; } }
+		@Override
+		public long getExpirations() { synchronized (TimetableInfoCache.this) { return iExpirations; } }
+		@Override
+		public long getDecoded() { synchronized (TimetableInfoCache.this) { return iDecoded; } }
+		@Override
+		public long getDecodedLegacy() { synchronized (TimetableInfoCache.this) { return iLegacy; } }
+		@Override
+		public int getSize() { synchronized (TimetableInfoCache.this) { return iCache.size(); } }
+		@Override
+		public int getMaxSize() { return TimetableInfoCache.this.getMaxSize(); }
+
+		@Override
+		public double getHitRate() {
+			synchronized (TimetableInfoCache.this) {
+				long total = iHits + iMisses;
+				return (total == 0 ? 0.0 : ((double)iHits) / total);
+			}
+		}
+
+		/** Average decoding time in milliseconds */
+		@Override
+		public double getAverageDecodeTime() {
+			synchronized (TimetableInfoCache.this) {
+				return (iDecoded == 0 ? 0.0 : iDecodeTime / 1000000.0 / iDecoded);
+			}
+		}
+
+		@Override
+		public void reset() {
+			synchronized (TimetableInfoCache.this) {
+				iHits = 0; iMisses = 0; iEvictions = 0; iExpirations = 0; iDecoded = 0; iLegacy = 0; iDecodeTime = 0;
+			}
+		}
+
+		@Override
+		public void clear() {
+			TimetableInfoCache.this.clear();
+		}
+
+		@Override
+		public String toString() {
+			return "hits=" + getHits() + ", misses=" + getMisses() + ", hitRate=" + Math.round(100.0 * getHitRate()) + "%, evictions=" + getEvictions() +
+					", expirations=" + getExpirations() + ", size=" + getSize() + "/" + getMaxSize() + ", decoded=" + getDecoded() + " (legacy=" + getDecodedLegacy() + ", avg=" + Math.round(getAverageDecodeTime()) + " ms)";
+		}
+	}
+}
@@ -19,10 +19,14 @@
 */
 package org.unitime.timetable.solver.ui;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -35,6 +39,8 @@ import org.dom4j.io.OutputFormat;
 import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
 import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.solver.BinaryDocument;
 import org.unitime.timetable.solver.jgroups.CourseSolverContainer;
 import org.unitime.timetable.solver.jgroups.SolverServer;
 import org.unitime.timetable.solver.jgroups.SolverServerImplementation;
@@ -61,27 +67,37 @@ public class TimetableInfoUtil implements TimetableInfoFileProxy {
 	}
 	
 	public boolean saveToFile(String name, TimetableInfo info) {
-		FileOutputStream out = null;
 		try {
 			File file = new File(ApplicationProperties.getBlobFolder(),name);
 			file.getParentFile().mkdirs();
-			out = new FileOutputStream(file); 
-			XMLWriter writer = new XMLWriter(new GZIPOutputStream(out),OutputFormat.createCompactFormat());
 			Document document = DocumentHelper.createDocument();
 			Element root = document.addElement(info.getClass().getName());
 			info.save(root);
-			writer.write(document);
-			writer.flush(); writer.close();
-			out.flush();out.close();out=null;
+			writeDocument(document, file);
 			sLog.info("Saved info " + name + " as " + file + " (" + file.length() + " bytes)");
 			return true;
 		} catch (Exception e) {
 			sLog.warn("Failed to save info " + name + ": " + e.getMessage(), e);
 			return false;
+		}
+	}
+	
+	/**
+	 * Write the document in the binary format (see {@link BinaryDocument}), or as gzipped XML when unitime.solverInfo.binary is disabled
+	 */
+	protected void writeDocument(Document document, File file) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			if (ApplicationProperty.SolverInfoBinary.isTrue()) {
+				BinaryDocument.write(document, out);
+			} else {
+				XMLWriter writer = new XMLWriter(new GZIPOutputStream(out),OutputFormat.createCompactFormat());
+				writer.write(document);
+				writer.flush(); writer.close();
+			}
+			out.flush();
 		} finally {
-    		try {
-    			if (out!=null) out.close();
-    		} catch (IOException e) {}
+			out.close();
 		}
 	}
 	
@@ -91,13 +107,20 @@ public class TimetableInfoUtil implements TimetableInfoFileProxy {
 			if (!file.exists()) return null;
 			sLog.info("Loading info " + name + " from " + file + " (" + file.length() + " bytes)");
 			Document document = null;
-			GZIPInputStream gzipInput = null;
+			boolean legacy = false;
+			InputStream in = new BufferedInputStream(new FileInputStream(file));
 			try {
-				gzipInput = new GZIPInputStream(new FileInputStream(file));
-				document = (new SAXReader()).read(gzipInput);
+				if (BinaryDocument.isBinary(in)) {
+					document = BinaryDocument.read(in);
+				} else {
+					legacy = true;
+					document = (new SAXReader()).read(new GZIPInputStream(in));
+				}
 			} finally {
-				if (gzipInput!=null) gzipInput.close();
+				in.close();
 			}
+			if (legacy && ApplicationProperty.SolverInfoBinary.isTrue())
+				migrate(name, file, document);
 			Element root = document.getRootElement();
 			String infoClassName = root.getName();
 			Class infoClass = Class.forName(infoClassName);
@@ -110,6 +133,23 @@ public class TimetableInfoUtil implements TimetableInfoFileProxy {
 		}
 	}
 	
+	/**
+	 * Re-write an info stored as gzipped XML in the binary format
+	 */
+	protected void migrate(String name, File file, Document document) {
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try {
+			long size = file.length();
+			writeDocument(document, tmp);
+			if (!file.delete() || !tmp.renameTo(file))
+				throw new IOException("failed to replace " + file);
+			sLog.info("Migrated info " + name + " to the binary format (" + size + " -> " + file.length() + " bytes)");
+		} catch (Exception e) {
+			sLog.warn("Failed to migrate info " + name + ": " + e.getMessage(), e);
+			tmp.delete();
+		}
+	}
+	
 	public boolean deleteFile(String name) {
 		try {
 			File file = new File(ApplicationProperties.getBlobFolder(),name);
@@ -34,6 +34,7 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.command.server.GwtRpcMetrics;
 import org.unitime.timetable.gwt.shared.PageAccessException;
 
 import com.google.gson.FieldNamingStrategy;
@@ -106,12 +107,19 @@ public class GwtDispatcherServlet extends RemoteServiceServlet {
             	else
             		sLastQuery.set(new GwtCallInfo(rpcRequest.getMethod().getDeclaringClass().getSimpleName() + "#" + rpcRequest.getMethod().getName(), payload));
             } catch (Throwable t) {}
+            GwtRpcMetrics.Execution metrics = GwtRpcMetrics.start(getService(getThreadLocalRequest()) + ": " + rpcRequest.getMethod().getDeclaringClass().getSimpleName() + "#" + rpcRequest.getMethod().getName());
+            boolean failed = true;
             try {
-            	return RPC.invokeAndEncodeResponse(handler, rpcRequest.getMethod(), rpcRequest.getParameters(), rpcRequest.getSerializationPolicy());
+            	String response = RPC.invokeAndEncodeResponse(handler, rpcRequest.getMethod(), rpcRequest.getParameters(), rpcRequest.getSerializationPolicy());
+            	// encoded failures start with //EX
+            	failed = (response != null && response.startsWith("//EX"));
+            	return response;
             } catch (UnexpectedException ex) {
             	if (ex.getCause() instanceof AccessDeniedException)
             		return RPC.encodeResponseForFailure(rpcRequest.getMethod(), new PageAccessException(ex.getCause().getMessage()), rpcRequest.getSerializationPolicy());
             	throw ex;
+            } finally {
+            	if (metrics != null) metrics.done(failed);
             }
         } catch (IncompatibleRemoteServiceException ex) {
         	return RPC.encodeResponseForFailure(null, ex);
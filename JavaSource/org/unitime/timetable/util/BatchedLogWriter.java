@@ -0,0 +1,270 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.unitime.timetable.model.dao._RootDAO;
+
+/**
+ * Asynchronous writer of log records (e.g., {@link org.unitime.timetable.model.QueryLog} or {@link org.unitime.timetable.model.MessageLog}).
+ * Records are put in a bounded queue (records that do not fit in are dropped) and persisted in batches by a background thread.
+ * A batch is written when the queue reaches the batch size or when the linger time has passed since the last write,
+ * using one hibernate session and one flush per batch (so that the inserts are sent using JDBC batching).
+ * Queue depth and write latency are logged on the debug level and, while the writer is running, registered as an MBean (org.unitime:type=LogWriter,name=...).
+ *
+ * @author Tomas Muller
+ */
+public abstract class BatchedLogWriter<T> extends Thread {
+	private static Log sLog = LogFactory.getLog(BatchedLogWriter.class);
+	private BlockingQueue<T> iQueue;
+	private Object iFlushLock = new Object();
+	private volatile boolean iActive = true;
+	private int iLimit = -1;
+	private int iBatchSize = 100;
+	private long iLinger = 60000;
+	private AtomicLong iDropped = new AtomicLong(0), iPersisted = new AtomicLong(0), iFailed = new AtomicLong(0),
+			iBatches = new AtomicLong(0), iWriteTime = new AtomicLong(0), iMaxWriteTime = new AtomicLong(0);
+	private long iDroppedReported = 0;
+	private volatile long iLastWriteTime = 0;
+	private ObjectName iObjectName = null;
+
+	/**
+	 * @param name thread name
+	 * @param limit maximal number of records waiting to be persisted, zero or negative for no limit
+	 * @param batchSize maximal number of records persisted at once (a write is triggered when the queue reaches this size)
+	 * @param linger maximal time in milliseconds a record waits in the queue (when the batch size is not reached)
+	 */
+	public BatchedLogWriter(String name, int limit, int batchSize, long linger) {
+		super(name);
+		setDaemon(true);
+		iLimit = limit;
+		iBatchSize = Math.max(1, batchSize);
+		iLinger = Math.max(0, linger);
+		iQueue = (limit > 0 ? new ArrayBlockingQueue<T>(limit) : new LinkedBlockingQueue<T>());
+	}
+
+	public boolean isActive() { return iActive; }
+
+	/**
+	 * Add a record to be persisted
+	 * @return false if the record was dropped (the writer is not active or the queue is full)
+	 */
+	public boolean add(T record) {
+		if (!iActive) return false;
+		if (!iQueue.offer(record)) {
+			iDropped.incrementAndGet();
+			return false;
+		}
+		if (iQueue.size() >= iBatchSize) {
+			synchronized (iFlushLock) {
+				iFlushLock.notify();
+			}
+		}
+		return true;
+	}
+
+	/** Number of records waiting to be persisted */
+	public int getQueueSize() { return iQueue.size(); }
+	/** Number of records that were dropped because the queue was full */
+	public long getDropCount() { return iDropped.get(); }
+	/** Number of records persisted so far */
+	public long getPersistedCount() { return iPersisted.get(); }
+	/** Number of records that failed to persist */
+	public long getFailedCount() { return iFailed.get(); }
+	/** Number of batches written so far */
+	public long getBatchCount() { return iBatches.get(); }
+	/** Average time needed to write a batch, in milliseconds */
+	public double getAverageWriteTime() { long batches = iBatches.get(); return batches == 0 ? 0.0 : ((double)iWriteTime.get()) / batches; }
+	/** Longest time needed to write a batch, in milliseconds */
+	public long getMaxWriteTime() { return iMaxWriteTime.get(); }
+	/** Time needed to write the last batch, in milliseconds */
+	public long getLastWriteTime() { return iLastWriteTime; }
+
+	@Override
+	public String toString() {
+		return getName() + "{queue=" + getQueueSize() + ", dropped=" + getDropCount() + ", persisted=" + getPersistedCount() + ", failed=" + getFailedCount() +
+				", batches=" + getBatchCount() + ", avgWrite=" + Math.round(getAverageWriteTime()) + " ms, maxWrite=" + getMaxWriteTime() + " ms, lastWrite=" + getLastWriteTime() + " ms}";
+	}
+
+	/**
+	 * Persist a batch of records, one hibernate session and one flush is used for the whole batch
+	 */
+	protected void persist(List<T> records) throws Exception {
+		Session hibSession = new _RootDAO().createNewSession();
+		hibSession.setCacheMode(CacheMode.IGNORE);
+		Transaction tx = hibSession.beginTransaction();
+		try {
+			for (T record: records)
+				hibSession.save(record);
+			hibSession.flush();
+			tx.commit();
+		} catch (Exception e) {
+			tx.rollback();
+			throw e;
+		} finally {
+			hibSession.close();
+		}
+	}
+
+	/**
+	 * Called once in every iteration of the writer (at least once per linger time), before any records are written
+	 */
+	protected void tick() {}
+
+	protected void warn(String message) {
+		sLog.warn(message);
+	}
+
+	protected void error(String message, Throwable t) {
+		sLog.error(message, t);
+	}
+
+	/**
+	 * Stop the writer, all the records that are still in the queue are persisted first
+	 */
+	@Override
+	public void interrupt() {
+		iActive = false;
+		super.interrupt();
+		try { join(); } catch (InterruptedException e) {}
+	}
+
+	protected void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("org.unitime:type=LogWriter,name=" + ObjectName.quote(getName()));
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new Statistics(), name);
+				iObjectName = name;
+			}
+		} catch (Exception e) {
+			sLog.debug("Failed to register statistics of " + getName() + ": " + e.getMessage());
+		}
+	}
+
+	protected void unregisterMBean() {
+		if (iObjectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(iObjectName);
+			} catch (Exception e) {
+				sLog.debug("Failed to unregister statistics of " + getName() + ": " + e.getMessage());
+			}
+			iObjectName = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		sLog.debug(getName() + " is up.");
+		registerMBean();
+		try {
+			while (true) {
+				long deadline = System.currentTimeMillis() + iLinger;
+				synchronized (iFlushLock) {
+					try {
+						long wait;
+						while (iActive && iQueue.size() < iBatchSize && (wait = deadline - System.currentTimeMillis()) > 0)
+							iFlushLock.wait(wait);
+					} catch (InterruptedException e) {
+					}
+				}
+				try {
+					tick();
+				} catch (Exception e) {
+					error(getName() + " failed: " + e.getMessage(), e);
+				}
+				long dropped = iDropped.get();
+				if (dropped > iDroppedReported) {
+					warn("The limit of " + iLimit + " unpersisted log messages was reached, " + (dropped - iDroppedReported) + " messages have been dropped.");
+					iDroppedReported = dropped;
+				}
+				List<T> records = new ArrayList<T>(Math.min(iBatchSize, iQueue.size()));
+				while (iQueue.drainTo(records, iBatchSize) > 0) {
+					long t0 = System.currentTimeMillis();
+					try {
+						persist(records);
+						iPersisted.addAndGet(records.size());
+					} catch (Exception e) {
+						iFailed.addAndGet(records.size());
+						error("Failed to persist " + records.size() + " log entries: " + e.getMessage(), e);
+					}
+					long time = System.currentTimeMillis() - t0;
+					iBatches.incrementAndGet();
+					iWriteTime.addAndGet(time);
+					iLastWriteTime = time;
+					if (time > iMaxWriteTime.get()) iMaxWriteTime.set(time);
+					if (sLog.isDebugEnabled())
+						sLog.debug("Persisted " + records.size() + " log entries in " + time + " ms (" + this + ")");
+					records.clear();
+					if (iActive && iQueue.size() < iBatchSize) break;
+				}
+				if (!iActive && iQueue.isEmpty()) break;
+			}
+		} finally {
+			unregisterMBean();
+		}
+		sLog.debug(getName() + " is down.");
+	}
+
+	public static interface StatisticsMBean {
+		public int getQueueSize();
+		public long getDropCount();
+		public long getPersistedCount();
+		public long getFailedCount();
+		public long getBatchCount();
+		public double getAverageWriteTime();
+		public long getMaxWriteTime();
+		public long getLastWriteTime();
+	}
+
+	public class Statistics implements StatisticsMBean {
+		@Override
+		public int getQueueSize() { return BatchedLogWriter.this.getQueueSize(); }
+		@Override
+		public long getDropCount() { return BatchedLogWriter.this.getDropCount(); }
+		@Override
+		public long getPersistedCount() { return BatchedLogWriter.this.getPersistedCount(); }
+		@Override
+		public long getFailedCount() { return BatchedLogWriter.this.getFailedCount(); }
+		@Override
+		public long getBatchCount() { return BatchedLogWriter.this.getBatchCount(); }
+		@Override
+		public double getAverageWriteTime() { return BatchedLogWriter.this.getAverageWriteTime(); }
+		@Override
+		public long getMaxWriteTime() { return BatchedLogWriter.this.getMaxWriteTime(); }
+		@Override
+		public long getLastWriteTime() { return BatchedLogWriter.this.getLastWriteTime(); }
+	}
+}
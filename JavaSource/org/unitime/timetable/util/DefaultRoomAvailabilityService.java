@@ -20,16 +20,23 @@
 package org.unitime.timetable.util;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cpsolver.ifs.util.ToolBox;
+import org.hibernate.type.LongType;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.interfaces.RoomAvailabilityInterface;
 import org.unitime.timetable.model.ClassEvent;
@@ -49,8 +56,10 @@ import org.unitime.timetable.model.dao.LocationDAO;
  * @author Tomas Muller
  */
 public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface {
+	private static Log sLog = LogFactory.getLog(DefaultRoomAvailabilityService.class);
     private Vector<CacheElement> iCache = new Vector<CacheElement>();
     private boolean iInstructorAvailabilityEnabled = false;
+    private AtomicLong iNrHits = new AtomicLong(0), iNrMisses = new AtomicLong(0);
     
     public String getTimeStamp(Date startTime, Date endTime, String excludeType) {
         TimeFrame time = new TimeFrame(startTime, endTime);
@@ -73,7 +82,11 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
         TimeFrame time = new TimeFrame(startTime, endTime);
         synchronized(iCache) {
             CacheElement cache = get(time, excludeType);
-            if (cache!=null) return cache.get(location.getPermanentId(), excludeType);
+            if (cache!=null) {
+            	iNrHits.incrementAndGet();
+            	return cache.get(location.getPermanentId(), excludeType, time);
+            }
+            iNrMisses.incrementAndGet();
             TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
             Class<? extends Event> exclude = null;
             ExamType examType = null;
@@ -164,6 +177,35 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
     public void startService() {}
     public void stopService() {}
     
+    /** Number of room and instructor availability requests that were served from the cache */
+    public long getNrHits() { return iNrHits.get(); }
+    
+    /** Number of room and instructor availability requests that were not covered by the cache (and were loaded from the database) */
+    public long getNrMisses() { return iNrMisses.get(); }
+    
+    /** Number of room and instructor index rebuilds of all the cache elements */
+    public long getNrRebuilds() {
+    	long rebuilds = 0;
+    	synchronized (iCache) {
+    		for (CacheElement cache: iCache) rebuilds += cache.getNrRebuilds();
+    	}
+    	return rebuilds;
+    }
+    
+    /** Number of cache updates (of all the cache elements), see {@link CacheElement#update(EventDateMapping.Class2EventDateMap, Long, boolean)} */
+    public long getNrUpdates() {
+    	long updates = 0;
+    	synchronized (iCache) {
+    		for (CacheElement cache: iCache) updates += cache.getNrUpdates();
+    	}
+    	return updates;
+    }
+    
+    @Override
+    public String toString() {
+    	return "DefaultRoomAvailabilityService{hits=" + getNrHits() + ", misses=" + getNrMisses() + ", updates=" + getNrUpdates() + ", rebuilds=" + getNrRebuilds() + "}";
+    }
+    
     public static class TimeFrame {
         private Date iStart, iEnd;
         private int iStartSlot, iEndSlot;
@@ -203,18 +245,32 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
 
     public static class CacheElement{
         private TimeFrame iTime;
-        private Map<Long, TreeSet<TimeBlock>> iAvailability = new HashMap<Long, TreeSet<TimeBlock>>();
-        private Map<String, TreeSet<TimeBlock>> iInstructorAvailability = new HashMap<String, TreeSet<TimeBlock>>();
+        private TimeBlockIndex<Long> iAvailability = new TimeBlockIndex<Long>();
+        private TimeBlockIndex<String> iInstructorAvailability = new TimeBlockIndex<String>();
         private String iTimestamp = null;
         private String iExcludeType = null;
+        private String iMapping = null;
+        private Long iSessionId = null;
+        private boolean iIncludeInstructors = false;
+        private long iNrUpdates = 0, iNrFullUpdates = 0, iNrLoadedMeetings = 0;
         public CacheElement(TimeFrame time, String excludeType) {
             iTime = time;
             iExcludeType = excludeType;
         }
 
+        /**
+         * Update the cache. Only a light-weight signature of each meeting is retrieved from the database, only meetings
+         * that are new or that have changed since the last update are loaded and only the affected rooms and instructors are
+         * re-indexed. A full reload happens on the first update and when the event date mapping or the parameters change.
+         */
         public void update(EventDateMapping.Class2EventDateMap class2eventDateMap, Long sessionId, boolean includeInstructors) {
-        	iAvailability.clear();
-        	iInstructorAvailability.clear();
+        	String mapping = (class2eventDateMap == null ? null : class2eventDateMap.toString());
+        	if (iTimestamp == null || !ToolBox.equals(mapping, iMapping) || !ToolBox.equals(sessionId, iSessionId) || includeInstructors != iIncludeInstructors) {
+        		iAvailability.clear();
+        		iInstructorAvailability.clear();
+        		iNrFullUpdates ++;
+        	}
+        	iMapping = mapping; iSessionId = sessionId; iIncludeInstructors = includeInstructors;
             Class<? extends Event> exclude = null;
             ExamType examType = null;
             if (iExcludeType!=null) {
@@ -229,8 +285,10 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                 	examType = ExamType.findByReference(iExcludeType);
                 }
             }
-            addAll(LocationDAO.getInstance().getSession().createQuery(
-                    "select m from Meeting m where m.locationPermanentId!=null and "+
+            Map<Long, TimeBlockIndex.Signature<Long>> rooms = new HashMap<Long, TimeBlockIndex.Signature<Long>>();
+            addAll(rooms, LocationDAO.getInstance().getSession().createQuery(
+                    "select m.uniqueId, m.locationPermanentId, m.meetingDate, m.startPeriod, m.stopPeriod, m.event.uniqueId, m.event.eventName " +
+                    "from Meeting m where m.locationPermanentId!=null and "+
                     "m.approvalStatus = 1 and "+
                     "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
                     "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" +
@@ -241,11 +299,12 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                     .setInteger("startSlot", iTime.getStartSlot())
                     .setInteger("endSlot", iTime.getEndSlot())
                     .setCacheable(true)
-                    .list(), class2eventDateMap);
+                    .list());
             if (sessionId != null && ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && exclude != null) {
             	if (ClassEvent.class.isAssignableFrom(exclude)) {
-            		addAll(LocationDAO.getInstance().getSession().createQuery(
-                            "select m from ClassEvent e inner join e.meetings m where m.locationPermanentId in (select l.permanentId from Location l where l.session = :sessionId) and "+
+            		addAll(rooms, LocationDAO.getInstance().getSession().createQuery(
+                            "select m.uniqueId, m.locationPermanentId, m.meetingDate, m.startPeriod, m.stopPeriod, e.uniqueId, e.eventName " +
+                            "from ClassEvent e inner join e.meetings m where m.locationPermanentId in (select l.permanentId from Location l where l.session = :sessionId) and "+
                             "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
                             "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
                             "m.startPeriod<:endSlot and m.stopPeriod>:startSlot")
@@ -254,10 +313,11 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                             .setDate("endDate", iTime.getEndDate())
                             .setInteger("startSlot", iTime.getStartSlot())
                             .setInteger("endSlot", iTime.getEndSlot())
-                            .setCacheable(true).list(), class2eventDateMap);
+                            .setCacheable(true).list());
             	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-            		addAll(LocationDAO.getInstance().getSession().createQuery(
-                            "select m from " + exclude.getSimpleName() + " e inner join e.meetings m where m.locationPermanentId in (select l.permanentId from Location l where l.session = :sessionId) and "+
+            		addAll(rooms, LocationDAO.getInstance().getSession().createQuery(
+                            "select m.uniqueId, m.locationPermanentId, m.meetingDate, m.startPeriod, m.stopPeriod, e.uniqueId, e.eventName " +
+                            "from " + exclude.getSimpleName() + " e inner join e.meetings m where m.locationPermanentId in (select l.permanentId from Location l where l.session = :sessionId) and "+
                             "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
                             "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
                             "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" +
@@ -267,12 +327,18 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                             .setDate("endDate", iTime.getEndDate())
                             .setInteger("startSlot", iTime.getStartSlot())
                             .setInteger("endSlot", iTime.getEndSlot())
-                            .setCacheable(true).list(), class2eventDateMap);
+                            .setCacheable(true).list());
             	}
             }
+            for (Meeting m: load(iAvailability.update(rooms)))
+            	iAvailability.add(m.getLocationPermanentId(), m.getUniqueId(), new MeetingTimeBlock(m, class2eventDateMap));
+            int nrRooms = iAvailability.commit();
+            int nrInstructors = 0;
             if (sessionId != null && includeInstructors) {
-            	addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
-            			"select distinct m, i.externalUniqueId from Meeting m left outer join m.event.additionalContacts c, DepartmentalInstructor i where " +
+            	Map<Long, TimeBlockIndex.Signature<String>> instructors = new HashMap<Long, TimeBlockIndex.Signature<String>>();
+            	addAllInstructors(instructors, LocationDAO.getInstance().getSession().createQuery(
+            			"select distinct m.uniqueId, m.locationPermanentId, m.meetingDate, m.startPeriod, m.stopPeriod, m.event.uniqueId, m.event.eventName, i.externalUniqueId " +
+            			"from Meeting m left outer join m.event.additionalContacts c, DepartmentalInstructor i where " +
                          "i.department.session.uniqueId = :sessionId and i.externalUniqueId is not null and "+
                          "(m.event.mainContact.externalUniqueId = i.externalUniqueId or c.externalUniqueId = i.externalUniqueId) and "+
                          "m.approvalStatus = 1 and "+
@@ -285,11 +351,12 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                          .setLong("sessionId", sessionId)
                          .setInteger("startSlot", iTime.getStartSlot())
                          .setInteger("endSlot", iTime.getEndSlot())
-                         .setCacheable(true).list(), class2eventDateMap);
+                         .setCacheable(true).list());
             	if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && exclude != null) {
             		if (ClassEvent.class.isAssignableFrom(exclude)) {
-            			addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
-                                "select m, ci.instructor.externalUniqueId from ClassEvent e inner join e.meetings m inner join e.clazz.classInstructors ci where "+
+            			addAllInstructors(instructors, LocationDAO.getInstance().getSession().createQuery(
+                                "select m.uniqueId, m.locationPermanentId, m.meetingDate, m.startPeriod, m.stopPeriod, e.uniqueId, e.eventName, ci.instructor.externalUniqueId " +
+                                "from ClassEvent e inner join e.meetings m inner join e.clazz.classInstructors ci where "+
                                 "ci.lead = true and m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
                                 "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
                                 "m.startPeriod<:endSlot and m.stopPeriod>:startSlot")
@@ -298,10 +365,11 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                                 .setDate("endDate", iTime.getEndDate())
                                 .setInteger("startSlot", iTime.getStartSlot())
                                 .setInteger("endSlot", iTime.getEndSlot())
-                                .setCacheable(true).list(), class2eventDateMap);
+                                .setCacheable(true).list());
                 	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-                		addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
-                                "select m, di.externalUniqueId from " + exclude.getSimpleName() + " e inner join e.meetings m inner join e.exam.instructors di where  "+
+                		addAllInstructors(instructors, LocationDAO.getInstance().getSession().createQuery(
+                                "select m.uniqueId, m.locationPermanentId, m.meetingDate, m.startPeriod, m.stopPeriod, e.uniqueId, e.eventName, di.externalUniqueId " +
+                                "from " + exclude.getSimpleName() + " e inner join e.meetings m inner join e.exam.instructors di where  "+
                                 "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
                                 "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
                                 "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" +
@@ -311,65 +379,107 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                                 .setDate("endDate", iTime.getEndDate())
                                 .setInteger("startSlot", iTime.getStartSlot())
                                 .setInteger("endSlot", iTime.getEndSlot())
-                                .setCacheable(true).list(), class2eventDateMap);
+                                .setCacheable(true).list());
                 	}
                 }
+            	for (Meeting m: load(iInstructorAvailability.update(instructors))) {
+            		MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+            		for (String instructorExternalId: instructors.get(m.getUniqueId()).getKeys())
+            			iInstructorAvailability.add(instructorExternalId, m.getUniqueId(), block);
+            	}
+            	nrInstructors = iInstructorAvailability.commit();
             }
+            iNrUpdates ++;
             iTimestamp = new Date().toString();
+            sLog.debug("Updated " + this + ": " + nrRooms + " rooms and " + nrInstructors + " instructors rebuilt, " +
+            		iAvailability + ", instructors " + iInstructorAvailability);
         }
         
-        private void add(Meeting m, EventDateMapping.Class2EventDateMap class2eventDateMap) {
-        	TreeSet<TimeBlock> blocks = iAvailability.get(m.getLocationPermanentId());
-            if (blocks==null) {
-                blocks = new TreeSet(); iAvailability.put(m.getLocationPermanentId(), blocks);
-            }
-            MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-            if (block.getStartTime() != null)
-            	blocks.add(block);
+        /**
+         * Load meetings of the given ids (in batches of 1000)
+         */
+        private List<Meeting> load(Collection<Long> meetingIds) {
+        	List<Meeting> meetings = new ArrayList<Meeting>(meetingIds.size());
+        	if (meetingIds.isEmpty()) return meetings;
+        	List<Long> ids = new ArrayList<Long>(meetingIds);
+        	for (int i = 0; i < ids.size(); i += 1000) {
+        		meetings.addAll((List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+        				"select m from Meeting m inner join fetch m.event where m.uniqueId in (:meetingIds)")
+        				.setParameterList("meetingIds", ids.subList(i, Math.min(i + 1000, ids.size())), LongType.INSTANCE)
+        				.list());
+        	}
+        	iNrLoadedMeetings += meetings.size();
+        	return meetings;
         }
-        private void addAll(List<Meeting> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
-        	if (meetings != null)
-        		for (Meeting m: meetings)
-        			add(m, class2eventDateMap);
-        }
-        private void add(Meeting m, String instructorExternalId, EventDateMapping.Class2EventDateMap class2eventDateMap) {
-        	TreeSet<TimeBlock> blocks = iInstructorAvailability.get(instructorExternalId);
-            if (blocks==null) {
-                blocks = new TreeSet(); iInstructorAvailability.put(instructorExternalId, blocks);
-            }
-            MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-            if (block.getStartTime() != null)
-            	blocks.add(block);
+        
+        /**
+         * Meeting signatures, each row contains meeting id, location permanent id, meeting date, start and stop period, event id, and event name
+         */
+        private void addAll(Map<Long, TimeBlockIndex.Signature<Long>> signatures, List<Object[]> rows) {
+        	if (rows != null)
+        		for (Object[] row: rows) {
+        			Long meetingId = (Long)row[0];
+        			TimeBlockIndex.Signature<Long> signature = signatures.get(meetingId);
+        			if (signature == null) {
+        				signature = new TimeBlockIndex.Signature<Long>(row[1], row[2], row[3], row[4], row[5], row[6]);
+        				signatures.put(meetingId, signature);
+        			}
+        			signature.addKey((Long)row[1]);
+        		}
         }
-        private void addAllInstructors(List<Object[]> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
-        	if (meetings != null)
-        		for (Object[] o: meetings) {
-        			Meeting m = (Meeting)o[0];
-                	String id = (String)o[1];
-        			add(m, id, class2eventDateMap);
+        
+        /**
+         * Instructor meeting signatures, same as above but with the instructor external id in the last column
+         */
+        private void addAllInstructors(Map<Long, TimeBlockIndex.Signature<String>> signatures, List<Object[]> rows) {
+        	if (rows != null)
+        		for (Object[] row: rows) {
+        			Long meetingId = (Long)row[0];
+        			TimeBlockIndex.Signature<String> signature = signatures.get(meetingId);
+        			if (signature == null) {
+        				signature = new TimeBlockIndex.Signature<String>(row[1], row[2], row[3], row[4], row[5], row[6]);
+        				signatures.put(meetingId, signature);
+        			}
+        			signature.addKey((String)row[7]);
         		}
         }
         
-        public TreeSet<TimeBlock> get(Long roomPermId, String excludeType) {
-            TreeSet<TimeBlock> roomAvailability = iAvailability.get(roomPermId);
-            if (roomAvailability==null || excludeType==null || excludeType.equals(iExcludeType)) return roomAvailability;
-            TreeSet<TimeBlock> ret = new TreeSet();
-            for (TimeBlock block : roomAvailability) {
-            	if (excludeType.equals(block.getEventType())) continue;
-                ret.add(block);
-            }
-            return ret;
+        /**
+         * Only the blocks overlapping with the given time frame are returned when the time frame is narrower than the cached one
+         * (unless there is an event date mapping, which can move the class meetings outside of the requested dates)
+         */
+        private boolean isWindowed(TimeFrame time) {
+        	return time != null && iMapping == null && !iTime.equals(time);
+        }
+        
+        private static Date getEndTime(TimeFrame time) {
+        	Calendar c = Calendar.getInstance(Locale.US);
+        	c.setTime(time.getEndDate());
+        	c.add(Calendar.DAY_OF_YEAR, 1);
+        	return c.getTime();
         }
-        public TreeSet<TimeBlock> get(String instructorExternalId, String excludeType) {
+        
+        private static Collection<TimeBlock> filter(List<TimeBlock> blocks, String excludeType) {
+        	if (blocks == null || excludeType == null) return blocks;
+        	for (Iterator<TimeBlock> i = blocks.iterator(); i.hasNext(); )
+        		if (excludeType.equals(i.next().getEventType())) i.remove();
+        	return blocks;
+        }
+        
+        public Collection<TimeBlock> get(Long roomPermId, String excludeType) {
+        	return get(roomPermId, excludeType, null);
+        }
+        public Collection<TimeBlock> get(Long roomPermId, String excludeType, TimeFrame time) {
+        	List<TimeBlock> roomAvailability = (isWindowed(time) ? iAvailability.get(roomPermId, time.getStartDate(), getEndTime(time)) : iAvailability.get(roomPermId));
+            return (excludeType == null || excludeType.equals(iExcludeType) ? roomAvailability : filter(roomAvailability, excludeType));
+        }
+        public Collection<TimeBlock> get(String instructorExternalId, String excludeType) {
+        	return get(instructorExternalId, excludeType, null);
+        }
+        public Collection<TimeBlock> get(String instructorExternalId, String excludeType, TimeFrame time) {
         	if (instructorExternalId == null) return null;
-            TreeSet<TimeBlock> instructorAvailability = iInstructorAvailability.get(instructorExternalId);
-            if (instructorAvailability==null || excludeType==null || excludeType.equals(iExcludeType)) return instructorAvailability;
-            TreeSet<TimeBlock> ret = new TreeSet();
-            for (TimeBlock block : instructorAvailability) {
-            	if (excludeType.equals(block.getEventType())) continue;
-                ret.add(block);
-            }
-            return ret;
+        	List<TimeBlock> instructorAvailability = (isWindowed(time) ? iInstructorAvailability.get(instructorExternalId, time.getStartDate(), getEndTime(time)) : iInstructorAvailability.get(instructorExternalId));
+            return (excludeType == null || excludeType.equals(iExcludeType) ? instructorAvailability : filter(instructorAvailability, excludeType));
         }
         public TimeFrame getTimeFrame() { return iTime; }
         public String getExcludeType() { return iExcludeType; }
@@ -383,6 +493,14 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                     time.getEndSlot()<=iTime.getEndSlot());
         }
         public String getTimestamp() { return iTimestamp; }
+        /** Number of updates of this cache element */
+        public long getNrUpdates() { return iNrUpdates; }
+        /** Number of updates that needed a full reload */
+        public long getNrFullUpdates() { return iNrFullUpdates; }
+        /** Number of meetings loaded from the database */
+        public long getNrLoadedMeetings() { return iNrLoadedMeetings; }
+        /** Number of room and instructor index rebuilds */
+        public long getNrRebuilds() { return iAvailability.getNrRebuilds() + iInstructorAvailability.getNrRebuilds(); }
         public String toString() {
             return iTime.toString();
         }
@@ -494,7 +612,8 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
         synchronized(iCache) {
             CacheElement cache = get(time, excludeType);
             if (cache!=null) {
-            	Collection<TimeBlock> cached = cache.get(instructor.getExternalUniqueId(), excludeType);
+            	iNrHits.incrementAndGet();
+            	Collection<TimeBlock> cached = cache.get(instructor.getExternalUniqueId(), excludeType, time);
             	if (instructor.hasUnavailabilities()) {
             		Collection<TimeBlock> ret = instructor.listUnavailableDays();
             		if (cached != null) ret.addAll(cached);
@@ -503,6 +622,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
             		return cached;
             	}
             }
+            iNrMisses.incrementAndGet();
             TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
             Class<? extends Event> exclude = null;
             ExamType examType = null;
@@ -23,9 +23,6 @@ import java.io.FileOutputStream;
 
 import org.apache.logging.log4j.LogManager;
 
-import org.dom4j.Document;
-import org.dom4j.io.OutputFormat;
-import org.dom4j.io.XMLWriter;
 import org.unitime.commons.hibernate.util.HibernateUtil;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.dataexchange.DataExchangeHelper;
@@ -59,13 +56,9 @@ public class ExportXmlFile {
 	        	throw new Exception("Session " + args[0] + " not found.");
 	        
 	        // Export an XML file
-	        Document document = DataExchangeHelper.exportDocument(args[1], session, ApplicationProperties.getProperties(), null);
-	        if (document==null)
-	        	throw new Exception("No XML document has been created.");
-	        
 	        FileOutputStream fos = new FileOutputStream(args[2]);
 	        try {
-	        	(new XMLWriter(fos,OutputFormat.createPrettyPrint())).write(document);
+	        	DataExchangeHelper.exportXml(args[1], session, ApplicationProperties.getProperties(), null, fos);
 	        	fos.flush();
 	        } finally {
 	        	fos.close();
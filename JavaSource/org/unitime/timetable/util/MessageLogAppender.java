@@ -21,22 +21,14 @@ package org.unitime.timetable.util;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
-import java.util.Vector;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.appender.AbstractAppender;
 import org.apache.logging.log4j.core.config.Property;
-import org.hibernate.CacheMode;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.MessageLog;
-import org.unitime.timetable.model.dao.MessageLogDAO;
-import org.unitime.timetable.model.dao._RootDAO;
 
 /**
  * @author Tomas Muller
@@ -121,75 +113,37 @@ public class MessageLogAppender extends AbstractAppender {
 		getSaver().add(m);
 	}
 	
-	public static class Saver extends Thread {
-		private List<MessageLog> iMessages = new Vector<MessageLog>();
-		private boolean iActive = true;
-		private int iLogLimit = 5000;
-		private int iCleanupInterval = 180;
+	public static class Saver extends BatchedLogWriter<MessageLog> {
+		private long iCleanupInterval = 180;
 		private int iCleanupDays = 14;
-		private long iCounter = 0;
+		private long iNextCleanup = 0;
 		
 		public Saver() {
-			super("MessageLogSaver");
-			iLogLimit = ApplicationProperty.MessageLogLimit.intValue();
-			iCleanupInterval = ApplicationProperty.MessageLogCleanupInterval.intValue();
+			super("MessageLogSaver",
+					ApplicationProperty.MessageLogLimit.intValue(),
+					ApplicationProperty.MessageLogBatchSize.intValue(),
+					1000l * ApplicationProperty.MessageLogLinger.intValue());
+			iCleanupInterval = 60000l * ApplicationProperty.MessageLogCleanupInterval.intValue();
 			iCleanupDays = ApplicationProperty.LogCleanupMessageLog.intValue();
-			setDaemon(true);
+			iNextCleanup = System.currentTimeMillis() + iCleanupInterval;
 		}
 		
 		@Override
-		public void interrupt() {
-			iActive = false;
-			super.interrupt();
-			try { join(); } catch (InterruptedException e) {}
+		protected void tick() {
+			if (System.currentTimeMillis() < iNextCleanup) return;
+			iNextCleanup = System.currentTimeMillis() + iCleanupInterval;
+			LogCleaner.cleanupMessageLog(iCleanupDays);
 		}
 		
-		public void add(MessageLog m) {
-			if (!iActive) return;
-			synchronized (iMessages) {
-				if (iLogLimit <= 0 || iMessages.size() < iLogLimit)
-					iMessages.add(m);
-			}
+		// do not use the logger, the messages would end up in the message log again
+		@Override
+		protected void warn(String message) {
+			System.err.println(message);
 		}
 		
-		public void run() {
-			while (true) {
-				try {
-					try {
-						sleep(60000);
-					} catch (InterruptedException e) {
-					}
-					iCounter++;
-					if ((iCounter % iCleanupInterval) == 0) LogCleaner.cleanupMessageLog(iCleanupDays);
-					List<MessageLog> messagesToSave = null;
-					synchronized (iMessages) {
-						if (!iMessages.isEmpty()) {
-							messagesToSave = new ArrayList<MessageLog>(iMessages);
-							iMessages.clear();
-						}
-					}
-					if (messagesToSave != null) {
-						Session hibSession = MessageLogDAO.getInstance().getSession();
-						hibSession.setCacheMode(CacheMode.IGNORE);
-						Transaction tx = hibSession.beginTransaction();
-						try {
-							for (MessageLog m: messagesToSave)
-								hibSession.save(m);
-							hibSession.flush();
-							tx.commit();
-						} catch (Exception e) {
-							tx.rollback();
-							System.err.println("Failed to persist " + messagesToSave.size() + " log entries:" + e.getMessage());
-						}
-					}
-					if (!iActive) break;
-				} catch (Exception e) {
-					System.err.println("Failed to persist log entries:" + e.getMessage());
-				} finally {
-					_RootDAO.closeCurrentThreadSessions();
-				}
-			}
+		@Override
+		protected void error(String message, Throwable t) {
+			System.err.println(message);
 		}
-		
 	}
 }
@@ -0,0 +1,262 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.unitime.timetable.interfaces.RoomAvailabilityInterface.TimeBlock;
+import org.unitime.timetable.util.DefaultRoomAvailabilityService.MeetingTimeBlock;
+
+/**
+ * Time block index of a {@link DefaultRoomAvailabilityService.CacheElement}. For each resource (room permanent id
+ * or instructor external id), the blocks are kept in arrays ordered by the start time, the start and the end times are
+ * stored as primitive minutes (since epoch) together with the running maximum of the end times, so that the blocks
+ * overlapping with a time window are found using a binary search (an array-based interval tree).<br>
+ * The index is updated incrementally: each meeting is identified by its unique id and a {@link Signature} of the meeting data,
+ * only new or changed meetings need to be (re)loaded and only the resources that have been affected are rebuilt.
+ *
+ * @author Tomas Muller
+ */
+public class TimeBlockIndex<K> {
+	private Map<Long, Signature<K>> iSignatures = new HashMap<Long, Signature<K>>();
+	private Map<K, Intervals> iIntervals = new HashMap<K, Intervals>();
+	private Map<K, List<Added>> iAdded = new HashMap<K, List<Added>>();
+	private Map<K, Set<Long>> iRemoved = new HashMap<K, Set<Long>>();
+	private long iNrRebuilds = 0;
+
+	/**
+	 * Synchronize the index with the current meeting signatures. Meetings that are no longer present or that have
+	 * a different signature are removed from the index.
+	 * @param signatures meeting id: signature of all the meetings that should be in the index
+	 * @return ids of the meetings that are new or that have changed, these need to be added using {@link TimeBlockIndex#add(Object, Long, MeetingTimeBlock)}
+	 */
+	public Set<Long> update(Map<Long, Signature<K>> signatures) {
+		for (Iterator<Map.Entry<Long, Signature<K>>> i = iSignatures.entrySet().iterator(); i.hasNext(); ) {
+			Map.Entry<Long, Signature<K>> e = i.next();
+			Signature<K> signature = signatures.get(e.getKey());
+			if (signature == null || !signature.equals(e.getValue())) {
+				for (K key: e.getValue().getKeys()) {
+					Set<Long> removed = iRemoved.get(key);
+					if (removed == null) {
+						removed = new HashSet<Long>();
+						iRemoved.put(key, removed);
+					}
+					removed.add(e.getKey());
+				}
+				i.remove();
+			}
+		}
+		Set<Long> changed = new HashSet<Long>();
+		for (Map.Entry<Long, Signature<K>> e: signatures.entrySet()) {
+			if (!iSignatures.containsKey(e.getKey())) {
+				iSignatures.put(e.getKey(), e.getValue());
+				changed.add(e.getKey());
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Add a block of a new or changed meeting (the change is applied on {@link TimeBlockIndex#commit()})
+	 */
+	public void add(K key, Long meetingId, MeetingTimeBlock block) {
+		if (block.getStartTime() == null || block.getEndTime() == null) return;
+		List<Added> added = iAdded.get(key);
+		if (added == null) {
+			added = new ArrayList<Added>();
+			iAdded.put(key, added);
+		}
+		added.add(new Added(meetingId, block));
+	}
+
+	/**
+	 * Rebuild the interval arrays of all the resources that have been affected by the update
+	 * @return number of resources that have been rebuilt
+	 */
+	public int commit() {
+		Set<K> keys = new HashSet<K>(iAdded.keySet());
+		keys.addAll(iRemoved.keySet());
+		for (K key: keys) {
+			Intervals intervals = Intervals.create(iIntervals.get(key), iRemoved.get(key), iAdded.get(key));
+			if (intervals == null)
+				iIntervals.remove(key);
+			else
+				iIntervals.put(key, intervals);
+		}
+		iAdded.clear();
+		iRemoved.clear();
+		iNrRebuilds += keys.size();
+		return keys.size();
+	}
+
+	public void clear() {
+		iSignatures.clear();
+		iIntervals.clear();
+		iAdded.clear();
+		iRemoved.clear();
+	}
+
+	/** All blocks of the given resource, ordered by the start time, null if there are none */
+	public List<TimeBlock> get(K key) {
+		Intervals intervals = iIntervals.get(key);
+		return (intervals == null ? null : intervals.get());
+	}
+
+	/** Blocks of the given resource that overlap with the given time window, ordered by the start time, null if there are none */
+	public List<TimeBlock> get(K key, Date start, Date end) {
+		Intervals intervals = iIntervals.get(key);
+		return (intervals == null ? null : intervals.get(toMinutes(start), toMinutes(end)));
+	}
+
+	/** Number of meetings in the index */
+	public int getNrMeetings() { return iSignatures.size(); }
+
+	/** Number of resources in the index */
+	public int getNrResources() { return iIntervals.size(); }
+
+	/** Number of resource rebuilds since the index was created */
+	public long getNrRebuilds() { return iNrRebuilds; }
+
+	protected static int toMinutes(Date date) {
+		return (int)(date.getTime() / 60000l);
+	}
+
+	@Override
+	public String toString() {
+		return "TimeBlockIndex{meetings=" + getNrMeetings() + ", resources=" + getNrResources() + ", rebuilds=" + getNrRebuilds() + "}";
+	}
+
+	/**
+	 * Meeting signature: a hash of the meeting data from which the time block is created and the resources the meeting belongs to
+	 */
+	public static class Signature<K> {
+		private long iHash = 0;
+		private Set<K> iKeys = new HashSet<K>(2);
+
+		public Signature(Object... data) {
+			for (Object o: data) {
+				long h = (o == null ? 0l : o.hashCode()) * 0xBF58476D1CE4E5B9l;
+				iHash = (iHash ^ h ^ (h >>> 31)) * 0x9E3779B97F4A7C15l;
+			}
+		}
+
+		public void addKey(K key) { iKeys.add(key); }
+
+		public Set<K> getKeys() { return iKeys; }
+
+		@Override
+		public int hashCode() { return (int)(iHash ^ (iHash >>> 32)); }
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == null || !(o instanceof Signature)) return false;
+			Signature<?> s = (Signature<?>)o;
+			return iHash == s.iHash && iKeys.equals(s.iKeys);
+		}
+	}
+
+	private static class Added {
+		private long iMeetingId;
+		private MeetingTimeBlock iBlock;
+
+		private Added(long meetingId, MeetingTimeBlock block) {
+			iMeetingId = meetingId; iBlock = block;
+		}
+	}
+
+	/**
+	 * Blocks of a single resource, ordered by start time (same order as a TreeSet of the blocks would have)
+	 */
+	private static class Intervals {
+		private long[] iMeetingIds;
+		private int[] iStart, iEnd, iMaxEnd;
+		private MeetingTimeBlock[] iBlocks;
+
+		private static Intervals create(Intervals old, Set<Long> removed, List<Added> added) {
+			List<Added> blocks = new ArrayList<Added>((old == null ? 0 : old.iBlocks.length) + (added == null ? 0 : added.size()));
+			if (old != null)
+				for (int i = 0; i < old.iBlocks.length; i++)
+					if (removed == null || !removed.contains(old.iMeetingIds[i]))
+						blocks.add(new Added(old.iMeetingIds[i], old.iBlocks[i]));
+			if (added != null)
+				blocks.addAll(added);
+			if (blocks.isEmpty()) return null;
+			Added[] sorted = blocks.toArray(new Added[blocks.size()]);
+			Arrays.sort(sorted, new Comparator<Added>() {
+				@Override
+				public int compare(Added a1, Added a2) {
+					return a1.iBlock.compareTo(a2.iBlock);
+				}
+			});
+			int size = sorted.length;
+			Intervals intervals = new Intervals();
+			intervals.iMeetingIds = new long[size];
+			intervals.iStart = new int[size];
+			intervals.iEnd = new int[size];
+			intervals.iMaxEnd = new int[size];
+			intervals.iBlocks = new MeetingTimeBlock[size];
+			for (int i = 0; i < size; i++) {
+				intervals.iMeetingIds[i] = sorted[i].iMeetingId;
+				intervals.iBlocks[i] = sorted[i].iBlock;
+				intervals.iStart[i] = toMinutes(sorted[i].iBlock.getStartTime());
+				intervals.iEnd[i] = toMinutes(sorted[i].iBlock.getEndTime());
+				intervals.iMaxEnd[i] = (i == 0 ? intervals.iEnd[i] : Math.max(intervals.iMaxEnd[i - 1], intervals.iEnd[i]));
+			}
+			return intervals;
+		}
+
+		private List<TimeBlock> get() {
+			List<TimeBlock> ret = new ArrayList<TimeBlock>(iBlocks.length);
+			for (int i = 0; i < iBlocks.length; i++)
+				if (!isDuplicate(i)) ret.add(iBlocks[i]);
+			return ret;
+		}
+
+		private List<TimeBlock> get(int start, int end) {
+			// first block starting at or after the end of the window
+			int lo = 0, hi = iStart.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (iStart[mid] < end) lo = mid + 1; else hi = mid;
+			}
+			// all the blocks before lo start before the end of the window, go back while some of them may end after the start of the window
+			int first = lo;
+			while (first > 0 && iMaxEnd[first - 1] > start) first--;
+			List<TimeBlock> ret = new ArrayList<TimeBlock>(lo - first);
+			for (int i = first; i < lo; i++)
+				if (iEnd[i] > start && !isDuplicate(i)) ret.add(iBlocks[i]);
+			return ret;
+		}
+
+		/** Blocks that a TreeSet would consider the same (same start, end, and event name) are only returned once */
+		private boolean isDuplicate(int index) {
+			return index > 0 && iBlocks[index - 1].compareTo(iBlocks[index]) == 0;
+		}
+	}
+}
@@ -19,12 +19,20 @@
 */
 package org.unitime.timetable.util.queue;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.activation.DataSource;
@@ -32,9 +40,17 @@ import javax.activation.FileDataSource;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
 
 
 /**
+ * Queue processor executing up to unitime.queue.threads items at a time. The next item to be executed
+ * is the waiting item with the highest priority (see {@link QueueItem#getPriority()}); among items of the same priority,
+ * items of owners that have the fewest items running are preferred (so that one user cannot block the queue for everybody else),
+ * then the items are executed in the order in which they were added.<br>
+ * When unitime.queue.persistent is enabled, waiting items that can be serialized (see {@link QueueItem#isTransferable()})
+ * are also written into the queue data folder and they are put back into the queue when the server is restarted.
  * 
  * @author Tomas Muller
  *
@@ -45,10 +61,9 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
     protected static long sTimeToKeep = 1000 * 60 * 60 * 10; // Keep done items for at least 10 hours.
     protected static long sTimeToSleep = 1000 * 60 * 60; // Sleep no more than an hour.
 
-	private Queue<QueueItem> iQueue = new LinkedList<QueueItem>();
+	private List<QueueItem> iQueue = new ArrayList<QueueItem>();
 	private List<QueueItem> iFinished = new ArrayList<QueueItem>();
-	private QueueItem iItem = null;
-	private RunningItem iRunningItem = null;
+	private Map<String, RunningItem> iRunning = new LinkedHashMap<String, RunningItem>();
 	
 	protected static LocalQueueProcessor sInstance = null;
 
@@ -60,7 +75,9 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 	}
 	
 	public void run() {
-		sLog.info("Queue processor is up and running.");
+		sLog.info("Queue processor is up and running (" + getNrWorkers() + " workers).");
+		
+		restore();
 		
 		// While can continue
 		while (iCanContinue) {
@@ -72,48 +89,76 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 					if (item.finished() == null || now - item.finished().getTime() > sTimeToKeep) i.remove();
 				}
 				
-				// Check for a new item from the queue
-				if (iQueue.isEmpty()) {
+				// Check for a new item from the queue (when there is a worker available)
+				QueueItem item = (iRunning.size() < getNrWorkers() ? next() : null);
+				if (item == null) {
 					// Sleep for it, if there is nothing to do
-					sLog.info("Waiting for tasks to run...");
+					if (iRunning.isEmpty()) sLog.info("Waiting for tasks to run...");
 					try {
 						iQueue.wait(sTimeToSleep);
 					} catch (InterruptedException e) {
 						sLog.info("Interrupted.");
 					}
+					continue;
 				}
 				
-				// Take new item from the top of the queue
-				iItem = iQueue.poll();
-				
-				// Null if queue is empty
-				if (iItem == null) continue;
-			}
-			
-			// Execute the item
-			sLog.info("Executing " + iItem.name());
-			iRunningItem = new RunningItem(iItem);
-			iRunningItem.start();
-			try {
-				iRunningItem.join();
-			} catch (InterruptedException e) {
-				sLog.info("Task " + iItem.name() + " was interrupted.");
+				// Execute the item
+				iQueue.remove(item);
+				unpersist(item);
+				sLog.info("Executing " + item.name());
+				RunningItem runner = new RunningItem(item);
+				iRunning.put(item.getId(), runner);
+				runner.start();
 			}
-			
-			sLog.info("Task " + iItem.name() + (iItem.hasError() ? " failed (" + iItem.error().getMessage() + ")." : " is done."));
-
-			// Put the item into the list of finished items
-			synchronized (iQueue) {
-				iFinished.add(iItem);
-				
-				iItem = null;
-			}				
 		}
 		
 		sLog.info("Queue processor is down.");
 		sInstance = null;
 	}
 	
+	/**
+	 * Number of items that can be executed at the same time
+	 */
+	protected int getNrWorkers() {
+		return Math.max(1, ApplicationProperty.QueueProcessorThreads.intValue());
+	}
+	
+	/**
+	 * Pick the next item to execute: highest priority first, then the owner with the fewest running items, then the oldest item.
+	 * Must be called while holding the lock on the queue.
+	 */
+	protected QueueItem next() {
+		if (iQueue.isEmpty()) return null;
+		Map<String, Integer> running = new HashMap<String, Integer>();
+		for (RunningItem runner: iRunning.values()) {
+			Integer count = running.get(runner.iRunningItem.getOwnerId());
+			running.put(runner.iRunningItem.getOwnerId(), count == null ? 1 : count + 1);
+		}
+		QueueItem best = null; int bestRunning = 0;
+		for (QueueItem item: iQueue) {
+			Integer count = running.get(item.getOwnerId());
+			int itemRunning = (count == null ? 0 : count);
+			if (best == null || item.getPriority() > best.getPriority() || (item.getPriority() == best.getPriority() && itemRunning < bestRunning)) {
+				best = item; bestRunning = itemRunning;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Called by the runner when an item is done
+	 */
+	private void finished(RunningItem runner) {
+		QueueItem item = runner.iRunningItem;
+		sLog.info("Task " + item.name() + (item.hasError() ? " failed (" + item.error().getMessage() + ")." : item.isCancelled() ? " was cancelled." : " is done."));
+		synchronized (iQueue) {
+			iRunning.remove(item.getId());
+			// Put the item into the list of finished items
+			iFinished.add(item);
+			iQueue.notify();
+		}
+	}
+	
 	public static synchronized QueueProcessor getInstance() {
 		if (sInstance == null) {
 			sInstance = new LocalQueueProcessor();
@@ -134,36 +179,40 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 			if (item.getId() == null)
 				item.setId(generateId());
 			iQueue.add(item);
+			persist(item);
 			iQueue.notify();
 		}
 		return item;
 	}
 	
+	/**
+	 * Number of items that are waiting or running on this server
+	 */
+	public int getLoad() {
+		synchronized (iQueue) {
+			return iQueue.size() + iRunning.size();
+		}
+	}
+	
+	private static boolean match(QueueItem item, String ownerId, Long sessionId, String type) {
+		if (ownerId != null && !ownerId.equals(item.getOwnerId())) return false;
+		if (sessionId != null && !sessionId.equals(item.getSessionId())) return false;
+		if (type!=null && !type.equals(item.type())) return false;
+		return true;
+	}
+	
 	public List<QueueItem> getItems(String ownerId, Long sessionId, String type) {
 		synchronized (iQueue) {
 			List<QueueItem> ret = new ArrayList<QueueItem>();
 			
-			for (QueueItem item: iFinished) {
-				if (ownerId != null && !ownerId.equals(item.getOwnerId())) continue;
-				if (sessionId != null && !sessionId.equals(item.getSessionId())) continue;
-				if (type!=null && !type.equals(item.type())) continue;
-				ret.add(item);
-			}
+			for (QueueItem item: iFinished)
+				if (match(item, ownerId, sessionId, type)) ret.add(item);
 			
-			if (iItem != null) {
-				boolean add = true;
-				if (ownerId != null && !ownerId.equals(iItem.getOwnerId())) add = false;
-				if (sessionId != null && !sessionId.equals(iItem.getSessionId())) add = false;
-				if (type!=null && !type.equals(iItem.type())) add = false;
-				if (add) ret.add(iItem);
-			}
+			for (RunningItem runner: iRunning.values())
+				if (match(runner.iRunningItem, ownerId, sessionId, type)) ret.add(runner.iRunningItem);
 			
-			for (QueueItem item: iQueue) {
-				if (ownerId != null && !ownerId.equals(item.getOwnerId())) continue;
-				if (sessionId != null && !sessionId.equals(item.getSessionId())) continue;
-				if (type!=null && !type.equals(item.type())) continue;
-				ret.add(item);
-			}
+			for (QueueItem item: iQueue)
+				if (match(item, ownerId, sessionId, type)) ret.add(item);
 			
 			return ret;
 		}
@@ -179,8 +228,9 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 				QueueItem item = i.next();
 				if (id.equals(item.getId())) return item;
 			}
+			RunningItem runner = iRunning.get(id);
+			if (runner != null) return runner.iRunningItem;
 		}
-		if (iItem != null && id.equals(iItem.getId())) return iItem;
 		return null;
 	}
 	
@@ -194,8 +244,9 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 				QueueItem item = i.next();
 				if (id.equals(item.getTaskExecutionId())) return item;
 			}
+			for (RunningItem runner: iRunning.values())
+				if (id.equals(runner.iRunningItem.getTaskExecutionId())) return runner.iRunningItem;
 		}
-		if (iItem != null && id.equals(iItem.getTaskExecutionId())) return iItem;
 		return null;
 	}
 	
@@ -205,6 +256,7 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 				QueueItem item = i.next();
 				if (id.equals(item.getId())) {
 					i.remove();
+					unpersist(item);
 					return true;
 				}
 			}
@@ -215,9 +267,8 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 					return true;
 				}
 			}
-		}
-		if (iItem != null && id.equals(iItem.getId())) {
-			iRunningItem.cancel();
+			RunningItem runner = iRunning.get(id);
+			if (runner != null) runner.cancel();
 		}
 		return false;
 	}
@@ -234,7 +285,88 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 		}
 	}
 	
-	static class RunningItem extends Thread {
+	/**
+	 * Folder in which the waiting items are persisted, null when the persistence is disabled
+	 */
+	protected File getQueueFolder() {
+		if (!ApplicationProperty.QueueProcessorPersistent.isTrue()) return null;
+		File dir = new File(ApplicationProperties.getDataFolder(), "queue");
+		dir.mkdirs();
+		return dir;
+	}
+	
+	/**
+	 * Write a waiting item into the queue folder
+	 */
+	protected void persist(QueueItem item) {
+		File folder = getQueueFolder();
+		if (folder == null || !item.isTransferable()) return;
+		File file = new File(folder, item.getId() + ".item");
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				out.writeObject(item);
+			} finally {
+				out.close();
+			}
+		} catch (Exception e) {
+			sLog.warn("Failed to persist " + item.name() + ": " + e.getMessage(), e);
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Remove a persisted item (when it is started or removed from the queue)
+	 */
+	protected void unpersist(QueueItem item) {
+		File folder = getQueueFolder();
+		if (folder == null) return;
+		File file = new File(folder, item.getId() + ".item");
+		if (file.exists()) file.delete();
+	}
+	
+	/**
+	 * Put persisted items back into the queue
+	 */
+	protected void restore() {
+		File folder = getQueueFolder();
+		if (folder == null) return;
+		File[] files = folder.listFiles();
+		if (files == null) return;
+		List<QueueItem> restored = new ArrayList<QueueItem>();
+		for (File file: files) {
+			if (!file.getName().endsWith(".item")) continue;
+			try {
+				ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+				try {
+					restored.add((QueueItem)in.readObject());
+				} finally {
+					in.close();
+				}
+			} catch (Exception e) {
+				sLog.warn("Failed to restore queue item " + file.getName() + ": " + e.getMessage(), e);
+				file.delete();
+			}
+		}
+		if (restored.isEmpty()) return;
+		synchronized (iQueue) {
+			for (QueueItem item: restored) {
+				if (get(item.getId()) != null) continue;
+				sLog.info("Restored " + item.name() + " (created " + item.created() + ")");
+				iQueue.add(onRestore(item));
+			}
+			iQueue.sort(null);
+		}
+	}
+	
+	/**
+	 * Called on an item that is being put back into the queue after a restart
+	 */
+	protected QueueItem onRestore(QueueItem item) {
+		return item;
+	}
+	
+	class RunningItem extends Thread {
 		boolean iInterrupted = false;
 		QueueItem iRunningItem = null;
 		
@@ -246,7 +378,11 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 		
 		@Override
 		public void run() {
-			iRunningItem.executeItem();
+			try {
+				iRunningItem.executeItem();
+			} finally {
+				finished(this);
+			}
 		}
 		
 		@SuppressWarnings("deprecation")
@@ -254,6 +390,7 @@ public class LocalQueueProcessor extends Thread implements QueueProcessor {
 			if (iInterrupted) {
 				stop();
 			} else {
+				iRunningItem.cancel();
 				interrupt();
 				iInterrupted = true;
 			}
@@ -109,6 +109,12 @@ public class PdfExamReportQueueItem extends QueueItem {
         iForm.setSubjectAreas(SubjectArea.getUserSubjectAreas(owner, false));
 	}
 
+	@Override
+	public boolean isTransferable() {
+		// reports that use the exam solver must be executed locally
+		return iExamSolver == null;
+	}
+
 	@Override
 	public void execute() {
 		org.hibernate.Session hibSession = ExamDAO.getInstance().getSession();
@@ -287,6 +293,7 @@ public class PdfExamReportQueueItem extends QueueItem {
             Hashtable<Student,File> sreports = null;
             Session session = getSession();
             for (int i=0;i<iForm.getReports().length;i++) {
+            	if (isCancelled()) return;
             	iProgress = 0.1 + (0.8 / iForm.getReports().length) * i;
             	RegisteredReport regReport = ExamPdfReportForm.RegisteredReport.valueOf(iForm.getReports()[i]);
                 setStatus(MSG.statusGeneratingReport(iForm.getReportName(regReport)));
@@ -64,6 +64,9 @@ public abstract class QueueItem implements Log, Serializable, Comparable<QueueIt
 	private String iId = null;
 	private Address iAddress = null;
 	private Long iTaskExecutionId = null;
+	private int iPriority = 0;
+	private transient volatile boolean iCancelled = false;
+	private transient List<QueueItemListener> iListeners = null;
 	
 	public QueueItem(Long sessionId, UserContext owner) {
 		iSessionId = sessionId;
@@ -91,6 +94,11 @@ public abstract class QueueItem implements Log, Serializable, Comparable<QueueIt
 	public String getLocale() { return iLocale; }
 	public Long getTaskExecutionId() { return iTaskExecutionId; }
 	public void setTaskExecutionId(Long executionId) { iTaskExecutionId = executionId; }
+	/** Items with a higher priority are executed first, defaults to zero */
+	public int getPriority() { return iPriority; }
+	public void setPriority(int priority) { iPriority = priority; }
+	/** True if the item can be serialized, persisted, and executed on a different server (it does not depend on any transient objects) */
+	public boolean isTransferable() { return false; }
 	
 	public abstract String type();
 	public abstract String name();
@@ -118,7 +126,44 @@ public abstract class QueueItem implements Log, Serializable, Comparable<QueueIt
 				iStatus = GWT_MSG.scriptStatusKilled();
 			else
 				iStatus = GWT_MSG.scriptStatusFailed(iException.getMessage());
+		} else if (iCancelled) {
+			iStatus = GWT_MSG.scriptStatusKilled();
 		}
+		for (QueueItemListener listener: getListeners())
+			listener.onFinished(this);
+	}
+	
+	/**
+	 * Request the item to stop, long running items should check {@link #isCancelled()} periodically
+	 */
+	public void cancel() { iCancelled = true; }
+	public boolean isCancelled() { return iCancelled; }
+	
+	public void addListener(QueueItemListener listener) {
+		synchronized (iLog) {
+			List<QueueItemListener> listeners = (iListeners == null ? new ArrayList<QueueItemListener>() : new ArrayList<QueueItemListener>(iListeners));
+			listeners.add(listener);
+			iListeners = listeners;
+		}
+	}
+	public void removeListener(QueueItemListener listener) {
+		synchronized (iLog) {
+			if (iListeners == null) return;
+			List<QueueItemListener> listeners = new ArrayList<QueueItemListener>(iListeners);
+			listeners.remove(listener);
+			iListeners = (listeners.isEmpty() ? null : listeners);
+		}
+	}
+	private List<QueueItemListener> getListeners() {
+		List<QueueItemListener> listeners = iListeners;
+		if (listeners == null) return new ArrayList<QueueItemListener>();
+		return listeners;
+	}
+	protected void fireProgress() {
+		List<QueueItemListener> listeners = iListeners;
+		if (listeners != null)
+			for (QueueItemListener listener: listeners)
+				listener.onProgress(this);
 	}
 	
 	public boolean hasOutput() { return iFinished != null && iOutputLink != null; }
@@ -171,12 +216,13 @@ public abstract class QueueItem implements Log, Serializable, Comparable<QueueIt
 			iStatus = status; iProgress = 0; iMaxProgress = maxProgress;
 			iLog.add(new QueueMessage(QueueMessage.Level.STAGE, status));
 		}
+		fireProgress();
 	}	
 	public String status() { return iStatus; }
 	public double progress() { return iProgress / iMaxProgress; }
-	public void incProgress() { iProgress ++; }
-	public void incProgress(double value) { iProgress += value; }
-	public void setProgress(double value) { iProgress = value; }
+	public void incProgress() { iProgress ++; fireProgress(); }
+	public void incProgress(double value) { iProgress += value; fireProgress(); }
+	public void setProgress(double value) { iProgress = value; fireProgress(); }
 
 	public boolean hasError() { return iException != null; }
 	protected void setError(Throwable exception) { iException = exception; }
@@ -324,4 +370,12 @@ public abstract class QueueItem implements Log, Serializable, Comparable<QueueIt
 		if (cmp != 0) return cmp;
 		return getId().compareTo(item.getId());
 	}
+	
+	/**
+	 * Listener that is notified about the status / progress changes of an item
+	 */
+	public static interface QueueItemListener {
+		public void onProgress(QueueItem item);
+		public void onFinished(QueueItem item);
+	}
 }
@@ -36,6 +36,7 @@ import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.blocks.mux.MuxRpcDispatcher;
 import org.jgroups.util.Rsp;
 import org.jgroups.util.RspList;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.solver.jgroups.SolverServerImplementation;
 
@@ -82,6 +83,35 @@ public class RemoteQueueProcessor extends LocalQueueProcessor {
 		return super.add(item);
 	}
 	
+	@Override
+	protected QueueItem onRestore(QueueItem item) {
+		item.setAddress(iDispatcher.getChannel().getAddress());
+		return item;
+	}
+	
+	/**
+	 * Find the least loaded server for the given item (when unitime.queue.distribute is enabled), returns null if the item should be processed locally
+	 */
+	protected Address getTargetAddress(QueueItem item) {
+		if (!ApplicationProperty.QueueProcessorDistribute.isTrue() || !item.isTransferable()) return null;
+		if (iDispatcher.getChannel().getView().getMembers().size() <= 1) return null;
+		try {
+			Address local = iDispatcher.getChannel().getAddress();
+			Address best = null; int bestLoad = getLoad();
+			RspList<Integer> ret = iDispatcher.callRemoteMethods(null, "invoke",  new Object[] { "getLoad",  new Class[] {} , new Object[] {} }, new Class[] { String.class, Class[].class, Object[].class }, SolverServerImplementation.sAllResponses);
+			for (Rsp<Integer> rsp : ret) {
+				if (rsp == null || rsp.getValue() == null || local.equals(rsp.getSender())) continue;
+				if (rsp.getValue() < bestLoad) {
+					best = rsp.getSender(); bestLoad = rsp.getValue();
+				}
+			}
+			return best;
+		} catch (Exception e) {
+			sLog.warn("Failed to get queue processor load: " + e.getMessage(), e);
+			return null;
+		}
+	}
+	
 	@Override
 	public DataSource getFile(String id) {
 		try {
@@ -104,8 +134,15 @@ public class RemoteQueueProcessor extends LocalQueueProcessor {
 	public Object dispatch(Address address, Method method, Object[] args) throws Exception {
 		try {
 			if ("add".equals(method.getName())) {
+				Address target = getTargetAddress((QueueItem)args[0]);
+				if (target != null) {
+					try {
+						return iDispatcher.callRemoteMethod(target, "invoke",  new Object[] { method.getName(), method.getParameterTypes(), args }, new Class[] { String.class, Class[].class, Object[].class }, SolverServerImplementation.sFirstResponse);
+					} catch (Exception e) {
+						sLog.warn("Failed to add " + ((QueueItem)args[0]).name() + " to " + target + ", executing locally: " + e.getMessage(), e);
+					}
+				}
 				return method.invoke(this, args);
-				// return iDispatcher.callRemoteMethod(address, "invoke",  new Object[] { method.getName(), method.getParameterTypes(), args }, new Class[] { String.class, Class[].class, Object[].class }, SolverServerImplementation.sFirstResponse);
 			} else if ("getItems".equals(method.getName())) {
 				List<QueueItem> items = (List<QueueItem>)method.invoke(this, args);
 				if (iDispatcher.getChannel().getView().getMembers().size() > 1) {